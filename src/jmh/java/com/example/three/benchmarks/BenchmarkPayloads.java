@@ -0,0 +1,51 @@
+package com.example.three.benchmarks;
+
+import org.json.JSONObject;
+
+import java.util.UUID;
+
+/**
+ * In-memory inputs shared by the benchmarks, shaped like src/test/resources/jsons/message_payload.json
+ * and the SNS envelope that SQS delivers for it
+ */
+final class BenchmarkPayloads {
+
+    static final String MESSAGE_PAYLOAD = "{\n"
+            + "  \"type\": \"notification\",\n"
+            + "  \"source\": \"restassured-test\",\n"
+            + "  \"timestamp\": \"2023-07-15T10:30:00Z\",\n"
+            + "  \"data\": {\n"
+            + "    \"userId\": 12345,\n"
+            + "    \"action\": \"login\",\n"
+            + "    \"status\": \"success\",\n"
+            + "    \"details\": {\n"
+            + "      \"ipAddress\": \"192.168.1.1\",\n"
+            + "      \"userAgent\": \"Mozilla/5.0\",\n"
+            + "      \"location\": \"New York\"\n"
+            + "    }\n"
+            + "  }\n"
+            + "}";
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * Builds the body SQS receives for an SNS notification carrying the payload with the given messageId
+     */
+    static String snsEnvelope(String appMessageId) {
+        JSONObject payload = new JSONObject(MESSAGE_PAYLOAD);
+        payload.put("messageId", appMessageId);
+
+        JSONObject envelope = new JSONObject();
+        envelope.put("Type", "Notification");
+        envelope.put("MessageId", UUID.randomUUID().toString());
+        envelope.put("TopicArn", "arn:aws:sns:us-east-1:000000000000:benchmark-topic");
+        envelope.put("Message", payload.toString());
+        envelope.put("Timestamp", "2023-07-15T10:30:00.000Z");
+        envelope.put("SignatureVersion", "1");
+        envelope.put("Signature", "EXAMPLEpH+DcEwjAPg8O9mY8dReBSwksfg2S7WKQcikcNKWLQjwu6A4VbeS0QHVCkhRS7fUQvi2egU3N858fiTDN6bkkOxYDVrY0Ad8L10Hs3zH81mtnPk5uvvolIC1CXGu43obcgFxeL3khZl8IKvO61GWB6jI9b5+gLPoBc1Q=");
+        envelope.put("SigningCertURL", "https://sns.us-east-1.amazonaws.com/SimpleNotificationService-0000000000000000000000.pem");
+        envelope.put("UnsubscribeURL", "https://sns.us-east-1.amazonaws.com/?Action=Unsubscribe&SubscriptionArn=arn:aws:sns:us-east-1:000000000000:benchmark-topic:0000");
+        return envelope.toString();
+    }
+}
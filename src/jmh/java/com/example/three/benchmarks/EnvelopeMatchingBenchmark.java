@@ -0,0 +1,63 @@
+package com.example.three.benchmarks;
+
+import com.example.three.utils.SnsEnvelopeScanner;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The inner loop of MessagingService.checkMessageInSqs: deciding whether a received SNS envelope carries the
+ * messageId being verified. Measured for a matching body and for a body that belongs to another verifier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeMatchingBenchmark {
+
+    @Param({"true", "false"})
+    public boolean matching;
+
+    private String body;
+    private String expectedId;
+
+    @Setup
+    public void setup() {
+        String bodyId = UUID.randomUUID().toString();
+        body = BenchmarkPayloads.snsEnvelope(bodyId);
+        expectedId = matching ? bodyId : UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public boolean fullParse() {
+        // Mirrors the original loop: parse the wrapper, then parse the Message string
+        JSONObject snsWrapper = new JSONObject(body);
+        JSONObject messageJson = new JSONObject(snsWrapper.getString("Message"));
+        return expectedId.equals(messageJson.optString("messageId"));
+    }
+
+    @Benchmark
+    public boolean scannerMatch() {
+        return SnsEnvelopeScanner.matches(body, "messageId", expectedId);
+    }
+
+    @Benchmark
+    public String scannerExtract() {
+        // What the shared correlator does for every received message
+        return SnsEnvelopeScanner.extractField(body, "messageId");
+    }
+}
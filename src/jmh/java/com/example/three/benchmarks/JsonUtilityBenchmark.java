@@ -0,0 +1,78 @@
+package com.example.three.benchmarks;
+
+import com.example.three.utils.JsonUtility;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonUtility read and write. JsonUtility works on paths, so the inputs are small temp files that stay in
+ * the page cache for the whole run; what is measured is the JSON handling, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilityBenchmark {
+
+    private Path directory;
+    private String readPath;
+    private String writePath;
+    private String updatePath;
+    private JSONObject payload;
+    private JSONObject updates;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("json-utility-benchmark");
+        Path readFile = directory.resolve("read.json");
+        Files.write(readFile, BenchmarkPayloads.MESSAGE_PAYLOAD.getBytes());
+        readPath = readFile.toString();
+        writePath = directory.resolve("write.json").toString();
+        Path updateFile = directory.resolve("update.json");
+        Files.write(updateFile, BenchmarkPayloads.MESSAGE_PAYLOAD.getBytes());
+        updatePath = updateFile.toString();
+        updates = new JSONObject().put("messageId", "benchmark-update");
+        payload = new JSONObject(BenchmarkPayloads.MESSAGE_PAYLOAD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("read.json"));
+        Files.deleteIfExists(directory.resolve("write.json"));
+        Files.deleteIfExists(directory.resolve("update.json"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public JSONObject readJsonFile() throws IOException {
+        return JsonUtility.readJsonFile(readPath);
+    }
+
+    @Benchmark
+    public void writeJsonFile() throws IOException {
+        JsonUtility.writeJsonFile(payload, writePath);
+    }
+
+    @Benchmark
+    public void updateJsonFile() throws IOException {
+        JsonUtility.updateJsonFile(updatePath, updates);
+    }
+}
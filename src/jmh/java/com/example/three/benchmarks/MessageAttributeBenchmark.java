@@ -0,0 +1,46 @@
+package com.example.three.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageAttributeValue map construction as done per message in demo.sendMessageToSns
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageAttributeBenchmark {
+
+    @Benchmark
+    public Map<String, MessageAttributeValue> buildAttributes() {
+        Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+        messageAttributes.put("messageType", MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue("OrderNotification")
+                .build());
+        messageAttributes.put("priority", MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue("High")
+                .build());
+        messageAttributes.put("orderAmount", MessageAttributeValue.builder()
+                .dataType("Number")
+                .stringValue("150.75")
+                .build());
+        return messageAttributes;
+    }
+}
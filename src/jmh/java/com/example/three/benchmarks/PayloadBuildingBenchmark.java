@@ -0,0 +1,55 @@
+package com.example.three.benchmarks;
+
+import com.example.three.utils.PayloadTemplate;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload building as done by MessagingService.sendMessageFromJsonFile: read the JSON, inject the messageId,
+ * serialize. Compares the original parse/put/toString path with the precompiled template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBuildingBenchmark {
+
+    private byte[] fileBytes;
+    private PayloadTemplate template;
+    private String messageId;
+
+    @Setup
+    public void setup() {
+        fileBytes = BenchmarkPayloads.MESSAGE_PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        template = PayloadTemplate.compile(BenchmarkPayloads.MESSAGE_PAYLOAD, "messageId");
+        messageId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String parseInjectSerialize() {
+        // Mirrors the per-message work before payload templates: bytes to String, parse, put, toString
+        JSONObject jsonObject = new JSONObject(new String(fileBytes));
+        jsonObject.put("messageId", messageId);
+        return jsonObject.toString();
+    }
+
+    @Benchmark
+    public String templateRender() {
+        return template.render(messageId);
+    }
+}
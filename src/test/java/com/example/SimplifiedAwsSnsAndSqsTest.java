@@ -8,26 +8,38 @@ import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.SnsClientBuilder;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
 import software.amazon.awssdk.services.sqs.model.Message;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.services.SqsDeleteCoalescer;
+import com.example.three.services.SqsVisibilityReleaser;
+import com.example.three.utils.AwsConfigUtility;
+import com.example.three.utils.PayloadTemplate;
+import com.example.three.utils.SnsEnvelopeScanner;
 // Import SQS MessageAttributeValue with fully qualified name when needed
 
 import org.json.JSONObject;
 import org.testng.*;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -42,24 +54,40 @@ import java.util.function.Function;
  * that it appears in a subscribed SQS queue using credentials from gimme-aws-creds.
  */
 public class SimplifiedAwsSnsAndSqsTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SimplifiedAwsSnsAndSqsTest.class);
 
     // AWS resource identifiers - replace with your actual values
     private static final String SNS_TOPIC_ARN = "YOUR_SNS_TOPIC_ARN";  // ARN of the SNS topic to publish to
     private static final String SQS_QUEUE_URL = "YOUR_SQS_QUEUE_URL";  // URL of the SQS queue to check for messages
     private static final Region REGION = Region.US_EAST_1;  // AWS region where your resources are located (SDK v2)
     private static final String JSON_FILE_PATH = "src/test/resources/jsons/message_payload.json";
+    // Hand messages that are not ours back to the queue immediately instead of hiding them for the visibility timeout
+    private static final boolean RELEASE_UNMATCHED_MESSAGES = true;
     
     // Will hold the AWS credentials loaded from the credentials file (SDK v2)
     private static AwsCredentials awsCredentials;
+    // Endpoint of the in-process emulator or of aws.endpoint.override, null for AWS
+    private static URI endpointOverride;
     
     /**
      * Setup method that runs once before any tests.
-     * Loads AWS credentials from the credentials file generated by gimme-aws-creds.
+     * Loads AWS credentials from the credentials file generated by gimme-aws-creds, or starts the
+     * in-process emulator when aws.emulator.enabled is set.
      */
     @BeforeClass
     public static void setup() throws IOException {
+        if (AwsConfigUtility.isEmulatorEnabled()) {
+            // Offline run: create this test's topic and queue in the emulator, no real credentials needed
+            SnsSqsEmulator emulator = SnsSqsEmulator.shared();
+            emulator.provision(SNS_TOPIC_ARN, SQS_QUEUE_URL);
+            endpointOverride = emulator.endpoint();
+            awsCredentials = SnsSqsEmulator.credentialsProvider().resolveCredentials();
+            return;
+        }
+
         // Load AWS credentials from gimme-aws-creds output file
         awsCredentials = loadGimmeAwsCredentials();
+        endpointOverride = AwsConfigUtility.getEndpointOverride();
     }
     
     /**
@@ -131,21 +159,20 @@ public class SimplifiedAwsSnsAndSqsTest {
         // Create a unique message ID to track the message
         String messageId = UUID.randomUUID().toString();
         
-        // Read the JSON payload from the file
-        String jsonContent = new String(Files.readAllBytes(Paths.get(JSON_FILE_PATH)));
-        
-        // Parse the JSON content and add the messageId for tracking
-        JSONObject jsonPayload = new JSONObject(jsonContent);
-        jsonPayload.put("id", messageId);  // Add the messageId to the JSON for tracking
-        String message = jsonPayload.toString();
+        // Load the JSON payload as a cached template with a slot for the "id" field
+        PayloadTemplate jsonPayload = PayloadTemplate.forFile(JSON_FILE_PATH, "id");
+        String message = jsonPayload.render(messageId);  // Add the messageId to the JSON for tracking
         
-        System.out.println("Using message payload: " + message);
+        LOG.debug("Using message payload: {}", message);
 
         // Initialize SNS client with gimme-aws-creds credentials (SDK v2)
-        SnsClient snsClient = SnsClient.builder()
+        SnsClientBuilder snsClientBuilder = SnsClient.builder()
                 .region(REGION)
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build();
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials));
+        if (endpointOverride != null) {
+            snsClientBuilder.endpointOverride(endpointOverride);
+        }
+        SnsClient snsClient = snsClientBuilder.build();
 
         // Create message attributes
         Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
@@ -177,17 +204,24 @@ public class SimplifiedAwsSnsAndSqsTest {
         PublishResponse publishResult = snsClient.publish(publishRequest);
         
         // Log the message ID returned by SNS for debugging purposes
-        System.out.println("Message published to SNS. MessageId: " + publishResult.messageId());
+        LOG.debug("Message published to SNS. MessageId: {}", publishResult.messageId());
 
         // Initialize SQS client with gimme-aws-creds credentials (SDK v2)
-        SqsClient sqsClient = SqsClient.builder()
+        SqsClientBuilder sqsClientBuilder = SqsClient.builder()
                 .region(REGION)
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build();
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials));
+        if (endpointOverride != null) {
+            sqsClientBuilder.endpointOverride(endpointOverride);
+        }
+        SqsClient sqsClient = sqsClientBuilder.build();
+
+        // Deletes are batched with DeleteMessageBatch instead of one call per message
+        SqsDeleteCoalescer deleteCoalescer = new SqsDeleteCoalescer(sqsClient, SQS_QUEUE_URL, Duration.ofMillis(20));
 
         // Wait for the message to propagate from SNS to SQS
         // This delay is necessary because message delivery is not instantaneous
-        TimeUnit.SECONDS.sleep(5);
+        // The emulator delivers synchronously on publish, so there is nothing to wait for
+        TimeUnit.SECONDS.sleep(AwsConfigUtility.isEmulatorEnabled() ? 0 : 5);
 
         // Check SQS queue for the message
         boolean messageFound = false;
@@ -206,16 +240,21 @@ public class SimplifiedAwsSnsAndSqsTest {
             
             // Receive messages from the SQS queue (SDK v2)
             List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
+            List<Message> unmatchedMessages = new ArrayList<>();
             
             // Check each message to see if it contains our unique message ID
             for (Message sqsMessage : messages) {
+                if (messageFound) {
+                    unmatchedMessages.add(sqsMessage);
+                    continue;
+                }
                 String body = sqsMessage.body();
-                System.out.println("Received message: " + body);
+                LOG.debug("Received message: {}", body);
                 
                 // When a message is sent from SNS to SQS, SNS wraps the original message
-                // in additional JSON with metadata. We just need to check if our message ID
-                // is contained somewhere in this wrapped message.
-                if (body.contains(String.valueOf(messageId))) {
+                // in additional JSON with metadata. The scanner reads our "id" field out of
+                // the wrapped message without parsing it.
+                if (SnsEnvelopeScanner.matches(body, "id", messageId)) {
                     messageFound = true;
                     
                     // Print any message attributes that were received
@@ -223,32 +262,37 @@ public class SimplifiedAwsSnsAndSqsTest {
                             sqsMessage.messageAttributes();
                     
                     if (receivedAttributes != null && !receivedAttributes.isEmpty()) {
-                        System.out.println("Received message attributes:");
+                        LOG.debug("Received message attributes:");
                         for (Map.Entry<String, software.amazon.awssdk.services.sqs.model.MessageAttributeValue> entry : 
                                 receivedAttributes.entrySet()) {
-                            System.out.println(entry.getKey() + ": " + entry.getValue().stringValue());
+                            LOG.debug("{}: {}", entry.getKey(), entry.getValue().stringValue());
                         }
                     } else {
-                        System.out.println("No message attributes received");
+                        LOG.debug("No message attributes received");
                     }
                     
-                    // Delete the message from the queue after verification (SDK v2)
-                    DeleteMessageRequest deleteRequest = DeleteMessageRequest.builder()
-                            .queueUrl(SQS_QUEUE_URL)
-                            .receiptHandle(sqsMessage.receiptHandle())
-                            .build();
-                    sqsClient.deleteMessage(deleteRequest);
-                    break;
+                    // Queue the message for deletion after verification, without waiting for it
+                    deleteCoalescer.delete(sqsMessage.receiptHandle());
+                } else {
+                    unmatchedMessages.add(sqsMessage);
                 }
             }
+
+            // Release the messages that belong to other verifiers in one batch
+            if (RELEASE_UNMATCHED_MESSAGES && !unmatchedMessages.isEmpty()) {
+                SqsVisibilityReleaser.releaseMessages(sqsClient, SQS_QUEUE_URL, unmatchedMessages);
+            }
             
             // If we haven't found the message yet, wait before trying again
             if (!messageFound) {
-                System.out.println("Message not found, waiting before next attempt...");
+                LOG.debug("Message not found, waiting before next attempt...");
                 TimeUnit.SECONDS.sleep(2);
             }
         }
 
+        // Send the queued deletes before finishing
+        deleteCoalescer.close();
+
         // Assert that the message was found in the SQS queue
         // This will cause the test to fail if the message was not found
         Assert.assertTrue(messageFound, "Message with ID " + messageId + " not found in SQS queue.");
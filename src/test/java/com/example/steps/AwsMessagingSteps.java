@@ -1,28 +1,35 @@
 package com.example.steps;
 
+import com.example.three.emulator.SnsSqsEmulator;
 import com.example.three.services.AwsCredentialService;
 import com.example.three.services.MessagingService;
+import com.example.three.services.PropagationLatencyStats;
+import com.example.three.services.VerificationResult;
 import com.example.three.utils.AwsConfigUtility;
 import io.cucumber.java.After;
+import io.cucumber.java.AfterAll;
 import io.cucumber.java.Before;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AwsMessagingSteps {
+    private static final Logger LOG = LoggerFactory.getLogger(AwsMessagingSteps.class);
 
     private MessagingService messagingService;
     private String messageId;
-    private String accessKey;
-    private String secretKey;
-    private String sessionToken;
+    private AwsCredentialsProvider credentialsProvider;
 
     @Before
     public void setup() throws IOException {
@@ -32,27 +39,37 @@ public class AwsMessagingSteps {
     @After
     public void tearDown() {
         // This method will run after each scenario
+        if (messagingService != null) {
+            messagingService.close(); // Sends the batched deletes that are still queued
+        }
+    }
+
+    @AfterAll
+    public static void reportPropagationLatency() throws IOException {
+        // Per-run SNS-to-SQS latency histogram across all scenarios
+        PropagationLatencyStats stats = PropagationLatencyStats.forRun();
+        LOG.info("{}", stats.describe());
+        stats.writeReport(Paths.get("build/reports/cucumber/propagation-latency.json"));
     }
 
     @Given("I have valid AWS credentials")
     public void i_have_valid_aws_credentials() throws IOException {
-        // Load credentials using AwsCredentialService
-        AwsCredentials credentials = AwsCredentialService.getGimmeAwsCredentials();
+        if (AwsConfigUtility.isEmulatorEnabled()) {
+            // Offline run against the in-process emulator, which accepts any credentials
+            credentialsProvider = SnsSqsEmulator.credentialsProvider();
+            return;
+        }
 
-        // Initialize credentials
-        accessKey = credentials.accessKeyId();
-        secretKey = credentials.secretAccessKey();
+        // Shared provider: the credentials file is only parsed again when it changes
+        credentialsProvider = AwsCredentialService.getCredentialsProvider();
+        AwsCredentials credentials = AwsCredentialService.getGimmeAwsCredentials();
 
-        // Check if the credentials are an instance of AwsSessionCredentials
-        if (credentials instanceof AwsSessionCredentials) {
-            AwsSessionCredentials sessionCredentials = (AwsSessionCredentials) credentials;
-            sessionToken = sessionCredentials.sessionToken();
-        } else {
-            System.err.println("Warning: AWS credentials did not include a session token or are not session credentials.");
+        if (!(credentials instanceof AwsSessionCredentials)) {
+            LOG.warn("AWS credentials did not include a session token or are not session credentials");
         }
 
-        assertNotNull(accessKey, "AWS access key should not be null");
-        assertNotNull(secretKey, "AWS secret key should not be null");
+        assertNotNull(credentials.accessKeyId(), "AWS access key should not be null");
+        assertNotNull(credentials.secretAccessKey(), "AWS secret key should not be null");
     }
 
     @Given("I have configured SNS topic and SQS queue")
@@ -62,13 +79,12 @@ public class AwsMessagingSteps {
                 AwsConfigUtility.getSnsTopicArn(),
                 AwsConfigUtility.getSqsQueueUrl(),
                 AwsConfigUtility.getRegion(),
-                accessKey,
-                secretKey,
-                sessionToken
+                credentialsProvider
         );
+        messagingService.setEndpointOverride(AwsConfigUtility.getEndpointOverride()); // null for AWS
         messagingService.initialize();
 
-        System.out.println("AWS messaging service initialized");
+        LOG.debug("AWS messaging service initialized");
     }
 
     @When("I send a message from the JSON file to the SNS topic")
@@ -77,21 +93,23 @@ public class AwsMessagingSteps {
         messageId = messagingService.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath());
         
         assertNotNull(messageId, "Message ID should not be null");
-        System.out.println("Message sent with ID: " + messageId);
+        LOG.info("Message sent with ID: {}", messageId);
     }
 
     @Then("the message should be received in the SQS queue")
     public void the_message_should_be_received_in_the_sqs_queue() throws InterruptedException {
-        // Check the message in SQS
-        boolean messageVerified = messagingService.checkMessageInSqs(messageId, 5, 3, 2);
+        // Check the message in SQS, returning as soon as it arrives
+        VerificationResult verification = messagingService.verifyMessage(messageId, AwsConfigUtility.getVerificationTimeout());
+        LOG.info("Verification took {} ms, {}", verification.getElapsed().toMillis(),
+                verification.getPropagationLatency());
         
-        assertTrue(messageVerified, "Message should be successfully verified in SQS");
+        assertTrue(verification.isFound(), "Message should be successfully verified in SQS");
     }
 
     @Then("I should be able to verify the message content")
     public void i_should_be_able_to_verify_the_message_content() {
         // This step is already covered by the previous step in this implementation
         // but in a real-world scenario, you might want to add more specific content verification
-        System.out.println("Message content verified successfully");
+        LOG.info("Message content verified successfully");
     }
 }
\ No newline at end of file
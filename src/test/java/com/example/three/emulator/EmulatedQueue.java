@@ -0,0 +1,388 @@
+package com.example.three.emulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory SQS queue with visibility timeouts and long polling.
+ *
+ * Messages are kept in send order. A receive hands out the oldest visible messages, hides them for the
+ * visibility timeout and gives each delivery a fresh receipt handle; only the latest handle of a message
+ * can delete it or change its visibility.
+ *
+ * A queue whose name ends in ".fifo" is a FIFO queue: every message belongs to a message group, gets an
+ * increasing sequence number and is deduplicated by its MessageDeduplicationId for 5 minutes. While any
+ * message of a group is in flight, no other message of that group is handed out, so a group is always
+ * processed by one receiver in order.
+ */
+final class EmulatedQueue {
+    static final int DEFAULT_VISIBILITY_TIMEOUT_SECONDS = 30;
+    private static final long MAX_IDLE_WAIT_MILLIS = 100; // Re-check for messages whose visibility expired
+
+    private final String name;
+    private final String url;
+    private final String arn;
+    private final boolean fifo;
+    private final Map<String, String> attributes = new HashMap<>();
+    private final LinkedHashMap<String, StoredMessage> messages = new LinkedHashMap<>();
+    private final Map<String, StoredMessage> inFlight = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messageAvailable = lock.newCondition();
+    private final Map<String, Sent> deduplication = new HashMap<>(); // Guarded by lock
+    private long sequence; // Guarded by lock
+
+    EmulatedQueue(String name, String url, String arn, Map<String, String> attributes) {
+        this.name = name;
+        this.url = url;
+        this.arn = arn;
+        this.fifo = name.endsWith(".fifo");
+        this.attributes.put("VisibilityTimeout", String.valueOf(DEFAULT_VISIBILITY_TIMEOUT_SECONDS));
+        this.attributes.putAll(attributes);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getArn() {
+        return arn;
+    }
+
+    boolean isFifo() {
+        return fifo;
+    }
+
+    /**
+     * Enqueues a message on a standard queue
+     *
+     * @param body The message body
+     * @param messageAttributes The message attributes, may be empty
+     * @param senderId The sender identity reported in the SenderId system attribute
+     * @return The SQS message ID
+     */
+    String send(String body, Map<String, MessageAttribute> messageAttributes, String senderId) {
+        return send(body, messageAttributes, senderId, null, null).messageId;
+    }
+
+    /**
+     * Enqueues a message
+     *
+     * @param body The message body
+     * @param messageAttributes The message attributes, may be empty
+     * @param senderId The sender identity reported in the SenderId system attribute
+     * @param messageGroupId The message group, required for a FIFO queue
+     * @param deduplicationId The deduplication ID; for a FIFO queue without it, ContentBasedDeduplication must be on
+     * @return The message ID and, for a FIFO queue, the sequence number
+     */
+    Sent send(String body, Map<String, MessageAttribute> messageAttributes, String senderId, String messageGroupId,
+              String deduplicationId) {
+        if (fifo) {
+            if (messageGroupId == null || messageGroupId.isEmpty()) {
+                throw new EmulatorException("MissingParameter", "The request must contain the parameter MessageGroupId.", 400);
+            }
+            if (deduplicationId == null) {
+                if (!Boolean.parseBoolean(getAttribute("ContentBasedDeduplication"))) {
+                    throw new EmulatorException("InvalidParameterValue", "The queue should either have "
+                            + "ContentBasedDeduplication enabled or MessageDeduplicationId provided explicitly", 400);
+                }
+                deduplicationId = SqsJsonHandler.sha256Hex(body);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            StoredMessage message = new StoredMessage(UUID.randomUUID().toString(), body, messageAttributes, senderId, now);
+            if (fifo) {
+                Sent previous = deduplicated(deduplicationId, now);
+                if (previous != null) {
+                    return previous; // Accepted again, but not enqueued twice
+                }
+                message.messageGroupId = messageGroupId;
+                message.deduplicationId = deduplicationId;
+                message.sequenceNumber = String.format("%020d", ++sequence);
+            }
+            messages.put(message.messageId, message);
+            messageAvailable.signalAll();
+
+            Sent sent = new Sent(message.messageId, message.sequenceNumber, now + EmulatedTopic.DEDUPLICATION_WINDOW_MILLIS);
+            if (fifo) {
+                deduplication.put(deduplicationId, sent);
+            }
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called while holding the lock
+    private Sent deduplicated(String deduplicationId, long now) {
+        for (Iterator<Sent> iterator = deduplication.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+            }
+        }
+        return deduplication.get(deduplicationId);
+    }
+
+    /**
+     * Receives up to maxMessages visible messages, waiting up to waitMillis for the first one to arrive
+     *
+     * @param maxMessages Maximum number of messages to return
+     * @param waitMillis Long polling wait, 0 for a short poll
+     * @param visibilityTimeoutSeconds Visibility timeout for this receive, or null for the queue default
+     * @return The received messages, empty if none arrived in time
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    List<ReceivedMessage> receive(int maxMessages, long waitMillis, Integer visibilityTimeoutSeconds)
+            throws InterruptedException {
+        int visibilityTimeout = visibilityTimeoutSeconds != null ? visibilityTimeoutSeconds : getVisibilityTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        lock.lock();
+        try {
+            while (true) {
+                List<ReceivedMessage> received = takeVisible(maxMessages, visibilityTimeout);
+                long remaining = deadline - System.nanoTime();
+                if (!received.isEmpty() || remaining <= 0) {
+                    return received;
+                }
+                messageAvailable.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(MAX_IDLE_WAIT_MILLIS)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<ReceivedMessage> takeVisible(int maxMessages, int visibilityTimeoutSeconds) {
+        long now = System.currentTimeMillis();
+        List<ReceivedMessage> received = new ArrayList<>();
+
+        // FIFO: a group with a message in flight is locked until that message is deleted or visible again
+        Set<String> lockedGroups = new HashSet<>();
+        if (fifo) {
+            for (StoredMessage message : messages.values()) {
+                if (message.visibleAt > now) {
+                    lockedGroups.add(message.messageGroupId);
+                }
+            }
+        }
+
+        for (StoredMessage message : messages.values()) {
+            if (received.size() >= maxMessages) {
+                break;
+            }
+            if (message.visibleAt > now) {
+                continue;
+            }
+            if (fifo && lockedGroups.contains(message.messageGroupId)) {
+                continue;
+            }
+            if (message.receiptHandle != null) {
+                inFlight.remove(message.receiptHandle);
+            }
+            message.receiptHandle = UUID.randomUUID() + "#" + message.messageId;
+            message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+            message.receiveCount++;
+            if (message.firstReceiveTimestamp == 0) {
+                message.firstReceiveTimestamp = now;
+            }
+            inFlight.put(message.receiptHandle, message);
+            received.add(new ReceivedMessage(message));
+        }
+        return received;
+    }
+
+    /**
+     * Deletes the message currently held by a receipt handle. Like SQS, deleting an already deleted message succeeds.
+     *
+     * @param receiptHandle The receipt handle of the latest receive
+     */
+    void delete(String receiptHandle) {
+        requireWellFormed(receiptHandle);
+        lock.lock();
+        try {
+            StoredMessage message = inFlight.remove(receiptHandle);
+            if (message != null) {
+                messages.remove(message.messageId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the visibility timeout of an in-flight message; 0 makes it visible again immediately
+     *
+     * @param receiptHandle The receipt handle of the latest receive
+     * @param visibilityTimeoutSeconds The new timeout, counted from now
+     */
+    void changeVisibility(String receiptHandle, int visibilityTimeoutSeconds) {
+        requireWellFormed(receiptHandle);
+        lock.lock();
+        try {
+            StoredMessage message = inFlight.get(receiptHandle);
+            long now = System.currentTimeMillis();
+            if (message == null || message.visibleAt <= now) {
+                throw new EmulatorException("MessageNotInflight", "Message with receipt handle " + receiptHandle
+                        + " is not in flight", 400);
+            }
+            message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+            if (visibilityTimeoutSeconds == 0) {
+                messageAvailable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all messages
+     */
+    void purge() {
+        lock.lock();
+        try {
+            messages.clear();
+            inFlight.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getVisibilityTimeout() {
+        return Integer.parseInt(getAttribute("VisibilityTimeout"));
+    }
+
+    /**
+     * @return The configured attributes plus the computed message counts and the queue ARN
+     */
+    Map<String, String> getAttributes() {
+        Map<String, String> result = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            result.putAll(attributes);
+            long now = System.currentTimeMillis();
+            int visible = 0;
+            for (StoredMessage message : messages.values()) {
+                if (message.visibleAt <= now) {
+                    visible++;
+                }
+            }
+            result.put("ApproximateNumberOfMessages", String.valueOf(visible));
+            result.put("ApproximateNumberOfMessagesNotVisible", String.valueOf(messages.size() - visible));
+        } finally {
+            lock.unlock();
+        }
+        result.put("QueueArn", arn);
+        return result;
+    }
+
+    String getAttribute(String attributeName) {
+        lock.lock();
+        try {
+            return attributes.get(attributeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setAttributes(Map<String, String> newAttributes) {
+        lock.lock();
+        try {
+            attributes.putAll(newAttributes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void requireWellFormed(String receiptHandle) {
+        if (receiptHandle == null || receiptHandle.indexOf('#') < 0) {
+            throw new EmulatorException("ReceiptHandleIsInvalid", "The input receipt handle \"" + receiptHandle
+                    + "\" is not a valid receipt handle.", 400);
+        }
+    }
+
+    private static final class StoredMessage {
+        private final String messageId;
+        private final String body;
+        private final Map<String, MessageAttribute> messageAttributes;
+        private final String senderId;
+        private final long sentTimestamp;
+        private String messageGroupId;
+        private String deduplicationId;
+        private String sequenceNumber;
+        private long visibleAt;
+        private String receiptHandle;
+        private int receiveCount;
+        private long firstReceiveTimestamp;
+
+        private StoredMessage(String messageId, String body, Map<String, MessageAttribute> messageAttributes,
+                              String senderId, long sentTimestamp) {
+            this.messageId = messageId;
+            this.body = body;
+            this.messageAttributes = messageAttributes;
+            this.senderId = senderId;
+            this.sentTimestamp = sentTimestamp;
+            this.visibleAt = sentTimestamp;
+        }
+    }
+
+    /**
+     * Result of a send: the message ID and, on a FIFO queue, the sequence number
+     */
+    static final class Sent {
+        final String messageId;
+        final String sequenceNumber;
+        private final long expiresAt;
+
+        private Sent(String messageId, String sequenceNumber, long expiresAt) {
+            this.messageId = messageId;
+            this.sequenceNumber = sequenceNumber;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Snapshot of a message as handed out by one receive
+     */
+    static final class ReceivedMessage {
+        final String messageId;
+        final String receiptHandle;
+        final String body;
+        final Map<String, MessageAttribute> messageAttributes;
+        final Map<String, String> systemAttributes;
+
+        private ReceivedMessage(StoredMessage message) {
+            this.messageId = message.messageId;
+            this.receiptHandle = message.receiptHandle;
+            this.body = message.body;
+            this.messageAttributes = message.messageAttributes;
+
+            Map<String, String> system = new LinkedHashMap<>();
+            system.put("SenderId", message.senderId);
+            system.put("SentTimestamp", String.valueOf(message.sentTimestamp));
+            system.put("ApproximateReceiveCount", String.valueOf(message.receiveCount));
+            system.put("ApproximateFirstReceiveTimestamp", String.valueOf(message.firstReceiveTimestamp));
+            if (message.messageGroupId != null) {
+                system.put("MessageGroupId", message.messageGroupId);
+                system.put("MessageDeduplicationId", message.deduplicationId);
+                system.put("SequenceNumber", message.sequenceNumber);
+            }
+            this.systemAttributes = Collections.unmodifiableMap(system);
+        }
+    }
+}
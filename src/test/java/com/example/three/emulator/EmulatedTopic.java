@@ -0,0 +1,209 @@
+package com.example.three.emulator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory SNS topic with its SQS subscriptions.
+ *
+ * A topic whose name ends in ".fifo" is a FIFO topic: publishes are numbered with increasing sequence numbers
+ * and a repeated MessageDeduplicationId within the 5-minute deduplication window is accepted but not delivered.
+ */
+final class EmulatedTopic {
+    static final long DEDUPLICATION_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final String arn;
+    private final boolean fifo;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean contentBasedDeduplication;
+    private final Map<String, Published> deduplication = new HashMap<>(); // Guarded by this
+    private long sequence; // Guarded by this
+
+    EmulatedTopic(String arn) {
+        this.arn = arn;
+        this.fifo = arn.endsWith(".fifo");
+    }
+
+    String getArn() {
+        return arn;
+    }
+
+    boolean isFifo() {
+        return fifo;
+    }
+
+    boolean isContentBasedDeduplication() {
+        return contentBasedDeduplication;
+    }
+
+    void setContentBasedDeduplication(boolean contentBasedDeduplication) {
+        this.contentBasedDeduplication = contentBasedDeduplication;
+    }
+
+    /**
+     * Looks up an earlier publish with the same deduplication ID inside the deduplication window.
+     * Must be called while holding the topic's lock, together with {@link #remember}.
+     *
+     * @param deduplicationId The MessageDeduplicationId
+     * @return The earlier publish, or null
+     */
+    Published deduplicated(String deduplicationId) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Published> iterator = deduplication.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+            }
+        }
+        return deduplication.get(deduplicationId);
+    }
+
+    /**
+     * Numbers a new publish and remembers its deduplication ID. Must be called while holding the topic's lock.
+     *
+     * @param deduplicationId The MessageDeduplicationId
+     * @param messageId The SNS message ID
+     * @return The publish with its sequence number
+     */
+    Published remember(String deduplicationId, String messageId) {
+        Published published = new Published(messageId, String.format("%020d", ++sequence),
+                System.currentTimeMillis() + DEDUPLICATION_WINDOW_MILLIS);
+        deduplication.put(deduplicationId, published);
+        return published;
+    }
+
+    List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Adds an SQS subscription. Subscribing the same queue again returns the existing subscription, as SNS does.
+     *
+     * @param queueArn ARN of the subscribed queue
+     * @param rawMessageDelivery true to deliver the bare message instead of the SNS envelope
+     * @param filterPolicy Attribute filter policy JSON, or null to receive every message
+     * @return The subscription
+     */
+    synchronized Subscription subscribe(String queueArn, boolean rawMessageDelivery, String filterPolicy) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.queueArn.equals(queueArn)) {
+                return subscription;
+            }
+        }
+        Subscription subscription = new Subscription(arn + ":" + UUID.randomUUID(), queueArn, rawMessageDelivery,
+                filterPolicy == null ? null : new JSONObject(filterPolicy));
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    boolean unsubscribe(String subscriptionArn) {
+        return subscriptions.removeIf(subscription -> subscription.arn.equals(subscriptionArn));
+    }
+
+    /**
+     * The message and sequence number of a FIFO publish
+     */
+    static final class Published {
+        final String messageId;
+        final String sequenceNumber;
+        private final long expiresAt;
+
+        Published(String messageId, String sequenceNumber, long expiresAt) {
+            this.messageId = messageId;
+            this.sequenceNumber = sequenceNumber;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * An SNS subscription of an SQS queue
+     */
+    static final class Subscription {
+        final String arn;
+        final String queueArn;
+        volatile boolean rawMessageDelivery;
+        volatile JSONObject filterPolicy;
+
+        private Subscription(String arn, String queueArn, boolean rawMessageDelivery, JSONObject filterPolicy) {
+            this.arn = arn;
+            this.queueArn = queueArn;
+            this.rawMessageDelivery = rawMessageDelivery;
+            this.filterPolicy = filterPolicy;
+        }
+
+        /**
+         * Evaluates the attribute filter policy. Supports exact string and numeric values, "prefix",
+         * "anything-but" and "exists" conditions; every key of the policy must match.
+         *
+         * @param messageAttributes The attributes of the published message
+         * @return true if the message should be delivered to this subscription
+         */
+        boolean accepts(Map<String, MessageAttribute> messageAttributes) {
+            JSONObject policy = filterPolicy;
+            if (policy == null) {
+                return true;
+            }
+            for (String key : policy.keySet()) {
+                MessageAttribute attribute = messageAttributes.get(key);
+                Object conditions = policy.get(key);
+                JSONArray alternatives = conditions instanceof JSONArray ? (JSONArray) conditions
+                        : new JSONArray().put(conditions);
+                boolean matched = false;
+                for (int i = 0; i < alternatives.length() && !matched; i++) {
+                    matched = matchesCondition(alternatives.get(i), attribute);
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matchesCondition(Object condition, MessageAttribute attribute) {
+            if (condition instanceof JSONObject) {
+                JSONObject operator = (JSONObject) condition;
+                if (operator.has("exists")) {
+                    return operator.getBoolean("exists") == (attribute != null);
+                }
+                if (attribute == null || attribute.isBinary()) {
+                    return false;
+                }
+                if (operator.has("prefix")) {
+                    return attribute.getStringValue().startsWith(operator.getString("prefix"));
+                }
+                if (operator.has("anything-but")) {
+                    Object excluded = operator.get("anything-but");
+                    JSONArray values = excluded instanceof JSONArray ? (JSONArray) excluded
+                            : new JSONArray().put(excluded);
+                    for (int i = 0; i < values.length(); i++) {
+                        if (matchesValue(values.get(i), attribute)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                return false; // Unsupported operator
+            }
+            return attribute != null && !attribute.isBinary() && matchesValue(condition, attribute);
+        }
+
+        private static boolean matchesValue(Object expected, MessageAttribute attribute) {
+            if (expected instanceof Number) {
+                try {
+                    return new BigDecimal(expected.toString()).compareTo(new BigDecimal(attribute.getStringValue())) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            return expected.toString().equals(attribute.getStringValue());
+        }
+    }
+}
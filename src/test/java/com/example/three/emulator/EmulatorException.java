@@ -0,0 +1,33 @@
+package com.example.three.emulator;
+
+/**
+ * An error returned to the client in the service's error format
+ */
+class EmulatorException extends RuntimeException {
+    private final String code;
+    private final int statusCode;
+    private final boolean senderFault;
+
+    EmulatorException(String code, String message, int statusCode) {
+        this(code, message, statusCode, statusCode < 500);
+    }
+
+    EmulatorException(String code, String message, int statusCode, boolean senderFault) {
+        super(message);
+        this.code = code;
+        this.statusCode = statusCode;
+        this.senderFault = senderFault;
+    }
+
+    String getCode() {
+        return code;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    boolean isSenderFault() {
+        return senderFault;
+    }
+}
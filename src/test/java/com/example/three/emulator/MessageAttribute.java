@@ -0,0 +1,49 @@
+package com.example.three.emulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A typed message attribute as carried by SNS and SQS (String, Number or Binary, optionally with a custom suffix)
+ */
+final class MessageAttribute {
+    private final String dataType;
+    private final String stringValue;
+    private final byte[] binaryValue;
+
+    MessageAttribute(String dataType, String stringValue, byte[] binaryValue) {
+        this.dataType = dataType;
+        this.stringValue = stringValue;
+        this.binaryValue = binaryValue;
+    }
+
+    String getDataType() {
+        return dataType;
+    }
+
+    String getStringValue() {
+        return stringValue;
+    }
+
+    byte[] getBinaryValue() {
+        return binaryValue;
+    }
+
+    boolean isBinary() {
+        return dataType.startsWith("Binary");
+    }
+
+    /**
+     * @return The value as SNS renders it in the notification envelope (Binary values base64 encoded)
+     */
+    String envelopeValue() {
+        return isBinary() ? Base64.getEncoder().encodeToString(binaryValue) : stringValue;
+    }
+
+    /**
+     * @return The value bytes used for the SQS message attribute MD5
+     */
+    byte[] valueBytes() {
+        return isBinary() ? binaryValue : stringValue.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.three.emulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Serves the SNS query protocol: form-encoded requests, XML responses
+ */
+final class SnsQueryHandler {
+    private static final String XML_NAMESPACE = "http://sns.amazonaws.com/doc/2010-03-31/";
+    private static final int MAX_BATCH_ENTRIES = 10;
+    private static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+    private final SnsSqsEmulator emulator;
+
+    SnsQueryHandler(SnsSqsEmulator emulator) {
+        this.emulator = emulator;
+    }
+
+    void handle(HttpExchange exchange, byte[] body) throws IOException {
+        Map<String, String> params = parseForm(new String(body, StandardCharsets.UTF_8));
+        String action = params.get("Action");
+        try {
+            String result = dispatch(action, params);
+            SnsSqsEmulator.respond(exchange, 200, "text/xml", "<" + action + "Response xmlns=\"" + XML_NAMESPACE + "\">"
+                    + "<" + action + "Result>" + result + "</" + action + "Result>"
+                    + "<ResponseMetadata><RequestId>" + UUID.randomUUID() + "</RequestId></ResponseMetadata>"
+                    + "</" + action + "Response>");
+        } catch (EmulatorException e) {
+            respondError(exchange, e);
+        } catch (RuntimeException e) {
+            respondError(exchange, new EmulatorException("InternalError", String.valueOf(e), 500));
+        }
+    }
+
+    private String dispatch(String action, Map<String, String> params) {
+        if (action == null) {
+            throw new EmulatorException("MissingAction", "Action is required", 400);
+        }
+        switch (action) {
+            case "CreateTopic":
+                return element("TopicArn", emulator.createTopic(required(params, "Name"),
+                        entries(params, "Attributes.entry.", "key", "value")));
+            case "DeleteTopic":
+                emulator.deleteTopic(required(params, "TopicArn"));
+                return "";
+            case "Subscribe":
+                return subscribe(params);
+            case "Unsubscribe":
+                emulator.unsubscribe(required(params, "SubscriptionArn"));
+                return "";
+            case "SetSubscriptionAttributes":
+                setSubscriptionAttribute(emulator.subscription(required(params, "SubscriptionArn")),
+                        required(params, "AttributeName"), params.get("AttributeValue"));
+                return "";
+            case "Publish":
+                return publish(params);
+            case "PublishBatch":
+                return publishBatch(params);
+            default:
+                throw new EmulatorException("InvalidAction", "The action " + action + " is not valid for this endpoint.", 400);
+        }
+    }
+
+    private String subscribe(Map<String, String> params) {
+        EmulatedTopic topic = emulator.topic(required(params, "TopicArn"));
+        if (!"sqs".equals(params.get("Protocol"))) {
+            throw new EmulatorException("InvalidParameter", "Only the sqs protocol is emulated", 400);
+        }
+        String queueArn = required(params, "Endpoint");
+        EmulatedQueue queue = emulator.queue(queueArn.substring(queueArn.lastIndexOf(':') + 1)); // The queue must exist
+
+        Map<String, String> attributes = entries(params, "Attributes.entry.", "key", "value");
+        EmulatedTopic.Subscription subscription = emulator.subscribe(topic, queue, false, null);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            setSubscriptionAttribute(subscription, attribute.getKey(), attribute.getValue());
+        }
+        return element("SubscriptionArn", subscription.arn);
+    }
+
+    private static void setSubscriptionAttribute(EmulatedTopic.Subscription subscription, String name, String value) {
+        switch (name) {
+            case "RawMessageDelivery":
+                subscription.rawMessageDelivery = Boolean.parseBoolean(value);
+                break;
+            case "FilterPolicy":
+                subscription.filterPolicy = value == null || value.isEmpty() ? null : new JSONObject(value);
+                break;
+            default:
+                break; // Accepted and ignored, e.g. RedrivePolicy
+        }
+    }
+
+    private String publish(Map<String, String> params) {
+        String topicArn = params.containsKey("TopicArn") ? params.get("TopicArn") : params.get("TargetArn");
+        EmulatedTopic topic = emulator.topic(topicArn);
+        String message = required(params, "Message");
+        Map<String, MessageAttribute> attributes = messageAttributes(params, "MessageAttributes.entry.");
+        validateSize(message, attributes);
+        EmulatedTopic.Published published = emulator.publish(topic, message, params.get("Subject"), attributes,
+                params.get("MessageGroupId"), params.get("MessageDeduplicationId"));
+        return element("MessageId", published.messageId) + sequenceNumber(published);
+    }
+
+    private static String sequenceNumber(EmulatedTopic.Published published) {
+        return published.sequenceNumber == null ? "" : element("SequenceNumber", published.sequenceNumber);
+    }
+
+    private String publishBatch(Map<String, String> params) {
+        EmulatedTopic topic = emulator.topic(required(params, "TopicArn"));
+
+        // Group the flattened entry parameters by their member index
+        Map<Integer, Map<String, String>> entries = new TreeMap<>();
+        String prefix = "PublishBatchRequestEntries.member.";
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (param.getKey().startsWith(prefix)) {
+                String rest = param.getKey().substring(prefix.length());
+                int dot = rest.indexOf('.');
+                entries.computeIfAbsent(Integer.parseInt(rest.substring(0, dot)), index -> new HashMap<>())
+                        .put(rest.substring(dot + 1), param.getValue());
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new EmulatorException("EmptyBatchRequest", "The batch request doesn't contain any entries", 400);
+        }
+        if (entries.size() > MAX_BATCH_ENTRIES) {
+            throw new EmulatorException("TooManyEntriesInBatchRequest",
+                    "The batch request contains more entries than permissible", 400);
+        }
+
+        Set<String> ids = new HashSet<>();
+        int totalBytes = 0;
+        for (Map<String, String> entry : entries.values()) {
+            if (!ids.add(entry.get("Id"))) {
+                throw new EmulatorException("BatchEntryIdsNotDistinct", "Two or more batch entries in the request have the same Id", 400);
+            }
+            totalBytes += messageBytes(entry.getOrDefault("Message", ""), messageAttributes(entry, "MessageAttributes.entry."));
+        }
+        if (totalBytes > MAX_MESSAGE_BYTES) {
+            throw new EmulatorException("BatchRequestTooLong", "The length of all the messages put together is more than the limit", 400);
+        }
+
+        StringBuilder successful = new StringBuilder();
+        StringBuilder failed = new StringBuilder();
+        for (Map<String, String> entry : entries.values()) {
+            String message = entry.get("Message");
+            if (message == null || message.isEmpty()) {
+                failed.append("<member>").append(element("Id", entry.get("Id")))
+                        .append(element("Code", "InvalidParameter"))
+                        .append(element("Message", "Empty message"))
+                        .append(element("SenderFault", "true")).append("</member>");
+                continue;
+            }
+            EmulatedTopic.Published published;
+            try {
+                published = emulator.publish(topic, message, entry.get("Subject"),
+                        messageAttributes(entry, "MessageAttributes.entry."), entry.get("MessageGroupId"),
+                        entry.get("MessageDeduplicationId"));
+            } catch (EmulatorException e) {
+                failed.append("<member>").append(element("Id", entry.get("Id")))
+                        .append(element("Code", e.getCode()))
+                        .append(element("Message", e.getMessage()))
+                        .append(element("SenderFault", String.valueOf(e.isSenderFault()))).append("</member>");
+                continue;
+            }
+            successful.append("<member>").append(element("Id", entry.get("Id")))
+                    .append(element("MessageId", published.messageId)).append(sequenceNumber(published))
+                    .append("</member>");
+        }
+        return "<Successful>" + successful + "</Successful><Failed>" + failed + "</Failed>";
+    }
+
+    private static Map<String, MessageAttribute> messageAttributes(Map<String, String> params, String prefix) {
+        Map<String, MessageAttribute> attributes = new TreeMap<>();
+        for (int i = 1; params.containsKey(prefix + i + ".Name"); i++) {
+            String name = params.get(prefix + i + ".Name");
+            String dataType = params.get(prefix + i + ".Value.DataType");
+            if (dataType == null || !(dataType.startsWith("String") || dataType.startsWith("Number")
+                    || dataType.startsWith("Binary"))) {
+                throw new EmulatorException("ParameterValueInvalid",
+                        "The message attribute '" + name + "' has an invalid message attribute type", 400);
+            }
+            String binary = params.get(prefix + i + ".Value.BinaryValue");
+            attributes.put(name, new MessageAttribute(dataType, params.get(prefix + i + ".Value.StringValue"),
+                    binary == null ? null : Base64.getDecoder().decode(binary)));
+        }
+        return attributes;
+    }
+
+    private static void validateSize(String message, Map<String, MessageAttribute> attributes) {
+        if (messageBytes(message, attributes) > MAX_MESSAGE_BYTES) {
+            throw new EmulatorException("InvalidParameter", "Invalid parameter: Message too long", 400);
+        }
+    }
+
+    private static int messageBytes(String message, Map<String, MessageAttribute> attributes) {
+        int bytes = message.getBytes(StandardCharsets.UTF_8).length;
+        for (Map.Entry<String, MessageAttribute> attribute : attributes.entrySet()) {
+            bytes += attribute.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + attribute.getValue().getDataType().getBytes(StandardCharsets.UTF_8).length
+                    + attribute.getValue().valueBytes().length;
+        }
+        return bytes;
+    }
+
+    private static Map<String, String> entries(Map<String, String> params, String prefix, String keyName, String valueName) {
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 1; params.containsKey(prefix + i + "." + keyName); i++) {
+            entries.put(params.get(prefix + i + "." + keyName), params.get(prefix + i + "." + valueName));
+        }
+        return entries;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new EmulatorException("InvalidParameter", "Invalid parameter: " + name + " is required", 400);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void respondError(HttpExchange exchange, EmulatorException e) throws IOException {
+        SnsSqsEmulator.respond(exchange, e.getStatusCode(), "text/xml", "<ErrorResponse xmlns=\"" + XML_NAMESPACE + "\">"
+                + "<Error>" + element("Type", e.isSenderFault() ? "Sender" : "Receiver")
+                + element("Code", e.getCode()) + element("Message", e.getMessage()) + "</Error>"
+                + element("RequestId", UUID.randomUUID().toString())
+                + "</ErrorResponse>");
+    }
+
+    private static String element(String name, String value) {
+        return "<" + name + ">" + escapeXml(value) + "</" + name + ">";
+    }
+
+    private static String escapeXml(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                case '\'':
+                    escaped.append("&apos;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
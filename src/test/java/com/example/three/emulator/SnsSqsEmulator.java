@@ -0,0 +1,420 @@
+package com.example.three.emulator;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import com.example.three.utils.AwsConfigUtility;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process SNS/SQS emulator for running the messaging tests offline.
+ *
+ * Serves the SNS query protocol (XML responses) and the SQS JSON protocol on one local HTTP port, so both
+ * SDK v2 clients can point at it through endpointOverride. Published messages fan out to the subscribed
+ * queues immediately, wrapped in the SNS notification envelope unless the subscription uses raw message
+ * delivery. Receives support long polling and visibility timeouts, and return the body and message
+ * attribute MD5s the SQS client validates.
+ *
+ * Topics are keyed by their exact ARN and queues by the last path segment of their URL, so the ARN and
+ * URL from aws_config.properties work unchanged once {@link #provision} created them. Names ending in ".fifo"
+ * make FIFO topics and queues, with message groups, sequence numbers and deduplication.
+ */
+public final class SnsSqsEmulator implements AutoCloseable {
+    public static final String ACCOUNT_ID = "000000000000";
+    private static final String EMULATOR_REGION = "us-east-1";
+    private static final String SNS_SENDER_ID = "AIDAEMULATORSNSSENDER";
+    private static final AwsCredentialsProvider CREDENTIALS_PROVIDER =
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("emulator", "emulator"));
+
+    private static SnsSqsEmulator shared;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final URI endpoint;
+    private final Map<String, EmulatedTopic> topics = new ConcurrentHashMap<>();
+    private final Map<String, EmulatedQueue> queues = new ConcurrentHashMap<>();
+    private final SnsQueryHandler snsHandler = new SnsQueryHandler(this);
+    private final SqsJsonHandler sqsHandler = new SqsJsonHandler(this);
+
+    private SnsSqsEmulator(int port) throws IOException {
+        // Without TCP_NODELAY small responses stall on delayed ACKs for ~40ms per request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.server = HttpServer.create(new InetSocketAddress(loopback, port), 256);
+
+        // Long polls park a thread each, so the pool must grow with the number of concurrent receives
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sns-sqs-emulator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        this.endpoint = URI.create("http://" + loopback.getHostAddress() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Starts an emulator on the given port
+     *
+     * @param port The local port, 0 for an ephemeral one
+     * @return The running emulator
+     * @throws IOException If the port cannot be bound
+     */
+    public static SnsSqsEmulator start(int port) throws IOException {
+        SnsSqsEmulator emulator = new SnsSqsEmulator(port);
+        System.out.println("SNS/SQS emulator listening on " + emulator.endpoint());
+        return emulator;
+    }
+
+    /**
+     * Gets the emulator shared by the tests of this JVM, starting it on an ephemeral port on first use
+     *
+     * @return The shared emulator
+     */
+    public static synchronized SnsSqsEmulator shared() {
+        if (shared == null) {
+            try {
+                shared = start(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start the SNS/SQS emulator", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Gets a credentials provider for the emulator. Requests are signed but signatures are not checked.
+     *
+     * @return A static provider with dummy credentials
+     */
+    public static AwsCredentialsProvider credentialsProvider() {
+        return CREDENTIALS_PROVIDER;
+    }
+
+    /**
+     * @return The endpoint to pass to endpointOverride of both the SNS and the SQS client
+     */
+    public URI endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Creates a topic, or returns the existing one with that name
+     *
+     * @param name The topic name
+     * @return The topic ARN
+     */
+    public String createTopic(String name) {
+        return createTopic(name, name.endsWith(".fifo")
+                ? Collections.singletonMap("FifoTopic", "true")
+                : Collections.emptyMap());
+    }
+
+    /**
+     * Creates a topic, or returns the existing one with that name
+     *
+     * @param name The topic name, ending in ".fifo" for a FIFO topic
+     * @param attributes Topic attributes; FifoTopic and ContentBasedDeduplication are honoured
+     * @return The topic ARN
+     */
+    public String createTopic(String name, Map<String, String> attributes) {
+        if (Boolean.parseBoolean(attributes.get("FifoTopic")) != name.endsWith(".fifo")) {
+            throw new EmulatorException("InvalidParameter",
+                    "Invalid parameter: Fifo Topic names must end with .fifo and FifoTopic must be true for them", 400);
+        }
+        EmulatedTopic topic = registerTopic("arn:aws:sns:" + EMULATOR_REGION + ":" + ACCOUNT_ID + ":" + name);
+        if (attributes.containsKey("ContentBasedDeduplication")) {
+            topic.setContentBasedDeduplication(Boolean.parseBoolean(attributes.get("ContentBasedDeduplication")));
+        }
+        return topic.getArn();
+    }
+
+    /**
+     * Creates a queue, or returns the existing one with that name
+     *
+     * @param nameOrUrl The queue name, or a queue URL whose last path segment is the name
+     * @param attributes Queue attributes such as VisibilityTimeout
+     * @return The queue URL
+     */
+    public String createQueue(String nameOrUrl, Map<String, String> attributes) {
+        String name = queueName(nameOrUrl);
+        if (Boolean.parseBoolean(attributes.get("FifoQueue")) && !name.endsWith(".fifo")) {
+            throw new EmulatorException("InvalidParameterValue",
+                    "The name of a FIFO queue can only include alphanumeric characters, hyphens, or underscores, "
+                            + "must end with .fifo suffix", 400);
+        }
+        return queues.computeIfAbsent(name, key -> new EmulatedQueue(key,
+                endpoint + "/" + ACCOUNT_ID + "/" + key,
+                "arn:aws:sqs:" + EMULATOR_REGION + ":" + ACCOUNT_ID + ":" + key,
+                attributes)).getUrl();
+    }
+
+    /**
+     * Subscribes a queue to a topic
+     *
+     * @param topicArn ARN of the topic
+     * @param queueNameOrUrl Name or URL of the queue
+     * @param rawMessageDelivery true to deliver the bare message instead of the SNS envelope
+     * @param filterPolicy Attribute filter policy JSON, or null to receive every message
+     * @return The subscription ARN
+     */
+    public String subscribe(String topicArn, String queueNameOrUrl, boolean rawMessageDelivery, String filterPolicy) {
+        return subscribe(topic(topicArn), queue(queueNameOrUrl), rawMessageDelivery, filterPolicy).arn;
+    }
+
+    EmulatedTopic.Subscription subscribe(EmulatedTopic topic, EmulatedQueue queue, boolean rawMessageDelivery,
+                                         String filterPolicy) {
+        // Like SNS, FIFO topics only deliver to FIFO queues and standard topics only to standard queues
+        if (topic.isFifo() != queue.isFifo()) {
+            throw new EmulatorException("InvalidParameter", "Invalid parameter: Invalid SQS endpoint ARN "
+                    + queue.getArn() + (topic.isFifo() ? ", FIFO topics need a FIFO queue" : ", standard topics need a standard queue"), 400);
+        }
+        return topic.subscribe(queue.getArn(), rawMessageDelivery, filterPolicy);
+    }
+
+    /**
+     * Creates the topic and queue the tests are configured with and subscribes the queue to the topic.
+     * Calling it again is a no-op.
+     *
+     * @param topicArn The configured topic ARN, used as is
+     * @param queueUrl The configured queue URL
+     */
+    public void provision(String topicArn, String queueUrl) {
+        registerTopic(topicArn);
+        createQueue(queueUrl, Collections.emptyMap());
+        subscribe(topicArn, queueUrl, false, null);
+    }
+
+    /**
+     * Removes all messages from a queue
+     *
+     * @param queueNameOrUrl Name or URL of the queue
+     */
+    public void purgeQueue(String queueNameOrUrl) {
+        queue(queueNameOrUrl).purge();
+    }
+
+    /**
+     * Stops the HTTP server. Pending long polls are cut off.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        synchronized (SnsSqsEmulator.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+    }
+
+    EmulatedTopic registerTopic(String topicArn) {
+        return topics.computeIfAbsent(topicArn, EmulatedTopic::new);
+    }
+
+    EmulatedTopic topic(String topicArn) {
+        EmulatedTopic topic = topicArn == null ? null : topics.get(topicArn);
+        if (topic == null) {
+            throw new EmulatorException("NotFound", "Topic does not exist", 404);
+        }
+        return topic;
+    }
+
+    void deleteTopic(String topicArn) {
+        topics.remove(topicArn);
+    }
+
+    EmulatedQueue queue(String queueNameOrUrl) {
+        EmulatedQueue queue = queueNameOrUrl == null ? null : queues.get(queueName(queueNameOrUrl));
+        if (queue == null) {
+            throw new EmulatorException("QueueDoesNotExist", "The specified queue does not exist.", 400);
+        }
+        return queue;
+    }
+
+    void deleteQueue(String queueNameOrUrl) {
+        queues.remove(queue(queueNameOrUrl).getName());
+    }
+
+    /**
+     * Finds the subscription with the given ARN on any topic
+     */
+    EmulatedTopic.Subscription subscription(String subscriptionArn) {
+        for (EmulatedTopic topic : topics.values()) {
+            for (EmulatedTopic.Subscription subscription : topic.getSubscriptions()) {
+                if (subscription.arn.equals(subscriptionArn)) {
+                    return subscription;
+                }
+            }
+        }
+        throw new EmulatorException("NotFound", "Subscription does not exist", 404);
+    }
+
+    boolean unsubscribe(String subscriptionArn) {
+        for (EmulatedTopic topic : topics.values()) {
+            if (topic.unsubscribe(subscriptionArn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishes a message to a topic and delivers it to every subscription whose filter policy accepts it
+     *
+     * @param messageGroupId The message group, required for a FIFO topic
+     * @param deduplicationId The deduplication ID; for a FIFO topic without it, ContentBasedDeduplication must be on
+     * @return The SNS message ID and, for a FIFO topic, the sequence number
+     */
+    EmulatedTopic.Published publish(EmulatedTopic topic, String message, String subject,
+                                    Map<String, MessageAttribute> attributes, String messageGroupId,
+                                    String deduplicationId) {
+        if (!topic.isFifo()) {
+            String messageId = UUID.randomUUID().toString();
+            deliver(topic, messageId, null, message, subject, attributes, null, null);
+            return new EmulatedTopic.Published(messageId, null, 0);
+        }
+
+        if (messageGroupId == null || messageGroupId.isEmpty()) {
+            throw new EmulatorException("InvalidParameter",
+                    "Invalid parameter: The MessageGroupId parameter is required for FIFO topics", 400);
+        }
+        if (deduplicationId == null) {
+            if (!topic.isContentBasedDeduplication()) {
+                throw new EmulatorException("InvalidParameter", "Invalid parameter: The topic should either have "
+                        + "ContentBasedDeduplication enabled or MessageDeduplicationId provided explicitly", 400);
+            }
+            deduplicationId = SqsJsonHandler.sha256Hex(message);
+        }
+
+        // Numbering and fan-out happen under one lock, so every queue sees the topic's publish order
+        synchronized (topic) {
+            EmulatedTopic.Published previous = topic.deduplicated(deduplicationId);
+            if (previous != null) {
+                return previous; // Accepted again, but delivered only once
+            }
+            EmulatedTopic.Published published = topic.remember(deduplicationId, UUID.randomUUID().toString());
+            deliver(topic, published.messageId, published.sequenceNumber, message, subject, attributes,
+                    messageGroupId, deduplicationId);
+            return published;
+        }
+    }
+
+    private void deliver(EmulatedTopic topic, String messageId, String sequenceNumber, String message, String subject,
+                         Map<String, MessageAttribute> attributes, String messageGroupId, String deduplicationId) {
+        String envelope = null;
+        for (EmulatedTopic.Subscription subscription : topic.getSubscriptions()) {
+            if (!subscription.accepts(attributes)) {
+                continue;
+            }
+            EmulatedQueue queue = queues.get(subscription.queueArn.substring(subscription.queueArn.lastIndexOf(':') + 1));
+            if (queue == null) {
+                continue; // SNS drops deliveries to deleted queues
+            }
+            if (subscription.rawMessageDelivery) {
+                queue.send(message, attributes, SNS_SENDER_ID, messageGroupId, deduplicationId);
+            } else {
+                if (envelope == null) {
+                    envelope = envelope(topic, messageId, sequenceNumber, message, subject, attributes);
+                }
+                queue.send(envelope, Collections.emptyMap(), SNS_SENDER_ID, messageGroupId, deduplicationId);
+            }
+        }
+    }
+
+    private String envelope(EmulatedTopic topic, String messageId, String sequenceNumber, String message,
+                            String subject, Map<String, MessageAttribute> attributes) {
+        JSONObject envelope = new JSONObject();
+        envelope.put("Type", "Notification");
+        envelope.put("MessageId", messageId);
+        if (sequenceNumber != null) {
+            envelope.put("SequenceNumber", sequenceNumber);
+        }
+        envelope.put("TopicArn", topic.getArn());
+        if (subject != null) {
+            envelope.put("Subject", subject);
+        }
+        envelope.put("Message", message);
+        envelope.put("Timestamp", Instant.now().truncatedTo(ChronoUnit.MILLIS).toString());
+        envelope.put("SignatureVersion", "1");
+        envelope.put("Signature", "EMULATOR");
+        envelope.put("SigningCertURL", endpoint + "/SimpleNotificationService.pem");
+        envelope.put("UnsubscribeURL", endpoint + "/?Action=Unsubscribe&SubscriptionArn=" + topic.getArn());
+        if (!attributes.isEmpty()) {
+            JSONObject messageAttributes = new JSONObject();
+            for (Map.Entry<String, MessageAttribute> entry : attributes.entrySet()) {
+                messageAttributes.put(entry.getKey(), new JSONObject()
+                        .put("Type", entry.getValue().getDataType())
+                        .put("Value", entry.getValue().envelopeValue()));
+            }
+            envelope.put("MessageAttributes", messageAttributes);
+        }
+        return envelope.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            if (target != null && target.startsWith(SqsJsonHandler.TARGET_PREFIX)) {
+                sqsHandler.handle(exchange, target.substring(SqsJsonHandler.TARGET_PREFIX.length()), body);
+            } else {
+                snsHandler.handle(exchange, body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static void respond(HttpExchange exchange, int statusCode, String contentType, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("x-amzn-RequestId", UUID.randomUUID().toString());
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String queueName(String queueNameOrUrl) {
+        return queueNameOrUrl.substring(queueNameOrUrl.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Runs a standalone emulator, provisioned with the topic and queue from aws_config.properties, until killed
+     *
+     * @param args Optional port, default 4566
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4566;
+        SnsSqsEmulator emulator = start(port);
+        emulator.provision(AwsConfigUtility.getSnsTopicArn(), AwsConfigUtility.getSqsQueueUrl());
+        new CountDownLatch(1).await();
+    }
+}
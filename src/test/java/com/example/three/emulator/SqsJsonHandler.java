@@ -0,0 +1,367 @@
+package com.example.three.emulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the SQS JSON protocol: X-Amz-Target selects the action, request and response bodies are JSON
+ */
+final class SqsJsonHandler {
+    static final String TARGET_PREFIX = "AmazonSQS.";
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.0";
+    private static final String ERROR_TYPE_PREFIX = "com.amazonaws.sqs#";
+    private static final int MAX_BATCH_ENTRIES = 10;
+    private static final int MAX_WAIT_TIME_SECONDS = 20;
+    private static final byte STRING_TYPE_FIELD_INDEX = 1;
+    private static final byte BINARY_TYPE_FIELD_INDEX = 2;
+
+    private final SnsSqsEmulator emulator;
+
+    SqsJsonHandler(SnsSqsEmulator emulator) {
+        this.emulator = emulator;
+    }
+
+    void handle(HttpExchange exchange, String action, byte[] body) throws IOException {
+        try {
+            JSONObject request = body.length == 0 ? new JSONObject() : new JSONObject(new String(body, StandardCharsets.UTF_8));
+            JSONObject response = dispatch(action, request);
+            SnsSqsEmulator.respond(exchange, 200, CONTENT_TYPE, response.toString());
+        } catch (EmulatorException e) {
+            respondError(exchange, e);
+        } catch (JSONException e) {
+            respondError(exchange, new EmulatorException("InvalidParameterValue", e.getMessage(), 400));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, new EmulatorException("ServiceUnavailable", "Emulator is shutting down", 503));
+        } catch (RuntimeException e) {
+            respondError(exchange, new EmulatorException("InternalError", String.valueOf(e), 500));
+        }
+    }
+
+    private JSONObject dispatch(String action, JSONObject request) throws InterruptedException {
+        switch (action) {
+            case "CreateQueue":
+                return new JSONObject().put("QueueUrl", emulator.createQueue(request.getString("QueueName"),
+                        stringMap(request.optJSONObject("Attributes"))));
+            case "GetQueueUrl":
+                return new JSONObject().put("QueueUrl", emulator.queue(request.getString("QueueName")).getUrl());
+            case "DeleteQueue":
+                emulator.deleteQueue(request.getString("QueueUrl"));
+                return new JSONObject();
+            case "PurgeQueue":
+                emulator.queue(request.getString("QueueUrl")).purge();
+                return new JSONObject();
+            case "GetQueueAttributes":
+                return getQueueAttributes(request);
+            case "SetQueueAttributes":
+                emulator.queue(request.getString("QueueUrl")).setAttributes(stringMap(request.optJSONObject("Attributes")));
+                return new JSONObject();
+            case "SendMessage":
+                return sendMessage(request);
+            case "ReceiveMessage":
+                return receiveMessage(request);
+            case "DeleteMessage":
+                emulator.queue(request.getString("QueueUrl")).delete(request.getString("ReceiptHandle"));
+                return new JSONObject();
+            case "DeleteMessageBatch":
+                return deleteMessageBatch(request);
+            case "ChangeMessageVisibility":
+                emulator.queue(request.getString("QueueUrl")).changeVisibility(request.getString("ReceiptHandle"),
+                        request.getInt("VisibilityTimeout"));
+                return new JSONObject();
+            case "ChangeMessageVisibilityBatch":
+                return changeMessageVisibilityBatch(request);
+            default:
+                throw new EmulatorException("InvalidAction", "The action " + action + " is not valid for this endpoint.", 400);
+        }
+    }
+
+    private JSONObject getQueueAttributes(JSONObject request) {
+        Map<String, String> attributes = emulator.queue(request.getString("QueueUrl")).getAttributes();
+        Set<String> requested = stringSet(request.optJSONArray("AttributeNames"));
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (requested.contains("All") || requested.contains(attribute.getKey())) {
+                result.put(attribute.getKey(), attribute.getValue());
+            }
+        }
+        return new JSONObject().put("Attributes", result);
+    }
+
+    private JSONObject sendMessage(JSONObject request) {
+        EmulatedQueue queue = emulator.queue(request.getString("QueueUrl"));
+        String body = request.getString("MessageBody");
+        Map<String, MessageAttribute> attributes = new TreeMap<>();
+        JSONObject attributesJson = request.optJSONObject("MessageAttributes");
+        if (attributesJson != null) {
+            for (String name : attributesJson.keySet()) {
+                JSONObject value = attributesJson.getJSONObject(name);
+                String binary = value.optString("BinaryValue", null);
+                attributes.put(name, new MessageAttribute(value.getString("DataType"), value.optString("StringValue", null),
+                        binary == null ? null : Base64.getDecoder().decode(binary)));
+            }
+        }
+
+        EmulatedQueue.Sent sent = queue.send(body, attributes, SnsSqsEmulator.ACCOUNT_ID,
+                request.optString("MessageGroupId", null), request.optString("MessageDeduplicationId", null));
+        JSONObject response = new JSONObject()
+                .put("MessageId", sent.messageId)
+                .put("MD5OfMessageBody", md5Hex(body.getBytes(StandardCharsets.UTF_8)));
+        if (!attributes.isEmpty()) {
+            response.put("MD5OfMessageAttributes", md5OfMessageAttributes(attributes));
+        }
+        if (sent.sequenceNumber != null) {
+            response.put("SequenceNumber", sent.sequenceNumber);
+        }
+        return response;
+    }
+
+    private JSONObject receiveMessage(JSONObject request) throws InterruptedException {
+        EmulatedQueue queue = emulator.queue(request.getString("QueueUrl"));
+        int maxMessages = request.optInt("MaxNumberOfMessages", 1);
+        if (maxMessages < 1 || maxMessages > MAX_BATCH_ENTRIES) {
+            throw new EmulatorException("InvalidParameterValue",
+                    "Value " + maxMessages + " for parameter MaxNumberOfMessages is invalid. Reason: Must be between 1 and 10.", 400);
+        }
+        String defaultWait = queue.getAttribute("ReceiveMessageWaitTimeSeconds");
+        int waitTimeSeconds = request.optInt("WaitTimeSeconds", defaultWait == null ? 0 : Integer.parseInt(defaultWait));
+        if (waitTimeSeconds < 0 || waitTimeSeconds > MAX_WAIT_TIME_SECONDS) {
+            throw new EmulatorException("InvalidParameterValue",
+                    "Value " + waitTimeSeconds + " for parameter WaitTimeSeconds is invalid. Reason: Must be >= 0 and <= 20.", 400);
+        }
+        Integer visibilityTimeout = request.has("VisibilityTimeout") ? request.getInt("VisibilityTimeout") : null;
+
+        Set<String> systemAttributeNames = stringSet(request.optJSONArray("MessageSystemAttributeNames"));
+        systemAttributeNames.addAll(stringSet(request.optJSONArray("AttributeNames")));
+        Set<String> messageAttributeNames = stringSet(request.optJSONArray("MessageAttributeNames"));
+
+        List<EmulatedQueue.ReceivedMessage> received = queue.receive(maxMessages,
+                TimeUnit.SECONDS.toMillis(waitTimeSeconds), visibilityTimeout);
+
+        JSONArray messages = new JSONArray();
+        for (EmulatedQueue.ReceivedMessage message : received) {
+            JSONObject json = new JSONObject()
+                    .put("MessageId", message.messageId)
+                    .put("ReceiptHandle", message.receiptHandle)
+                    .put("MD5OfBody", md5Hex(message.body.getBytes(StandardCharsets.UTF_8)))
+                    .put("Body", message.body);
+
+            JSONObject systemAttributes = new JSONObject();
+            for (Map.Entry<String, String> attribute : message.systemAttributes.entrySet()) {
+                if (systemAttributeNames.contains("All") || systemAttributeNames.contains(attribute.getKey())) {
+                    systemAttributes.put(attribute.getKey(), attribute.getValue());
+                }
+            }
+            if (!systemAttributes.isEmpty()) {
+                json.put("Attributes", systemAttributes);
+            }
+
+            Map<String, MessageAttribute> selected = selectMessageAttributes(message.messageAttributes, messageAttributeNames);
+            if (!selected.isEmpty()) {
+                JSONObject attributes = new JSONObject();
+                for (Map.Entry<String, MessageAttribute> attribute : selected.entrySet()) {
+                    MessageAttribute value = attribute.getValue();
+                    JSONObject valueJson = new JSONObject().put("DataType", value.getDataType());
+                    if (value.isBinary()) {
+                        valueJson.put("BinaryValue", Base64.getEncoder().encodeToString(value.getBinaryValue()));
+                    } else {
+                        valueJson.put("StringValue", value.getStringValue());
+                    }
+                    attributes.put(attribute.getKey(), valueJson);
+                }
+                json.put("MessageAttributes", attributes);
+                json.put("MD5OfMessageAttributes", md5OfMessageAttributes(selected));
+            }
+            messages.put(json);
+        }
+
+        JSONObject response = new JSONObject();
+        if (!messages.isEmpty()) {
+            response.put("Messages", messages);
+        }
+        return response;
+    }
+
+    private JSONObject deleteMessageBatch(JSONObject request) {
+        EmulatedQueue queue = emulator.queue(request.getString("QueueUrl"));
+        JSONArray entries = validatedEntries(request);
+        JSONArray successful = new JSONArray();
+        JSONArray failed = new JSONArray();
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.getJSONObject(i);
+            try {
+                queue.delete(entry.optString("ReceiptHandle", null));
+                successful.put(new JSONObject().put("Id", entry.getString("Id")));
+            } catch (EmulatorException e) {
+                failed.put(failedEntry(entry.getString("Id"), e));
+            }
+        }
+        return new JSONObject().put("Successful", successful).put("Failed", failed);
+    }
+
+    private JSONObject changeMessageVisibilityBatch(JSONObject request) {
+        EmulatedQueue queue = emulator.queue(request.getString("QueueUrl"));
+        JSONArray entries = validatedEntries(request);
+        JSONArray successful = new JSONArray();
+        JSONArray failed = new JSONArray();
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.getJSONObject(i);
+            try {
+                queue.changeVisibility(entry.optString("ReceiptHandle", null), entry.optInt("VisibilityTimeout", 0));
+                successful.put(new JSONObject().put("Id", entry.getString("Id")));
+            } catch (EmulatorException e) {
+                failed.put(failedEntry(entry.getString("Id"), e));
+            }
+        }
+        return new JSONObject().put("Successful", successful).put("Failed", failed);
+    }
+
+    private static JSONArray validatedEntries(JSONObject request) {
+        JSONArray entries = request.optJSONArray("Entries");
+        if (entries == null || entries.isEmpty()) {
+            throw new EmulatorException("EmptyBatchRequest", "There should be at least one entry in the request.", 400);
+        }
+        if (entries.length() > MAX_BATCH_ENTRIES) {
+            throw new EmulatorException("TooManyEntriesInBatchRequest",
+                    "Maximum number of entries per request are 10. You have sent " + entries.length() + ".", 400);
+        }
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < entries.length(); i++) {
+            if (!ids.add(entries.getJSONObject(i).getString("Id"))) {
+                throw new EmulatorException("BatchEntryIdsNotDistinct", "Id " + entries.getJSONObject(i).getString("Id")
+                        + " repeated.", 400);
+            }
+        }
+        return entries;
+    }
+
+    private static JSONObject failedEntry(String id, EmulatorException e) {
+        return new JSONObject()
+                .put("Id", id)
+                .put("Code", e.getCode())
+                .put("Message", e.getMessage())
+                .put("SenderFault", e.isSenderFault());
+    }
+
+    /**
+     * Selects the attributes named in MessageAttributeNames: "All" or ".*" select all, "prefix.*" a prefix
+     */
+    private static Map<String, MessageAttribute> selectMessageAttributes(Map<String, MessageAttribute> attributes,
+                                                                         Set<String> names) {
+        if (attributes.isEmpty() || names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (names.contains("All") || names.contains(".*")) {
+            return attributes;
+        }
+        Map<String, MessageAttribute> selected = new TreeMap<>();
+        for (Map.Entry<String, MessageAttribute> attribute : attributes.entrySet()) {
+            for (String name : names) {
+                boolean matches = name.endsWith(".*")
+                        ? attribute.getKey().startsWith(name.substring(0, name.length() - 1))
+                        : attribute.getKey().equals(name);
+                if (matches) {
+                    selected.put(attribute.getKey(), attribute.getValue());
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Computes MD5OfMessageAttributes the way SQS does: over the attributes sorted by name, each encoded as
+     * length-prefixed name, length-prefixed data type, a transport type byte and the length-prefixed value
+     */
+    static String md5OfMessageAttributes(Map<String, MessageAttribute> attributes) {
+        MessageDigest digest = md5();
+        for (String name : new TreeMap<>(attributes).keySet()) {
+            MessageAttribute attribute = attributes.get(name);
+            updateLengthAndBytes(digest, name.getBytes(StandardCharsets.UTF_8));
+            updateLengthAndBytes(digest, attribute.getDataType().getBytes(StandardCharsets.UTF_8));
+            digest.update(attribute.isBinary() ? BINARY_TYPE_FIELD_INDEX : STRING_TYPE_FIELD_INDEX);
+            updateLengthAndBytes(digest, attribute.valueBytes());
+        }
+        return toHex(digest.digest());
+    }
+
+    static String md5Hex(byte[] bytes) {
+        return toHex(md5().digest(bytes));
+    }
+
+    /**
+     * Computes the content-based deduplication ID of SQS and SNS FIFO: the SHA-256 of the message body
+     */
+    static String sha256Hex(String body) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void updateLengthAndBytes(MessageDigest digest, byte[] bytes) {
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static Map<String, String> stringMap(JSONObject json) {
+        Map<String, String> map = new HashMap<>();
+        if (json != null) {
+            for (String key : json.keySet()) {
+                map.put(key, json.get(key).toString());
+            }
+        }
+        return map;
+    }
+
+    private static Set<String> stringSet(JSONArray json) {
+        Set<String> set = new HashSet<>();
+        if (json != null) {
+            for (int i = 0; i < json.length(); i++) {
+                set.add(json.getString(i));
+            }
+        }
+        return set;
+    }
+
+    private static void respondError(HttpExchange exchange, EmulatorException e) throws IOException {
+        JSONObject error = new JSONObject()
+                .put("__type", ERROR_TYPE_PREFIX + e.getCode())
+                .put("message", e.getMessage());
+        SnsSqsEmulator.respond(exchange, e.getStatusCode(), CONTENT_TYPE, error.toString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.three.load;
+
+import java.time.Duration;
+
+/**
+ * Command line options of the {@link BulkPublisher}.
+ *
+ * <pre>
+ *   --source events.jsonl  JSONL file with one payload per line, a single .json payload, or a directory
+ *                          of .json and .jsonl files, published in file name order (required)
+ *   --publishers 16        publisher workers, each with its own PublishBatch accumulator (default 8)
+ *   --queue 2000           capacity of each queue between the stages (default 1000)
+ *   --linger 20            milliseconds a partial batch waits to fill up (default 20)
+ *   --limit 100000         stop after this many records
+ *   --fifo                 publish to the FIFO topic; records of one MessageGroupId keep their source order
+ *   --summary path.json    summary file (default build/reports/bulk/summary.json)
+ * </pre>
+ */
+public final class BulkPublishOptions {
+    private String sourcePath;
+    private int publisherThreads = 8;
+    private int queueCapacity = 1000;
+    private Duration linger = Duration.ofMillis(20);
+    private long maxRecords = Long.MAX_VALUE;
+    private String summaryPath = "build/reports/bulk/summary.json";
+    private boolean fifo;
+
+    /**
+     * Parses the command line
+     *
+     * @param args The arguments passed to main
+     * @return The options
+     * @throws IllegalArgumentException if an option is unknown, has an invalid value, or --source is missing
+     */
+    public static BulkPublishOptions parse(String[] args) {
+        BulkPublishOptions options = new BulkPublishOptions();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--fifo".equals(option)) {
+                options.fifo = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--source":
+                    options.sourcePath = value;
+                    break;
+                case "--publishers":
+                    options.publisherThreads = Integer.parseInt(value);
+                    break;
+                case "--queue":
+                    options.queueCapacity = Integer.parseInt(value);
+                    break;
+                case "--linger":
+                    options.linger = Duration.ofMillis(Long.parseLong(value));
+                    break;
+                case "--limit":
+                    options.maxRecords = Long.parseLong(value);
+                    break;
+                case "--summary":
+                    options.summaryPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (options.sourcePath == null) {
+            throw new IllegalArgumentException("--source is required");
+        }
+        if (options.publisherThreads <= 0 || options.queueCapacity <= 0) {
+            throw new IllegalArgumentException("--publishers and --queue must be positive");
+        }
+        return options;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public int getPublisherThreads() {
+        return publisherThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Duration getLinger() {
+        return linger;
+    }
+
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    public String getSummaryPath() {
+        return summaryPath;
+    }
+
+    public boolean isFifo() {
+        return fifo;
+    }
+}
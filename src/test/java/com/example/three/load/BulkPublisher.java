@@ -0,0 +1,461 @@
+package com.example.three.load;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.metrics.MetricsExporter;
+import com.example.three.metrics.SdkMetrics;
+import com.example.three.services.AdaptiveRateLimiter;
+import com.example.three.services.AwsCredentialService;
+import com.example.three.services.LocalFileBlobStore;
+import com.example.three.services.MessageGroupKeyExtractor;
+import com.example.three.services.MessagingService;
+import com.example.three.services.PayloadCodec;
+import com.example.three.services.SnsPublishBatcher;
+import com.example.three.utils.AwsConfigUtility;
+import com.example.three.utils.LatencyRecorder;
+import com.example.three.utils.PayloadTemplate;
+import org.HdrHistogram.Histogram;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replays recorded payloads through the SNS topic, e.g. millions of production events from a JSONL export.
+ *
+ * The run is a pipeline of three stages connected by bounded queues, so a slow stage holds back the ones
+ * before it instead of filling the heap:
+ * <ol>
+ *   <li>the reader streams records from the source, one line of a JSONL file or one .json file at a time;</li>
+ *   <li>the injector compiles each record into a {@link PayloadTemplate} with a fresh messageId and picks its
+ *       MessageGroupId;</li>
+ *   <li>the publisher workers queue the messages on their own {@link SnsPublishBatcher}, which sends PublishBatch
+ *       requests of up to 10 entries. Each worker has a limited number of unconfirmed messages in flight.</li>
+ * </ol>
+ * For a FIFO topic every group is routed to one worker, and the worker's batcher sends its batches one at a time
+ * in the order they were filled, linger flushes included, so the records of a group are published in source order.
+ * Once a record of a group fails, the rest of that group fails too, so a group is never published with a gap.
+ *
+ * Progress is printed every second; a machine-readable summary with counts, throughput, publish latency and
+ * errors by type is written at the end.
+ *
+ * Usage: gradle bulkPublish -Pbulk.args="--source events.jsonl --publishers 16"; see {@link BulkPublishOptions}.
+ */
+public class BulkPublisher {
+    private static final long REPORT_INTERVAL_SECONDS = 1;
+    private static final int MAX_IN_FLIGHT_PER_PUBLISHER = 100;
+    private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(60);
+    private static final String MESSAGE_ID_FIELD = "messageId";
+
+    // End of stream markers, compared by identity
+    private static final SourceRecord END_OF_SOURCE = new SourceRecord(null, null);
+    private static final PreparedMessage END_OF_MESSAGES = new PreparedMessage(null, null, null, null);
+
+    private final MessagingService messagingService;
+    private final BulkPublishOptions options;
+
+    private final BlockingQueue<SourceRecord> readQueue;
+    private final List<BlockingQueue<PreparedMessage>> publishQueues = new ArrayList<>();
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    private final LatencyRecorder publishLatency = new LatencyRecorder("publish");
+    private final LongAdder read = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private volatile long readEndedAt;
+    private volatile String lastError;
+    private volatile String sourceError;
+
+    /**
+     * Creates a bulk publisher
+     *
+     * @param messagingService An initialized messaging service for the topic to publish to
+     * @param options The bulk publish options
+     */
+    public BulkPublisher(MessagingService messagingService, BulkPublishOptions options) {
+        this.messagingService = messagingService;
+        this.options = options;
+        this.readQueue = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        // FIFO: one queue per worker, so a group never has two workers; otherwise all workers share one queue
+        int queues = messagingService.isFifo() ? options.getPublisherThreads() : 1;
+        for (int i = 0; i < queues; i++) {
+            publishQueues.add(new ArrayBlockingQueue<>(options.getQueueCapacity()));
+        }
+        this.maxInFlight = options.getPublisherThreads() * MAX_IN_FLIGHT_PER_PUBLISHER;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Publishes the source given on the command line to the topic from aws_config.properties
+     *
+     * @param args Options, see {@link BulkPublishOptions}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        BulkPublishOptions options = BulkPublishOptions.parse(args);
+
+        AwsCredentialsProvider credentialsProvider = AwsConfigUtility.isEmulatorEnabled()
+                ? SnsSqsEmulator.credentialsProvider()
+                : AwsCredentialService.getCredentialsProvider();
+        MessagingService messagingService = new MessagingService(
+                options.isFifo() ? AwsConfigUtility.getSnsFifoTopicArn() : AwsConfigUtility.getSnsTopicArn(),
+                options.isFifo() ? AwsConfigUtility.getSqsFifoQueueUrl() : AwsConfigUtility.getSqsQueueUrl(),
+                AwsConfigUtility.getRegion(),
+                credentialsProvider
+        );
+        messagingService.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+        messagingService.setPayloadCodec(new PayloadCodec(
+                AwsConfigUtility.getPayloadCompressThresholdBytes(),
+                AwsConfigUtility.getPayloadOffloadThresholdBytes(),
+                new LocalFileBlobStore(Paths.get(AwsConfigUtility.getPayloadBlobStoreDir()))
+        ));
+        String groupKeyPath = AwsConfigUtility.getFifoGroupKeyPath();
+        messagingService.setMessageGroupKeyExtractor(groupKeyPath != null
+                ? MessageGroupKeyExtractor.field(groupKeyPath)
+                : MessageGroupKeyExtractor.spread(AwsConfigUtility.getFifoGroupCount()));
+        messagingService.setVisibilityHeartbeat(false); // Publishing only, nothing is received
+        messagingService.setAdaptiveRateLimit(AdaptiveRateLimiter.Settings.fromConfig());
+        messagingService.initialize();
+
+        String metricsFile = AwsConfigUtility.getMetricsExportFile();
+        MetricsExporter metricsExporter = metricsFile == null ? null
+                : new MetricsExporter(SdkMetrics.forRun(), Paths.get(metricsFile), AwsConfigUtility.getMetricsExportInterval());
+
+        try {
+            JSONObject summary = new BulkPublisher(messagingService, options).run();
+            Path summaryFile = Paths.get(options.getSummaryPath());
+            if (summaryFile.getParent() != null) {
+                Files.createDirectories(summaryFile.getParent());
+            }
+            Files.write(summaryFile, summary.toString(2).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Summary written to " + summaryFile.toAbsolutePath());
+        } finally {
+            if (metricsExporter != null) {
+                metricsExporter.close();
+            }
+            messagingService.close();
+        }
+    }
+
+    /**
+     * Publishes every record of the source, then waits for the outstanding publishes up to a minute
+     *
+     * @return The machine-readable summary of the run
+     * @throws InterruptedException if the thread is interrupted while waiting for the stages
+     */
+    public JSONObject run() throws InterruptedException {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("bulk-reporter"));
+        List<Thread> stages = new ArrayList<>();
+        stages.add(daemonThreads("bulk-reader").newThread(this::readSource));
+        stages.add(daemonThreads("bulk-injector").newThread(this::injectIds));
+        ThreadFactory publisherThreads = daemonThreads("bulk-publisher");
+        for (int i = 0; i < options.getPublisherThreads(); i++) {
+            BlockingQueue<PreparedMessage> queue = publishQueues.get(i % publishQueues.size());
+            stages.add(publisherThreads.newThread(() -> publish(queue)));
+        }
+
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> reportProgress(start), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        System.out.println("Bulk publish started: " + options.getSourcePath() + " with "
+                + options.getPublisherThreads() + " publishers");
+
+        try {
+            for (Thread stage : stages) {
+                stage.start();
+            }
+            for (Thread stage : stages) {
+                stage.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread stage : stages) {
+                stage.interrupt();
+            }
+            throw e;
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        // Batches sent by the linger timer may still be on their way
+        int notCompleted = 0;
+        if (!inFlight.tryAcquire(maxInFlight, COMPLETION_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+            notCompleted = maxInFlight - inFlight.availablePermits();
+        }
+        long publishingEnded = System.nanoTime();
+        reportProgress(start);
+
+        JSONObject summary = summarize(startedAt, start, publishingEnded, notCompleted);
+        System.out.println("Bulk publish finished: " + read.sum() + " read, " + invalid.sum() + " invalid, "
+                + published.sum() + " published, " + publishErrors.sum() + " failed, " + notCompleted + " not confirmed");
+        System.out.println(publishLatency.describe());
+        return summary;
+    }
+
+    // Stage 1: streams the records of the source into the read queue
+    private void readSource() {
+        try {
+            Path source = Paths.get(options.getSourcePath());
+            List<Path> files = Files.isDirectory(source) ? listSourceFiles(source) : Collections.singletonList(source);
+            for (Path file : files) {
+                if (!readFile(file)) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            sourceError = e.toString();
+            System.err.println("Bulk publish stopped reading the source: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            readEndedAt = System.nanoTime();
+            putEnd(readQueue, END_OF_SOURCE, 1);
+        }
+    }
+
+    private static List<Path> listSourceFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> file.toString().endsWith(".json") || file.toString().endsWith(".jsonl"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return false once the record limit is reached
+     */
+    private boolean readFile(Path file) throws IOException, InterruptedException {
+        if (file.toString().endsWith(".json")) {
+            // One payload per file
+            if (read.sum() >= options.getMaxRecords()) {
+                return false;
+            }
+            readQueue.put(new SourceRecord(file.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+            read.increment();
+            return true;
+        }
+
+        // JSONL: read line by line, so the file size does not matter
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (read.sum() >= options.getMaxRecords()) {
+                    return false;
+                }
+                readQueue.put(new SourceRecord(file + ":" + lineNumber, line));
+                read.increment();
+            }
+        }
+        return true;
+    }
+
+    // Stage 2: gives every record its messageId and group and routes it to a publisher queue
+    private void injectIds() {
+        try {
+            SourceRecord record;
+            while ((record = readQueue.take()) != END_OF_SOURCE) {
+                String appMessageId = UUID.randomUUID().toString();
+                PayloadTemplate template;
+                String messageGroupId;
+                try {
+                    template = PayloadTemplate.compile(record.payload, MESSAGE_ID_FIELD);
+                    messageGroupId = messagingService.messageGroupId(template, appMessageId);
+                } catch (JSONException | IllegalArgumentException e) {
+                    invalid.increment();
+                    lastError = record.origin + ": " + e.getMessage();
+                    continue;
+                }
+                BlockingQueue<PreparedMessage> queue = messageGroupId == null ? publishQueues.get(0)
+                        : publishQueues.get(Math.floorMod(messageGroupId.hashCode(), publishQueues.size()));
+                queue.put(new PreparedMessage(record.origin, appMessageId, template, messageGroupId));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            int consumersPerQueue = publishQueues.size() == 1 ? options.getPublisherThreads() : 1;
+            for (BlockingQueue<PreparedMessage> queue : publishQueues) {
+                putEnd(queue, END_OF_MESSAGES, consumersPerQueue);
+            }
+        }
+    }
+
+    // Stage 3: queues the messages on this worker's batcher; results arrive on the batcher's threads
+    private void publish(BlockingQueue<PreparedMessage> queue) {
+        try (SnsPublishBatcher batcher = messagingService.newPublishBatcher(options.getLinger())) {
+            PreparedMessage message;
+            while ((message = queue.take()) != END_OF_MESSAGES) {
+                inFlight.acquire();
+                long startedAt = System.nanoTime();
+                CompletableFuture<String> result;
+                try {
+                    result = messagingService.publishToBatcher(batcher, message.appMessageId, message.template,
+                            message.messageGroupId);
+                } catch (RuntimeException e) {
+                    result = CompletableFuture.failedFuture(e);
+                }
+                String origin = message.origin;
+                result.whenComplete((snsMessageId, error) -> {
+                    if (error == null) {
+                        publishLatency.record(System.nanoTime() - startedAt);
+                        published.increment();
+                    } else {
+                        recordError(origin, error instanceof CompletionException ? error.getCause() : error);
+                    }
+                    inFlight.release();
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordError(String origin, Throwable error) {
+        publishErrors.increment();
+        String type = error instanceof SnsPublishBatcher.EntryFailedException
+                ? ((SnsPublishBatcher.EntryFailedException) error).getCode()
+                : error.getClass().getSimpleName();
+        errorsByType.computeIfAbsent(type, key -> new LongAdder()).increment();
+        lastError = origin + ": " + error.getMessage();
+    }
+
+    private static <T> void putEnd(BlockingQueue<T> queue, T end, int count) {
+        boolean interrupted = Thread.interrupted();
+        for (int i = 0; i < count; i++) {
+            while (true) {
+                try {
+                    queue.put(end); // The next stage must see the end, or it waits forever
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    queue.poll(); // Make room; the run is being abandoned anyway
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportProgress(long start) {
+        Histogram publishInterval = publishLatency.sampleInterval();
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        int queued = readQueue.size();
+        for (BlockingQueue<PreparedMessage> queue : publishQueues) {
+            queued += queue.size();
+        }
+        System.out.println(String.format("[%4ds] read %d invalid %d | published %d (+%d/s) errors %d"
+                        + " | queued %d in flight %d | publish p99 %s",
+                elapsedSeconds, read.sum(), invalid.sum(), published.sum(), publishInterval.getTotalCount(),
+                publishErrors.sum(), queued, maxInFlight - inFlight.availablePermits(),
+                LatencyRecorder.millis(publishInterval, 99)));
+    }
+
+    private JSONObject summarize(Instant startedAt, long start, long publishingEnded, int notCompleted) {
+        double readingSeconds = (readEndedAt - start) / 1e9;
+        double publishingSeconds = (publishingEnded - start) / 1e9;
+
+        JSONObject config = new JSONObject()
+                .put("source", options.getSourcePath())
+                .put("fifo", messagingService.isFifo())
+                .put("publisherThreads", options.getPublisherThreads())
+                .put("queueCapacity", options.getQueueCapacity())
+                .put("lingerMillis", options.getLinger().toMillis())
+                .put("maxRecords", options.getMaxRecords() == Long.MAX_VALUE ? null : options.getMaxRecords())
+                .put("emulator", AwsConfigUtility.isEmulatorEnabled());
+
+        JSONObject counts = new JSONObject()
+                .put("read", read.sum())
+                .put("invalid", invalid.sum())
+                .put("published", published.sum())
+                .put("publishErrors", publishErrors.sum())
+                .put("notConfirmed", notCompleted);
+
+        JSONObject errors = new JSONObject();
+        for (Map.Entry<String, LongAdder> error : errorsByType.entrySet()) {
+            errors.put(error.getKey(), error.getValue().sum());
+        }
+
+        JSONObject throughput = new JSONObject()
+                .put("readPerSecond", readingSeconds > 0 ? read.sum() / readingSeconds : 0)
+                .put("publishedPerSecond", publishingSeconds > 0 ? published.sum() / publishingSeconds : 0);
+
+        return new JSONObject()
+                .put("startedAt", startedAt.toString())
+                .put("config", config)
+                .put("counts", counts)
+                .put("errorsByType", errors)
+                .put("throughput", throughput)
+                .put("latency", new JSONObject().put("publish", publishLatency.toJson()))
+                .put("sdk", SdkMetrics.forRun().toJson().getJSONArray("operations"))
+                .put("lastError", lastError)
+                .put("sourceError", sourceError);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class SourceRecord {
+        private final String origin; // file or file:line, for error reports
+        private final String payload;
+
+        private SourceRecord(String origin, String payload) {
+            this.origin = origin;
+            this.payload = payload;
+        }
+    }
+
+    private static final class PreparedMessage {
+        private final String origin;
+        private final String appMessageId;
+        private final PayloadTemplate template;
+        private final String messageGroupId;
+
+        private PreparedMessage(String origin, String appMessageId, PayloadTemplate template, String messageGroupId) {
+            this.origin = origin;
+            this.appMessageId = appMessageId;
+            this.template = template;
+            this.messageGroupId = messageGroupId;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.three.load;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.metrics.MetricsExporter;
+import com.example.three.metrics.SdkMetrics;
+import com.example.three.services.AdaptiveRateLimiter;
+import com.example.three.services.AwsCredentialService;
+import com.example.three.services.MessagingService;
+import com.example.three.services.PropagationLatency;
+import com.example.three.services.PropagationLatencyStats;
+import com.example.three.services.RunIsolation;
+import com.example.three.services.SqsMessageCorrelator;
+import com.example.three.utils.AwsConfigUtility;
+import com.example.three.utils.LatencyRecorder;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for a topic/queue pair, built on {@link MessagingService}.
+ *
+ * Messages are scheduled at fixed intended start times derived from the target rate, independent of how long
+ * earlier publishes took. Latencies are measured from the intended start, so a slow or stalled publisher shows up
+ * as queueing delay in the percentiles instead of silently lowering the rate (coordinated omission). The pure
+ * service time of each publish call is recorded separately for comparison.
+ *
+ * Each message is registered with the queue's {@link SqsMessageCorrelator} before it is published, and its
+ * publish-to-receive latency is recorded when the correlator hands it over.
+ *
+ * Usage: gradle loadTest -Pload.args="--rate 200 --duration 60"; see {@link LoadGeneratorOptions} for all options.
+ */
+public class LoadGenerator {
+    private static final long REPORT_INTERVAL_SECONDS = 1;
+    private static final long DRAIN_POLL_MILLIS = 50;
+
+    private final MessagingService messagingService;
+    private final LoadGeneratorOptions options;
+    private final String jsonFilePath;
+
+    private final LatencyRecorder publishLatency = new LatencyRecorder("publish");
+    private final LatencyRecorder publishServiceTime = new LatencyRecorder("publish service time");
+    private final LatencyRecorder deliveryLatency = new LatencyRecorder("publish-to-receive");
+    private final PropagationLatencyStats propagation = new PropagationLatencyStats();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final AtomicLong lastReceivedAt = new AtomicLong();
+    private final Set<String> outstanding = ConcurrentHashMap.newKeySet();
+    private volatile String lastError;
+
+    /**
+     * Creates a load generator
+     *
+     * @param messagingService An initialized messaging service for the topic/queue pair under test
+     * @param options The load options
+     * @param jsonFilePath Path to the JSON payload, published with a fresh messageId per message
+     */
+    public LoadGenerator(MessagingService messagingService, LoadGeneratorOptions options, String jsonFilePath) {
+        this.messagingService = messagingService;
+        this.options = options;
+        this.jsonFilePath = jsonFilePath;
+    }
+
+    /**
+     * Runs the load generator against the topic and queue from aws_config.properties
+     *
+     * @param args Options, see {@link LoadGeneratorOptions}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(args);
+
+        AwsCredentialsProvider credentialsProvider = AwsConfigUtility.isEmulatorEnabled()
+                ? SnsSqsEmulator.credentialsProvider()
+                : AwsCredentialService.getCredentialsProvider();
+        MessagingService messagingService = new MessagingService(
+                AwsConfigUtility.getSnsTopicArn(),
+                AwsConfigUtility.getSqsQueueUrl(),
+                AwsConfigUtility.getRegion(),
+                credentialsProvider
+        );
+        messagingService.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+        messagingService.setAdaptiveRateLimit(AdaptiveRateLimiter.Settings.fromConfig());
+        messagingService.setRunId(AwsConfigUtility.getRunId());
+        messagingService.initialize();
+
+        // Where the time goes per SDK operation, refreshed while the run is going
+        String metricsFile = AwsConfigUtility.getMetricsExportFile();
+        MetricsExporter metricsExporter = metricsFile == null ? null
+                : new MetricsExporter(SdkMetrics.forRun(), Paths.get(metricsFile), AwsConfigUtility.getMetricsExportInterval());
+
+        try {
+            JSONObject summary = new LoadGenerator(messagingService, options, AwsConfigUtility.getMessageJsonPath()).run();
+            Path summaryFile = Paths.get(options.getSummaryPath());
+            if (summaryFile.getParent() != null) {
+                Files.createDirectories(summaryFile.getParent());
+            }
+            Files.write(summaryFile, summary.toString(2).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Summary written to " + summaryFile.toAbsolutePath());
+        } finally {
+            if (metricsExporter != null) {
+                metricsExporter.close();
+            }
+            messagingService.close();
+            RunIsolation.closeAll();
+        }
+    }
+
+    /**
+     * Publishes at the target rate until the duration or message count is reached, then waits for the
+     * outstanding deliveries up to the drain timeout
+     *
+     * @return The machine-readable summary of the run
+     * @throws InterruptedException if the thread is interrupted while pacing or draining
+     */
+    public JSONObject run() throws InterruptedException {
+        ExecutorService publishers = Executors.newFixedThreadPool(options.getPublisherThreads(), daemonThreads("load-publisher"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("load-reporter"));
+        SqsMessageCorrelator correlator = options.isVerify() ? messagingService.getMessageCorrelator() : null;
+
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long end = start + options.getDuration().toNanos();
+        reporter.scheduleAtFixedRate(() -> reportProgress(start), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+
+        System.out.println("Load started: " + options.getRatePerSecond() + " msg/s for up to " + options.getDuration()
+                + (options.getMaxMessages() < Long.MAX_VALUE ? " or " + options.getMaxMessages() + " messages" : ""));
+
+        long scheduled = 0;
+        while (scheduled < options.getMaxMessages()) {
+            // Open loop: the schedule never waits for earlier publishes to complete
+            long intendedStart = start + (long) (scheduled * 1_000_000_000L / options.getRatePerSecond());
+            if (intendedStart >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            publishers.execute(() -> publishOne(correlator, intendedStart));
+            scheduled++;
+        }
+        long schedulingEnded = System.nanoTime();
+
+        // Let the publishes that are still queued finish, then wait for their deliveries
+        publishers.shutdown();
+        long drainDeadline = System.nanoTime() + options.getDrainTimeout().toNanos();
+        publishers.awaitTermination(options.getDrainTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        long publishingEnded = System.nanoTime();
+        while (!outstanding.isEmpty() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+
+        int lost = outstanding.size();
+        if (correlator != null) {
+            for (String appMessageId : new ArrayList<>(outstanding)) {
+                // Claimed like in publishOne, so a late delivery is either counted and deleted or released
+                if (outstanding.remove(appMessageId)) {
+                    correlator.unregister(appMessageId);
+                }
+            }
+        }
+        outstanding.clear();
+        publishers.shutdownNow();
+        reporter.shutdownNow();
+        reportProgress(start);
+
+        JSONObject summary = summarize(startedAt, scheduled, lost, start, schedulingEnded, publishingEnded);
+        System.out.println("Load finished: " + published.sum() + " published, " + publishErrors.sum() + " failed, "
+                + received.sum() + " received, " + lost + " not received");
+        System.out.println(publishLatency.describe());
+        System.out.println(publishServiceTime.describe());
+        System.out.println(deliveryLatency.describe());
+        System.out.println(propagation.describe());
+        return summary;
+    }
+
+    private void publishOne(SqsMessageCorrelator correlator, long intendedStart) {
+        String appMessageId = UUID.randomUUID().toString();
+        if (correlator != null) {
+            // Registered before publishing, so a fast delivery cannot be missed
+            outstanding.add(appMessageId);
+            correlator.register(appMessageId).whenComplete((message, error) -> {
+                if (message != null && outstanding.remove(appMessageId)) {
+                    long now = System.nanoTime();
+                    deliveryLatency.record(now - intendedStart);
+                    // SNS-side vs SQS-side breakdown from the publish timestamp and the SQS system attributes
+                    propagation.record(PropagationLatency.of(message, Instant.now()));
+                    lastReceivedAt.accumulateAndGet(now, Math::max);
+                    received.increment();
+                    messagingService.getDeleteCoalescer().delete(message.receiptHandle());
+                }
+            });
+        }
+
+        long actualStart = System.nanoTime();
+        try {
+            messagingService.publishMessage(appMessageId, jsonFilePath);
+            long now = System.nanoTime();
+            publishLatency.record(now - intendedStart);
+            publishServiceTime.record(now - actualStart);
+            published.increment();
+        } catch (IOException | SdkException e) {
+            publishErrors.increment();
+            lastError = e.getMessage();
+            if (correlator != null) {
+                outstanding.remove(appMessageId);
+                correlator.unregister(appMessageId);
+            }
+        }
+    }
+
+    private void reportProgress(long start) {
+        Histogram publishInterval = publishLatency.sampleInterval();
+        publishServiceTime.sampleInterval();
+        Histogram deliveryInterval = deliveryLatency.sampleInterval();
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        System.out.println(String.format("[%4ds] published %d (+%d) errors %d | received %d (+%d) outstanding %d"
+                        + " | publish p99 %s | publish-to-receive p99 %s",
+                elapsedSeconds, published.sum(), publishInterval.getTotalCount(), publishErrors.sum(),
+                received.sum(), deliveryInterval.getTotalCount(), outstanding.size(),
+                LatencyRecorder.millis(publishInterval, 99), LatencyRecorder.millis(deliveryInterval, 99)));
+    }
+
+    private JSONObject summarize(Instant startedAt, long scheduled, int lost, long start, long schedulingEnded,
+                                 long publishingEnded) {
+        double schedulingSeconds = (schedulingEnded - start) / 1e9;
+        double publishingSeconds = (publishingEnded - start) / 1e9;
+        long lastReceived = lastReceivedAt.get();
+        double receivingSeconds = lastReceived == 0 ? 0 : (lastReceived - start) / 1e9;
+
+        JSONObject config = new JSONObject()
+                .put("topicArn", AwsConfigUtility.getSnsTopicArn())
+                .put("queueUrl", AwsConfigUtility.getSqsQueueUrl())
+                .put("targetRatePerSecond", options.getRatePerSecond())
+                .put("durationSeconds", options.getDuration().getSeconds())
+                .put("maxMessages", options.getMaxMessages() == Long.MAX_VALUE ? null : options.getMaxMessages())
+                .put("publisherThreads", options.getPublisherThreads())
+                .put("verify", options.isVerify())
+                .put("emulator", AwsConfigUtility.isEmulatorEnabled());
+
+        JSONObject counts = new JSONObject()
+                .put("scheduled", scheduled)
+                .put("published", published.sum())
+                .put("publishErrors", publishErrors.sum())
+                .put("received", received.sum())
+                .put("notReceived", lost);
+
+        JSONObject throughput = new JSONObject()
+                .put("scheduledPerSecond", schedulingSeconds > 0 ? scheduled / schedulingSeconds : 0)
+                .put("publishedPerSecond", publishingSeconds > 0 ? published.sum() / publishingSeconds : 0)
+                .put("receivedPerSecond", receivingSeconds > 0 ? received.sum() / receivingSeconds : 0);
+
+        JSONObject latency = new JSONObject()
+                .put("publish", publishLatency.toJson())
+                .put("publishServiceTime", publishServiceTime.toJson())
+                .put("publishToReceive", deliveryLatency.toJson())
+                .put("propagation", propagation.toJson());
+
+        return new JSONObject()
+                .put("startedAt", startedAt.toString())
+                .put("config", config)
+                .put("counts", counts)
+                .put("throughput", throughput)
+                .put("latency", latency)
+                .put("sdk", SdkMetrics.forRun().toJson().getJSONArray("operations"))
+                .put("lastPublishError", lastError);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
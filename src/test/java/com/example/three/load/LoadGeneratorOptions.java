@@ -0,0 +1,105 @@
+package com.example.three.load;
+
+import com.example.three.utils.AwsConfigUtility;
+
+import java.time.Duration;
+
+/**
+ * Command line options of the {@link LoadGenerator}.
+ *
+ * <pre>
+ *   --rate 200            target publish rate in messages per second (default 50)
+ *   --duration 60         run time in seconds (default 30)
+ *   --count 10000         stop after this many messages instead, whichever comes first
+ *   --publishers 64       publisher threads (default 32)
+ *   --drain 30            seconds to wait for outstanding deliveries after the last publish
+ *                         (default verification.timeout.seconds)
+ *   --summary path.json   summary file (default build/reports/load/summary.json)
+ *   --no-verify           only publish, don't consume the queue
+ * </pre>
+ */
+public final class LoadGeneratorOptions {
+    private double ratePerSecond = 50;
+    private Duration duration = Duration.ofSeconds(30);
+    private long maxMessages = Long.MAX_VALUE;
+    private int publisherThreads = 32;
+    private Duration drainTimeout = AwsConfigUtility.getVerificationTimeout();
+    private String summaryPath = "build/reports/load/summary.json";
+    private boolean verify = true;
+
+    /**
+     * Parses the command line
+     *
+     * @param args The arguments passed to main
+     * @return The options
+     * @throws IllegalArgumentException if an option is unknown or has an invalid value
+     */
+    public static LoadGeneratorOptions parse(String[] args) {
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--no-verify".equals(option)) {
+                options.verify = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--rate":
+                    options.ratePerSecond = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "--count":
+                    options.maxMessages = Long.parseLong(value);
+                    break;
+                case "--publishers":
+                    options.publisherThreads = Integer.parseInt(value);
+                    break;
+                case "--drain":
+                    options.drainTimeout = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "--summary":
+                    options.summaryPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (options.ratePerSecond <= 0 || options.publisherThreads <= 0) {
+            throw new IllegalArgumentException("--rate and --publishers must be positive");
+        }
+        return options;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public long getMaxMessages() {
+        return maxMessages;
+    }
+
+    public int getPublisherThreads() {
+        return publisherThreads;
+    }
+
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public String getSummaryPath() {
+        return summaryPath;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.three.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link SdkMetrics} snapshots to a file at a fixed interval, e.g. for a Prometheus textfile
+ * collector or for watching a load run with {@code watch cat}. Closing the exporter writes a final snapshot.
+ */
+public final class MetricsExporter implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsExporter.class);
+
+    private final SdkMetrics metrics;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Starts exporting
+     *
+     * @param metrics The metrics to export
+     * @param file The report file; Prometheus text format if it ends with .prom, JSON otherwise
+     * @param interval Time between snapshots
+     */
+    public MetricsExporter(SdkMetrics metrics, Path file, Duration interval) {
+        this.metrics = metrics;
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sdk-metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, interval.toMillis());
+        scheduler.scheduleAtFixedRate(this::export, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The report file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Stops the periodic export and writes the final snapshot
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        export();
+    }
+
+    private void export() {
+        try {
+            metrics.writeReport(file);
+        } catch (IOException | RuntimeException e) {
+            // A failed snapshot is skipped, the next one is written normally
+            LOG.warn("Could not write SDK metrics to {}: {}", file, e.getMessage());
+        }
+    }
+}
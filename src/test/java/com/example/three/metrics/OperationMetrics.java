@@ -0,0 +1,111 @@
+package com.example.three.metrics;
+
+import com.example.three.utils.LatencyRecorder;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one SDK operation, e.g. sqs.ReceiveMessage.
+ * Recording is lock-free, so the SDK threads never wait for each other or for the exporter.
+ */
+public final class OperationMetrics {
+    private final String service;
+    private final String operation;
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder attempts = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder throttledAttempts = new LongAdder();
+    final LongAdder requestBytes = new LongAdder();
+    final LongAdder responseBytes = new LongAdder();
+    final LatencyRecorder callLatency = new LatencyRecorder("call");
+    final LatencyRecorder attemptLatency = new LatencyRecorder("attempt");
+    final LatencyRecorder connectionAcquire = new LatencyRecorder("connection-acquire");
+
+    OperationMetrics(String service, String operation) {
+        this.service = service;
+        this.operation = operation;
+    }
+
+    /**
+     * @return The service, e.g. "sqs"
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return The operation, e.g. "ReceiveMessage"
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return Number of completed calls, successful or not
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return Number of calls that failed after all retries
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return Number of HTTP attempts, including retries
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * @return Number of retries reported by the SDK
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return Number of attempts rejected with a throttling error
+     */
+    public long getThrottledAttempts() {
+        return throttledAttempts.sum();
+    }
+
+    void recordCall(long nanos, boolean successful) {
+        calls.increment();
+        if (!successful) {
+            failures.increment();
+        }
+        callLatency.record(nanos);
+    }
+
+    // Called by SdkMetrics while holding its lock
+    void sample() {
+        callLatency.sampleInterval();
+        attemptLatency.sampleInterval();
+        connectionAcquire.sampleInterval();
+    }
+
+    JSONObject toJson() {
+        return new JSONObject()
+                .put("service", service)
+                .put("operation", operation)
+                .put("calls", calls.sum())
+                .put("failures", failures.sum())
+                .put("attempts", attempts.sum())
+                .put("retries", retries.sum())
+                .put("throttledAttempts", throttledAttempts.sum())
+                .put("requestBytes", requestBytes.sum())
+                .put("responseBytes", responseBytes.sum())
+                .put("callLatency", callLatency.toJson())
+                .put("attemptLatency", attemptLatency.toJson())
+                .put("connectionAcquire", connectionAcquire.toJson());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.three.metrics;
+
+import com.example.three.utils.LatencyRecorder;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Current rate, adjustments and queueing delay of one client-side rate limiter, e.g. the one of an SNS topic.
+ * Recording is lock-free, like {@link OperationMetrics}.
+ */
+public final class RateLimiterMetrics {
+    private final String key;
+
+    private volatile double ratePerSecond;
+    final LongAdder permits = new LongAdder();
+    final LongAdder throttledCalls = new LongAdder();
+    final LongAdder retriedCalls = new LongAdder();
+    final LongAdder decreases = new LongAdder();
+    final LatencyRecorder queueingDelay = new LatencyRecorder("queueing delay");
+
+    RateLimiterMetrics(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The topic ARN or queue URL the limiter is for
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The rate the limiter currently allows, in permits per second
+     */
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * @return Number of permits handed out, one per message published or per receive call
+     */
+    public long getPermits() {
+        return permits.sum();
+    }
+
+    /**
+     * @return Number of times the rate was cut
+     */
+    public long getDecreases() {
+        return decreases.sum();
+    }
+
+    /**
+     * Records a new rate
+     *
+     * @param ratePerSecond The rate in permits per second
+     */
+    public void recordRate(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    /**
+     * Records one acquisition and the time it waited for its permits
+     *
+     * @param permits Number of permits acquired
+     * @param waitNanos Time the caller waited, 0 if the permits were available
+     */
+    public void recordAcquire(int permits, long waitNanos) {
+        this.permits.add(permits);
+        queueingDelay.record(waitNanos);
+    }
+
+    /**
+     * Records the feedback of one SDK call
+     *
+     * @param throttled true if the call failed with a throttling error
+     * @param retried true if the call needed more than one attempt
+     * @param decreased true if the feedback cut the rate
+     */
+    public void recordFeedback(boolean throttled, boolean retried, boolean decreased) {
+        if (throttled) {
+            throttledCalls.increment();
+        }
+        if (retried) {
+            retriedCalls.increment();
+        }
+        if (decreased) {
+            decreases.increment();
+        }
+    }
+
+    // Called by SdkMetrics while holding its lock
+    void sample() {
+        queueingDelay.sampleInterval();
+    }
+
+    JSONObject toJson() {
+        return new JSONObject()
+                .put("key", key)
+                .put("ratePerSecond", ratePerSecond)
+                .put("permits", permits.sum())
+                .put("throttledCalls", throttledCalls.sum())
+                .put("retriedCalls", retriedCalls.sum())
+                .put("decreases", decreases.sum())
+                .put("queueingDelay", queueingDelay.toJson());
+    }
+}
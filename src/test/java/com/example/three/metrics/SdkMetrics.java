@@ -0,0 +1,249 @@
+package com.example.three.metrics;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import com.example.three.utils.LatencyRecorder;
+import org.HdrHistogram.Histogram;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Per-operation metrics of the SNS and SQS clients, filled by the {@link SdkMetricsInterceptor} and the
+ * {@link SdkMetricsPublisher} that {@link #clientConfiguration()} attaches to every client built with it.
+ *
+ * The client-side rate limiters of topics and queues report their rate and queueing delay here as well.
+ *
+ * Snapshots are available as JSON and in the Prometheus text format; {@link MetricsExporter} writes them
+ * to a file periodically, so a run under load can be followed without any console output.
+ */
+public final class SdkMetrics {
+    private static final SdkMetrics RUN = new SdkMetrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Map<String, RateLimiterMetrics> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the metrics of all clients in this JVM
+     *
+     * @return The run-wide metrics
+     */
+    public static SdkMetrics forRun() {
+        return RUN;
+    }
+
+    /**
+     * Gets the client configuration that records every call of a client into the run-wide metrics
+     *
+     * @return The override configuration to pass to the client builder
+     */
+    public static ClientOverrideConfiguration clientConfiguration() {
+        return ClientOverrideConfiguration.builder()
+                .addExecutionInterceptor(new SdkMetricsInterceptor(RUN))
+                .addMetricPublisher(new SdkMetricsPublisher(RUN))
+                .build();
+    }
+
+    /**
+     * Gets the metrics of an operation, creating them on first use
+     *
+     * @param service The service name or ID, e.g. "Sqs" or "SQS"; case does not matter
+     * @param operation The operation name, e.g. "ReceiveMessage"
+     * @return The metrics of the operation
+     */
+    public OperationMetrics operation(String service, String operation) {
+        String serviceKey = service == null ? "unknown" : service.toLowerCase(Locale.ROOT);
+        String operationKey = operation == null ? "unknown" : operation;
+        return operations.computeIfAbsent(serviceKey + "." + operationKey,
+                key -> new OperationMetrics(serviceKey, operationKey));
+    }
+
+    /**
+     * @return The metrics of every operation called so far, sorted by service and operation
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparing(OperationMetrics::getService).thenComparing(OperationMetrics::getOperation));
+        return sorted;
+    }
+
+    /**
+     * Gets the metrics of a rate limiter, creating them on first use
+     *
+     * @param key The topic ARN or queue URL the limiter is for
+     * @return The metrics of the limiter
+     */
+    public RateLimiterMetrics rateLimiter(String key) {
+        return rateLimiters.computeIfAbsent(key, RateLimiterMetrics::new);
+    }
+
+    /**
+     * @return The metrics of every rate limiter, sorted by key
+     */
+    public List<RateLimiterMetrics> getRateLimiters() {
+        List<RateLimiterMetrics> sorted = new ArrayList<>(rateLimiters.values());
+        sorted.sort(Comparator.comparing(RateLimiterMetrics::getKey));
+        return sorted;
+    }
+
+    /**
+     * @return A snapshot of every operation and rate limiter, latencies in milliseconds
+     */
+    public synchronized JSONObject toJson() {
+        JSONArray json = new JSONArray();
+        for (OperationMetrics operation : sample()) {
+            json.put(operation.toJson());
+        }
+        JSONArray limiters = new JSONArray();
+        for (RateLimiterMetrics limiter : sampleRateLimiters()) {
+            limiters.put(limiter.toJson());
+        }
+        return new JSONObject().put("operations", json).put("rateLimiters", limiters);
+    }
+
+    /**
+     * @return A snapshot in the Prometheus text exposition format, latencies in seconds
+     */
+    public synchronized String toPrometheus() {
+        List<OperationMetrics> sampled = sample();
+        StringBuilder text = new StringBuilder();
+        BiFunction<OperationMetrics, Double, String> labels = SdkMetrics::operationLabels;
+        counter(text, sampled, labels, "aws_sdk_calls_total", "Completed SDK calls", metrics -> metrics.calls);
+        counter(text, sampled, labels, "aws_sdk_call_failures_total", "SDK calls that failed after all retries", metrics -> metrics.failures);
+        counter(text, sampled, labels, "aws_sdk_attempts_total", "HTTP attempts, including retries", metrics -> metrics.attempts);
+        counter(text, sampled, labels, "aws_sdk_retries_total", "Retries reported by the SDK", metrics -> metrics.retries);
+        counter(text, sampled, labels, "aws_sdk_throttled_attempts_total", "Attempts rejected with a throttling error", metrics -> metrics.throttledAttempts);
+        counter(text, sampled, labels, "aws_sdk_request_bytes_total", "Request body bytes sent", metrics -> metrics.requestBytes);
+        counter(text, sampled, labels, "aws_sdk_response_bytes_total", "Response body bytes received", metrics -> metrics.responseBytes);
+        summary(text, sampled, labels, "aws_sdk_call_latency_seconds", "SDK call latency, including retries", metrics -> metrics.callLatency);
+        summary(text, sampled, labels, "aws_sdk_attempt_latency_seconds", "Latency of a single HTTP attempt", metrics -> metrics.attemptLatency);
+        summary(text, sampled, labels, "aws_sdk_connection_acquire_seconds", "Time spent waiting for a pooled connection", metrics -> metrics.connectionAcquire);
+
+        List<RateLimiterMetrics> limiters = sampleRateLimiters();
+        if (!limiters.isEmpty()) {
+            BiFunction<RateLimiterMetrics, Double, String> limiterLabels = SdkMetrics::limiterLabels;
+            text.append("# HELP aws_client_rate_limit_per_second Rate the client-side limiter currently allows\n")
+                    .append("# TYPE aws_client_rate_limit_per_second gauge\n");
+            for (RateLimiterMetrics limiter : limiters) {
+                text.append("aws_client_rate_limit_per_second").append(limiterLabels.apply(limiter, null)).append(' ')
+                        .append(limiter.getRatePerSecond()).append('\n');
+            }
+            counter(text, limiters, limiterLabels, "aws_client_rate_limit_permits_total", "Permits handed out by the limiter", metrics -> metrics.permits);
+            counter(text, limiters, limiterLabels, "aws_client_rate_limit_decreases_total", "Rate cuts after throttling or retries", metrics -> metrics.decreases);
+            summary(text, limiters, limiterLabels, "aws_client_rate_limit_queueing_delay_seconds", "Time callers waited for permits", metrics -> metrics.queueingDelay);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return One line per operation, for the console
+     */
+    public synchronized String describe() {
+        StringBuilder description = new StringBuilder("SDK calls");
+        for (OperationMetrics operation : sample()) {
+            description.append("\n  ").append(operation.getService()).append('.').append(operation.getOperation())
+                    .append(": calls=").append(operation.getCalls())
+                    .append(", failures=").append(operation.getFailures())
+                    .append(", attempts=").append(operation.getAttempts())
+                    .append(", throttled=").append(operation.getThrottledAttempts())
+                    .append(", ").append(operation.callLatency.describe());
+        }
+        for (RateLimiterMetrics limiter : sampleRateLimiters()) {
+            description.append("\n  rate limit ").append(limiter.getKey())
+                    .append(String.format(": %.1f/s", limiter.getRatePerSecond()))
+                    .append(", decreases=").append(limiter.getDecreases())
+                    .append(", ").append(limiter.queueingDelay.describe());
+        }
+        return description.toString();
+    }
+
+    /**
+     * Writes a snapshot to a file, in the Prometheus text format if the file name ends with .prom and as JSON
+     * otherwise. The file is replaced atomically, so a scraper never reads a partial snapshot.
+     *
+     * @param file The report file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(Path file) throws IOException {
+        String content = file.getFileName().toString().endsWith(".prom") ? toPrometheus() : toJson().toString(2);
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Must be called while holding the lock
+    private List<OperationMetrics> sample() {
+        List<OperationMetrics> sampled = getOperations();
+        for (OperationMetrics operation : sampled) {
+            operation.sample();
+        }
+        return sampled;
+    }
+
+    // Must be called while holding the lock
+    private List<RateLimiterMetrics> sampleRateLimiters() {
+        List<RateLimiterMetrics> sampled = getRateLimiters();
+        for (RateLimiterMetrics limiter : sampled) {
+            limiter.sample();
+        }
+        return sampled;
+    }
+
+    private static <T> void counter(StringBuilder text, List<T> metrics, BiFunction<T, Double, String> labels,
+                                    String name, String help, Function<T, LongAdder> value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n");
+        for (T metric : metrics) {
+            text.append(name).append(labels.apply(metric, null)).append(' ').append(value.apply(metric).sum()).append('\n');
+        }
+    }
+
+    private static <T> void summary(StringBuilder text, List<T> metrics, BiFunction<T, Double, String> labels,
+                                    String name, String help, Function<T, LatencyRecorder> recorder) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" summary\n");
+        for (T metric : metrics) {
+            Histogram histogram = recorder.apply(metric).getTotal(); // Microseconds
+            if (histogram.getTotalCount() > 0) {
+                for (double quantile : QUANTILES) {
+                    text.append(name).append(labels.apply(metric, quantile)).append(' ')
+                            .append(histogram.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+                }
+            }
+            text.append(name).append("_sum").append(labels.apply(metric, null)).append(' ')
+                    .append(histogram.getMean() * histogram.getTotalCount() / 1e6).append('\n')
+                    .append(name).append("_count").append(labels.apply(metric, null)).append(' ')
+                    .append(histogram.getTotalCount()).append('\n');
+        }
+    }
+
+    private static String operationLabels(OperationMetrics operation, Double quantile) {
+        return "{service=\"" + operation.getService() + "\",operation=\"" + operation.getOperation() + "\""
+                + (quantile != null ? ",quantile=\"" + quantile + "\"" : "") + "}";
+    }
+
+    private static String limiterLabels(RateLimiterMetrics limiter, Double quantile) {
+        return "{key=\"" + limiter.getKey() + "\"" + (quantile != null ? ",quantile=\"" + quantile + "\"" : "") + "}";
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.three.metrics;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpHeaders;
+
+/**
+ * Records the latency, attempts and body sizes of every SDK call into {@link SdkMetrics}.
+ *
+ * The call latency covers marshalling, signing, all attempts and the backoff between them, so together with
+ * the per-attempt latency from the {@link SdkMetricsPublisher} it shows how much time goes to retries.
+ */
+public class SdkMetricsInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Long> CALL_START = new ExecutionAttribute<>("SdkMetricsCallStart");
+    private static final ExecutionAttribute<OperationMetrics> OPERATION = new ExecutionAttribute<>("SdkMetricsOperation");
+
+    private final SdkMetrics metrics;
+
+    /**
+     * Creates an interceptor
+     *
+     * @param metrics The metrics to record into, usually {@link SdkMetrics#forRun()}
+     */
+    public SdkMetricsInterceptor(SdkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(CALL_START, System.nanoTime());
+        // Looked up once per call, the later hooks only read the attribute
+        executionAttributes.putAttribute(OPERATION, metrics.operation(
+                executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME),
+                executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME)));
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        OperationMetrics operation = executionAttributes.getAttribute(OPERATION);
+        if (operation != null) {
+            operation.attempts.increment(); // Runs once per attempt, retries included
+            operation.requestBytes.add(contentLength(context.httpRequest()));
+        }
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        OperationMetrics operation = executionAttributes.getAttribute(OPERATION);
+        if (operation != null) {
+            operation.responseBytes.add(contentLength(context.httpResponse()));
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        recordCall(executionAttributes, true);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        recordCall(executionAttributes, false);
+    }
+
+    private static void recordCall(ExecutionAttributes executionAttributes, boolean successful) {
+        OperationMetrics operation = executionAttributes.getAttribute(OPERATION);
+        Long start = executionAttributes.getAttribute(CALL_START);
+        if (operation != null && start != null) {
+            operation.recordCall(System.nanoTime() - start, successful);
+        }
+    }
+
+    private static long contentLength(SdkHttpHeaders headers) {
+        // Chunked responses carry no length and are not counted
+        return headers.firstMatchingHeader("Content-Length").map(value -> {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }).orElse(0L);
+    }
+}
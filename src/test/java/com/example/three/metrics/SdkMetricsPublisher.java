@@ -0,0 +1,66 @@
+package com.example.three.metrics;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Takes the retry, throttling, per-attempt and connection pool metrics the SDK collects for every call
+ * and records them into {@link SdkMetrics}. Publishing runs on the calling thread and only adds to
+ * counters and histograms, so it does not slow the call down.
+ */
+public class SdkMetricsPublisher implements MetricPublisher {
+    /** Value of {@link CoreMetric#ERROR_TYPE} for attempts rejected by throttling */
+    private static final String THROTTLING_ERROR_TYPE = "Throttling";
+
+    private final SdkMetrics metrics;
+
+    /**
+     * Creates a publisher
+     *
+     * @param metrics The metrics to record into, usually {@link SdkMetrics#forRun()}
+     */
+    public SdkMetricsPublisher(SdkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void publish(MetricCollection apiCall) {
+        OperationMetrics operation = metrics.operation(first(apiCall.metricValues(CoreMetric.SERVICE_ID)),
+                first(apiCall.metricValues(CoreMetric.OPERATION_NAME)));
+
+        for (Integer retries : apiCall.metricValues(CoreMetric.RETRY_COUNT)) {
+            operation.retries.add(retries);
+        }
+        for (MetricCollection attempt : apiCall.children()) {
+            for (String errorType : attempt.metricValues(CoreMetric.ERROR_TYPE)) {
+                if (THROTTLING_ERROR_TYPE.equals(errorType)) {
+                    operation.throttledAttempts.increment();
+                }
+            }
+            for (Duration duration : attempt.metricValues(CoreMetric.SERVICE_CALL_DURATION)) {
+                operation.attemptLatency.record(duration.toNanos());
+            }
+            // Time waiting for a pooled connection, the first thing to grow when the pool is too small
+            for (MetricCollection httpClient : attempt.children()) {
+                for (Duration duration : httpClient.metricValues(HttpMetric.CONCURRENCY_ACQUIRE_DURATION)) {
+                    operation.connectionAcquire.record(duration.toNanos());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing buffered, the metrics are recorded as they are published
+    }
+
+    private static String first(List<String> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+}
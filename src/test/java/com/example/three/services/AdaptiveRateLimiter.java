@@ -0,0 +1,238 @@
+package com.example.three.services;
+
+import com.example.three.metrics.RateLimiterMetrics;
+import com.example.three.metrics.SdkMetrics;
+import com.example.three.utils.AwsConfigUtility;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side token bucket of one SNS topic or SQS queue whose rate follows the service's throttling (AIMD).
+ *
+ * Publishers take one permit per message and receivers one per ReceiveMessage call before calling the service,
+ * waiting if the bucket is empty. The {@link RateLimitFeedbackInterceptor} reports the outcome of every call on
+ * the topic or queue: a call that was throttled or needed retries cuts the rate to 70%, at most once per second
+ * so the calls already in flight at the old rate do not cut it again. Calls that succeed on the first attempt
+ * raise the rate by a fixed amount per second, but only while callers actually wait for permits, so an idle
+ * limiter does not drift up to its maximum and let the next burst run into throttling again.
+ *
+ * There is one limiter per topic ARN or queue URL, shared by every service and thread in the JVM. Call sites
+ * use the static {@link #acquire(String, int)}, which does nothing for topics and queues without a limiter.
+ */
+public class AdaptiveRateLimiter implements AutoCloseable {
+    private static final Map<String, AdaptiveRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static final double MIN_RATE_PER_SECOND = 1;
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SATURATION_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double BURST_SECONDS = 0.1;
+
+    private final String key;
+    private final Settings settings;
+    private final LongSupplier ticker;
+    private final RateLimiterMetrics metrics;
+
+    // Guarded by this
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long decreasedAt;
+    private long increasedAt;
+    private long saturatedAt;
+
+    /**
+     * Gets the limiter of a topic or queue, starting it on first use. A limiter that already runs keeps its settings.
+     *
+     * @param key The topic ARN or queue URL
+     * @param settings Rates of a new limiter
+     * @return The limiter of the topic or queue
+     */
+    public static AdaptiveRateLimiter forKey(String key, Settings settings) {
+        return forKey(key, settings, System::nanoTime);
+    }
+
+    /**
+     * Gets the limiter of a topic or queue, starting it on first use with its own clock, e.g. a fake clock in tests.
+     * A limiter that already runs keeps its settings and clock.
+     *
+     * @param key The topic ARN or queue URL
+     * @param settings Rates of a new limiter
+     * @param ticker Nanosecond clock of a new limiter, like {@link System#nanoTime()}
+     * @return The limiter of the topic or queue
+     */
+    public static AdaptiveRateLimiter forKey(String key, Settings settings, LongSupplier ticker) {
+        return LIMITERS.computeIfAbsent(key, k -> new AdaptiveRateLimiter(k, settings, ticker));
+    }
+
+    /**
+     * Gets the limiter of a topic or queue if one was started
+     *
+     * @param key The topic ARN or queue URL
+     * @return The limiter, or null if the topic or queue is not rate limited
+     */
+    static AdaptiveRateLimiter find(String key) {
+        return key == null ? null : LIMITERS.get(key);
+    }
+
+    /**
+     * Takes permits from the limiter of a topic or queue, waiting until they are available.
+     * Does nothing if the topic or queue has no limiter.
+     *
+     * @param key The topic ARN or queue URL
+     * @param permits Number of messages to publish, or 1 for a receive call
+     */
+    static void acquire(String key, int permits) {
+        AdaptiveRateLimiter limiter = find(key);
+        if (limiter != null) {
+            limiter.acquire(permits);
+        }
+    }
+
+    private AdaptiveRateLimiter(String key, Settings settings, LongSupplier ticker) {
+        this.key = key;
+        this.settings = settings;
+        this.ticker = ticker;
+        this.metrics = SdkMetrics.forRun().rateLimiter(key);
+        long now = ticker.getAsLong();
+        this.rate = settings.initialRate;
+        this.tokens = capacity();
+        this.refilledAt = now;
+        this.decreasedAt = now - DECREASE_COOLDOWN_NANOS;
+        this.increasedAt = now;
+        this.saturatedAt = now - SATURATION_WINDOW_NANOS;
+        metrics.recordRate(rate);
+    }
+
+    /**
+     * Takes permits, waiting until they are available. Permits are reserved in arrival order, so a batch
+     * of 10 never starves behind single messages. An interrupt ends the wait early and stays set.
+     *
+     * @param permits Number of permits
+     * @return The time waited, in nanoseconds
+     */
+    public long acquire(int permits) {
+        long wait = reserve(permits);
+        long deadline = ticker.getAsLong() + wait;
+        long remaining;
+        while (wait > 0 && (remaining = deadline - ticker.getAsLong()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+        return wait;
+    }
+
+    /**
+     * Takes permits without waiting. The caller has to wait the returned time before calling the service.
+     *
+     * @param permits Number of permits
+     * @return The time to wait, in nanoseconds
+     */
+    public long reserve(int permits) {
+        long wait;
+        synchronized (this) {
+            long now = ticker.getAsLong();
+            refill(now);
+            tokens -= permits; // May go negative: the debt is the wait of this and every later caller
+            wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            if (wait > 0) {
+                saturatedAt = now;
+            }
+        }
+        metrics.recordAcquire(permits, wait);
+        return wait;
+    }
+
+    /**
+     * Adjusts the rate to the outcome of a call on the topic or queue
+     *
+     * @param throttled true if the call failed with a throttling error
+     * @param retried true if the call needed more than one attempt
+     */
+    public synchronized void onCallCompleted(boolean throttled, boolean retried) {
+        long now = ticker.getAsLong();
+        boolean decreased = false;
+        if (throttled || retried) {
+            if (now - decreasedAt >= DECREASE_COOLDOWN_NANOS) {
+                setRate(now, Math.max(MIN_RATE_PER_SECOND, rate * DECREASE_FACTOR));
+                decreasedAt = now;
+                decreased = true;
+            }
+            increasedAt = now;
+        } else if (now - decreasedAt >= DECREASE_COOLDOWN_NANOS) {
+            if (now - saturatedAt <= SATURATION_WINDOW_NANOS) {
+                double seconds = Math.min(now - increasedAt, SATURATION_WINDOW_NANOS) / 1e9;
+                setRate(now, Math.min(settings.maxRate, rate + settings.increasePerSecond * seconds));
+            }
+            increasedAt = now;
+        }
+        metrics.recordFeedback(throttled, retried, decreased);
+    }
+
+    /**
+     * @return The rate currently allowed, in permits per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Removes the limiter; later calls on the topic or queue are no longer limited
+     */
+    @Override
+    public void close() {
+        LIMITERS.remove(key, this);
+    }
+
+    private void setRate(long now, double newRate) {
+        refill(now); // Tokens earned so far count at the old rate
+        rate = newRate;
+        metrics.recordRate(rate);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity(), tokens + (now - refilledAt) / 1e9 * rate);
+        refilledAt = now;
+    }
+
+    private double capacity() {
+        return Math.max(1, rate * BURST_SECONDS);
+    }
+
+    /**
+     * Rates of a limiter, in permits per second
+     */
+    public static final class Settings {
+        private final double initialRate;
+        private final double maxRate;
+        private final double increasePerSecond;
+
+        /**
+         * @param initialRate Rate to start with
+         * @param maxRate Highest rate the limiter raises to
+         * @param increasePerSecond Rate added per second while callers wait and nothing is throttled
+         */
+        public Settings(double initialRate, double maxRate, double increasePerSecond) {
+            if (initialRate < MIN_RATE_PER_SECOND || maxRate < initialRate || increasePerSecond < 0) {
+                throw new IllegalArgumentException("Rates must satisfy 1 <= initial <= max and increase >= 0");
+            }
+            this.initialRate = initialRate;
+            this.maxRate = maxRate;
+            this.increasePerSecond = increasePerSecond;
+        }
+
+        /**
+         * @return The settings from the ratelimit.* properties, or null if rate limiting is disabled
+         */
+        public static Settings fromConfig() {
+            if (!AwsConfigUtility.isRateLimitEnabled()) {
+                return null;
+            }
+            return new Settings(AwsConfigUtility.getRateLimitInitialPerSecond(), AwsConfigUtility.getRateLimitMaxPerSecond(),
+                    AwsConfigUtility.getRateLimitIncreasePerSecond());
+        }
+    }
+}
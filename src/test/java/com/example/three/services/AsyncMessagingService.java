@@ -0,0 +1,216 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import com.example.three.utils.PayloadTemplate;
+import com.example.three.utils.SnsEnvelopeScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking variant of {@link MessagingService} built on the SDK v2 async clients and the Netty NIO HTTP client.
+ *
+ * No method blocks the calling thread: waits between attempts are scheduled with
+ * {@link CompletableFuture#delayedExecutor} instead of sleeping, so a handful of threads can keep
+ * thousands of publish/verify flows in flight. The clients are shared through the {@link AwsClientRegistry}.
+ */
+public class AsyncMessagingService implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncMessagingService.class);
+
+    private final String snsTopicArn;
+    private final String sqsQueueUrl;
+    private final Region region;
+    private final AwsCredentialsProvider credentialsProvider;
+    private final Object credentialsIdentity;
+    private AwsClientRegistry.Lease<SnsAsyncClient> snsLease;
+    private AwsClientRegistry.Lease<SqsAsyncClient> sqsLease;
+    private SnsAsyncClient snsClient;
+    private SqsAsyncClient sqsClient;
+    private URI endpointOverride;
+
+    /**
+     * Creates a new AsyncMessagingService with the specified AWS resource identifiers and static credentials
+     *
+     * @param snsTopicArn ARN of the SNS topic to publish to
+     * @param sqsQueueUrl URL of the SQS queue to receive messages from
+     * @param region AWS region where the resources are located
+     * @param awsAccessKey AWS Access Key ID
+     * @param awsSecretKey AWS Secret Access Key
+     * @param awsSessionToken AWS Session Token, or null for long-term keys
+     */
+    public AsyncMessagingService(String snsTopicArn, String sqsQueueUrl, Region region,
+                                 String awsAccessKey, String awsSecretKey, String awsSessionToken) {
+        this.snsTopicArn = snsTopicArn;
+        this.sqsQueueUrl = sqsQueueUrl;
+        this.region = region;
+        AwsCredentials credentials = awsSessionToken != null
+                ? AwsSessionCredentials.create(awsAccessKey, awsSecretKey, awsSessionToken)
+                : AwsBasicCredentials.create(awsAccessKey, awsSecretKey);
+        this.credentialsProvider = StaticCredentialsProvider.create(credentials);
+        this.credentialsIdentity = AwsClientRegistry.credentialsIdentity(credentials);
+    }
+
+    /**
+     * Creates a new AsyncMessagingService that resolves credentials through a provider, see
+     * {@link MessagingService#MessagingService(String, String, Region, AwsCredentialsProvider)}
+     *
+     * @param snsTopicArn ARN of the SNS topic to publish to
+     * @param sqsQueueUrl URL of the SQS queue to receive messages from
+     * @param region AWS region where the resources are located
+     * @param credentialsProvider Provider of the AWS credentials, e.g. {@link AwsCredentialService#getCredentialsProvider()}
+     */
+    public AsyncMessagingService(String snsTopicArn, String sqsQueueUrl, Region region,
+                                 AwsCredentialsProvider credentialsProvider) {
+        this.snsTopicArn = snsTopicArn;
+        this.sqsQueueUrl = sqsQueueUrl;
+        this.region = region;
+        this.credentialsProvider = credentialsProvider;
+        this.credentialsIdentity = AwsClientRegistry.credentialsIdentity(credentialsProvider);
+    }
+
+    /**
+     * Points both clients at another endpoint, e.g. the in-process SNS/SQS emulator. Must be called before
+     * {@link #initialize()}.
+     *
+     * @param endpointOverride The endpoint URI, or null for the regional AWS endpoints
+     */
+    public void setEndpointOverride(URI endpointOverride) {
+        this.endpointOverride = endpointOverride;
+    }
+
+    /**
+     * Acquires the shared async SNS and SQS clients. The async clients of a region share one Netty NIO HTTP client.
+     */
+    public void initialize() {
+        AwsClientRegistry registry = AwsClientRegistry.getInstance();
+        this.snsLease = registry.acquireSnsAsyncClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        this.sqsLease = registry.acquireSqsAsyncClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        this.snsClient = snsLease.client();
+        this.sqsClient = sqsLease.client();
+
+        LOG.info("AWS SDK v2 async SNS and SQS clients initialized successfully");
+    }
+
+    /**
+     * Sends a message from a JSON file to the SNS topic without blocking
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @return A future completed with the application-specific message ID once SNS accepted the message
+     */
+    public CompletableFuture<String> sendMessageFromJsonFile(String jsonFilePath) {
+        PayloadTemplate template;
+        try {
+            // Parsed once per file and cached, rendering only splices in the messageId
+            template = PayloadTemplate.forFile(jsonFilePath, "messageId");
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String messageId = UUID.randomUUID().toString(); // Application-specific ID
+
+        PublishRequest publishRequest = PublishRequest.builder()
+                .topicArn(snsTopicArn)
+                .message(template.render(messageId))
+                .messageAttributes(PropagationLatency.publishTimestampAttributes()) // For the latency breakdown
+                .build();
+
+        return snsClient.publish(publishRequest).thenApply(publishResult -> {
+            LOG.debug("Message sent to SNS with custom app ID: {}, SNS Message ID: {}", messageId, publishResult.messageId());
+            return messageId;
+        });
+    }
+
+    /**
+     * Checks if a message with a specific application ID arrives in the SQS queue without blocking.
+     * Takes the same arguments as {@link MessagingService#checkMessageInSqs}, but the waits are scheduled.
+     *
+     * @param appMessageId The application-specific message ID to look for
+     * @param waitTimeSeconds Time to wait for message propagation before first check
+     * @param maxAttempts Maximum number of attempts to check the queue
+     * @param delayBetweenAttempts Delay in seconds between check attempts
+     * @return A future completed with true if the message was found and deleted, false otherwise
+     */
+    public CompletableFuture<Boolean> checkMessageInSqs(String appMessageId, int waitTimeSeconds, int maxAttempts,
+                                                        int delayBetweenAttempts) {
+        Executor initialDelay = CompletableFuture.delayedExecutor(waitTimeSeconds, TimeUnit.SECONDS);
+        return CompletableFuture.runAsync(() -> { }, initialDelay)
+                .thenCompose(ignored -> attempt(appMessageId, 0, maxAttempts, delayBetweenAttempts))
+                .thenApply(messageFound -> {
+                    if (messageFound) {
+                        LOG.debug("Message verification successful for {}", appMessageId);
+                    } else {
+                        LOG.warn("Message verification failed after {} attempts for {}", maxAttempts, appMessageId);
+                    }
+                    return messageFound;
+                });
+    }
+
+    private CompletableFuture<Boolean> attempt(String appMessageId, int attempt, int maxAttempts, int delayBetweenAttempts) {
+        ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                .queueUrl(sqsQueueUrl)
+                .maxNumberOfMessages(10)  // Receive up to 10 messages at once
+                .waitTimeSeconds(5)       // Long polling keeps the connection open, not a thread
+                .messageAttributeNames(PropagationLatency.PUBLISH_TIMESTAMP_ATTRIBUTE) // Raw delivery
+                .messageSystemAttributeNames(PropagationLatency.SYSTEM_ATTRIBUTES)
+                .build();
+
+        return sqsClient.receiveMessage(receiveRequest).thenCompose(response -> {
+            Instant receivedAt = Instant.now();
+            for (Message message : response.messages()) {
+                // Reads the ID out of the SNS wrapper without parsing the message
+                if (SnsEnvelopeScanner.matches(message.body(), "messageId", appMessageId)) {
+                    PropagationLatencyStats.forRun().record(PropagationLatency.of(message, receivedAt));
+
+                    DeleteMessageRequest deleteRequest = DeleteMessageRequest.builder()
+                            .queueUrl(sqsQueueUrl)
+                            .receiptHandle(message.receiptHandle())
+                            .build();
+                    return sqsClient.deleteMessage(deleteRequest).thenApply(deleted -> true);
+                }
+            }
+
+            if (attempt + 1 >= maxAttempts) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // Schedule the next attempt instead of sleeping
+            Executor delay = CompletableFuture.delayedExecutor(delayBetweenAttempts, TimeUnit.SECONDS);
+            return CompletableFuture.runAsync(() -> { }, delay)
+                    .thenCompose(ignored -> attempt(appMessageId, attempt + 1, maxAttempts, delayBetweenAttempts));
+        });
+    }
+
+    /**
+     * Releases the shared clients; the registry closes a client once no other service uses it
+     */
+    @Override
+    public void close() {
+        if (snsLease != null) {
+            snsLease.close();
+            snsLease = null;
+        }
+        if (sqsLease != null) {
+            sqsLease.close();
+            sqsLease = null;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClientBuilder;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.SnsClientBuilder;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
+import com.example.three.metrics.SdkMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Hands out shared, reference-counted SNS and SQS clients (AWS SDK v2), synchronous and async.
+ *
+ * Clients are keyed by service, region, credentials identity and endpoint, so every test method and scenario
+ * that targets the same account and region at the same time reuses the same client. The clients of a region
+ * share one HTTP connection pool, so a slow region cannot hold the connections another region needs when
+ * several regions are tested at once; the async clients of a region share one Netty pool. Every client
+ * records its calls into {@link SdkMetrics#forRun()} and reports them to the {@link AdaptiveRateLimiter} of
+ * the topic or queue, if it has one.
+ *
+ * A client is closed when its last lease is released, and a region's connection pool when the last client
+ * using it is closed. Per-queue helpers that keep a client, like the {@link VisibilityLeaseManager}, are
+ * rebound to the client of the next service that uses the queue. {@link #shutdown()} closes whatever is
+ * still open, at the end of the suite or when the JVM exits.
+ */
+public class AwsClientRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(AwsClientRegistry.class);
+    private static final AwsClientRegistry INSTANCE = new AwsClientRegistry();
+
+    static {
+        // Safety net for runs that never call shutdown(), e.g. the command line tools
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::shutdown, "aws-client-registry-shutdown"));
+    }
+
+    private static final int MAX_CONNECTIONS = 200;
+    private static final int MAX_ASYNC_CONCURRENCY = 500;
+
+    private final Map<ClientKey, SharedClient> clients = new HashMap<>();
+    private final Map<Region, SdkHttpClient> httpClients = new HashMap<>();
+    private final Map<Region, SdkAsyncHttpClient> asyncHttpClients = new HashMap<>();
+
+    /**
+     * Gets the registry shared by all tests in the JVM
+     *
+     * @return The shared registry
+     */
+    public static AwsClientRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires a shared SNS client
+     *
+     * @param region AWS region of the client
+     * @param credentialsProvider Credentials used if a new client has to be built
+     * @param credentialsIdentity Identifies the credentials, e.g. {@link #credentialsIdentity(AwsCredentials)}; clients are only
+     *                            shared for equal identities
+     * @param endpointOverride Endpoint to use instead of the regional AWS endpoint, or null
+     * @return A lease that must be closed when the client is no longer needed
+     */
+    public Lease<SnsClient> acquireSnsClient(Region region, AwsCredentialsProvider credentialsProvider,
+                                             Object credentialsIdentity, URI endpointOverride) {
+        ClientKey key = new ClientKey("sns", region, credentialsIdentity, endpointOverride);
+        return acquire(key, SnsClient.class, () -> {
+            SnsClientBuilder builder = SnsClient.builder()
+                    .region(region)
+                    .credentialsProvider(credentialsProvider)
+                    .httpClient(sharedHttpClient(region))
+                    .overrideConfiguration(clientConfiguration());
+            if (endpointOverride != null) {
+                builder.endpointOverride(endpointOverride);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Acquires a shared SQS client
+     *
+     * @param region AWS region of the client
+     * @param credentialsProvider Credentials used if a new client has to be built
+     * @param credentialsIdentity Identifies the credentials, e.g. {@link #credentialsIdentity(AwsCredentials)}; clients are only
+     *                            shared for equal identities
+     * @param endpointOverride Endpoint to use instead of the regional AWS endpoint, or null
+     * @return A lease that must be closed when the client is no longer needed
+     */
+    public Lease<SqsClient> acquireSqsClient(Region region, AwsCredentialsProvider credentialsProvider,
+                                             Object credentialsIdentity, URI endpointOverride) {
+        ClientKey key = new ClientKey("sqs", region, credentialsIdentity, endpointOverride);
+        return acquire(key, SqsClient.class, () -> {
+            SqsClientBuilder builder = SqsClient.builder()
+                    .region(region)
+                    .credentialsProvider(credentialsProvider)
+                    .httpClient(sharedHttpClient(region))
+                    .overrideConfiguration(clientConfiguration());
+            if (endpointOverride != null) {
+                builder.endpointOverride(endpointOverride);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Acquires a shared async SNS client
+     *
+     * @param region AWS region of the client
+     * @param credentialsProvider Credentials used if a new client has to be built
+     * @param credentialsIdentity Identifies the credentials, e.g. {@link #credentialsIdentity(AwsCredentials)}; clients are only
+     *                            shared for equal identities
+     * @param endpointOverride Endpoint to use instead of the regional AWS endpoint, or null
+     * @return A lease that must be closed when the client is no longer needed
+     */
+    public Lease<SnsAsyncClient> acquireSnsAsyncClient(Region region, AwsCredentialsProvider credentialsProvider,
+                                                       Object credentialsIdentity, URI endpointOverride) {
+        ClientKey key = new ClientKey("sns-async", region, credentialsIdentity, endpointOverride);
+        return acquire(key, SnsAsyncClient.class, () -> {
+            SnsAsyncClientBuilder builder = SnsAsyncClient.builder()
+                    .region(region)
+                    .credentialsProvider(credentialsProvider)
+                    .httpClient(sharedAsyncHttpClient(region))
+                    .overrideConfiguration(clientConfiguration());
+            if (endpointOverride != null) {
+                builder.endpointOverride(endpointOverride);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Acquires a shared async SQS client
+     *
+     * @param region AWS region of the client
+     * @param credentialsProvider Credentials used if a new client has to be built
+     * @param credentialsIdentity Identifies the credentials, e.g. {@link #credentialsIdentity(AwsCredentials)}; clients are only
+     *                            shared for equal identities
+     * @param endpointOverride Endpoint to use instead of the regional AWS endpoint, or null
+     * @return A lease that must be closed when the client is no longer needed
+     */
+    public Lease<SqsAsyncClient> acquireSqsAsyncClient(Region region, AwsCredentialsProvider credentialsProvider,
+                                                       Object credentialsIdentity, URI endpointOverride) {
+        ClientKey key = new ClientKey("sqs-async", region, credentialsIdentity, endpointOverride);
+        return acquire(key, SqsAsyncClient.class, () -> {
+            SqsAsyncClientBuilder builder = SqsAsyncClient.builder()
+                    .region(region)
+                    .credentialsProvider(credentialsProvider)
+                    .httpClient(sharedAsyncHttpClient(region))
+                    .overrideConfiguration(clientConfiguration());
+            if (endpointOverride != null) {
+                builder.endpointOverride(endpointOverride);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Identifies a credentials provider. Clients built with different providers are not shared, except for
+     * gimme-aws-creds providers of the same profile, which resolve the same credentials.
+     *
+     * @param credentialsProvider The credentials provider
+     * @return The profile identity of a gimme-aws-creds provider, otherwise the provider itself, which only
+     *         equals itself; for {@link #acquireSnsClient} and the other acquire methods
+     */
+    public static Object credentialsIdentity(AwsCredentialsProvider credentialsProvider) {
+        return credentialsProvider instanceof GimmeAwsCredentialsProvider
+                ? ((GimmeAwsCredentialsProvider) credentialsProvider).identity()
+                : credentialsProvider;
+    }
+
+    /**
+     * Identifies static credentials by their access key. Temporary credentials get a new access key with
+     * every session, and a client of an old key is closed once its last lease is released.
+     *
+     * @param credentials The static credentials
+     * @return An identity made of the access key ID
+     */
+    public static Object credentialsIdentity(AwsCredentials credentials) {
+        return "access-key:" + credentials.accessKeyId();
+    }
+
+    private static ClientOverrideConfiguration clientConfiguration() {
+        return SdkMetrics.clientConfiguration().toBuilder()
+                .addExecutionInterceptor(new RateLimitFeedbackInterceptor())
+                .build();
+    }
+
+    /**
+     * @return Number of clients currently open
+     */
+    public synchronized int openClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return Number of leases currently held, over all clients
+     */
+    public synchronized int leaseCount() {
+        int leases = 0;
+        for (SharedClient shared : clients.values()) {
+            leases += shared.references;
+        }
+        return leases;
+    }
+
+    /**
+     * Closes all clients and connection pools that are still open. Leases still held keep a closed client,
+     * so call this only when no service is in use any more; a later acquire builds new clients.
+     */
+    public synchronized void shutdown() {
+        for (SharedClient shared : clients.values()) {
+            shared.client.close();
+        }
+        clients.clear();
+        for (SdkHttpClient httpClient : httpClients.values()) {
+            httpClient.close();
+        }
+        httpClients.clear();
+        for (SdkAsyncHttpClient httpClient : asyncHttpClients.values()) {
+            httpClient.close();
+        }
+        asyncHttpClients.clear();
+    }
+
+    private synchronized <T extends SdkClient> Lease<T> acquire(ClientKey key, Class<T> type, Supplier<T> factory) {
+        SharedClient shared = clients.get(key);
+        if (shared == null) {
+            shared = new SharedClient(factory.get());
+            clients.put(key, shared);
+            LOG.info("Created shared {} client for {}{}", key.service, key.region,
+                    key.endpointOverride != null ? " at " + key.endpointOverride : "");
+        }
+        shared.references++;
+        return new Lease<>(this, key, type.cast(shared.client));
+    }
+
+    private synchronized void release(ClientKey key, SdkClient client) {
+        SharedClient shared = clients.get(key);
+        if (shared == null || shared.client != client || --shared.references > 0) {
+            return; // Already closed by shutdown(), or still leased
+        }
+        clients.remove(key);
+        shared.client.close();
+        LOG.info("Closed shared {} client for {}", key.service, key.region);
+        closeUnusedHttpClients(key.region);
+    }
+
+    // Called while holding the lock
+    private void closeUnusedHttpClients(Region region) {
+        boolean syncInUse = false;
+        boolean asyncInUse = false;
+        for (ClientKey key : clients.keySet()) {
+            if (key.region.equals(region)) {
+                if (key.isAsync()) {
+                    asyncInUse = true;
+                } else {
+                    syncInUse = true;
+                }
+            }
+        }
+        if (!syncInUse) {
+            SdkHttpClient httpClient = httpClients.remove(region);
+            if (httpClient != null) {
+                httpClient.close();
+            }
+        }
+        if (!asyncInUse) {
+            SdkAsyncHttpClient httpClient = asyncHttpClients.remove(region);
+            if (httpClient != null) {
+                httpClient.close();
+            }
+        }
+    }
+
+    // Called from acquire() while holding the lock
+    private SdkHttpClient sharedHttpClient(Region region) {
+        return httpClients.computeIfAbsent(region, r -> ApacheHttpClient.builder()
+                .maxConnections(MAX_CONNECTIONS)
+                .build());
+    }
+
+    // Called from acquire() while holding the lock
+    private SdkAsyncHttpClient sharedAsyncHttpClient(Region region) {
+        return asyncHttpClients.computeIfAbsent(region, r -> NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(MAX_ASYNC_CONCURRENCY)
+                .build());
+    }
+
+    /**
+     * A reference to a shared client. Closing the lease releases the reference; the client itself is closed
+     * when its last lease is released.
+     *
+     * @param <T> The client type
+     */
+    public static final class Lease<T extends SdkClient> implements AutoCloseable {
+        private final AwsClientRegistry registry;
+        private final ClientKey key;
+        private final T client;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(AwsClientRegistry registry, ClientKey key, T client) {
+            this.registry = registry;
+            this.key = key;
+            this.client = client;
+        }
+
+        /**
+         * @return The shared client; must not be closed by the caller
+         */
+        public T client() {
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                registry.release(key, client);
+            }
+        }
+    }
+
+    private static final class SharedClient {
+        private final SdkClient client;
+        private int references;
+
+        private SharedClient(SdkClient client) {
+            this.client = client;
+        }
+    }
+
+    private static final class ClientKey {
+        private final String service;
+        private final Region region;
+        private final Object credentialsIdentity;
+        private final URI endpointOverride;
+
+        private ClientKey(String service, Region region, Object credentialsIdentity, URI endpointOverride) {
+            this.service = service;
+            this.region = region;
+            this.credentialsIdentity = credentialsIdentity;
+            this.endpointOverride = endpointOverride;
+        }
+
+        private boolean isAsync() {
+            return service.endsWith("-async");
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey that = (ClientKey) other;
+            return service.equals(that.service)
+                    && Objects.equals(region, that.region)
+                    && Objects.equals(credentialsIdentity, that.credentialsIdentity)
+                    && Objects.equals(endpointOverride, that.endpointOverride);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, region, credentialsIdentity, endpointOverride);
+        }
+    }
+}
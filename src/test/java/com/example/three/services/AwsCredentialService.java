@@ -4,6 +4,9 @@ package com.example.three.services;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -15,18 +18,45 @@ import java.util.Properties;
  * Service for loading AWS credentials from gimme-aws-creds
  */
 public class AwsCredentialService {
+    private static final Logger LOG = LoggerFactory.getLogger(AwsCredentialService.class);
     
     /**
-     * Loads AWS credentials (including session token) from the ~/.aws/credentials file (SDK v2)
+     * Gets the shared, caching credentials provider for the [default] profile in ~/.aws/credentials.
+     * Clients built with it pick up the session tokens that gimme-aws-creds refreshes.
+     * 
+     * @return The credentials provider
+     */
+    public static GimmeAwsCredentialsProvider getCredentialsProvider() {
+        return GimmeAwsCredentialsProvider.defaultProvider();
+    }
+    
+    /**
+     * Loads AWS credentials (including session token) from the ~/.aws/credentials file (SDK v2).
+     * The file is only parsed again when it changed since the previous call.
      * 
      * @return AwsCredentials object (specifically AwsSessionCredentials if a session token is present)
      * @throws IOException if the credentials file cannot be read or required fields are missing
      */
     public static AwsCredentials getGimmeAwsCredentials() throws IOException { // Changed return type to AwsCredentials
-        // Get the user's home directory
-        String userHome = System.getProperty("user.home");
-        File credentialsFile = new File(userHome + "/.aws/credentials");
-        
+        try {
+            return getCredentialsProvider().resolveCredentials();
+        } catch (SdkClientException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Parses the credentials of one profile from an AWS credentials file
+     * 
+     * @param credentialsFile The AWS credentials file
+     * @param profileName Name of the profile, without brackets
+     * @return AwsSessionCredentials if a session token is present, AwsBasicCredentials otherwise
+     * @throws IOException if the file cannot be read or required fields are missing
+     */
+    static AwsCredentials loadProfileCredentials(File credentialsFile, String profileName) throws IOException {
         if (!credentialsFile.exists()) {
             throw new IOException("AWS credentials file not found at: " + credentialsFile.getAbsolutePath());
         }
@@ -35,28 +65,26 @@ public class AwsCredentialService {
         Properties properties = new Properties();
         try (BufferedReader reader = new BufferedReader(new FileReader(credentialsFile))) {
             String line;
-            boolean defaultProfileFound = false;
+            boolean profileFound = false;
             
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
                 
-                // Look for the [default] profile section
-                if (line.equals("[default]")) {
-                    defaultProfileFound = true;
+                // Profile headers have to be checked before key/value lines, otherwise the next
+                // profile's keys would overwrite the ones we are looking for
+                if (line.startsWith("[") && line.indexOf(']') > 0) {
+                    if (profileFound) {
+                        break; // Reached the next profile section
+                    }
+                    // Allows spaces inside the brackets and a comment after them, e.g. "[ default ] ; gimme-aws-creds"
+                    profileFound = line.substring(1, line.indexOf(']')).trim().equals(profileName);
                     continue;
                 }
                 
-                // If we're in the default profile section, parse the credentials
-                if (defaultProfileFound && line.contains("=")) {
+                // If we're in the requested profile section, parse the credentials
+                if (profileFound && line.contains("=") && !line.startsWith("#") && !line.startsWith(";")) {
                     String[] parts = line.split("=", 2);
-                    String key = parts[0].trim();
-                    String value = parts[1].trim();
-                    properties.setProperty(key, value);
-                    
-                    // If we've found a different profile section, stop parsing
-                    if (line.startsWith("[") && line.endsWith("]")) {
-                        break;
-                    }
+                    properties.setProperty(parts[0].trim(), unquote(parts[1].trim()));
                 }
             }
         }
@@ -70,20 +98,33 @@ public class AwsCredentialService {
             throw new IOException("AWS access key or secret key not found in the credentials file");
         }
         
-        System.out.println("AWS credentials loaded successfully");
-        System.out.println("Access Key ID: " + maskString(accessKey));
+        LOG.info("AWS credentials loaded successfully");
+        LOG.debug("Access Key ID: {}", maskString(accessKey));
         
         // If a session token is present, use AwsSessionCredentials (SDK v2)
         if (sessionToken != null && !sessionToken.isEmpty()) {
-            System.out.println("Session Token: Present (masked)");
+            LOG.debug("Session Token: Present (masked)");
             return AwsSessionCredentials.create(accessKey, secretKey, sessionToken); // Changed to AwsSessionCredentials.create
         } else {
             // Fallback to AwsBasicCredentials if no session token (SDK v2)
-            System.out.println("Session Token: Not found, using basic credentials");
+            LOG.debug("Session Token: Not found, using basic credentials");
             return AwsBasicCredentials.create(accessKey, secretKey); // Changed to AwsBasicCredentials.create
         }
     }
     
+    /**
+     * Removes the double quotes some tools write around values
+     * 
+     * @param value The trimmed value
+     * @return The value without surrounding quotes
+     */
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+    
     /**
      * Masks a string for secure logging
      * 
@@ -0,0 +1,76 @@
+package com.example.three.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of publishing several messages through PublishBatch, keyed by the application message ID
+ */
+public class BatchPublishOutcome {
+    private final Map<String, String> snsMessageIds = new LinkedHashMap<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private final Map<String, List<String>> messageIdsByGroup = new LinkedHashMap<>();
+
+    void recordSuccess(String appMessageId, String snsMessageId) {
+        snsMessageIds.put(appMessageId, snsMessageId);
+    }
+
+    void recordSuccess(String appMessageId, String snsMessageId, String messageGroupId) {
+        recordSuccess(appMessageId, snsMessageId);
+        if (messageGroupId != null) {
+            messageIdsByGroup.computeIfAbsent(messageGroupId, group -> new ArrayList<>()).add(appMessageId);
+        }
+    }
+
+    void recordFailure(String appMessageId, String reason) {
+        failures.put(appMessageId, reason);
+    }
+
+    /**
+     * Gets the application message IDs that were published successfully, in send order
+     *
+     * @return The published application message IDs
+     */
+    public List<String> getPublishedMessageIds() {
+        return new ArrayList<>(snsMessageIds.keySet());
+    }
+
+    /**
+     * Gets the published application message IDs of a FIFO batch per MessageGroupId, each list in send order.
+     * This is the order a FIFO queue must deliver them in, see {@link FifoOrderVerifier}.
+     *
+     * @return The published IDs per group, empty for a standard topic
+     */
+    public Map<String, List<String>> getPublishedMessageIdsByGroup() {
+        return Collections.unmodifiableMap(messageIdsByGroup);
+    }
+
+    /**
+     * Gets the SNS message ID assigned to an application message
+     *
+     * @param appMessageId The application-specific message ID
+     * @return The SNS message ID, or null if the message was not published
+     */
+    public String getSnsMessageId(String appMessageId) {
+        return snsMessageIds.get(appMessageId);
+    }
+
+    /**
+     * Gets the messages that could not be published
+     *
+     * @return Map of application message ID to failure reason
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return true if every message in the batch was published
+     */
+    public boolean isAllPublished() {
+        return failures.isEmpty();
+    }
+}
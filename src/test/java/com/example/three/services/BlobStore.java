@@ -0,0 +1,37 @@
+package com.example.three.services;
+
+import java.io.IOException;
+
+/**
+ * Storage for payloads too large to send through SNS, used by the {@link PayloadCodec} claim check.
+ * The message carries only the reference returned by {@link #put}, and the consumer fetches the payload with it.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores a payload
+     *
+     * @param key A unique key for the payload, e.g. the application message ID
+     * @param data The payload bytes
+     * @return The reference to put into the message
+     * @throws IOException if the payload cannot be stored
+     */
+    String put(String key, byte[] data) throws IOException;
+
+    /**
+     * Loads a stored payload
+     *
+     * @param reference A reference returned by {@link #put}
+     * @return The payload bytes
+     * @throws IOException if the payload does not exist or cannot be read
+     */
+    byte[] get(String reference) throws IOException;
+
+    /**
+     * Removes a stored payload once no consumer needs it anymore. Removing a missing payload is not an error.
+     *
+     * @param reference A reference returned by {@link #put}
+     * @throws IOException if the payload cannot be removed
+     */
+    void delete(String reference) throws IOException;
+}
@@ -0,0 +1,54 @@
+package com.example.three.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for the FIFO-only publish parameters
+ */
+public final class FifoMessageKeys {
+    private static final String FIFO_SUFFIX = ".fifo";
+
+    private FifoMessageKeys() {
+    }
+
+    /**
+     * Checks whether a topic ARN or queue URL names a FIFO resource
+     *
+     * @param topicArnOrQueueUrl The topic ARN or queue URL
+     * @return true if the name ends with ".fifo"
+     */
+    public static boolean isFifo(String topicArnOrQueueUrl) {
+        return topicArnOrQueueUrl != null && topicArnOrQueueUrl.endsWith(FIFO_SUFFIX);
+    }
+
+    /**
+     * Derives the MessageDeduplicationId from the group and the message body.
+     *
+     * The ID is deterministic, so publishing the same message again within the 5-minute deduplication window,
+     * e.g. when a timed-out publish is retried, delivers it only once. The body carries the application
+     * message ID, so distinct messages never collide.
+     *
+     * @param messageGroupId The MessageGroupId of the message
+     * @param body The message body
+     * @return The SHA-256 of group and body as 64 hex characters
+     */
+    public static String deduplicationId(String messageGroupId, String body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(messageGroupId.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0); // Separator, so "ab"+"c" and "a"+"bc" differ
+        byte[] hash = digest.digest(body.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Verifies delivery order on an SQS FIFO queue, processing message groups in parallel.
+ *
+ * SQS FIFO hands out the messages of a group to one receiver at a time and only releases the next ones once
+ * the received ones are deleted. The verifier therefore runs several pollers, splits every receive by
+ * MessageGroupId and hands each group's messages to that group's lane. A lane processes its messages one at a
+ * time on a shared worker pool and deletes each one when done, which unlocks the group for the next receive.
+ * Different groups never wait for each other, so throughput grows with the number of groups.
+ *
+ * Per group, each message is checked against the publish order and its SQS SequenceNumber must be greater
+ * than the one before. Redeliveries of an already processed message are counted as duplicates.
+ */
+public class FifoOrderVerifier {
+    private static final Logger LOG = LoggerFactory.getLogger(FifoOrderVerifier.class);
+
+    private static final int DEFAULT_MAX_POLLERS = 10;
+    private static final int MAX_WORKERS = 32;
+    private static final int LONG_POLL_SECONDS = 5;
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+    private static final MessageSystemAttributeName[] SYSTEM_ATTRIBUTES = {
+            MessageSystemAttributeName.MESSAGE_GROUP_ID,
+            MessageSystemAttributeName.SEQUENCE_NUMBER,
+            MessageSystemAttributeName.SENT_TIMESTAMP,
+            MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP
+    };
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final SqsDeleteCoalescer deleteCoalescer;
+    private Consumer<Message> messageHandler = message -> { };
+    private int maxPollers = DEFAULT_MAX_POLLERS;
+
+    /**
+     * Creates a verifier for a FIFO queue
+     *
+     * @param sqsClient SQS client used for receiving
+     * @param queueUrl URL of the FIFO queue
+     * @param deleteCoalescer Coalescer of the queue, used to delete processed messages
+     */
+    public FifoOrderVerifier(SqsClient sqsClient, String queueUrl, SqsDeleteCoalescer deleteCoalescer) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.deleteCoalescer = deleteCoalescer;
+    }
+
+    /**
+     * Sets work to do for every expected message before it is deleted, e.g. simulated processing.
+     * The handler is called in order within a group and concurrently for different groups.
+     *
+     * @param messageHandler The handler
+     * @return This verifier
+     */
+    public FifoOrderVerifier setMessageHandler(Consumer<Message> messageHandler) {
+        this.messageHandler = messageHandler;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent receive loops; at most one per group is started
+     *
+     * @param maxPollers Maximum number of pollers, default 10
+     * @return This verifier
+     */
+    public FifoOrderVerifier setMaxPollers(int maxPollers) {
+        this.maxPollers = maxPollers;
+        return this;
+    }
+
+    /**
+     * Receives until every expected message arrived or the timeout passed
+     *
+     * @param expectedByGroup Application message IDs per MessageGroupId, each list in publish order
+     * @param timeout Overall time allowed for all messages to arrive
+     * @return The ordering and completeness result
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public FifoVerificationResult verify(Map<String, List<String>> expectedByGroup, Duration timeout)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+
+        Map<String, GroupLane> lanes = new HashMap<>();
+        int expectedTotal = 0;
+        for (Map.Entry<String, List<String>> group : expectedByGroup.entrySet()) {
+            lanes.put(group.getKey(), new GroupLane(group.getKey(), group.getValue()));
+            expectedTotal += group.getValue().size();
+        }
+
+        Run run = new Run(lanes, expectedTotal, deadline);
+        if (expectedTotal == 0) {
+            run.done.countDown();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_WORKERS, lanes.size())),
+                daemonThreads("fifo-verifier-worker"));
+        run.workers = workers;
+        int pollerCount = Math.max(1, Math.min(maxPollers, lanes.size()));
+        for (int i = 0; i < pollerCount; i++) {
+            Thread poller = new Thread(() -> poll(run), "fifo-verifier-poller-" + (i + 1));
+            poller.setDaemon(true);
+            poller.start();
+        }
+
+        try {
+            run.done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } finally {
+            // Pollers still inside a long poll release whatever they get once it returns
+            run.running = false;
+        }
+
+        // Let the lanes finish the messages they were already handed
+        for (GroupLane lane : lanes.values()) {
+            lane.awaitIdle();
+        }
+        workers.shutdown();
+
+        Map<String, List<String>> missing = new LinkedHashMap<>();
+        List<String> orderViolations = new ArrayList<>();
+        List<String> sequenceViolations = new ArrayList<>();
+        List<String> processingErrors = new ArrayList<>();
+        int received = 0;
+        int duplicates = 0;
+        for (String group : expectedByGroup.keySet()) {
+            GroupLane lane = lanes.get(group);
+            synchronized (lane) {
+                List<String> notReceived = new ArrayList<>();
+                for (String appMessageId : lane.expected) {
+                    if (!lane.seen.contains(appMessageId)) {
+                        notReceived.add(appMessageId);
+                    }
+                }
+                if (!notReceived.isEmpty()) {
+                    missing.put(group, notReceived);
+                }
+                received += lane.seen.size();
+                duplicates += lane.duplicates;
+                orderViolations.addAll(lane.orderViolations);
+                sequenceViolations.addAll(lane.sequenceViolations);
+                processingErrors.addAll(lane.processingErrors);
+            }
+        }
+
+        return new FifoVerificationResult(lanes.size(), expectedTotal, received, missing, orderViolations,
+                sequenceViolations, duplicates, run.unexpected.get(), processingErrors,
+                Duration.ofNanos(System.nanoTime() - start), run.receiveCalls.intValue());
+    }
+
+    private void poll(Run run) {
+        long remaining;
+        while (run.running && (remaining = run.deadline - System.nanoTime()) > 0) {
+            try {
+                int waitTimeSeconds = (int) Math.min(LONG_POLL_SECONDS, TimeUnit.NANOSECONDS.toSeconds(remaining));
+                ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                        .queueUrl(queueUrl)
+                        .maxNumberOfMessages(10)
+                        .waitTimeSeconds(waitTimeSeconds)
+                        .messageAttributeNames("All")
+                        .messageSystemAttributeNames(SYSTEM_ATTRIBUTES)
+                        .build();
+                AdaptiveRateLimiter.acquire(queueUrl, 1);
+                List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
+                Instant receivedAt = Instant.now();
+                run.receiveCalls.increment();
+
+                if (!run.running) {
+                    // Verification is over, don't keep these locked for the visibility timeout
+                    SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, messages);
+                    return;
+                }
+
+                // SQS returns the messages of a group in order, so splitting keeps that order per lane
+                Map<String, List<Message>> byGroup = new LinkedHashMap<>();
+                List<Message> unexpected = new ArrayList<>();
+                for (Message message : messages) {
+                    String group = message.attributes().get(MessageSystemAttributeName.MESSAGE_GROUP_ID);
+                    if (group != null && run.lanes.containsKey(group)) {
+                        byGroup.computeIfAbsent(group, key -> new ArrayList<>()).add(message);
+                    } else {
+                        unexpected.add(message);
+                    }
+                }
+                VisibilityLeaseManager leases = VisibilityLeaseManager.find(queueUrl);
+                for (Map.Entry<String, List<Message>> group : byGroup.entrySet()) {
+                    if (leases != null) {
+                        leases.track(group.getValue()); // A lane may take longer than the visibility timeout
+                    }
+                    run.lanes.get(group.getKey()).submit(group.getValue(), receivedAt, run);
+                }
+                if (!unexpected.isEmpty()) {
+                    run.unexpected.addAndGet(unexpected.size());
+                    SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, unexpected);
+                }
+            } catch (RuntimeException e) {
+                // Any failure, not just SDK ones, must not end the poller while groups still wait for messages
+                LOG.warn("FIFO verifier receive failed for {}: {}", queueUrl, e.toString());
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * State shared by the pollers of one verification
+     */
+    private static final class Run {
+        private final Map<String, GroupLane> lanes;
+        private final AtomicInteger outstanding;
+        private final long deadline;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final LongAdder receiveCalls = new LongAdder();
+        private final AtomicInteger unexpected = new AtomicInteger();
+        private volatile ExecutorService workers;
+        private volatile boolean running = true;
+
+        private Run(Map<String, GroupLane> lanes, int expectedTotal, long deadline) {
+            this.lanes = lanes;
+            this.outstanding = new AtomicInteger(expectedTotal);
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Processes the messages of one group strictly one after another
+     */
+    private final class GroupLane {
+        private final String group;
+        private final List<String> expected;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final Set<String> seen = new HashSet<>();
+        private final List<String> orderViolations = new ArrayList<>();
+        private final List<String> sequenceViolations = new ArrayList<>();
+        private final List<String> processingErrors = new ArrayList<>();
+        private int nextPosition;
+        private int duplicates;
+        private BigInteger lastSequenceNumber;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private GroupLane(String group, List<String> expected) {
+            this.group = group;
+            this.expected = Collections.unmodifiableList(new ArrayList<>(expected));
+            for (int i = 0; i < expected.size(); i++) {
+                positions.put(expected.get(i), i);
+            }
+        }
+
+        /**
+         * Queues received messages behind the ones this lane is still processing. A message that fails is
+         * recorded as a processing error, so the lane's stage still completes normally and the rest of the
+         * lane keeps running.
+         */
+        synchronized void submit(List<Message> messages, Instant receivedAt, Run run) {
+            tail = tail.thenRunAsync(() -> {
+                for (Message message : messages) {
+                    try {
+                        process(message, receivedAt, run);
+                    } catch (RuntimeException e) {
+                        synchronized (this) {
+                            processingErrors.add(group + ": " + message.messageId() + " - " + e);
+                        }
+                    }
+                }
+            }, run.workers);
+        }
+
+        void awaitIdle() {
+            CompletableFuture<Void> current;
+            synchronized (this) {
+                current = tail;
+            }
+            current.join(); // Not under the lock, the lane's worker needs it
+        }
+
+        private void process(Message message, Instant receivedAt, Run run) {
+            String appMessageId = SqsMessageCorrelator.extractMessageId(message.body());
+            Integer position = appMessageId == null ? null : positions.get(appMessageId);
+            if (position == null) {
+                // Same group but not from this batch, e.g. left over from an earlier run; it blocks the group
+                run.unexpected.incrementAndGet();
+                SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, Collections.singletonList(message));
+                return;
+            }
+
+            synchronized (this) {
+                if (!seen.add(appMessageId)) {
+                    duplicates++;
+                    deleteCoalescer.delete(message.receiptHandle());
+                    return;
+                }
+
+                String sequenceNumber = message.attributes().get(MessageSystemAttributeName.SEQUENCE_NUMBER);
+                if (sequenceNumber != null) {
+                    BigInteger current = new BigInteger(sequenceNumber);
+                    if (lastSequenceNumber != null && current.compareTo(lastSequenceNumber) <= 0) {
+                        sequenceViolations.add(group + ": sequence number " + current + " of " + appMessageId
+                                + " is not greater than " + lastSequenceNumber);
+                    } else {
+                        lastSequenceNumber = current;
+                    }
+                }
+
+                if (position != nextPosition) {
+                    orderViolations.add(group + ": expected " + (nextPosition < expected.size()
+                            ? expected.get(nextPosition) : "no more messages") + " at position " + nextPosition
+                            + " but got " + appMessageId + " from position " + position);
+                }
+                nextPosition = Math.max(nextPosition, position + 1);
+            }
+
+            try {
+                messageHandler.accept(message);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    processingErrors.add(group + ": " + appMessageId + " - " + e);
+                }
+            }
+            PropagationLatencyStats.forRun().record(PropagationLatency.of(message, receivedAt));
+
+            // Deleting unlocks the group, so SQS can hand out its next messages
+            deleteCoalescer.delete(message.receiptHandle());
+            if (run.outstanding.decrementAndGet() == 0) {
+                run.done.countDown();
+            }
+        }
+    }
+}
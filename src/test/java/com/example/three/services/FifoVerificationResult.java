@@ -0,0 +1,150 @@
+package com.example.three.services;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of verifying a FIFO batch with the {@link FifoOrderVerifier}
+ */
+public class FifoVerificationResult {
+    private final int groups;
+    private final int expected;
+    private final int received;
+    private final Map<String, List<String>> missing;
+    private final List<String> orderViolations;
+    private final List<String> sequenceViolations;
+    private final int duplicates;
+    private final int unexpected;
+    private final List<String> processingErrors;
+    private final Duration elapsed;
+    private final int receiveCalls;
+
+    FifoVerificationResult(int groups, int expected, int received, Map<String, List<String>> missing,
+                           List<String> orderViolations, List<String> sequenceViolations, int duplicates,
+                           int unexpected, List<String> processingErrors, Duration elapsed, int receiveCalls) {
+        this.groups = groups;
+        this.expected = expected;
+        this.received = received;
+        this.missing = Collections.unmodifiableMap(missing);
+        this.orderViolations = Collections.unmodifiableList(orderViolations);
+        this.sequenceViolations = Collections.unmodifiableList(sequenceViolations);
+        this.duplicates = duplicates;
+        this.unexpected = unexpected;
+        this.processingErrors = Collections.unmodifiableList(processingErrors);
+        this.elapsed = elapsed;
+        this.receiveCalls = receiveCalls;
+    }
+
+    /**
+     * @return true if every expected message arrived
+     */
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    /**
+     * @return true if every group arrived in publish order with increasing sequence numbers
+     */
+    public boolean isOrdered() {
+        return orderViolations.isEmpty() && sequenceViolations.isEmpty();
+    }
+
+    /**
+     * @return true if the batch arrived complete, in order and without handler errors
+     */
+    public boolean isSuccessful() {
+        return isComplete() && isOrdered() && processingErrors.isEmpty();
+    }
+
+    /**
+     * @return Number of message groups in the batch
+     */
+    public int getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return Number of messages expected
+     */
+    public int getExpected() {
+        return expected;
+    }
+
+    /**
+     * @return Number of distinct expected messages received
+     */
+    public int getReceived() {
+        return received;
+    }
+
+    /**
+     * @return Application message IDs that did not arrive, per group
+     */
+    public Map<String, List<String>> getMissing() {
+        return missing;
+    }
+
+    /**
+     * @return Messages that arrived out of publish order within their group
+     */
+    public List<String> getOrderViolations() {
+        return orderViolations;
+    }
+
+    /**
+     * @return Messages whose SequenceNumber was not greater than that of the previous message in their group
+     */
+    public List<String> getSequenceViolations() {
+        return sequenceViolations;
+    }
+
+    /**
+     * @return Number of redeliveries of messages that were already processed
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return Number of received messages that were not part of the batch; they were released back to the queue
+     */
+    public int getUnexpected() {
+        return unexpected;
+    }
+
+    /**
+     * @return Failures of the message handler
+     */
+    public List<String> getProcessingErrors() {
+        return processingErrors;
+    }
+
+    /**
+     * @return Time from the start of the verification until all messages arrived, or until the timeout
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return Number of ReceiveMessage calls made by all pollers
+     */
+    public int getReceiveCalls() {
+        return receiveCalls;
+    }
+
+    @Override
+    public String toString() {
+        return "FifoVerificationResult{groups=" + groups
+                + ", received=" + received + "/" + expected
+                + ", orderViolations=" + orderViolations.size()
+                + ", sequenceViolations=" + sequenceViolations.size()
+                + ", duplicates=" + duplicates
+                + ", unexpected=" + unexpected
+                + ", processingErrors=" + processingErrors.size()
+                + ", elapsedMs=" + elapsed.toMillis()
+                + ", receiveCalls=" + receiveCalls + "}";
+    }
+}
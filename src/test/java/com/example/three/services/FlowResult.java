@@ -0,0 +1,76 @@
+package com.example.three.services;
+
+import java.time.Duration;
+
+/**
+ * Outcome of one send-and-verify flow run by the {@link MessageFlowExecutor}
+ */
+public class FlowResult {
+    private final String appMessageId;
+    private final boolean published;
+    private final boolean found;
+    private final Duration elapsed;
+    private final PropagationLatency propagationLatency;
+    private final String error;
+
+    FlowResult(String appMessageId, boolean published, boolean found, Duration elapsed,
+               PropagationLatency propagationLatency, String error) {
+        this.appMessageId = appMessageId;
+        this.published = published;
+        this.found = found;
+        this.elapsed = elapsed;
+        this.propagationLatency = propagationLatency;
+        this.error = error;
+    }
+
+    /**
+     * @return The application-specific message ID of the flow
+     */
+    public String getAppMessageId() {
+        return appMessageId;
+    }
+
+    /**
+     * @return true if SNS accepted the message
+     */
+    public boolean isPublished() {
+        return published;
+    }
+
+    /**
+     * @return true if the message was received from SQS before the timeout
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    /**
+     * @return Time from the start of the flow until the message arrived, or until the flow gave up
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return The latency breakdown of the received message, or null
+     */
+    public PropagationLatency getPropagationLatency() {
+        return propagationLatency;
+    }
+
+    /**
+     * @return The publish or receive error, or null
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowResult{appMessageId=" + appMessageId
+                + ", published=" + published
+                + ", found=" + found
+                + ", elapsedMs=" + elapsed.toMillis()
+                + (error != null ? ", error=" + error : "") + "}";
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Credentials provider for the profile that gimme-aws-creds writes to the AWS credentials file.
+ *
+ * The parsed profile is cached. It is parsed again when a {@link WatchService} reports a change to the file,
+ * or when the file's modification time or size changed (checked at most once per second, as a fallback for
+ * file systems without change notifications). SDK clients resolve credentials on every request, so clients
+ * built with this provider pick up a refreshed session token without being rebuilt.
+ */
+public class GimmeAwsCredentialsProvider implements AwsCredentialsProvider, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(GimmeAwsCredentialsProvider.class);
+
+    private static final long FILE_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static volatile GimmeAwsCredentialsProvider defaultProvider;
+
+    private final Path credentialsFile;
+    private final String profileName;
+    private volatile CachedCredentials cached;
+    private volatile boolean changed;
+    private volatile long lastFileCheck;
+    private WatchService watchService;
+
+    /**
+     * Gets the shared provider for the [default] profile in ~/.aws/credentials
+     *
+     * @return The shared provider
+     */
+    public static GimmeAwsCredentialsProvider defaultProvider() {
+        if (defaultProvider == null) {
+            synchronized (GimmeAwsCredentialsProvider.class) {
+                if (defaultProvider == null) {
+                    defaultProvider = new GimmeAwsCredentialsProvider(
+                            Paths.get(System.getProperty("user.home"), ".aws", "credentials"), "default");
+                }
+            }
+        }
+        return defaultProvider;
+    }
+
+    /**
+     * Creates a provider for a profile of a credentials file
+     *
+     * @param credentialsFile Path to the AWS credentials file
+     * @param profileName Name of the profile to read
+     */
+    public GimmeAwsCredentialsProvider(Path credentialsFile, String profileName) {
+        this.credentialsFile = credentialsFile.toAbsolutePath();
+        this.profileName = profileName;
+        startWatching();
+    }
+
+    /**
+     * Returns the cached credentials, parsing the file again if it changed
+     *
+     * @return The credentials of the profile
+     */
+    @Override
+    public AwsCredentials resolveCredentials() {
+        CachedCredentials current = cached;
+        if (current != null && !changed && !fileCheckDue()) {
+            return current.credentials;
+        }
+        return refresh();
+    }
+
+    /**
+     * Identifies the credentials this provider serves, for sharing clients in the {@link AwsClientRegistry}
+     *
+     * @return An identity string made of the file path and profile name
+     */
+    public String identity() {
+        return "gimme-aws-creds:" + credentialsFile + "#" + profileName;
+    }
+
+    /**
+     * Stops watching the credentials file
+     */
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close credentials file watcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    private boolean fileCheckDue() {
+        return System.currentTimeMillis() - lastFileCheck >= FILE_CHECK_INTERVAL_MILLIS;
+    }
+
+    private synchronized AwsCredentials refresh() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(credentialsFile, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            lastFileCheck = System.currentTimeMillis();
+
+            CachedCredentials current = cached;
+            if (current != null && !changed && current.lastModified == modified && current.size == size) {
+                return current.credentials;
+            }
+
+            // Clear the flag before parsing so a change during parsing triggers another refresh
+            changed = false;
+            AwsCredentials credentials = AwsCredentialService.loadProfileCredentials(credentialsFile.toFile(), profileName);
+            cached = new CachedCredentials(credentials, modified, size);
+            return credentials;
+        } catch (IOException e) {
+            throw SdkClientException.create("Unable to load credentials from " + credentialsFile, e);
+        }
+    }
+
+    private void startWatching() {
+        Path directory = credentialsFile.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return; // Falls back to the modification time check
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOG.warn("Could not watch {}, relying on modification time checks: {}", directory, e.getMessage());
+            watchService = null;
+            return;
+        }
+
+        Thread watcher = new Thread(this::watch, "credentials-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch() {
+        Path fileName = credentialsFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Provider was closed
+        }
+    }
+
+    private static final class CachedCredentials {
+        private final AwsCredentials credentials;
+        private final long lastModified;
+        private final long size;
+
+        private CachedCredentials(AwsCredentials credentials, long lastModified, long size) {
+            this.credentials = credentials;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
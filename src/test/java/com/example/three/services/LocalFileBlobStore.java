@@ -0,0 +1,67 @@
+package com.example.three.services;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link BlobStore} on the local filesystem, for offline runs where publisher and consumer share a machine.
+ * References are file URIs, so a consumer in another process on the same machine can resolve them too.
+ */
+public class LocalFileBlobStore implements BlobStore {
+    private final Path directory;
+
+    /**
+     * Creates a store in a directory, which is created on first use
+     *
+     * @param directory The directory holding the payload files
+     */
+    public LocalFileBlobStore(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String put(String key, byte[] data) throws IOException {
+        if (!key.matches("[A-Za-z0-9_.-]+") || key.startsWith(".")) {
+            throw new IOException("Invalid blob key: " + key);
+        }
+        Files.createDirectories(directory);
+
+        // Written to a temp file and renamed, so a consumer never reads a half-written payload
+        Path target = directory.resolve(key);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target.toUri().toString();
+    }
+
+    @Override
+    public byte[] get(String reference) throws IOException {
+        return Files.readAllBytes(resolve(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    private Path resolve(String reference) throws IOException {
+        Path path;
+        try {
+            path = Paths.get(URI.create(reference)).normalize();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid blob reference: " + reference, e);
+        }
+        if (!path.startsWith(directory)) {
+            throw new IOException("Blob reference " + reference + " is outside " + directory);
+        }
+        return path;
+    }
+}
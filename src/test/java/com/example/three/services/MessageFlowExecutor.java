@@ -0,0 +1,198 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sqs.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs large numbers of send-and-verify flows concurrently without a thread per flow.
+ *
+ * A flow registers its message with the queue's {@link SqsMessageCorrelator} and publishes it on a bounded pool
+ * of publish threads. The wait for the message is chained onto the correlator's future, so no thread is held
+ * while a flow waits and tens of thousands of flows can be in flight at once. Receiving is done by the
+ * correlator's pollers, which scale with the number of waiting flows; a semaphore caps the number of
+ * concurrent ReceiveMessage calls. The publish pool is sized so publishes never wait longer for a pooled
+ * HTTP connection than the client's acquisition timeout.
+ */
+public class MessageFlowExecutor implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MessageFlowExecutor.class);
+
+    private static final int MAX_CONCURRENT_PUBLISHES = 200; // Connection pool size of the shared HTTP client
+
+    private final MessagingService messagingService;
+    private final ExecutorService publishExecutor;
+    private final Semaphore receivePermits;
+    private final SqsMessageCorrelator correlator;
+    private final SqsMessageCorrelator.ReceiveConcurrency previousConcurrency;
+    private final Set<CompletableFuture<FlowResult>> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an executor for flows through the service's topic and queue.
+     * The receive concurrency of the queue's correlator is changed until {@link #close()}.
+     *
+     * @param messagingService An initialized messaging service
+     * @param maxConcurrentReceives Maximum number of ReceiveMessage calls in flight at once
+     */
+    public MessageFlowExecutor(MessagingService messagingService, int maxConcurrentReceives) {
+        this.messagingService = messagingService;
+        this.receivePermits = new Semaphore(maxConcurrentReceives);
+        this.correlator = messagingService.getMessageCorrelator();
+        this.previousConcurrency = correlator.setReceiveConcurrency(maxConcurrentReceives, receivePermits);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.publishExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_PUBLISHES, runnable -> {
+            Thread thread = new Thread(runnable, "message-flow-publish-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits one flow: publish the JSON file with a fresh messageId, then wait for it to arrive in SQS
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @param timeout Maximum time from the start of the flow until the message must have arrived
+     * @return A future completed with the flow's result; it never completes exceptionally
+     */
+    public CompletableFuture<FlowResult> submit(String jsonFilePath, Duration timeout) {
+        String appMessageId = UUID.randomUUID().toString();
+        long submitted = System.nanoTime();
+        CompletableFuture<FlowResult> flow = CompletableFuture
+                .supplyAsync(() -> runFlow(appMessageId, jsonFilePath, timeout), publishExecutor)
+                .thenCompose(Function.identity())
+                .handle((result, error) -> {
+                    // Whatever else happened, the flow no longer waits for its message
+                    if (result == null || !result.isFound()) {
+                        correlator.unregister(appMessageId);
+                    }
+                    return result != null ? result
+                            : new FlowResult(appMessageId, false, false, elapsedSince(submitted), null, String.valueOf(error));
+                });
+        inFlight.add(flow);
+        flow.whenComplete((result, error) -> inFlight.remove(flow));
+        return flow;
+    }
+
+    /**
+     * Submits many flows at once
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @param count Number of flows
+     * @param timeout Maximum time per flow, counted from the start of each flow
+     * @return The futures of the flows, in submission order
+     */
+    public List<CompletableFuture<FlowResult>> submitAll(String jsonFilePath, int count, Duration timeout) {
+        List<CompletableFuture<FlowResult>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(submit(jsonFilePath, timeout));
+        }
+        return futures;
+    }
+
+    /**
+     * Runs many flows and waits for all of them
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @param count Number of flows
+     * @param timeout Maximum time per flow, counted from the start of each flow
+     * @return The results, in submission order
+     */
+    public List<FlowResult> runAll(String jsonFilePath, int count, Duration timeout) {
+        return collect(submitAll(jsonFilePath, count, timeout));
+    }
+
+    /**
+     * Waits for submitted flows and collects their results
+     *
+     * @param futures Futures returned by {@link #submit} or {@link #submitAll}
+     * @return The results, in the order of the futures
+     */
+    public static List<FlowResult> collect(List<CompletableFuture<FlowResult>> futures) {
+        List<FlowResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<FlowResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Publishes the flow's message on a publish thread; the returned future completes on the correlator's poller
+     */
+    private CompletableFuture<FlowResult> runFlow(String appMessageId, String jsonFilePath, Duration timeout) {
+        long start = System.nanoTime();
+
+        // Registered before publishing, so a fast delivery cannot be missed
+        CompletableFuture<Message> pending = correlator.register(appMessageId);
+        try {
+            messagingService.publishMessage(appMessageId, jsonFilePath);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.completedFuture(
+                    new FlowResult(appMessageId, false, false, elapsedSince(start), null, e.getMessage()));
+        }
+
+        long remaining = Math.max(0, start + timeout.toNanos() - System.nanoTime());
+        return pending.orTimeout(remaining, TimeUnit.NANOSECONDS)
+                .handle((message, error) -> received(appMessageId, start, message, error));
+    }
+
+    private FlowResult received(String appMessageId, long start, Message message, Throwable error) {
+        if (error instanceof CompletionException) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            return new FlowResult(appMessageId, true, false, elapsedSince(start), null, null);
+        }
+        if (error != null) {
+            return new FlowResult(appMessageId, true, false, elapsedSince(start), null, String.valueOf(error));
+        }
+        try {
+            PropagationLatency latency = PropagationLatency.of(message, Instant.now());
+            PropagationLatencyStats.forRun().record(latency);
+            messagingService.getDeleteCoalescer().delete(message.receiptHandle());
+            return new FlowResult(appMessageId, true, true, elapsedSince(start), latency, null);
+        } catch (RuntimeException e) {
+            return new FlowResult(appMessageId, true, false, elapsedSince(start), null, String.valueOf(e));
+        }
+    }
+
+    private static Duration elapsedSince(long start) {
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Stops accepting flows, waits for the running ones to finish and restores the correlator's receive concurrency
+     */
+    @Override
+    public void close() {
+        publishExecutor.shutdown();
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.warn("{} message flows still running at close", inFlight.size());
+        }
+        publishExecutor.shutdownNow();
+        correlator.restoreReceiveConcurrency(receivePermits, previousConcurrency);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.three.services;
+
+import com.example.three.utils.PayloadTemplate;
+
+/**
+ * Chooses the MessageGroupId of a message published to a FIFO topic.
+ *
+ * SNS and SQS FIFO only order messages within a group, and a group is delivered to one consumer at a time.
+ * Throughput therefore scales with the number of distinct groups: a single group is one serialized stream.
+ */
+@FunctionalInterface
+public interface MessageGroupKeyExtractor {
+
+    /**
+     * Gets the group of a message
+     *
+     * @param payload The payload the message is rendered from
+     * @param appMessageId The application-specific message ID of the message
+     * @return The MessageGroupId (max 128 characters)
+     */
+    String groupKey(PayloadTemplate payload, String appMessageId);
+
+    /**
+     * Groups by a payload field, so that e.g. all events of one order stay in order
+     *
+     * @param dottedPath The field path, e.g. "data.orderId"
+     * @return An extractor that fails for payloads without the field
+     */
+    static MessageGroupKeyExtractor field(String dottedPath) {
+        return (payload, appMessageId) -> {
+            String key = payload.optPath(dottedPath);
+            if (key == null || key.isEmpty()) {
+                throw new IllegalArgumentException("Payload has no value at " + dottedPath + " to use as MessageGroupId");
+            }
+            return key;
+        };
+    }
+
+    /**
+     * Spreads messages evenly over a fixed number of groups by hashing their application message ID.
+     * Useful for payloads without a natural key, e.g. when the same JSON file is published many times.
+     *
+     * @param groups Number of groups
+     * @return An extractor returning "group-0" to "group-(groups-1)"
+     */
+    static MessageGroupKeyExtractor spread(int groups) {
+        if (groups < 1) {
+            throw new IllegalArgumentException("groups must be at least 1");
+        }
+        return (payload, appMessageId) -> "group-" + Math.floorMod(appMessageId.hashCode(), groups);
+    }
+}
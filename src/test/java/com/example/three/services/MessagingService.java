@@ -2,36 +2,78 @@ package com.example.three.services;
 
 // SDK v2 Imports
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
 import software.amazon.awssdk.services.sqs.model.Message;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import com.example.three.utils.PayloadTemplate;
+import com.example.three.utils.SnsEnvelopeScanner;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.net.URI;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service class for AWS SNS/SQS messaging operations (AWS SDK v2)
  */
 public class MessagingService {
+    // Per-message lines are logged at debug level; raise com.example.three to debug in simplelogger.properties to see them
+    private static final Logger LOG = LoggerFactory.getLogger(MessagingService.class);
+
+    private static final int MAX_LONG_POLL_SECONDS = 20;
+    private static final long BASE_EMPTY_RECEIVE_BACKOFF_MILLIS = 50;
+    private static final long MAX_EMPTY_RECEIVE_BACKOFF_MILLIS = 1000;
+    private static final Duration DELETE_LINGER = Duration.ofMillis(20);
+    private static final String MESSAGE_ID_FIELD = "messageId";
+    private static final int DEFAULT_FIFO_GROUPS = 10;
+    private static final int DEFAULT_COMPRESS_THRESHOLD_BYTES = 64 * 1024;
+    private static final int DEFAULT_OFFLOAD_THRESHOLD_BYTES = 200 * 1024;
+
     private final String snsTopicArn;
-    private final String sqsQueueUrl;
+    private String sqsQueueUrl; // The run queue once initialized with a run ID
     private final Region region; // Changed from Regions to Region
     private SnsClient snsClient; // Changed from AmazonSNS to SnsClient
     private SqsClient sqsClient; // Changed from AmazonSQS to SqsClient
-    private final String awsAccessKey;
-    private final String awsSecretKey;
-    private final String awsSessionToken;
+    private AwsClientRegistry.Lease<SnsClient> snsLease;
+    private AwsClientRegistry.Lease<SqsClient> sqsLease;
+    private SqsDeleteCoalescer deleteCoalescer;
+    private final AwsCredentialsProvider credentialsProvider;
+    private final Object credentialsIdentity;
+    private boolean releaseUnmatchedMessages;
+    private URI endpointOverride;
+    private MessageGroupKeyExtractor messageGroupKeyExtractor = MessageGroupKeyExtractor.spread(DEFAULT_FIFO_GROUPS);
+    private boolean visibilityHeartbeat = true;
+    private AdaptiveRateLimiter.Settings rateLimit;
+    private String runId;
+    private PayloadCodec payloadCodec = new PayloadCodec(DEFAULT_COMPRESS_THRESHOLD_BYTES, DEFAULT_OFFLOAD_THRESHOLD_BYTES,
+            new LocalFileBlobStore(Paths.get("build", "claim-check")));
 
     /**
      * Creates a new MessagingService with the specified AWS resource identifiers and session credentials
@@ -48,9 +90,127 @@ public class MessagingService {
         this.snsTopicArn = snsTopicArn;
         this.sqsQueueUrl = sqsQueueUrl;
         this.region = region;
-        this.awsAccessKey = awsAccessKey;
-        this.awsSecretKey = awsSecretKey;
-        this.awsSessionToken = awsSessionToken;
+        // Static keys never refresh; prefer the credentials provider constructor for long runs
+        AwsCredentials credentials = awsSessionToken != null
+                ? AwsSessionCredentials.create(awsAccessKey, awsSecretKey, awsSessionToken)
+                : AwsBasicCredentials.create(awsAccessKey, awsSecretKey);
+        this.credentialsProvider = StaticCredentialsProvider.create(credentials);
+        this.credentialsIdentity = AwsClientRegistry.credentialsIdentity(credentials);
+    }
+
+    /**
+     * Creates a new MessagingService that resolves credentials through a provider. The SDK clients ask the
+     * provider for credentials on every request, so refreshed session tokens are picked up without rebuilding them.
+     *
+     * @param snsTopicArn ARN of the SNS topic to publish to
+     * @param sqsQueueUrl URL of the SQS queue to receive messages from
+     * @param region AWS region where the resources are located
+     * @param credentialsProvider Provider of the AWS credentials, e.g. {@link AwsCredentialService#getCredentialsProvider()}
+     */
+    public MessagingService(String snsTopicArn, String sqsQueueUrl, Region region,
+                            AwsCredentialsProvider credentialsProvider) {
+        this.snsTopicArn = snsTopicArn;
+        this.sqsQueueUrl = sqsQueueUrl;
+        this.region = region;
+        this.credentialsProvider = credentialsProvider;
+        this.credentialsIdentity = AwsClientRegistry.credentialsIdentity(credentialsProvider);
+    }
+
+    /**
+     * Enables or disables release mode for verification. In release mode, received messages that are not the
+     * one being verified are handed back to the queue immediately (visibility timeout 0, batched per receive)
+     * instead of staying invisible for the queue's visibility timeout.
+     *
+     * @param releaseUnmatchedMessages true to release unmatched messages immediately
+     */
+    public void setReleaseUnmatchedMessages(boolean releaseUnmatchedMessages) {
+        this.releaseUnmatchedMessages = releaseUnmatchedMessages;
+    }
+
+    /**
+     * Points both clients at another endpoint, e.g. the in-process SNS/SQS emulator. Must be called before
+     * {@link #initialize()}.
+     *
+     * @param endpointOverride The endpoint URI, or null for the regional AWS endpoints
+     */
+    public void setEndpointOverride(URI endpointOverride) {
+        this.endpointOverride = endpointOverride;
+    }
+
+    /**
+     * Sets how messages published to a FIFO topic are assigned to message groups. Ordering is only kept
+     * within a group, and throughput grows with the number of groups. By default messages are spread
+     * over 10 groups by their application message ID. Ignored for standard topics.
+     *
+     * @param messageGroupKeyExtractor The group key extractor, e.g. {@link MessageGroupKeyExtractor#field(String)}
+     */
+    public void setMessageGroupKeyExtractor(MessageGroupKeyExtractor messageGroupKeyExtractor) {
+        this.messageGroupKeyExtractor = messageGroupKeyExtractor;
+    }
+
+    /**
+     * Enables or disables the visibility heartbeat. When enabled, messages held by the shared consumer, the
+     * receive stream or the FIFO verifier are kept invisible by a {@link VisibilityLeaseManager} until they
+     * are deleted or released, so slow processing does not cause redeliveries. Must be called before
+     * {@link #initialize()}.
+     *
+     * @param visibilityHeartbeat true to extend the visibility of in-flight messages, the default
+     */
+    public void setVisibilityHeartbeat(boolean visibilityHeartbeat) {
+        this.visibilityHeartbeat = visibilityHeartbeat;
+    }
+
+    /**
+     * Enables an {@link AdaptiveRateLimiter} for the topic and the queue. Every publish then takes one permit per
+     * message and every receive one permit per call, and the rate follows the throttling SNS and SQS report.
+     * Must be called before {@link #initialize()}; a topic or queue that already has a limiter keeps it.
+     *
+     * @param rateLimit The rates, e.g. {@link AdaptiveRateLimiter.Settings#fromConfig()}, or null for no limit, the default
+     */
+    public void setAdaptiveRateLimit(AdaptiveRateLimiter.Settings rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Isolates the run from other runs on the same topic: publishes carry the run ID as the
+     * {@value RunIsolation#RUN_ID_ATTRIBUTE} message attribute, and messages are received from a queue of the run
+     * that only gets the run's own messages, see {@link RunIsolation}. Must be called before {@link #initialize()}.
+     *
+     * @param runId The run ID, e.g. {@link com.example.three.utils.AwsConfigUtility#getRunId()}, or null to use the configured queue, the default
+     */
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    /**
+     * @return URL of the queue messages are received from; the run queue if the service has a run ID
+     */
+    public String getQueueUrl() {
+        return sqsQueueUrl;
+    }
+
+    /**
+     * Sets how large payloads are published. By default payloads above 64 KB are gzipped and payloads above
+     * 200 KB are stored under build/claim-check and sent by reference, so they stay below the 256 KB SNS limit.
+     *
+     * @param payloadCodec The payload codec, e.g. {@link PayloadCodec#inline()} to always send payloads unchanged
+     */
+    public void setPayloadCodec(PayloadCodec payloadCodec) {
+        this.payloadCodec = payloadCodec;
+    }
+
+    /**
+     * @return The payload codec, to decode messages received outside of this service
+     */
+    public PayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * @return true if the topic is a FIFO topic, so publishes carry a MessageGroupId and MessageDeduplicationId
+     */
+    public boolean isFifo() {
+        return FifoMessageKeys.isFifo(snsTopicArn);
     }
 
     /**
@@ -59,22 +219,34 @@ public class MessagingService {
      * @throws IOException if the credentials cannot be loaded
      */
     public void initialize() throws IOException { // IOException might not be necessary if not loading from file
-        AwsSessionCredentials credentials = AwsSessionCredentials.create(awsAccessKey, awsSecretKey, awsSessionToken);
-        StaticCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(credentials);
+        // Shared, reference-counted clients: every service for the same account and region reuses them
+        AwsClientRegistry registry = AwsClientRegistry.getInstance();
+        this.snsLease = registry.acquireSnsClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        this.sqsLease = registry.acquireSqsClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        this.snsClient = snsLease.client();
+        this.sqsClient = sqsLease.client();
+
+        // Shared by all services of the run; created on first use and removed by RunIsolation.closeAll()
+        if (runId != null) {
+            this.sqsQueueUrl = RunIsolation.forRun(region, credentialsProvider, credentialsIdentity, endpointOverride,
+                    snsTopicArn, sqsQueueUrl, runId).getQueueUrl();
+        }
 
-        // Initialize SNS client (SDK v2)
-        this.snsClient = SnsClient.builder()
-                .region(region)
-                .credentialsProvider(credentialsProvider)
-                .build();
+        // Matched messages are deleted in batches of up to 10
+        this.deleteCoalescer = new SqsDeleteCoalescer(sqsClient, sqsQueueUrl, DELETE_LINGER);
 
-        // Initialize SQS client (SDK v2)
-        this.sqsClient = SqsClient.builder()
-                .region(region)
-                .credentialsProvider(credentialsProvider)
-                .build();
+        // Shared per queue; reads the queue's visibility timeout the first time
+        if (visibilityHeartbeat) {
+            VisibilityLeaseManager.forQueue(sqsClient, sqsQueueUrl);
+        }
 
-        System.out.println("AWS SDK v2 SNS and SQS clients initialized successfully");
+        // Shared per topic and queue, like the clients
+        if (rateLimit != null) {
+            AdaptiveRateLimiter.forKey(snsTopicArn, rateLimit);
+            AdaptiveRateLimiter.forKey(sqsQueueUrl, rateLimit);
+        }
+
+        LOG.info("AWS SDK v2 SNS and SQS clients initialized successfully");
     }
 
     /**
@@ -85,27 +257,184 @@ public class MessagingService {
      * @throws IOException if the JSON file cannot be read
      */
     public String sendMessageFromJsonFile(String jsonFilePath) throws IOException {
-        // Read the JSON file
-        String jsonContent = new String(Files.readAllBytes(Paths.get(jsonFilePath)));
-
         // Add a unique ID for tracking
-        JSONObject jsonObject = new JSONObject(jsonContent);
         String messageId = UUID.randomUUID().toString(); // Application-specific ID
-        jsonObject.put("messageId", messageId);
+
+        String snsMessageId = publishMessage(messageId, jsonFilePath);
+
+        LOG.debug("Message sent to SNS with custom app ID: {}, SNS Message ID: {}", messageId, snsMessageId);
+
+        return messageId; // Return your custom application-level messageId
+    }
+
+    /**
+     * Publishes the JSON file with a caller-chosen application message ID, without logging.
+     * Meant for callers that register for the message before publishing it, like the load generator.
+     *
+     * @param appMessageId The application-specific message ID to put into the payload
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @return The SNS message ID
+     * @throws IOException if the JSON file cannot be read
+     */
+    public String publishMessage(String appMessageId, String jsonFilePath) throws IOException {
+        // The JSON file is parsed once and cached as a template with a slot for the messageId
+        PayloadTemplate template = PayloadTemplate.forFile(jsonFilePath, MESSAGE_ID_FIELD);
+
+        String message = template.render(appMessageId);
+        // Large payloads are gzipped or offloaded, the messageId stays readable for the verifiers
+        PayloadCodec.Encoded encoded = payloadCodec.encode(appMessageId, message);
 
         // Send the message to SNS (SDK v2)
-        String jsonMessage = jsonObject.toString();
-        PublishRequest publishRequest = PublishRequest.builder()
+        PublishRequest.Builder publishRequest = PublishRequest.builder()
                 .topicArn(snsTopicArn)
-                .message(jsonMessage)
-                .build();
+                .message(encoded.getBody())
+                .messageAttributes(encoded.attributes(publishAttributes())); // For the latency breakdown and run isolation
+        if (isFifo()) {
+            // Deduplicated on the original payload, the claim check reference is different on every publish
+            String messageGroupId = messageGroupKeyExtractor.groupKey(template, appMessageId);
+            publishRequest.messageGroupId(messageGroupId)
+                    .messageDeduplicationId(FifoMessageKeys.deduplicationId(messageGroupId, message));
+        }
 
-        PublishResponse publishResult = snsClient.publish(publishRequest);
+        AdaptiveRateLimiter.acquire(snsTopicArn, 1);
+        PublishResponse publishResult = snsClient.publish(publishRequest.build());
+        return publishResult.messageId(); // SDK v2 uses messageId()
+    }
 
-        System.out.println("Message sent to SNS with custom app ID: " + messageId);
-        System.out.println("SNS Message ID: " + publishResult.messageId()); // SDK v2 uses messageId()
+    /**
+     * Sends the JSON file as {@code count} separate messages using PublishBatch (AWS SDK v2).
+     * Payloads that fail to encode are recorded as failures of the outcome.
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @param count Number of messages to send
+     * @return The outcome of the batch, keyed by the generated application message IDs
+     * @throws IOException if the JSON file cannot be read
+     */
+    public BatchPublishOutcome sendMessagesFromJsonFile(String jsonFilePath, int count) throws IOException {
+        PayloadTemplate template = PayloadTemplate.forFile(jsonFilePath, MESSAGE_ID_FIELD);
+        return publishBatched(Collections.nCopies(count, template));
+    }
 
-        return messageId; // Return your custom application-level messageId
+    /**
+     * Sends several JSON payloads to the SNS topic, grouped into PublishBatch requests of up to 10 entries
+     * that stay below the 256 KB batch size limit. Each payload gets its own application message ID.
+     *
+     * @param jsonPayloads JSON payloads to send
+     * @return The outcome of the batch, keyed by the generated application message IDs
+     */
+    public BatchPublishOutcome sendMessages(List<String> jsonPayloads) {
+        List<PayloadTemplate> templates = new ArrayList<>(jsonPayloads.size());
+        for (String jsonPayload : jsonPayloads) {
+            templates.add(PayloadTemplate.compile(jsonPayload, MESSAGE_ID_FIELD));
+        }
+        return publishBatched(templates);
+    }
+
+    private BatchPublishOutcome publishBatched(List<PayloadTemplate> templates) {
+        Map<String, CompletableFuture<String>> results = new LinkedHashMap<>();
+        Map<String, String> messageGroupIds = new HashMap<>();
+
+        // No linger: batches are sent as soon as they fill up, the remainder is sent on close.
+        // Everything is added from this thread, so FIFO groups are published in list order.
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, snsTopicArn, Duration.ZERO)) {
+            for (PayloadTemplate template : templates) {
+                String messageId = UUID.randomUUID().toString(); // Application-specific ID, also used as batch entry ID
+                String messageGroupId = messageGroupId(template, messageId);
+                if (messageGroupId != null) {
+                    messageGroupIds.put(messageId, messageGroupId);
+                }
+                results.put(messageId, publishToBatcher(batcher, messageId, template, messageGroupId));
+            }
+        }
+
+        BatchPublishOutcome outcome = new BatchPublishOutcome();
+        for (Map.Entry<String, CompletableFuture<String>> result : results.entrySet()) {
+            try {
+                outcome.recordSuccess(result.getKey(), result.getValue().join(), messageGroupIds.get(result.getKey()));
+            } catch (CompletionException e) {
+                outcome.recordFailure(result.getKey(), e.getCause().getMessage());
+            }
+        }
+
+        LOG.info("Batch sent to SNS: {} published, {} failed", outcome.getPublishedMessageIds().size(),
+                outcome.getFailures().size());
+        return outcome;
+    }
+
+    /**
+     * Gets the MessageGroupId a message is published with
+     *
+     * @param template The payload the message is rendered from
+     * @param appMessageId The application-specific message ID of the message
+     * @return The MessageGroupId, or null for a standard topic
+     * @throws IllegalArgumentException if the payload has no value for the group key
+     */
+    public String messageGroupId(PayloadTemplate template, String appMessageId) {
+        return isFifo() ? messageGroupKeyExtractor.groupKey(template, appMessageId) : null;
+    }
+
+    /**
+     * Queues one message on a batcher of this service's topic, encoded like every other publish.
+     * For a FIFO topic, messages of one group are published in order as long as they are queued from one thread.
+     *
+     * @param batcher A batcher from {@link #newPublishBatcher(Duration)}
+     * @param appMessageId The application-specific message ID to put into the payload, also the batch entry ID
+     * @param template The payload, with a slot for the messageId
+     * @param messageGroupId The group from {@link #messageGroupId(PayloadTemplate, String)}
+     * @return A future completed with the SNS message ID, or exceptionally if encoding or publishing failed
+     */
+    public CompletableFuture<String> publishToBatcher(SnsPublishBatcher batcher, String appMessageId,
+                                                      PayloadTemplate template, String messageGroupId) {
+        String message = template.render(appMessageId);
+        PayloadCodec.Encoded encoded;
+        try {
+            encoded = payloadCodec.encode(appMessageId, message);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // Deduplicated on the original payload, the claim check reference is different on every publish
+        String deduplicationId = messageGroupId == null ? null : FifoMessageKeys.deduplicationId(messageGroupId, message);
+        return batcher.add(appMessageId, encoded.getBody(),
+                encoded.attributes(publishAttributes()), messageGroupId, deduplicationId);
+    }
+
+    private Map<String, MessageAttributeValue> publishAttributes() {
+        Map<String, MessageAttributeValue> attributes = PropagationLatency.publishTimestampAttributes();
+        if (runId == null) {
+            return attributes;
+        }
+        attributes = new HashMap<>(attributes);
+        attributes.put(RunIsolation.RUN_ID_ATTRIBUTE, MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue(runId)
+                .build());
+        return attributes;
+    }
+
+    /**
+     * Creates an auto-flushing publish accumulator for the configured topic. Entries are sent as PublishBatch
+     * requests when 10 are pending, when the batch would exceed 256 KB, or after the linger time.
+     * The caller must close the batcher to send the remaining entries.
+     *
+     * @param linger Maximum time an entry waits for its batch to fill up
+     * @return A new batcher bound to the SNS topic
+     */
+    public SnsPublishBatcher newPublishBatcher(Duration linger) {
+        return new SnsPublishBatcher(snsClient, snsTopicArn, linger);
+    }
+
+    /**
+     * Creates a reactive stream of the messages of the SQS queue. Each subscriber gets its own prefetch buffer
+     * filled by concurrent long polls that follow its demand. Messages are deleted in batches once the
+     * subscriber's onNext returns; undelivered messages are released when the subscription ends.
+     * The caller must close the publisher to complete the subscriptions.
+     *
+     * @param prefetch Maximum number of received messages buffered per subscription
+     * @param maxConcurrentPolls Maximum number of concurrent long polls per subscription
+     * @return A new publisher bound to the SQS queue
+     */
+    public SqsMessagePublisher newReceivePublisher(int prefetch, int maxConcurrentPolls) {
+        return new SqsMessagePublisher(sqsClient, sqsQueueUrl, deleteCoalescer, prefetch, maxConcurrentPolls);
     }
 
     /**
@@ -115,75 +444,276 @@ public class MessagingService {
      * @param waitTimeSeconds Time to wait for message propagation before first check
      * @param maxAttempts Maximum number of attempts to check the queue
      * @param delayBetweenAttempts Delay in milliseconds between check attempts
-     * @return true if the message is found and deleted, false otherwise
+     * @return true if the message is found (it is then queued for deletion), false otherwise
      * @throws InterruptedException if the thread is interrupted while sleeping
      */
     public boolean checkMessageInSqs(String appMessageId, int waitTimeSeconds, int maxAttempts, int delayBetweenAttempts)
             throws InterruptedException {
         // Wait for the message to propagate to SQS
-        System.out.println("Waiting " + waitTimeSeconds + " seconds for message to propagate to SQS...");
+        LOG.debug("Waiting {} seconds for message to propagate to SQS...", waitTimeSeconds);
         Thread.sleep(waitTimeSeconds * 1000L);
 
         boolean messageFound = false;
 
         // Try multiple times to find the message, with delays between attempts
         for (int attempt = 0; attempt < maxAttempts && !messageFound; attempt++) {
-            System.out.println("Checking SQS queue, attempt " + (attempt + 1) + " of " + maxAttempts);
+            LOG.debug("Checking SQS queue, attempt {} of {}", attempt + 1, maxAttempts);
 
             // Create a request to receive messages from the SQS queue (SDK v2)
             ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
                     .queueUrl(sqsQueueUrl)
                     .maxNumberOfMessages(10)  // Receive up to 10 messages at once
                     .waitTimeSeconds(5)       // Wait up to 5 seconds for messages (long polling)
+                    .messageAttributeNames(PropagationLatency.PUBLISH_TIMESTAMP_ATTRIBUTE) // Raw delivery
+                    .messageSystemAttributeNames(PropagationLatency.SYSTEM_ATTRIBUTES)
                     .build();
 
             // Receive messages from the SQS queue (SDK v2)
+            AdaptiveRateLimiter.acquire(sqsQueueUrl, 1);
             List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
-            System.out.println("Received " + messages.size() + " messages");
+            Instant receivedAt = Instant.now();
+            LOG.debug("Received {} messages", messages.size());
+
+            // Messages that belong to someone else, released at the end of this receive in release mode
+            List<Message> unmatched = new ArrayList<>();
 
             // Process each received message
             for (Message message : messages) {
-                // Parse the message body as JSON
-                String messageBody = message.body();
+                if (messageFound) {
+                    unmatched.add(message); // Not inspected, the message we wanted was already found
+                    continue;
+                }
 
-                // The message from SNS is wrapped in another JSON object
-                // We need to extract the actual message from the "Message" field
-                JSONObject snsWrapper = new JSONObject(messageBody);
-                String actualMessageContent = snsWrapper.getString("Message"); // SNS wraps the original message
+                String messageBody = message.body();
 
-                // Parse the actual message as JSON
-                JSONObject messageJson = new JSONObject(actualMessageContent);
+                // Check if this is the message we're looking for using the application-specific ID.
+                // The scanner reads the ID straight out of the SNS wrapper (or a raw delivery body) without parsing it.
+                if (SnsEnvelopeScanner.matches(messageBody, MESSAGE_ID_FIELD, appMessageId)) {
+                    // Only the matching message is fully parsed, and decoded if it was compressed or offloaded
+                    LOG.debug("Found message with custom app ID: {}", appMessageId);
+                    if (LOG.isDebugEnabled()) { // Decoding is only worth it for the log line
+                        try {
+                            JSONObject messageJson = payloadCodec.decode(message);
+                            LOG.debug("Message content: {}", messageJson);
+                        } catch (IOException e) {
+                            LOG.debug("Message content could not be decoded: {}", e.getMessage());
+                        }
+                    }
 
-                // Check if this is the message we're looking for using the application-specific ID
-                if (appMessageId.equals(messageJson.optString("messageId"))) { // Use optString for safety
-                    System.out.println("Found message with custom app ID: " + appMessageId);
-                    System.out.println("Message content: " + messageJson.toString());
+                    PropagationLatency latency = PropagationLatency.of(message, receivedAt);
+                    PropagationLatencyStats.forRun().record(latency);
+                    LOG.debug("Propagation latency: {}", latency);
 
-                    // Delete the message from the SQS queue (SDK v2)
-                    DeleteMessageRequest deleteRequest = DeleteMessageRequest.builder()
-                            .queueUrl(sqsQueueUrl)
-                            .receiptHandle(message.receiptHandle())
-                            .build();
-                    sqsClient.deleteMessage(deleteRequest);
-                    System.out.println("Message deleted from SQS.");
+                    // Queue the message for a batched delete, off the verification path
+                    deleteCoalescer.delete(message.receiptHandle());
 
                     messageFound = true;
-                    break; // Exit the inner loop once the message is found
+                } else {
+                    unmatched.add(message);
                 }
             }
 
+            if (releaseUnmatchedMessages && !unmatched.isEmpty()) {
+                int released = SqsVisibilityReleaser.releaseMessages(sqsClient, sqsQueueUrl, unmatched);
+                LOG.debug("Released {} unmatched messages back to the queue", released);
+            }
+
             if (!messageFound && attempt < maxAttempts - 1) {
-                System.out.println("Message not found, waiting " + delayBetweenAttempts + " seconds before next attempt...");
+                LOG.debug("Message not found, waiting {} seconds before next attempt...", delayBetweenAttempts);
                 Thread.sleep(delayBetweenAttempts * 1000);
             }
         }
         
         if (messageFound) {
-            System.out.println("Message verification successful");
+            LOG.debug("Message verification successful");
         } else {
-            System.out.println("Message verification failed after " + maxAttempts + " attempts");
+            LOG.warn("Message verification failed after {} attempts", maxAttempts);
         }
         
         return messageFound;
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifies that a message with a specific application ID arrives in the SQS queue before a deadline.
+     *
+     * Long polling starts immediately, and the method returns as soon as the message is received. Only empty
+     * receives are followed by a pause, which grows exponentially with full jitter and never passes the deadline.
+     *
+     * @param appMessageId The application-specific message ID to look for
+     * @param timeout Overall time allowed for the message to arrive
+     * @return The verification result, including how long it took
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public VerificationResult verifyMessage(String appMessageId, Duration timeout) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        int receiveCalls = 0;
+        int emptyReceives = 0;
+
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            // Never long poll past the deadline; below one second this becomes a short poll
+            int waitTimeSeconds = (int) Math.min(MAX_LONG_POLL_SECONDS, TimeUnit.NANOSECONDS.toSeconds(remaining));
+
+            ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                    .queueUrl(sqsQueueUrl)
+                    .maxNumberOfMessages(10)
+                    .waitTimeSeconds(waitTimeSeconds)
+                    .messageAttributeNames("All")
+                    .messageSystemAttributeNames(PropagationLatency.SYSTEM_ATTRIBUTES)
+                    .build();
+
+            AdaptiveRateLimiter.acquire(sqsQueueUrl, 1);
+            List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
+            Instant receivedAt = Instant.now();
+            receiveCalls++;
+
+            if (messages.isEmpty()) {
+                emptyReceives++;
+                long backoffMillis = ThreadLocalRandom.current().nextLong(
+                        Math.min(MAX_EMPTY_RECEIVE_BACKOFF_MILLIS, BASE_EMPTY_RECEIVE_BACKOFF_MILLIS << Math.min(emptyReceives, 10)) + 1);
+                long sleepMillis = Math.min(backoffMillis, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                if (sleepMillis > 0) {
+                    Thread.sleep(sleepMillis);
+                }
+                continue;
+            }
+
+            Message found = null;
+            List<Message> unmatched = new ArrayList<>();
+            for (Message message : messages) {
+                if (found == null && SnsEnvelopeScanner.matches(message.body(), MESSAGE_ID_FIELD, appMessageId)) {
+                    found = message;
+                } else {
+                    unmatched.add(message);
+                }
+            }
+
+            if (releaseUnmatchedMessages && !unmatched.isEmpty()) {
+                SqsVisibilityReleaser.releaseMessages(sqsClient, sqsQueueUrl, unmatched);
+            }
+
+            if (found != null) {
+                deleteCoalescer.delete(found.receiptHandle());
+
+                PropagationLatency latency = PropagationLatency.of(found, receivedAt);
+                PropagationLatencyStats.forRun().record(latency);
+
+                JSONObject payload = null;
+                try {
+                    payload = payloadCodec.decode(found);
+                } catch (IOException e) {
+                    LOG.warn("Payload of {} could not be decoded: {}", appMessageId, e.getMessage());
+                }
+
+                VerificationResult result = new VerificationResult(appMessageId, found,
+                        Duration.ofNanos(System.nanoTime() - start), receiveCalls, latency, payload);
+                LOG.debug("Message verification successful: {}", result);
+                return result;
+            }
+        }
+
+        VerificationResult result = new VerificationResult(appMessageId, null,
+                Duration.ofNanos(System.nanoTime() - start), receiveCalls, null, null);
+        LOG.warn("Message verification failed: {}", result);
+        return result;
+    }
+
+    /**
+     * Waits for a message with a specific application ID using the shared consumer of the SQS queue.
+     *
+     * Unlike {@link #checkMessageInSqs}, this does not run its own receive loop: a single background
+     * {@link SqsMessageCorrelator} per queue receives for all waiting verifiers and hands each message
+     * to the verifier that registered its ID, so parallel verifiers do not compete for the queue.
+     *
+     * @param appMessageId The application-specific message ID to look for
+     * @param timeout Maximum time to wait for the message
+     * @return true if the message is found (it is then queued for deletion), false otherwise
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitMessageInSqs(String appMessageId, Duration timeout) throws InterruptedException {
+        SqsMessageCorrelator correlator = getMessageCorrelator();
+        CompletableFuture<Message> pending = correlator.register(appMessageId);
+
+        Message message = null;
+        try {
+            message = pending.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("Message verification failed, {} not received within {}", appMessageId, timeout);
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            LOG.warn("Message verification failed for {}: {}", appMessageId,
+                    String.valueOf(e instanceof ExecutionException ? e.getCause() : e));
+            return false;
+        } finally {
+            if (message == null) {
+                correlator.unregister(appMessageId); // Also when interrupted
+            }
+        }
+
+        LOG.debug("Found message with custom app ID: {}", appMessageId);
+
+        PropagationLatency latency = PropagationLatency.of(message, Instant.now());
+        PropagationLatencyStats.forRun().record(latency);
+        LOG.debug("Propagation latency: {}", latency);
+
+        // Queue the message for a batched delete, off the verification path
+        deleteCoalescer.delete(message.receiptHandle());
+
+        return true;
+    }
+
+    /**
+     * Verifies that the messages of a FIFO batch arrive complete and in order within each message group.
+     * Groups are received and processed in parallel; see {@link FifoOrderVerifier}.
+     *
+     * @param expectedByGroup Application message IDs per group in publish order,
+     *                        e.g. {@link BatchPublishOutcome#getPublishedMessageIdsByGroup()}
+     * @param timeout Overall time allowed for all messages to arrive
+     * @return The ordering and completeness result
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public FifoVerificationResult verifyFifoOrder(Map<String, List<String>> expectedByGroup, Duration timeout)
+            throws InterruptedException {
+        FifoVerificationResult result = new FifoOrderVerifier(sqsClient, sqsQueueUrl, deleteCoalescer)
+                .verify(expectedByGroup, timeout);
+        LOG.info("FIFO verification {}: {}", result.isSuccessful() ? "successful" : "failed", result);
+        return result;
+    }
+
+    /**
+     * Gets the shared background consumer of the SQS queue, for callers that register many messages at once
+     *
+     * @return The correlator of the queue, bound to this service's client and release mode
+     */
+    public SqsMessageCorrelator getMessageCorrelator() {
+        return SqsMessageCorrelator.forQueue(sqsClient, sqsQueueUrl, releaseUnmatchedMessages);
+    }
+
+    /**
+     * Gets the delete coalescer of the SQS queue, for callers that want to wait for a delete to complete
+     *
+     * @return The delete coalescer used by this service
+     */
+    public SqsDeleteCoalescer getDeleteCoalescer() {
+        return deleteCoalescer;
+    }
+
+    /**
+     * Sends any queued deletes and releases the shared clients. Call this when the service is no longer needed.
+     */
+    public void close() {
+        if (deleteCoalescer != null) {
+            deleteCoalescer.close();
+            deleteCoalescer = null;
+        }
+        if (snsLease != null) {
+            snsLease.close();
+            snsLease = null;
+        }
+        if (sqsLease != null) {
+            sqsLease.close();
+            sqsLease = null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import com.example.three.utils.RegionTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes and verifies messages in several regions at once, e.g. the topics of an active-active setup.
+ *
+ * Every region gets its own {@link MessagingService}, with clients and a connection pool of its own from the
+ * {@link AwsClientRegistry}, and its own {@link MessageFlowExecutor}. The flows of all regions are submitted
+ * before any of them is collected, so the regions publish and verify concurrently and a check across regions
+ * takes as long as the slowest region instead of the sum of all of them.
+ */
+public class MultiRegionMessagingService implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MultiRegionMessagingService.class);
+
+    private final List<RegionTarget> targets;
+    private final AwsCredentialsProvider credentialsProvider;
+    private final int maxConcurrentReceives;
+    private final Map<RegionTarget, MessagingService> services = new LinkedHashMap<>();
+    private final Map<RegionTarget, MessageFlowExecutor> executors = new LinkedHashMap<>();
+    private URI endpointOverride;
+    private AdaptiveRateLimiter.Settings rateLimit;
+    private String runId;
+
+    /**
+     * @param targets The topic and queue of every region, e.g. {@link com.example.three.utils.AwsConfigUtility#getRegionTargets()}
+     * @param credentialsProvider Credentials used in every region
+     * @param maxConcurrentReceives Maximum number of ReceiveMessage calls in flight at once, per region
+     */
+    public MultiRegionMessagingService(List<RegionTarget> targets, AwsCredentialsProvider credentialsProvider,
+                                       int maxConcurrentReceives) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("At least one region is required");
+        }
+        this.targets = new ArrayList<>(targets);
+        this.credentialsProvider = credentialsProvider;
+        this.maxConcurrentReceives = maxConcurrentReceives;
+    }
+
+    /**
+     * Points the clients of every region at a custom endpoint, e.g. the emulator. Must be called before {@link #initialize()}.
+     *
+     * @param endpointOverride The endpoint URI, or null for the regional AWS endpoints
+     */
+    public void setEndpointOverride(URI endpointOverride) {
+        this.endpointOverride = endpointOverride;
+    }
+
+    /**
+     * Enables an {@link AdaptiveRateLimiter} for the topic and queue of every region, see
+     * {@link MessagingService#setAdaptiveRateLimit}. Must be called before {@link #initialize()}.
+     *
+     * @param rateLimit The rates, or null for no limit, the default
+     */
+    public void setAdaptiveRateLimit(AdaptiveRateLimiter.Settings rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Isolates the run in every region, see {@link MessagingService#setRunId}. Must be called before {@link #initialize()}.
+     *
+     * @param runId The run ID, or null to use the configured queues, the default
+     */
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    /**
+     * Initializes the services and flow executors of all regions
+     *
+     * @throws IOException if the credentials cannot be loaded
+     */
+    public void initialize() throws IOException {
+        try {
+            for (RegionTarget target : targets) {
+                MessagingService service = new MessagingService(target.getSnsTopicArn(), target.getSqsQueueUrl(),
+                        target.getRegion(), credentialsProvider);
+                service.setEndpointOverride(endpointOverride);
+                service.setAdaptiveRateLimit(rateLimit);
+                service.setRunId(runId);
+                services.put(target, service);
+                service.initialize();
+                executors.put(target, new MessageFlowExecutor(service, maxConcurrentReceives));
+            }
+        } catch (IOException | RuntimeException e) {
+            close(); // Releases the regions that were already initialized
+            throw e;
+        }
+        LOG.info("Multi-region messaging initialized for {}", targets);
+    }
+
+    /**
+     * Gets the service of one region, e.g. for single-region checks against it
+     *
+     * @param target One of the targets this service was created with
+     * @return The initialized service of the region
+     */
+    public MessagingService getService(RegionTarget target) {
+        return services.get(target);
+    }
+
+    /**
+     * Runs the same number of send-and-verify flows in every region, all regions at once, and waits for all of them
+     *
+     * @param jsonFilePath Path to the JSON file containing the message payload
+     * @param countPerRegion Number of flows per region
+     * @param timeout Maximum time per flow, counted from the start of each flow
+     * @return The results per region and combined
+     */
+    public MultiRegionResult runFlows(String jsonFilePath, int countPerRegion, Duration timeout) {
+        long start = System.nanoTime();
+
+        // Everything is submitted first; collecting one region never delays the flows of another
+        Map<RegionTarget, List<CompletableFuture<FlowResult>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<RegionTarget, MessageFlowExecutor> executor : executors.entrySet()) {
+            futures.put(executor.getKey(), executor.getValue().submitAll(jsonFilePath, countPerRegion, timeout));
+        }
+
+        MultiRegionResult result = new MultiRegionResult();
+        for (Map.Entry<RegionTarget, List<CompletableFuture<FlowResult>>> region : futures.entrySet()) {
+            result.record(region.getKey(), MessageFlowExecutor.collect(region.getValue()));
+        }
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+
+        LOG.info("Multi-region verification {}: {}", result.isSuccessful() ? "successful" : "failed", result.describe());
+        return result;
+    }
+
+    /**
+     * Waits for running flows and releases the services of all regions
+     */
+    @Override
+    public void close() {
+        for (MessageFlowExecutor executor : executors.values()) {
+            executor.close();
+        }
+        executors.clear();
+        for (MessagingService service : services.values()) {
+            service.close();
+        }
+        services.clear();
+    }
+}
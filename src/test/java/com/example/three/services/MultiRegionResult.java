@@ -0,0 +1,136 @@
+package com.example.three.services;
+
+import com.example.three.utils.LatencyRecorder;
+import com.example.three.utils.RegionTarget;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the flows run by a {@link MultiRegionMessagingService}: the flows and latencies of every region,
+ * and the combined result. It is successful only if every flow of every region was verified.
+ */
+public class MultiRegionResult {
+    private final Map<RegionTarget, List<FlowResult>> results = new LinkedHashMap<>();
+    private final Map<RegionTarget, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private final LatencyRecorder combinedLatency = new LatencyRecorder("all regions");
+    private Duration elapsed = Duration.ZERO;
+
+    void record(RegionTarget target, List<FlowResult> flows) {
+        LatencyRecorder latency = new LatencyRecorder(target.getRegion().id());
+        for (FlowResult flow : flows) {
+            if (flow.isFound()) {
+                latency.record(flow.getElapsed().toNanos());
+                combinedLatency.record(flow.getElapsed().toNanos());
+            }
+        }
+        latency.sampleInterval();
+        combinedLatency.sampleInterval();
+        results.put(target, flows);
+        latencies.put(target, latency);
+    }
+
+    void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return true if every flow of every region was verified
+     */
+    public boolean isSuccessful() {
+        for (RegionTarget target : results.keySet()) {
+            if (getFoundCount(target) != results.get(target).size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The regions, in the order they were configured
+     */
+    public List<RegionTarget> getRegions() {
+        return new ArrayList<>(results.keySet());
+    }
+
+    /**
+     * @param target One of the regions
+     * @return The flows of the region, in submission order
+     */
+    public List<FlowResult> getResults(RegionTarget target) {
+        return results.getOrDefault(target, Collections.emptyList());
+    }
+
+    /**
+     * @param target One of the regions
+     * @return Number of flows of the region whose message arrived before the timeout
+     */
+    public long getFoundCount(RegionTarget target) {
+        return getResults(target).stream().filter(FlowResult::isFound).count();
+    }
+
+    /**
+     * @param target One of the regions
+     * @return Publish-to-receive latencies of the verified flows of the region
+     */
+    public LatencyRecorder getLatency(RegionTarget target) {
+        return latencies.get(target);
+    }
+
+    /**
+     * @return Publish-to-receive latencies of the verified flows of all regions
+     */
+    public LatencyRecorder getCombinedLatency() {
+        return combinedLatency;
+    }
+
+    /**
+     * @return Wall-clock time of the whole check, about the time of the slowest region
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return One line per region and one for all regions, e.g. for the console
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder("Multi-region check in ").append(elapsed.toMillis()).append(" ms");
+        for (RegionTarget target : results.keySet()) {
+            description.append(System.lineSeparator()).append("  ").append(latencies.get(target).describe())
+                    .append(", verified ").append(getFoundCount(target)).append('/').append(results.get(target).size());
+        }
+        description.append(System.lineSeparator()).append("  ").append(combinedLatency.describe());
+        return description.toString();
+    }
+
+    /**
+     * @return The counts and latencies per region and combined
+     */
+    public JSONObject toJson() {
+        JSONObject regions = new JSONObject();
+        for (RegionTarget target : results.keySet()) {
+            regions.put(target.getRegion().id(), new JSONObject()
+                    .put("topicArn", target.getSnsTopicArn())
+                    .put("queueUrl", target.getSqsQueueUrl())
+                    .put("flows", results.get(target).size())
+                    .put("verified", getFoundCount(target))
+                    .put("latency", latencies.get(target).toJson()));
+        }
+        return new JSONObject()
+                .put("successful", isSuccessful())
+                .put("elapsedMillis", elapsed.toMillis())
+                .put("regions", regions)
+                .put("combinedLatency", combinedLatency.toJson());
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+}
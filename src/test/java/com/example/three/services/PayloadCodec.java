@@ -0,0 +1,205 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.Message;
+import com.example.three.utils.SnsEnvelopeScanner;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Shrinks large payloads before they are published and restores them on the consumer side.
+ *
+ * Payloads up to the compression threshold are sent unchanged. Larger ones are gzipped and base64-encoded,
+ * and payloads above the offload threshold are put into a {@link BlobStore} with only a reference sent
+ * (claim check). An encoded message is a small JSON wrapper that keeps the messageId at the top level, so the
+ * verifiers still match it with {@link SnsEnvelopeScanner} without decoding, e.g.
+ * {"messageId":"...","payloadEncoding":"gzip","payloadData":"H4sI..."}.
+ * The encoding is also set as the {@value #ENCODING_ATTRIBUTE} message attribute, for subscription filter
+ * policies and for consumers that route on attributes.
+ */
+public class PayloadCodec {
+    /** Message attribute and wrapper field naming the encoding of an encoded payload */
+    public static final String ENCODING_ATTRIBUTE = "payloadEncoding";
+    public static final String GZIP = "gzip";
+    public static final String CLAIM_CHECK = "claim-check";
+
+    private static final String MESSAGE_ID_FIELD = "messageId";
+    private static final String DATA_FIELD = "payloadData";
+    private static final String REFERENCE_FIELD = "payloadRef";
+    private static final String SIZE_FIELD = "payloadBytes";
+
+    private final int compressThresholdBytes;
+    private final int offloadThresholdBytes;
+    private final BlobStore blobStore;
+
+    /**
+     * Creates a codec
+     *
+     * @param compressThresholdBytes Payloads larger than this many UTF-8 bytes are gzipped
+     * @param offloadThresholdBytes Payloads larger than this many UTF-8 bytes go to the blob store
+     * @param blobStore Store for offloaded payloads, or null to never offload
+     */
+    public PayloadCodec(int compressThresholdBytes, int offloadThresholdBytes, BlobStore blobStore) {
+        this.compressThresholdBytes = compressThresholdBytes;
+        this.offloadThresholdBytes = blobStore == null ? Integer.MAX_VALUE : offloadThresholdBytes;
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * @return A codec that sends every payload unchanged
+     */
+    public static PayloadCodec inline() {
+        return new PayloadCodec(Integer.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Encodes a payload for publishing
+     *
+     * @param appMessageId The application message ID, kept readable in the wrapper and used as blob key
+     * @param payload The rendered JSON payload
+     * @return The message body to publish and its encoding
+     * @throws IOException if an offloaded payload cannot be stored
+     */
+    public Encoded encode(String appMessageId, String payload) throws IOException {
+        // A char is at most 3 UTF-8 bytes, so typical payloads skip the byte conversion entirely
+        if (payload.length() * 3L <= Math.min(compressThresholdBytes, offloadThresholdBytes)) {
+            return new Encoded(payload, null);
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > offloadThresholdBytes) {
+            String reference = blobStore.put(appMessageId + ".json", bytes);
+            return new Encoded(wrapper(appMessageId, CLAIM_CHECK)
+                    .put(REFERENCE_FIELD, reference)
+                    .put(SIZE_FIELD, bytes.length)
+                    .toString(), CLAIM_CHECK);
+        }
+        if (bytes.length > compressThresholdBytes) {
+            String compressed = Base64.getEncoder().encodeToString(gzip(bytes));
+            if (compressed.length() < bytes.length) { // Already compressed data can grow
+                return new Encoded(wrapper(appMessageId, GZIP)
+                        .put(DATA_FIELD, compressed)
+                        .toString(), GZIP);
+            }
+        }
+        return new Encoded(payload, null);
+    }
+
+    /**
+     * Decodes the payload of a received SQS message, SNS-wrapped or raw
+     *
+     * @param message The received message
+     * @return The original payload
+     * @throws IOException if the payload cannot be decompressed or fetched from the blob store
+     */
+    public JSONObject decode(Message message) throws IOException {
+        try {
+            return decode(SnsEnvelopeScanner.parsePayload(message.body(), MESSAGE_ID_FIELD));
+        } catch (JSONException e) {
+            throw new IOException("Message " + message.messageId() + " does not carry a JSON payload", e);
+        }
+    }
+
+    /**
+     * Decodes a payload. Payloads that were sent unchanged are returned as they are.
+     *
+     * @param payload The payload as carried by the message
+     * @return The original payload
+     * @throws IOException if the payload cannot be decompressed or fetched from the blob store
+     */
+    public JSONObject decode(JSONObject payload) throws IOException {
+        String encoding = payload.optString(ENCODING_ATTRIBUTE, null);
+        if (encoding == null) {
+            return payload;
+        }
+        switch (encoding) {
+            case GZIP:
+                return new JSONObject(new String(gunzip(Base64.getDecoder().decode(payload.getString(DATA_FIELD))),
+                        StandardCharsets.UTF_8));
+            case CLAIM_CHECK:
+                if (blobStore == null) {
+                    throw new IOException("Payload is in a blob store, but this codec has none: " + payload.getString(REFERENCE_FIELD));
+                }
+                return new JSONObject(new String(blobStore.get(payload.getString(REFERENCE_FIELD)), StandardCharsets.UTF_8));
+            default:
+                throw new IOException("Unknown payload encoding: " + encoding);
+        }
+    }
+
+    private static JSONObject wrapper(String appMessageId, String encoding) {
+        return new JSONObject()
+                .put(MESSAGE_ID_FIELD, appMessageId)
+                .put(ENCODING_ATTRIBUTE, encoding);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * A payload ready for publishing
+     */
+    public static final class Encoded {
+        private final String body;
+        private final String encoding;
+
+        private Encoded(String body, String encoding) {
+            this.body = body;
+            this.encoding = encoding;
+        }
+
+        /**
+         * @return The message body to publish
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * @return {@link #GZIP}, {@link #CLAIM_CHECK}, or null if the payload is sent unchanged
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Adds the encoding attribute to the other attributes of the publish
+         *
+         * @param attributes The other message attributes
+         * @return The attributes to publish with
+         */
+        public Map<String, MessageAttributeValue> attributes(Map<String, MessageAttributeValue> attributes) {
+            if (encoding == null) {
+                return attributes;
+            }
+            Map<String, MessageAttributeValue> withEncoding = new HashMap<>(attributes);
+            withEncoding.put(ENCODING_ATTRIBUTE, MessageAttributeValue.builder()
+                    .dataType("String")
+                    .stringValue(encoding)
+                    .build());
+            return withEncoding;
+        }
+    }
+}
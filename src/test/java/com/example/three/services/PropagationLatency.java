@@ -0,0 +1,131 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * End-to-end latency of one message through SNS and SQS, split at the points SQS reports:
+ * <ul>
+ *   <li>publish to enqueue: from the publish timestamp stamped into the SNS message attributes to the SQS
+ *   SentTimestamp. This compares the client clock with the AWS clock, so clock skew ends up in it.</li>
+ *   <li>enqueue to receive: from SentTimestamp to ApproximateFirstReceiveTimestamp, both AWS clock.
+ *   If another consumer received the message first, this ends at that first receive.</li>
+ *   <li>total: from the publish timestamp to the moment the receive returned, both client clock.</li>
+ * </ul>
+ */
+public class PropagationLatency {
+    /** SNS message attribute carrying the publish time in microseconds since the epoch */
+    public static final String PUBLISH_TIMESTAMP_ATTRIBUTE = "publishTimestampMicros";
+
+    /** System attributes to request on receive */
+    static final MessageSystemAttributeName[] SYSTEM_ATTRIBUTES = {
+            MessageSystemAttributeName.SENT_TIMESTAMP,
+            MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP
+    };
+
+    private final long publishMicros;
+    private final long sentMillis;
+    private final long firstReceiveMillis;
+    private final long receivedMicros;
+
+    PropagationLatency(long publishMicros, long sentMillis, long firstReceiveMillis, long receivedMicros) {
+        this.publishMicros = publishMicros;
+        this.sentMillis = sentMillis;
+        this.firstReceiveMillis = firstReceiveMillis;
+        this.receivedMicros = receivedMicros;
+    }
+
+    /**
+     * Creates the message attributes that stamp the current time into a publish
+     *
+     * @return A one-entry attribute map for PublishRequest or a PublishBatch entry
+     */
+    public static Map<String, MessageAttributeValue> publishTimestampAttributes() {
+        return Collections.singletonMap(PUBLISH_TIMESTAMP_ATTRIBUTE, MessageAttributeValue.builder()
+                .dataType("Number")
+                .stringValue(Long.toString(epochMicros(Instant.now())))
+                .build());
+    }
+
+    /**
+     * Computes the latency breakdown of a received message
+     *
+     * @param message The message, received with the SentTimestamp and ApproximateFirstReceiveTimestamp attributes
+     * @param receivedAt When the receive call returned the message
+     * @return The breakdown, or null if the message has no publish timestamp or system attributes
+     */
+    public static PropagationLatency of(Message message, Instant receivedAt) {
+        String publishTimestamp = publishTimestamp(message);
+        String sentTimestamp = message.attributes().get(MessageSystemAttributeName.SENT_TIMESTAMP);
+        String firstReceiveTimestamp = message.attributes().get(MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP);
+        if (publishTimestamp == null || sentTimestamp == null || firstReceiveTimestamp == null) {
+            return null;
+        }
+        try {
+            return new PropagationLatency(Long.parseLong(publishTimestamp), Long.parseLong(sentTimestamp),
+                    Long.parseLong(firstReceiveTimestamp), epochMicros(receivedAt));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the publish timestamp from the SQS message attributes (raw delivery) or from the SNS envelope
+     */
+    private static String publishTimestamp(Message message) {
+        software.amazon.awssdk.services.sqs.model.MessageAttributeValue raw =
+                message.messageAttributes().get(PUBLISH_TIMESTAMP_ATTRIBUTE);
+        if (raw != null) {
+            return raw.stringValue();
+        }
+        try {
+            // Only done for the matched message, so a full parse of the envelope is fine here
+            JSONObject envelopeAttributes = new JSONObject(message.body()).optJSONObject("MessageAttributes");
+            JSONObject attribute = envelopeAttributes == null ? null : envelopeAttributes.optJSONObject(PUBLISH_TIMESTAMP_ATTRIBUTE);
+            return attribute == null ? null : attribute.optString("Value", null);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static long epochMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    /**
+     * @return Time from the publish call to the message being stored in SQS; includes client/AWS clock skew
+     */
+    public Duration getPublishToEnqueue() {
+        return Duration.ofNanos((sentMillis * 1_000L - publishMicros) * 1_000L);
+    }
+
+    /**
+     * @return Time the message waited in SQS until it was first received
+     */
+    public Duration getEnqueueToReceive() {
+        return Duration.ofMillis(firstReceiveMillis - sentMillis);
+    }
+
+    /**
+     * @return Time from the publish call to the receive call returning the message
+     */
+    public Duration getTotal() {
+        return Duration.ofNanos((receivedMicros - publishMicros) * 1_000L);
+    }
+
+    @Override
+    public String toString() {
+        return "PropagationLatency{publishToEnqueueMs=" + getPublishToEnqueue().toMillis()
+                + ", enqueueToReceiveMs=" + getEnqueueToReceive().toMillis()
+                + ", totalMs=" + getTotal().toMillis() + "}";
+    }
+}
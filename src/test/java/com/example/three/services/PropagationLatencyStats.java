@@ -0,0 +1,98 @@
+package com.example.three.services;
+
+import com.example.three.utils.LatencyRecorder;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates {@link PropagationLatency} breakdowns into HDR histograms, one per stage.
+ *
+ * Every verification made through {@link MessagingService} or {@link AsyncMessagingService} is recorded in
+ * the run-wide instance returned by {@link #forRun()}; the load generator keeps its own instance per run.
+ */
+public class PropagationLatencyStats {
+    private static final PropagationLatencyStats RUN = new PropagationLatencyStats();
+
+    private final LatencyRecorder publishToEnqueue = new LatencyRecorder("publish-to-enqueue");
+    private final LatencyRecorder enqueueToReceive = new LatencyRecorder("enqueue-to-receive");
+    private final LatencyRecorder total = new LatencyRecorder("total");
+    private final LongAdder withoutTimestamps = new LongAdder();
+    private final LongAdder negativePublishToEnqueue = new LongAdder();
+
+    /**
+     * Gets the statistics of all verifications in this JVM
+     *
+     * @return The run-wide statistics
+     */
+    public static PropagationLatencyStats forRun() {
+        return RUN;
+    }
+
+    /**
+     * Records the breakdown of one received message
+     *
+     * @param latency The breakdown, or null if the message carried no timestamps
+     */
+    public void record(PropagationLatency latency) {
+        if (latency == null) {
+            withoutTimestamps.increment();
+            return;
+        }
+        if (latency.getPublishToEnqueue().isNegative()) {
+            negativePublishToEnqueue.increment(); // The client clock is ahead of AWS; recorded as 0
+        }
+        publishToEnqueue.record(latency.getPublishToEnqueue().toNanos());
+        enqueueToReceive.record(latency.getEnqueueToReceive().toNanos());
+        total.record(latency.getTotal().toNanos());
+    }
+
+    /**
+     * @return The per-stage percentiles in milliseconds
+     */
+    public JSONObject toJson() {
+        sample();
+        return new JSONObject()
+                .put("publishToEnqueue", publishToEnqueue.toJson())
+                .put("enqueueToReceive", enqueueToReceive.toJson())
+                .put("total", total.toJson())
+                .put("withoutTimestamps", withoutTimestamps.sum())
+                .put("negativePublishToEnqueue", negativePublishToEnqueue.sum());
+    }
+
+    /**
+     * @return One line per stage, for the console
+     */
+    public String describe() {
+        sample();
+        return "Propagation latency\n  " + publishToEnqueue.describe()
+                + "\n  " + enqueueToReceive.describe()
+                + "\n  " + total.describe()
+                + (negativePublishToEnqueue.sum() > 0
+                        ? "\n  " + negativePublishToEnqueue.sum() + " negative publish-to-enqueue values, check the client clock"
+                        : "");
+    }
+
+    /**
+     * Writes {@link #toJson()} to a file, creating its directory
+     *
+     * @param file The report file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sample() {
+        publishToEnqueue.sampleInterval();
+        enqueueToReceive.sampleInterval();
+        total.sampleInterval();
+    }
+}
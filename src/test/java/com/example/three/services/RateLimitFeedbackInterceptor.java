@@ -0,0 +1,60 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+/**
+ * Reports the outcome of every call on a rate limited topic or queue to its {@link AdaptiveRateLimiter}:
+ * whether the call needed retries, and whether it finally failed with a throttling error.
+ * Calls on topics and queues without a limiter are not tracked.
+ */
+public class RateLimitFeedbackInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<AdaptiveRateLimiter> LIMITER = new ExecutionAttribute<>("RateLimiter");
+    private static final ExecutionAttribute<Integer> ATTEMPTS = new ExecutionAttribute<>("RateLimiterAttempts");
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        SdkRequest request = context.request();
+        // SNS requests name their topic, SQS requests their queue
+        String key = request.getValueForField("TopicArn", String.class)
+                .orElseGet(() -> request.getValueForField("QueueUrl", String.class).orElse(null));
+        AdaptiveRateLimiter limiter = AdaptiveRateLimiter.find(key);
+        if (limiter != null) {
+            executionAttributes.putAttribute(LIMITER, limiter);
+            executionAttributes.putAttribute(ATTEMPTS, 0);
+        }
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null) {
+            executionAttributes.putAttribute(ATTEMPTS, attempts + 1); // Runs once per attempt, retries included
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        report(executionAttributes, false);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Throwable exception = context.exception();
+        report(executionAttributes, exception instanceof SdkServiceException
+                && ((SdkServiceException) exception).isThrottlingException());
+    }
+
+    private static void report(ExecutionAttributes executionAttributes, boolean throttled) {
+        AdaptiveRateLimiter limiter = executionAttributes.getAttribute(LIMITER);
+        if (limiter != null) {
+            Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+            limiter.onCallCompleted(throttled, attempts != null && attempts > 1);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SubscribeRequest;
+import software.amazon.awssdk.services.sns.model.UnsubscribeRequest;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteQueueRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.SetQueueAttributesRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Isolates one test run from other runs that publish to the same SNS topic, e.g. parallel CI jobs.
+ *
+ * Every publish of the run carries a {@value #RUN_ID_ATTRIBUTE} message attribute. The run receives from its
+ * own SQS queue, named after the configured queue and the run ID, which is subscribed to the topic with a
+ * filter policy on that attribute, so SNS only delivers the run's own messages to it. Verifiers then never
+ * receive, hide or delete the messages of another run. The configured queue keeps its unfiltered subscription
+ * and is not read by the run.
+ *
+ * There is one isolation per topic and run ID, shared by every service of the run. Creating the queue and the
+ * subscription is idempotent, so a run that is restarted with the same ID reuses them. They are removed by
+ * {@link #close()}, or for the whole run by {@link #closeAll()} at the end of the suite.
+ */
+public class RunIsolation implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(RunIsolation.class);
+    private static final Map<String, RunIsolation> ISOLATIONS = new ConcurrentHashMap<>();
+
+    /** Message attribute every publish of an isolated run carries */
+    public static final String RUN_ID_ATTRIBUTE = "runId";
+
+    private static final int MAX_QUEUE_NAME_LENGTH = 80;
+    private static final String FIFO_SUFFIX = ".fifo";
+
+    private final String key;
+    private final String runId;
+    private final AwsClientRegistry.Lease<SnsClient> snsLease;
+    private final AwsClientRegistry.Lease<SqsClient> sqsLease;
+    private final String queueUrl;
+    private final String subscriptionArn;
+
+    /**
+     * Gets the isolation of a run on a topic, creating its queue and subscription on first use
+     *
+     * @param region AWS region of the topic and queue
+     * @param credentialsProvider Credentials used if a new client has to be built
+     * @param credentialsIdentity Identifies the credentials, see {@link AwsClientRegistry}
+     * @param endpointOverride Endpoint to use instead of the regional AWS endpoint, or null
+     * @param topicArn ARN of the SNS topic the run publishes to
+     * @param baseQueueUrl URL of the configured SQS queue; the run queue is named after it
+     * @param runId ID of the run
+     * @return The isolation of the run
+     * @throws SdkException if the queue or the subscription cannot be created
+     */
+    static RunIsolation forRun(Region region, AwsCredentialsProvider credentialsProvider, Object credentialsIdentity,
+                               URI endpointOverride, String topicArn, String baseQueueUrl, String runId) {
+        return ISOLATIONS.computeIfAbsent(topicArn + "|" + runId, key -> new RunIsolation(key, region,
+                credentialsProvider, credentialsIdentity, endpointOverride, topicArn, baseQueueUrl, runId));
+    }
+
+    /**
+     * Removes the queues and subscriptions of every isolated run in the JVM. Call this at the end of the suite.
+     */
+    public static void closeAll() {
+        for (RunIsolation isolation : new ArrayList<>(ISOLATIONS.values())) {
+            isolation.close();
+        }
+    }
+
+    private RunIsolation(String key, Region region, AwsCredentialsProvider credentialsProvider,
+                         Object credentialsIdentity, URI endpointOverride, String topicArn, String baseQueueUrl,
+                         String runId) {
+        this.key = key;
+        this.runId = runId;
+        // Own leases: the queue outlives the services of single tests, and so must the clients that remove it
+        AwsClientRegistry registry = AwsClientRegistry.getInstance();
+        this.snsLease = registry.acquireSnsClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        this.sqsLease = registry.acquireSqsClient(region, credentialsProvider, credentialsIdentity, endpointOverride);
+        SnsClient snsClient = snsLease.client();
+        SqsClient sqsClient = sqsLease.client();
+
+        String queueName = queueName(baseQueueUrl, runId);
+        Map<QueueAttributeName, String> attributes = new HashMap<>();
+        if (queueName.endsWith(FIFO_SUFFIX)) {
+            attributes.put(QueueAttributeName.FIFO_QUEUE, "true"); // A FIFO topic only delivers to FIFO queues
+        }
+        String createdQueueUrl = null;
+        String createdSubscriptionArn = null;
+        try {
+            createdQueueUrl = sqsClient.createQueue(CreateQueueRequest.builder()
+                    .queueName(queueName)
+                    .attributes(attributes)
+                    .build()).queueUrl();
+            String queueArn = sqsClient.getQueueAttributes(GetQueueAttributesRequest.builder()
+                    .queueUrl(createdQueueUrl)
+                    .attributeNames(QueueAttributeName.QUEUE_ARN)
+                    .build()).attributes().get(QueueAttributeName.QUEUE_ARN);
+
+            // SNS may only send to the queue on behalf of this topic
+            sqsClient.setQueueAttributes(SetQueueAttributesRequest.builder()
+                    .queueUrl(createdQueueUrl)
+                    .attributes(Collections.singletonMap(QueueAttributeName.POLICY, queuePolicy(queueArn, topicArn)))
+                    .build());
+
+            Map<String, String> subscriptionAttributes = new HashMap<>();
+            subscriptionAttributes.put("FilterPolicy", new JSONObject()
+                    .put(RUN_ID_ATTRIBUTE, new JSONArray().put(runId))
+                    .toString());
+            createdSubscriptionArn = snsClient.subscribe(SubscribeRequest.builder()
+                    .topicArn(topicArn)
+                    .protocol("sqs")
+                    .endpoint(queueArn)
+                    .attributes(subscriptionAttributes)
+                    .returnSubscriptionArn(true)
+                    .build()).subscriptionArn();
+        } catch (RuntimeException e) {
+            // Nothing may outlive a run that never started: no subscription delivering into a queue nobody reads
+            removeCreated(snsClient, sqsClient, createdQueueUrl, createdSubscriptionArn, e);
+            snsLease.close();
+            sqsLease.close();
+            throw e;
+        }
+        this.queueUrl = createdQueueUrl;
+        this.subscriptionArn = createdSubscriptionArn;
+        LOG.info("Run {} receives from {}", runId, queueUrl);
+    }
+
+    /**
+     * Removes what a failed setup already created. Cleanup failures are added to the setup failure.
+     */
+    private static void removeCreated(SnsClient snsClient, SqsClient sqsClient, String queueUrl, String subscriptionArn,
+                                      RuntimeException failure) {
+        if (subscriptionArn != null) {
+            try {
+                snsClient.unsubscribe(UnsubscribeRequest.builder().subscriptionArn(subscriptionArn).build());
+            } catch (RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        if (queueUrl != null) {
+            try {
+                sqsClient.deleteQueue(DeleteQueueRequest.builder().queueUrl(queueUrl).build());
+                LOG.info("Removed {} after its run could not be set up", queueUrl);
+            } catch (RuntimeException e) {
+                LOG.warn("Run queue {} could not be removed after a failed setup: {}", queueUrl, e.getMessage());
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * @return The ID of the run
+     */
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * @return URL of the run's own SQS queue
+     */
+    public String getQueueUrl() {
+        return queueUrl;
+    }
+
+    /**
+     * Unsubscribes and deletes the run queue, including any messages still in it, and releases the clients.
+     * Failures are logged, so teardown continues with the other runs.
+     */
+    @Override
+    public void close() {
+        if (!ISOLATIONS.remove(key, this)) {
+            return; // Already closed
+        }
+        try {
+            snsLease.client().unsubscribe(UnsubscribeRequest.builder().subscriptionArn(subscriptionArn).build());
+            sqsLease.client().deleteQueue(DeleteQueueRequest.builder().queueUrl(queueUrl).build());
+            LOG.info("Run {} removed {}", runId, queueUrl);
+        } catch (SdkException e) {
+            LOG.warn("Run queue {} could not be removed: {}", queueUrl, e.getMessage());
+        } finally {
+            snsLease.close();
+            sqsLease.close();
+        }
+    }
+
+    /**
+     * Names the run queue after the configured queue, e.g. orders-test-run-1a2b3c4d.fifo.
+     * Queue names allow up to 80 letters, digits, hyphens and underscores, including the .fifo suffix.
+     */
+    static String queueName(String baseQueueUrl, String runId) {
+        String baseName = baseQueueUrl.substring(baseQueueUrl.lastIndexOf('/') + 1);
+        String suffix = "";
+        if (baseName.endsWith(FIFO_SUFFIX)) {
+            baseName = baseName.substring(0, baseName.length() - FIFO_SUFFIX.length());
+            suffix = FIFO_SUFFIX;
+        }
+        String name = (baseName + "-" + runId).replaceAll("[^A-Za-z0-9_-]", "-");
+        // Shortened from the front, the run ID at the end keeps the name unique
+        int maxLength = MAX_QUEUE_NAME_LENGTH - suffix.length();
+        if (name.length() > maxLength) {
+            name = name.substring(name.length() - maxLength);
+        }
+        return name + suffix;
+    }
+
+    private static String queuePolicy(String queueArn, String topicArn) {
+        JSONObject statement = new JSONObject()
+                .put("Effect", "Allow")
+                .put("Principal", new JSONObject().put("Service", "sns.amazonaws.com"))
+                .put("Action", "sqs:SendMessage")
+                .put("Resource", queueArn)
+                .put("Condition", new JSONObject()
+                        .put("ArnEquals", new JSONObject().put("aws:SourceArn", topicArn)));
+        return new JSONObject()
+                .put("Version", "2012-10-17")
+                .put("Statement", new JSONArray().put(statement))
+                .toString();
+    }
+}
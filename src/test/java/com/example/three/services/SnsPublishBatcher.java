@@ -0,0 +1,399 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates SNS publish entries and sends them as PublishBatch requests (AWS SDK v2).
+ *
+ * A batch is flushed when it holds 10 entries, when the next entry would push it past the
+ * 256 KB PublishBatch payload limit, or when the oldest pending entry has waited for the linger time.
+ * Each entry is identified by the caller's own ID, which is used as the batch entry ID so that
+ * per-entry results map straight back to the caller.
+ *
+ * Batches of a standard topic are sent concurrently. On a FIFO topic a full batch and a linger flush could
+ * otherwise be in flight at once and reach SNS in the wrong order, so batches are sent one at a time, in the
+ * order they were filled. Once an entry of a message group fails, the later entries of that group fail with
+ * {@value #GROUP_FAILED_CODE} instead of being published, so SNS never sees a group with a gap in it.
+ */
+public class SnsPublishBatcher implements AutoCloseable {
+
+    /** Maximum number of entries SNS accepts in a single PublishBatch call */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    /** Maximum total payload size (messages plus attributes) of a single PublishBatch call */
+    public static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    /** Error code of FIFO entries that were not sent because an earlier entry of their group failed */
+    public static final String GROUP_FAILED_CODE = "EarlierGroupEntryFailed";
+
+    private final SnsClient snsClient;
+    private final String topicArn;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ordered;
+    private final Object sendTurn = new Object();
+
+    private List<PendingEntry> pending = new ArrayList<>();
+    private int pendingBytes;
+    private ScheduledFuture<?> lingerTask;
+    private boolean closed;
+    private long drainedBatches; // Guarded by this
+    private long sentBatches; // Guarded by sendTurn
+    private final Map<String, String> failedGroups = new HashMap<>(); // Group to failed entry ID, guarded by sendTurn
+
+    /**
+     * Creates a new batcher for the given topic
+     *
+     * @param snsClient SNS client used to send the batches
+     * @param topicArn ARN of the SNS topic to publish to
+     * @param linger Maximum time an entry waits for a batch to fill up; zero disables time based flushing
+     */
+    public SnsPublishBatcher(SnsClient snsClient, String topicArn, Duration linger) {
+        this.snsClient = snsClient;
+        this.topicArn = topicArn;
+        this.lingerMillis = linger.toMillis();
+        this.ordered = FifoMessageKeys.isFifo(topicArn);
+        if (lingerMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sns-publish-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Queues a message for publishing
+     *
+     * @param entryId Caller-side ID of the entry (unique within the batcher, max 80 alphanumeric, '-' or '_' characters)
+     * @param message The message body
+     * @param attributes Message attributes, may be empty
+     * @return A future completed with the SNS message ID, or exceptionally with an {@link EntryFailedException}
+     */
+    public CompletableFuture<String> add(String entryId, String message, Map<String, MessageAttributeValue> attributes) {
+        return add(entryId, message, attributes, null, null);
+    }
+
+    /**
+     * Queues a message for publishing to a FIFO topic. Entries of one group are published in the order they
+     * are added, as long as they are added from one thread; linger flushes do not change that order.
+     *
+     * @param entryId Caller-side ID of the entry (unique within the batcher, max 80 alphanumeric, '-' or '_' characters)
+     * @param message The message body
+     * @param attributes Message attributes, may be empty
+     * @param messageGroupId The FIFO message group, or null for a standard topic
+     * @param deduplicationId The FIFO deduplication ID, or null for a standard topic or content-based deduplication
+     * @return A future completed with the SNS message ID, or exceptionally with an {@link EntryFailedException}
+     */
+    public CompletableFuture<String> add(String entryId, String message, Map<String, MessageAttributeValue> attributes,
+                                         String messageGroupId, String deduplicationId) {
+        PendingEntry entry = new PendingEntry(entryId, message,
+                attributes == null ? Collections.emptyMap() : attributes, messageGroupId, deduplicationId);
+
+        if (entry.sizeInBytes > MAX_BATCH_BYTES) {
+            entry.future.completeExceptionally(new EntryFailedException(entryId, "BatchEntryTooLong",
+                    "Entry is " + entry.sizeInBytes + " bytes, the limit is " + MAX_BATCH_BYTES, true));
+            return entry.future;
+        }
+
+        Batch overflow = null;
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("SnsPublishBatcher is closed");
+            }
+
+            // Send what we have first if this entry would not fit into the current batch
+            if (pendingBytes + entry.sizeInBytes > MAX_BATCH_BYTES) {
+                overflow = drain();
+            }
+
+            pending.add(entry);
+            pendingBytes += entry.sizeInBytes;
+
+            if (pending.size() >= MAX_BATCH_ENTRIES) {
+                full = drain();
+            } else if (pending.size() == 1 && scheduler != null) {
+                lingerTask = scheduler.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Network calls happen outside the lock so other threads can keep adding entries
+        if (overflow != null) {
+            send(overflow);
+        }
+        if (full != null) {
+            send(full);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Sends all pending entries immediately
+     */
+    public void flush() {
+        Batch batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        send(batch);
+    }
+
+    /**
+     * Flushes the pending entries, waits for batches the linger timer is sending and stops the timer
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Nothing can be added once closed, so this only catches what the stopped timer left behind
+        flush();
+    }
+
+    // Must be called while holding the lock
+    private Batch drain() {
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        Batch batch = new Batch(pending, pending.isEmpty() ? -1 : drainedBatches++);
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        return batch;
+    }
+
+    private void send(Batch batch) {
+        if (batch.entries.isEmpty()) {
+            return;
+        }
+        if (!ordered) {
+            publish(batch.entries);
+            return;
+        }
+
+        awaitTurn(batch.sequence);
+        try {
+            List<PendingEntry> sendable = new ArrayList<>(batch.entries.size());
+            synchronized (sendTurn) {
+                for (PendingEntry entry : batch.entries) {
+                    String failedEntry = failedGroups.get(entry.messageGroupId);
+                    if (failedEntry == null) {
+                        sendable.add(entry);
+                    } else {
+                        entry.future.completeExceptionally(new EntryFailedException(entry.id, GROUP_FAILED_CODE,
+                                "Entry " + failedEntry + " of group " + entry.messageGroupId + " failed before", false));
+                    }
+                }
+            }
+            if (!sendable.isEmpty()) {
+                publish(sendable);
+            }
+            synchronized (sendTurn) {
+                for (PendingEntry entry : sendable) {
+                    if (entry.future.isCompletedExceptionally()) {
+                        failedGroups.putIfAbsent(entry.messageGroupId, entry.id);
+                    }
+                }
+            }
+        } finally {
+            synchronized (sendTurn) {
+                sentBatches++;
+                sendTurn.notifyAll();
+            }
+        }
+    }
+
+    // Waits until every batch drained before this one was sent; an interrupt must not skip the turn
+    private void awaitTurn(long sequence) {
+        boolean interrupted = false;
+        synchronized (sendTurn) {
+            while (sentBatches < sequence) {
+                try {
+                    sendTurn.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(List<PendingEntry> batch) {
+        Map<String, PendingEntry> byId = new HashMap<>();
+        List<PublishBatchRequestEntry> requestEntries = new ArrayList<>(batch.size());
+        for (PendingEntry entry : batch) {
+            byId.put(entry.id, entry);
+            requestEntries.add(PublishBatchRequestEntry.builder()
+                    .id(entry.id)
+                    .message(entry.message)
+                    .messageAttributes(entry.attributes)
+                    .messageGroupId(entry.messageGroupId)
+                    .messageDeduplicationId(entry.deduplicationId)
+                    .build());
+        }
+
+        PublishBatchResponse response;
+        try {
+            AdaptiveRateLimiter.acquire(topicArn, batch.size()); // One permit per message, like a single publish
+            response = snsClient.publishBatch(PublishBatchRequest.builder()
+                    .topicArn(topicArn)
+                    .publishBatchRequestEntries(requestEntries)
+                    .build());
+        } catch (RuntimeException e) {
+            // The whole call failed, so every entry in it failed; callers joining the futures must not hang
+            for (PendingEntry entry : batch) {
+                entry.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (PublishBatchResultEntry result : response.successful()) {
+            PendingEntry entry = byId.remove(result.id());
+            if (entry != null) {
+                entry.future.complete(result.messageId());
+            }
+        }
+        for (BatchResultErrorEntry error : response.failed()) {
+            PendingEntry entry = byId.remove(error.id());
+            if (entry != null) {
+                entry.future.completeExceptionally(new EntryFailedException(error.id(), error.code(),
+                        error.message(), Boolean.TRUE.equals(error.senderFault())));
+            }
+        }
+        // Anything SNS did not report on is treated as failed rather than left hanging
+        for (PendingEntry entry : byId.values()) {
+            entry.future.completeExceptionally(new EntryFailedException(entry.id, "MissingResult",
+                    "No result returned for batch entry", false));
+        }
+    }
+
+    /**
+     * Estimates the size SNS counts against the batch limit: message body plus attribute names, types and values
+     */
+    static int sizeOf(String message, Map<String, MessageAttributeValue> attributes) {
+        int size = utf8Length(message);
+        for (Map.Entry<String, MessageAttributeValue> attribute : attributes.entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += utf8Length(attribute.getKey());
+            size += utf8Length(value.dataType());
+            size += utf8Length(value.stringValue());
+            if (value.binaryValue() != null) {
+                size += value.binaryValue().asByteArrayUnsafe().length;
+            }
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class Batch {
+        private final List<PendingEntry> entries;
+        private final long sequence;
+
+        private Batch(List<PendingEntry> entries, long sequence) {
+            this.entries = entries;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class PendingEntry {
+        private final String id;
+        private final String message;
+        private final Map<String, MessageAttributeValue> attributes;
+        private final String messageGroupId;
+        private final String deduplicationId;
+        private final int sizeInBytes;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private PendingEntry(String id, String message, Map<String, MessageAttributeValue> attributes,
+                             String messageGroupId, String deduplicationId) {
+            this.id = id;
+            this.message = message;
+            this.attributes = attributes;
+            this.messageGroupId = messageGroupId;
+            this.deduplicationId = deduplicationId;
+            this.sizeInBytes = sizeOf(message, attributes);
+        }
+    }
+
+    /**
+     * Raised for a single entry that SNS rejected inside an otherwise successful PublishBatch call
+     */
+    public static class EntryFailedException extends RuntimeException {
+        private final String entryId;
+        private final String code;
+        private final boolean senderFault;
+
+        public EntryFailedException(String entryId, String code, String message, boolean senderFault) {
+            super("Batch entry " + entryId + " failed: " + code + " - " + message);
+            this.entryId = entryId;
+            this.code = code;
+            this.senderFault = senderFault;
+        }
+
+        public String getEntryId() {
+            return entryId;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public boolean isSenderFault() {
+            return senderFault;
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects SQS receipt handles and deletes them with DeleteMessageBatch (AWS SDK v2).
+ *
+ * A batch is sent as soon as 10 receipt handles are queued, or when the first handle of a batch has waited for
+ * the linger time passed to the constructor ({@link MessagingService} uses 20 ms). Batches are sent on two
+ * background threads of the coalescer, so deleting never blocks the verification path. An entry is tried at
+ * most {@value #MAX_ATTEMPTS} times: it is queued again when the whole call fails or when SQS reports a failure
+ * on its side for the entry. Entries SQS rejects as a sender fault, e.g. an invalid or expired receipt handle,
+ * fail right away. {@link #close()} sends whatever is still queued.
+ */
+public class SqsDeleteCoalescer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsDeleteCoalescer.class);
+
+    /** Maximum number of entries SQS accepts in a single DeleteMessageBatch call */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private List<PendingDelete> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTask;
+    private boolean closed;
+
+    /**
+     * Creates a new delete coalescer for a queue
+     *
+     * @param sqsClient SQS client used to delete the messages
+     * @param queueUrl URL of the SQS queue
+     * @param linger Maximum time a receipt handle waits for its batch to fill up
+     */
+    public SqsDeleteCoalescer(SqsClient sqsClient, String queueUrl, Duration linger) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.lingerMillis = Math.max(1, linger.toMillis());
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "sqs-delete-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a message for deletion without waiting for the result. Failures are logged.
+     *
+     * @param receiptHandle Receipt handle of the received message
+     */
+    public void delete(String receiptHandle) {
+        deleteAsync(receiptHandle).exceptionally(error -> {
+            LOG.warn("Could not delete message from {}: {}", queueUrl, error.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Queues a message for deletion
+     *
+     * @param receiptHandle Receipt handle of the received message
+     * @return A future completed once SQS confirmed the deletion, or failed if the coalescer is closed
+     */
+    public CompletableFuture<Void> deleteAsync(String receiptHandle) {
+        VisibilityLeaseManager.endLease(queueUrl, receiptHandle); // No point in extending it any further
+        PendingDelete entry = new PendingDelete(receiptHandle);
+        synchronized (this) {
+            if (closed) {
+                entry.future.completeExceptionally(new IllegalStateException("SqsDeleteCoalescer is closed"));
+            } else {
+                enqueue(entry);
+            }
+        }
+        return entry.future;
+    }
+
+    /**
+     * Sends all queued deletes and waits until they completed
+     */
+    public void flush() {
+        List<PendingDelete> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        // Retried entries are queued again, so keep sending until nothing is left
+        while (!batch.isEmpty()) {
+            send(batch);
+            synchronized (this) {
+                batch = drain();
+            }
+        }
+    }
+
+    /**
+     * Sends the queued deletes and stops the background threads
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Batches that were handed to the scheduler may have queued retries in the meantime
+        flush();
+    }
+
+    // Must be called while holding the lock
+    private void enqueue(PendingDelete entry) {
+        pending.add(entry);
+        if (pending.size() >= MAX_BATCH_ENTRIES) {
+            List<PendingDelete> batch = drain();
+            if (!scheduler.isShutdown()) {
+                scheduler.execute(() -> send(batch));
+            } else {
+                pending.addAll(batch); // Picked up by the final flush in close()
+            }
+        } else if (pending.size() == 1 && !scheduler.isShutdown()) {
+            lingerTask = scheduler.schedule(this::sendLingering, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendLingering() {
+        List<PendingDelete> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        send(batch);
+    }
+
+    // Must be called while holding the lock
+    private List<PendingDelete> drain() {
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        List<PendingDelete> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void send(List<PendingDelete> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, PendingDelete> byId = new HashMap<>();
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingDelete entry = batch.get(i);
+            String id = Integer.toString(i); // Only needs to be unique within the batch
+            entry.attempts++;
+            byId.put(id, entry);
+            entries.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(id)
+                    .receiptHandle(entry.receiptHandle)
+                    .build());
+        }
+
+        DeleteMessageBatchResponse response;
+        try {
+            response = sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                    .queueUrl(queueUrl)
+                    .entries(entries)
+                    .build());
+        } catch (RuntimeException e) {
+            // Not just SDK failures: whatever is thrown, every entry must be retried or its future failed
+            for (PendingDelete entry : batch) {
+                retryOrFail(entry, e);
+            }
+            return;
+        }
+
+        for (DeleteMessageBatchResultEntry result : response.successful()) {
+            PendingDelete entry = byId.remove(result.id());
+            if (entry != null) {
+                entry.future.complete(null);
+            }
+        }
+        for (BatchResultErrorEntry error : response.failed()) {
+            PendingDelete entry = byId.remove(error.id());
+            if (entry == null) {
+                continue;
+            }
+            RuntimeException failure = new IllegalStateException("Delete failed: " + error.code() + " - " + error.message());
+            if (Boolean.TRUE.equals(error.senderFault())) {
+                entry.future.completeExceptionally(failure); // Retrying would fail the same way
+            } else {
+                retryOrFail(entry, failure);
+            }
+        }
+        for (PendingDelete entry : byId.values()) {
+            retryOrFail(entry, new IllegalStateException("No result returned for delete entry"));
+        }
+    }
+
+    private void retryOrFail(PendingDelete entry, Exception failure) {
+        if (entry.attempts >= MAX_ATTEMPTS) {
+            entry.future.completeExceptionally(failure);
+            return;
+        }
+        synchronized (this) {
+            enqueue(entry);
+        }
+    }
+
+    private static final class PendingDelete {
+        private final String receiptHandle;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int attempts;
+
+        private PendingDelete(String receiptHandle) {
+            this.receiptHandle = receiptHandle;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import com.example.three.utils.SnsEnvelopeScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background long-poll consumer per SQS queue that hands received messages to the verifiers waiting for them.
+ *
+ * Instead of every verifier running its own receive loop and discarding the messages that belong to others,
+ * verifiers register the application message ID they expect and wait on the returned future. The consumer
+ * scans each message once, without parsing it into JSON objects, and completes the future registered under
+ * its ID. Messages that arrive before their verifier registers are kept for a short retention period so a
+ * late registration still finds them.
+ *
+ * The consumer only polls while at least one verifier is waiting, so an idle correlator does not take messages
+ * away from other consumers of the queue. With {@link #setReceiveConcurrency} it scales to several pollers that
+ * join in as the number of waiting verifiers grows, bounded by a semaphore on concurrent receive calls. In release mode, messages nobody is waiting for are handed back to
+ * the queue right after each receive instead of being held for the visibility timeout.
+ */
+public class SqsMessageCorrelator implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsMessageCorrelator.class);
+
+    private static final Map<String, SqsMessageCorrelator> CORRELATORS = new ConcurrentHashMap<>();
+
+    private static final int LONG_POLL_SECONDS = 5;
+    private static final long UNCLAIMED_RETENTION_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+    private static final int MESSAGES_PER_RECEIVE = 10;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final boolean releaseUnmatched;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Object wakeUp = new Object();
+    private final List<Thread> pollers = new ArrayList<>(); // Guarded by this
+    private volatile int maxPollers;
+    private volatile Semaphore receivePermits;
+    private volatile boolean running = true;
+
+    /**
+     * Gets the shared correlator for a queue, starting it on first use.
+     * An idle correlator is rebound to the caller's client, so it never keeps polling with a client that was
+     * closed by the {@link AwsClientRegistry} after its last lease was released.
+     *
+     * @param sqsClient SQS client used for receiving
+     * @param queueUrl URL of the SQS queue
+     * @return The correlator consuming the queue
+     */
+    public static SqsMessageCorrelator forQueue(SqsClient sqsClient, String queueUrl) {
+        return forQueue(sqsClient, queueUrl, false);
+    }
+
+    /**
+     * Gets the shared correlator for a queue, starting it on first use.
+     * The release mode is fixed by whichever caller starts the correlator.
+     *
+     * @param sqsClient SQS client used for receiving
+     * @param queueUrl URL of the SQS queue
+     * @param releaseUnmatched Whether messages nobody is waiting for are released immediately
+     * @return The correlator consuming the queue
+     */
+    public static SqsMessageCorrelator forQueue(SqsClient sqsClient, String queueUrl, boolean releaseUnmatched) {
+        return CORRELATORS.compute(queueUrl, (url, existing) -> {
+            if (existing != null && (existing.sqsClient == sqsClient || existing.waiters.get() > 0)) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.stop();
+            }
+            return new SqsMessageCorrelator(sqsClient, url, releaseUnmatched);
+        });
+    }
+
+    private SqsMessageCorrelator(SqsClient sqsClient, String queueUrl, boolean releaseUnmatched) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.releaseUnmatched = releaseUnmatched;
+        setReceiveConcurrency(1, null);
+    }
+
+    /**
+     * Allows up to maxPollers concurrent long polls. Poller n only polls while more than n * 10 verifiers
+     * are waiting, so the receive rate follows demand. Pollers beyond a lowered maximum stay idle.
+     *
+     * @param maxPollers Maximum number of pollers
+     * @param receivePermits Semaphore every poll must hold a permit of, e.g. shared with other receivers,
+     *                       or null for no limit beyond maxPollers
+     * @return The previous setting, for {@link #restoreReceiveConcurrency}
+     */
+    public synchronized ReceiveConcurrency setReceiveConcurrency(int maxPollers, Semaphore receivePermits) {
+        ReceiveConcurrency previous = new ReceiveConcurrency(this.maxPollers, this.receivePermits);
+        this.maxPollers = maxPollers;
+        this.receivePermits = receivePermits;
+        String name = "sqs-correlator-" + queueUrl.substring(queueUrl.lastIndexOf('/') + 1);
+        while (running && pollers.size() < maxPollers) {
+            int index = pollers.size();
+            Thread poller = new Thread(() -> consume(index), index == 0 ? name : name + "-" + index);
+            poller.setDaemon(true);
+            poller.start();
+            pollers.add(poller);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores a previous setting, unless another caller changed the setting since
+     *
+     * @param receivePermits The semaphore the caller passed to {@link #setReceiveConcurrency}
+     * @param previous The setting returned by {@link #setReceiveConcurrency}
+     */
+    public synchronized void restoreReceiveConcurrency(Semaphore receivePermits, ReceiveConcurrency previous) {
+        if (this.receivePermits == receivePermits) {
+            setReceiveConcurrency(previous.maxPollers, previous.receivePermits);
+        }
+    }
+
+    /**
+     * Registers interest in a message. Completes immediately if the message already arrived.
+     *
+     * @param appMessageId The application-specific message ID to wait for
+     * @return A future completed with the received SQS message
+     */
+    public CompletableFuture<Message> register(String appMessageId) {
+        Slot slot = slots.compute(appMessageId, (id, existing) -> {
+            Slot current = existing != null ? existing : new Slot();
+            if (!current.claimed) {
+                current.claimed = true;
+                if (!current.future.isDone()) {
+                    waiters.incrementAndGet();
+                    current.future.whenComplete((message, error) -> waiters.decrementAndGet());
+                }
+            }
+            return current;
+        });
+
+        // The slot is no longer needed once the message has been handed over
+        slot.future.whenComplete((message, error) -> slots.remove(appMessageId, slot));
+
+        synchronized (wakeUp) {
+            wakeUp.notifyAll();
+        }
+        return slot.future;
+    }
+
+    /**
+     * Stops waiting for a message, e.g. after the verifier timed out. If the message arrived in the meantime it is
+     * released back to the queue, so callers must not unregister a message they took from the returned future.
+     *
+     * @param appMessageId The application-specific message ID
+     */
+    public void unregister(String appMessageId) {
+        Slot slot = slots.remove(appMessageId);
+        if (slot == null || slot.future.cancel(false) || slot.future.isCompletedExceptionally()) {
+            return;
+        }
+        // Handed over just as the verifier gave up; nobody will delete it, so it must not stay leased and invisible
+        Message message = slot.future.getNow(null);
+        if (message != null) {
+            SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, Collections.singletonList(message));
+        }
+    }
+
+    /**
+     * Stops the background consumer and fails all outstanding registrations
+     */
+    @Override
+    public void close() {
+        CORRELATORS.remove(queueUrl, this);
+        stop();
+    }
+
+    private void stop() {
+        running = false;
+        synchronized (this) {
+            for (Thread poller : pollers) {
+                poller.interrupt();
+            }
+        }
+        for (Slot slot : slots.values()) {
+            slot.future.cancel(false);
+        }
+        slots.clear();
+    }
+
+    private void consume(int pollerIndex) {
+        while (running) {
+            try {
+                if (pollerIndex >= maxPollers || waiters.get() <= pollerIndex * MESSAGES_PER_RECEIVE) {
+                    synchronized (wakeUp) {
+                        wakeUp.wait(1000);
+                    }
+                    if (pollerIndex == 0) {
+                        expireUnclaimed();
+                    }
+                    continue;
+                }
+
+                ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                        .queueUrl(queueUrl)
+                        .maxNumberOfMessages(MESSAGES_PER_RECEIVE)
+                        .waitTimeSeconds(LONG_POLL_SECONDS)
+                        .messageAttributeNames("All")
+                        .messageSystemAttributeNames(PropagationLatency.SYSTEM_ATTRIBUTES)
+                        .build();
+
+                List<Message> messages;
+                Semaphore permits = receivePermits;
+                if (permits != null) {
+                    permits.acquire();
+                }
+                try {
+                    AdaptiveRateLimiter.acquire(queueUrl, 1);
+                    messages = sqsClient.receiveMessage(receiveRequest).messages();
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+                List<Message> unmatched = new ArrayList<>();
+                for (Message message : messages) {
+                    if (!dispatch(message)) {
+                        unmatched.add(message);
+                    }
+                }
+                if (!unmatched.isEmpty()) {
+                    SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, unmatched);
+                }
+                if (pollerIndex == 0) {
+                    expireUnclaimed();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // SDK errors, but also e.g. a failed release; the poller is shared, so it must keep going
+                if (!running) {
+                    return;
+                }
+                LOG.warn("SQS correlator poll failed for {}: {}", queueUrl, e.toString());
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands a message to its verifier
+     *
+     * @return false if the message should be released instead of kept
+     */
+    private boolean dispatch(Message message) {
+        String appMessageId = extractMessageId(message.body());
+        if (appMessageId == null) {
+            // Not one of ours; without release mode it becomes visible again after the visibility timeout
+            return !releaseUnmatched;
+        }
+
+        if (releaseUnmatched) {
+            Slot slot = slots.get(appMessageId);
+            return slot != null && hold(slot, message);
+        }
+
+        Slot slot = slots.computeIfAbsent(appMessageId, id -> new Slot());
+        hold(slot, message);
+        return true;
+    }
+
+    /**
+     * Hands a message to its slot, keeping it invisible until the verifier deletes it or it is released
+     *
+     * @return false if the slot already had a message
+     */
+    private boolean hold(Slot slot, Message message) {
+        // Tracked before the handover, since the verifier may delete it right away
+        VisibilityLeaseManager leases = VisibilityLeaseManager.find(queueUrl);
+        if (leases != null) {
+            leases.track(message);
+        }
+        if (slot.future.complete(message)) {
+            return true;
+        }
+        if (leases != null) {
+            leases.untrack(message.receiptHandle());
+        }
+        return false;
+    }
+
+    private void expireUnclaimed() {
+        long now = System.currentTimeMillis();
+        List<Message> expired = new ArrayList<>();
+        slots.entrySet().removeIf(entry -> {
+            Slot slot = entry.getValue();
+            if (slot.claimed || now - slot.createdAt <= UNCLAIMED_RETENTION_MILLIS) {
+                return false;
+            }
+            Message message = slot.future.getNow(null);
+            if (message != null) {
+                expired.add(message);
+            }
+            return true;
+        });
+
+        // Nobody claimed these in time, give them back to the queue
+        if (!expired.isEmpty()) {
+            SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, expired);
+        }
+    }
+
+    /**
+     * Pulls the application message ID out of an SNS-wrapped or raw message body without parsing it
+     *
+     * @param body The SQS message body
+     * @return The application message ID, or null if the body does not carry one
+     */
+    static String extractMessageId(String body) {
+        String messageId = SnsEnvelopeScanner.extractField(body, "messageId");
+        return messageId == null || messageId.isEmpty() ? null : messageId;
+    }
+
+    /**
+     * A receive concurrency setting, see {@link #setReceiveConcurrency}
+     */
+    public static final class ReceiveConcurrency {
+        private final int maxPollers;
+        private final Semaphore receivePermits;
+
+        private ReceiveConcurrency(int maxPollers, Semaphore receivePermits) {
+            this.maxPollers = maxPollers;
+            this.receivePermits = receivePermits;
+        }
+    }
+
+    private static final class Slot {
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+        private final long createdAt = System.currentTimeMillis();
+        private boolean claimed; // Guarded by the map's per-key compute
+    }
+}
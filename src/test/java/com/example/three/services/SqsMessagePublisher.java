@@ -0,0 +1,306 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive stream of the messages of an SQS queue.
+ *
+ * Every subscription gets its own bounded prefetch buffer, filled by up to maxConcurrentPolls long polls.
+ * Polls only ask for as many messages as the subscriber requested and the buffer has room for, and poller n
+ * only joins in while more than n * 10 messages are wanted, so the receive rate follows demand. Once the
+ * subscriber stops requesting, polling stops and no message sits in the buffer burning its visibility timeout.
+ *
+ * A message is acknowledged when {@code onNext} returns: its delete is queued on the {@link SqsDeleteCoalescer},
+ * which sends DeleteMessageBatch requests of up to 10 entries. If {@code onNext} throws, the subscription is
+ * cancelled and the message is released back to the queue. Buffered messages that were never delivered are
+ * released on cancel and on {@link #close()}, so other consumers get them right away.
+ *
+ * Several subscribers may subscribe; they compete for the queue like separate consumers.
+ */
+public class SqsMessagePublisher implements Flow.Publisher<Message>, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsMessagePublisher.class);
+
+    private static final int MESSAGES_PER_RECEIVE = 10;
+    private static final int LONG_POLL_SECONDS = 20;
+    private static final long IDLE_WAIT_MILLIS = 1000;
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final SqsDeleteCoalescer deleteCoalescer;
+    private final int prefetch;
+    private final int maxConcurrentPolls;
+    private final Set<ReceiveSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Creates a publisher over a queue
+     *
+     * @param sqsClient SQS client used for receiving and releasing
+     * @param queueUrl URL of the SQS queue
+     * @param deleteCoalescer Coalescer that deletes the messages the subscribers processed
+     * @param prefetch Maximum number of received messages buffered per subscription
+     * @param maxConcurrentPolls Maximum number of concurrent long polls per subscription
+     */
+    public SqsMessagePublisher(SqsClient sqsClient, String queueUrl, SqsDeleteCoalescer deleteCoalescer,
+                               int prefetch, int maxConcurrentPolls) {
+        if (prefetch < 1 || maxConcurrentPolls < 1) {
+            throw new IllegalArgumentException("prefetch and maxConcurrentPolls must be positive");
+        }
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.deleteCoalescer = deleteCoalescer;
+        this.prefetch = prefetch;
+        this.maxConcurrentPolls = maxConcurrentPolls;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ReceiveSubscription subscription = new ReceiveSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        } else {
+            subscription.start();
+        }
+    }
+
+    /**
+     * Stops polling, releases the buffered messages and completes every subscription
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ReceiveSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        deleteCoalescer.flush(); // Acknowledge what was processed without waiting for the linger time
+    }
+
+    private final class ReceiveSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Message> subscriber;
+        private final ArrayBlockingQueue<Message> buffer = new ArrayBlockingQueue<>(prefetch);
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger reserved = new AtomicInteger(); // Buffer slots held by receives in flight
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private final Object wakeUp = new Object();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable failure;
+        private boolean terminated; // Only touched by the draining thread
+
+        ReceiveSubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            String name = "sqs-publisher-" + queueUrl.substring(queueUrl.lastIndexOf('/') + 1);
+            for (int index = 0; index < maxConcurrentPolls; index++) {
+                int pollerIndex = index;
+                Thread poller = new Thread(() -> poll(pollerIndex), name + "-" + index);
+                poller.setDaemon(true);
+                poller.start();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Requested " + n + " messages, must be positive");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            wakePollers();
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            wakePollers();
+            drain();
+        }
+
+        void complete() {
+            done = true;
+            wakePollers();
+            drain();
+        }
+
+        private boolean stopped() {
+            return cancelled || done || failure != null;
+        }
+
+        private void wakePollers() {
+            synchronized (wakeUp) {
+                wakeUp.notifyAll();
+            }
+        }
+
+        private void poll(int pollerIndex) {
+            while (!stopped()) {
+                int batch;
+                try {
+                    synchronized (wakeUp) {
+                        batch = reserve(pollerIndex);
+                        if (batch == 0) {
+                            wakeUp.wait(IDLE_WAIT_MILLIS);
+                            continue;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    AdaptiveRateLimiter.acquire(queueUrl, 1);
+                    List<Message> messages = sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                            .queueUrl(queueUrl)
+                            .maxNumberOfMessages(batch)
+                            .waitTimeSeconds(LONG_POLL_SECONDS)
+                            .messageAttributeNames("All")
+                            .messageSystemAttributeNames(PropagationLatency.SYSTEM_ATTRIBUTES)
+                            .build()).messages();
+                    if (stopped()) {
+                        // Nobody will take these anymore, give them back to the queue right away
+                        if (!messages.isEmpty()) {
+                            SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, messages);
+                        }
+                    } else {
+                        VisibilityLeaseManager leases = VisibilityLeaseManager.find(queueUrl);
+                        if (leases != null) {
+                            leases.track(messages); // Buffered and in-process messages stay invisible
+                        }
+                        // Never more than the reserved slots; should that ever change, the rest goes back to the queue
+                        List<Message> overflow = new ArrayList<>();
+                        for (Message message : messages) {
+                            if (!buffer.offer(message)) {
+                                overflow.add(message);
+                            }
+                        }
+                        if (!overflow.isEmpty()) {
+                            LOG.warn("SQS publisher buffer of {} full, releasing {} messages", queueUrl, overflow.size());
+                            SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, overflow);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    if (stopped()) {
+                        return;
+                    }
+                    LOG.warn("SQS publisher receive failed for {}: {}", queueUrl, e.toString());
+                    try {
+                        Thread.sleep(ERROR_BACKOFF_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                } finally {
+                    reserved.addAndGet(-batch);
+                }
+                drain();
+            }
+        }
+
+        /**
+         * Reserves buffer slots for one receive. Called under the wakeUp lock, so reservations never overlap.
+         *
+         * @return The number of messages to receive, or 0 if this poller is not needed right now
+         */
+        private int reserve(int pollerIndex) {
+            long wanted = Math.min(demand.get(), prefetch) - buffer.size() - reserved.get();
+            if (wanted <= (long) pollerIndex * MESSAGES_PER_RECEIVE) {
+                return 0;
+            }
+            int batch = (int) Math.min(MESSAGES_PER_RECEIVE, wanted);
+            reserved.addAndGet(batch);
+            return batch;
+        }
+
+        /**
+         * Delivers buffered messages while there is demand. Only one thread drains at a time; calls made while
+         * another thread drains, including reentrant ones from the subscriber, make that thread loop once more.
+         */
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (terminated || cancelled) {
+                    releaseBuffered();
+                    subscriptions.remove(this);
+                } else if (failure != null) {
+                    releaseBuffered();
+                    terminate();
+                    subscriber.onError(failure);
+                } else if (done) {
+                    releaseBuffered();
+                    terminate();
+                    subscriber.onComplete();
+                } else {
+                    emit();
+                }
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            long emitted = 0;
+            Message message;
+            while (demand.get() > 0 && !cancelled && (message = buffer.poll()) != null) {
+                // Demand and buffer slot are given up before onNext, so pollers may refill the slot right away
+                demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+                try {
+                    subscriber.onNext(message);
+                } catch (RuntimeException e) {
+                    LOG.warn("SQS publisher subscriber failed, cancelling: {}", e.toString());
+                    cancelled = true;
+                    SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, Collections.singletonList(message));
+                    releaseBuffered();
+                    subscriptions.remove(this);
+                    wakePollers();
+                    return;
+                }
+                // Processed, so it is acknowledged in the next delete batch
+                deleteCoalescer.delete(message.receiptHandle());
+                emitted++;
+            }
+            if (emitted > 0) {
+                wakePollers(); // The buffer has room again
+            }
+        }
+
+        private void terminate() {
+            terminated = true;
+            subscriptions.remove(this);
+            wakePollers();
+        }
+
+        private void releaseBuffered() {
+            List<Message> undelivered = new ArrayList<>();
+            buffer.drainTo(undelivered);
+            if (!undelivered.isEmpty()) {
+                SqsVisibilityReleaser.releaseMessages(sqsClient, queueUrl, undelivered);
+            }
+        }
+    }
+}
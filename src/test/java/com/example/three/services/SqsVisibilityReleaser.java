@@ -0,0 +1,78 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands received but unwanted SQS messages back to the queue straight away (AWS SDK v2).
+ *
+ * A received message stays invisible for the queue's visibility timeout even if the receiver drops it,
+ * so a concurrent verifier that owns it would have to wait 30 seconds or more. Setting the visibility
+ * timeout to 0 makes it receivable again immediately.
+ */
+public class SqsVisibilityReleaser {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsVisibilityReleaser.class);
+
+    /** Maximum number of entries SQS accepts in a single ChangeMessageVisibilityBatch call */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    private SqsVisibilityReleaser() {
+    }
+
+    /**
+     * Makes the given messages visible again using ChangeMessageVisibilityBatch with a timeout of 0
+     *
+     * @param sqsClient SQS client to use
+     * @param queueUrl URL of the queue the messages were received from
+     * @param messages The messages to release
+     * @return The number of messages that were released
+     */
+    public static int releaseMessages(SqsClient sqsClient, String queueUrl, List<Message> messages) {
+        // End the visibility leases before releasing, so the heartbeat does not hide a message again right after its release
+        for (Message message : messages) {
+            VisibilityLeaseManager.endLease(queueUrl, message.receiptHandle());
+        }
+
+        int released = 0;
+        for (int start = 0; start < messages.size(); start += MAX_BATCH_ENTRIES) {
+            List<Message> chunk = messages.subList(start, Math.min(start + MAX_BATCH_ENTRIES, messages.size()));
+
+            List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                        .id(Integer.toString(i)) // Only needs to be unique within the batch
+                        .receiptHandle(chunk.get(i).receiptHandle())
+                        .visibilityTimeout(0)
+                        .build());
+            }
+
+            try {
+                ChangeMessageVisibilityBatchResponse response = sqsClient.changeMessageVisibilityBatch(
+                        ChangeMessageVisibilityBatchRequest.builder()
+                                .queueUrl(queueUrl)
+                                .entries(entries)
+                                .build());
+                released += response.successful().size();
+
+                // A failed release is not fatal, the message becomes visible after the visibility timeout anyway
+                for (BatchResultErrorEntry error : response.failed()) {
+                    LOG.warn("Could not release message {}: {} - {}", error.id(), error.code(), error.message());
+                }
+            } catch (SdkException e) {
+                LOG.warn("Could not release {} messages on {}: {}", chunk.size(), queueUrl, e.getMessage());
+            }
+        }
+        return released;
+    }
+}
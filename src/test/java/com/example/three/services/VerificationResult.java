@@ -0,0 +1,88 @@
+package com.example.three.services;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+import org.json.JSONObject;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a deadline-based message verification
+ */
+public class VerificationResult {
+    private final String appMessageId;
+    private final Message message;
+    private final Duration elapsed;
+    private final int receiveCalls;
+    private final PropagationLatency propagationLatency;
+    private final JSONObject payload;
+
+    VerificationResult(String appMessageId, Message message, Duration elapsed, int receiveCalls,
+                       PropagationLatency propagationLatency, JSONObject payload) {
+        this.appMessageId = appMessageId;
+        this.message = message;
+        this.elapsed = elapsed;
+        this.receiveCalls = receiveCalls;
+        this.propagationLatency = propagationLatency;
+        this.payload = payload;
+    }
+
+    /**
+     * @return The application-specific message ID that was verified
+     */
+    public String getAppMessageId() {
+        return appMessageId;
+    }
+
+    /**
+     * @return true if the message was received before the deadline
+     */
+    public boolean isFound() {
+        return message != null;
+    }
+
+    /**
+     * @return The received SQS message, or null if it was not found
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return Time from the start of the verification until the message arrived or the deadline passed
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return Number of ReceiveMessage calls made during the verification
+     */
+    public int getReceiveCalls() {
+        return receiveCalls;
+    }
+
+    /**
+     * @return The publish-to-enqueue, enqueue-to-receive and total latency of the message, or null if it was
+     *         not found or carried no publish timestamp
+     */
+    public PropagationLatency getPropagationLatency() {
+        return propagationLatency;
+    }
+
+    /**
+     * @return The payload of the message, decompressed or fetched from the blob store if it was encoded,
+     *         or null if it was not found or could not be decoded
+     */
+    public JSONObject getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "VerificationResult{appMessageId=" + appMessageId
+                + ", found=" + isFound()
+                + ", elapsedMs=" + elapsed.toMillis()
+                + ", receiveCalls=" + receiveCalls
+                + ", propagationLatency=" + propagationLatency + "}";
+    }
+}
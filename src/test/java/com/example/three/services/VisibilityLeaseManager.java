@@ -0,0 +1,266 @@
+package com.example.three.services;
+
+// SDK v2 Imports
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps received SQS messages invisible while they are being processed (visibility heartbeat).
+ *
+ * Receivers track the receipt handles of the messages they hold. Every lease that has used up half of the
+ * queue's visibility timeout is extended by another full timeout, with ChangeMessageVisibilityBatch calls of
+ * up to 10 entries. A lease ends when its message is deleted through a {@link SqsDeleteCoalescer} or released
+ * through the {@link SqsVisibilityReleaser}, when SQS rejects the extension (the message was deleted or
+ * expired elsewhere), or after the maximum lease time, so a message that was dropped without being deleted
+ * is not kept invisible forever.
+ *
+ * There is one manager per queue, and all of them share a single heartbeat thread: a renewal round costs one
+ * map scan and one call per 10 due leases, so the thread keeps up with thousands of leases.
+ */
+public class VisibilityLeaseManager implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(VisibilityLeaseManager.class);
+
+    private static final Map<String, VisibilityLeaseManager> MANAGERS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sqs-visibility-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Maximum number of entries SQS accepts in a single ChangeMessageVisibilityBatch call */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    private static final int DEFAULT_VISIBILITY_TIMEOUT_SECONDS = 30;
+    private static final Duration DEFAULT_MAX_LEASE = Duration.ofMinutes(10);
+    private static final long MIN_TICK_MILLIS = 100;
+    private static final long MAX_TICK_MILLIS = 1000;
+
+    private volatile SqsClient sqsClient;
+    private final String queueUrl;
+    private final int visibilityTimeoutSeconds;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> heartbeat;
+    private volatile long maxLeaseNanos = DEFAULT_MAX_LEASE.toNanos();
+
+    /**
+     * Gets the lease manager of a queue, starting it on first use. The queue's VisibilityTimeout is read once,
+     * when the manager starts. A later caller's client replaces the current one, so renewals never go through
+     * a client that the {@link AwsClientRegistry} closed after its last lease was released.
+     *
+     * @param sqsClient SQS client used for the extensions
+     * @param queueUrl URL of the SQS queue
+     * @return The lease manager of the queue
+     */
+    public static VisibilityLeaseManager forQueue(SqsClient sqsClient, String queueUrl) {
+        VisibilityLeaseManager manager = MANAGERS.computeIfAbsent(queueUrl,
+                url -> new VisibilityLeaseManager(sqsClient, url, readVisibilityTimeout(sqsClient, url)));
+        manager.sqsClient = sqsClient;
+        return manager;
+    }
+
+    /**
+     * Gets the lease manager of a queue if one was started
+     *
+     * @param queueUrl URL of the SQS queue
+     * @return The lease manager, or null if the queue has no visibility heartbeat
+     */
+    static VisibilityLeaseManager find(String queueUrl) {
+        return MANAGERS.get(queueUrl);
+    }
+
+    /**
+     * Ends the lease of a message that is deleted or released, if its queue has a lease manager
+     *
+     * @param queueUrl URL of the SQS queue
+     * @param receiptHandle Receipt handle of the message
+     */
+    static void endLease(String queueUrl, String receiptHandle) {
+        VisibilityLeaseManager manager = MANAGERS.get(queueUrl);
+        if (manager != null) {
+            manager.untrack(receiptHandle);
+        }
+    }
+
+    private VisibilityLeaseManager(SqsClient sqsClient, String queueUrl, int visibilityTimeoutSeconds) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+
+        // A few ticks per half timeout, so a lease is renewed well before it runs out
+        long tickMillis = Math.max(MIN_TICK_MILLIS, Math.min(MAX_TICK_MILLIS,
+                TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds) / 4));
+        this.heartbeat = HEARTBEAT.scheduleWithFixedDelay(this::renewDueLeases, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static int readVisibilityTimeout(SqsClient sqsClient, String queueUrl) {
+        try {
+            String value = sqsClient.getQueueAttributes(GetQueueAttributesRequest.builder()
+                    .queueUrl(queueUrl)
+                    .attributeNames(QueueAttributeName.VISIBILITY_TIMEOUT)
+                    .build()).attributes().get(QueueAttributeName.VISIBILITY_TIMEOUT);
+            if (value != null) {
+                return Math.max(1, Integer.parseInt(value));
+            }
+        } catch (SdkException | NumberFormatException e) {
+            LOG.warn("Could not read the visibility timeout of {}, assuming {} seconds: {}", queueUrl,
+                    DEFAULT_VISIBILITY_TIMEOUT_SECONDS, e.getMessage());
+        }
+        return DEFAULT_VISIBILITY_TIMEOUT_SECONDS;
+    }
+
+    /**
+     * Limits how long a message is kept invisible in total. Defaults to 10 minutes; SQS itself allows 12 hours.
+     *
+     * @param maxLease Maximum time from tracking a message until its lease is given up
+     */
+    public void setMaxLeaseDuration(Duration maxLease) {
+        this.maxLeaseNanos = maxLease.toNanos();
+    }
+
+    /**
+     * Starts extending the visibility of a message that was just received
+     *
+     * @param message The received message
+     */
+    public void track(Message message) {
+        long now = System.nanoTime();
+        leases.putIfAbsent(message.receiptHandle(), new Lease(now, now + TimeUnit.SECONDS.toNanos(visibilityTimeoutSeconds)));
+    }
+
+    /**
+     * Starts extending the visibility of messages that were just received
+     *
+     * @param messages The received messages
+     */
+    public void track(List<Message> messages) {
+        for (Message message : messages) {
+            track(message);
+        }
+    }
+
+    /**
+     * Stops extending the visibility of a message
+     *
+     * @param receiptHandle Receipt handle of the message
+     * @return true if the message was tracked
+     */
+    public boolean untrack(String receiptHandle) {
+        return leases.remove(receiptHandle) != null;
+    }
+
+    /**
+     * @return Number of messages whose visibility is currently extended
+     */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * @return The queue's visibility timeout, which is also the length of every extension
+     */
+    public Duration getVisibilityTimeout() {
+        return Duration.ofSeconds(visibilityTimeoutSeconds);
+    }
+
+    /**
+     * Stops the heartbeat of this queue. Tracked messages become visible again when their timeout runs out.
+     */
+    @Override
+    public void close() {
+        MANAGERS.remove(queueUrl, this);
+        heartbeat.cancel(false);
+        leases.clear();
+    }
+
+    private void renewDueLeases() {
+        long now = System.nanoTime();
+        long renewWithin = TimeUnit.SECONDS.toNanos(visibilityTimeoutSeconds) / 2;
+        List<String> due = new ArrayList<>();
+        int expired = 0;
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (now - lease.trackedAt >= maxLeaseNanos) {
+                leases.remove(entry.getKey(), lease); // Held too long, probably dropped without a delete
+                expired++;
+            } else if (lease.expiresAt - now <= renewWithin) {
+                due.add(entry.getKey());
+            }
+        }
+        if (expired > 0) {
+            LOG.warn("Gave up the visibility lease of {} messages on {} after the maximum lease time", expired, queueUrl);
+        }
+
+        for (int start = 0; start < due.size(); start += MAX_BATCH_ENTRIES) {
+            try {
+                renew(due.subList(start, Math.min(start + MAX_BATCH_ENTRIES, due.size())));
+            } catch (RuntimeException e) {
+                // Never let one failure cancel the heartbeat; the leases are retried on the next tick
+                LOG.warn("Visibility heartbeat failed for {}: {}", queueUrl, e.getMessage());
+            }
+        }
+    }
+
+    private void renew(List<String> receiptHandles) {
+        Map<String, String> byId = new HashMap<>();
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(receiptHandles.size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            String id = Integer.toString(i); // Only needs to be unique within the batch
+            byId.put(id, receiptHandles.get(i));
+            entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                    .id(id)
+                    .receiptHandle(receiptHandles.get(i))
+                    .visibilityTimeout(visibilityTimeoutSeconds)
+                    .build());
+        }
+
+        long sentAt = System.nanoTime();
+        ChangeMessageVisibilityBatchResponse response = sqsClient.changeMessageVisibilityBatch(
+                ChangeMessageVisibilityBatchRequest.builder()
+                        .queueUrl(queueUrl)
+                        .entries(entries)
+                        .build());
+
+        long expiresAt = sentAt + TimeUnit.SECONDS.toNanos(visibilityTimeoutSeconds);
+        for (ChangeMessageVisibilityBatchResultEntry result : response.successful()) {
+            Lease lease = leases.get(byId.get(result.id()));
+            if (lease != null) {
+                lease.expiresAt = expiresAt;
+            }
+        }
+        for (BatchResultErrorEntry error : response.failed()) {
+            // Deleted, released or already visible again; there is nothing left to extend
+            leases.remove(byId.get(error.id()));
+        }
+    }
+
+    private static final class Lease {
+        private final long trackedAt;
+        private volatile long expiresAt;
+
+        private Lease(long trackedAt, long expiresAt) {
+            this.trackedAt = trackedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.three.tests;
+
+import com.example.three.base.BaseTest;
+import com.example.three.services.AdaptiveRateLimiter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the pacing and the AIMD rate changes of the {@link AdaptiveRateLimiter} on a fake clock
+ */
+public class AdaptiveRateLimiterTest extends BaseTest {
+    private final AtomicLong now = new AtomicLong();
+
+    @BeforeMethod
+    public void resetClock() {
+        now.set(0);
+    }
+
+    @Test(description = "Test that permits beyond the burst are paced at the current rate")
+    public void testPacesBeyondTheBurst() {
+        try (AdaptiveRateLimiter limiter = limiter(new AdaptiveRateLimiter.Settings(20, 20, 0))) {
+            long[] waits = new long[12];
+            for (int i = 0; i < waits.length; i++) {
+                waits[i] = limiter.reserve(1);
+            }
+            // 2 permits of burst at 20 per second, every further permit 50 ms after the previous one
+            getSoftAssert().assertEquals(waits[0], 0L, "The burst should not wait");
+            getSoftAssert().assertEquals(waits[1], 0L, "The burst should not wait");
+            assertMillis(waits[2], 50, "The first permit beyond the burst");
+            assertMillis(waits[11], 500, "The 12th permit");
+
+            advanceMillis(500);
+            assertMillis(limiter.reserve(1), 50, "After the debt was paid off, the next permit");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that throttling cuts the rate to 70% at most once per second, down to 1 per second")
+    public void testMultiplicativeDecrease() {
+        try (AdaptiveRateLimiter limiter = limiter(new AdaptiveRateLimiter.Settings(20, 100, 10))) {
+            limiter.onCallCompleted(true, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 14.0, 1e-9, "A throttled call should cut the rate to 70%");
+            limiter.onCallCompleted(false, true);
+            getSoftAssert().assertEquals(limiter.getRate(), 14.0, 1e-9, "A retry right after a cut should not cut again");
+
+            advanceMillis(999);
+            limiter.onCallCompleted(true, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 14.0, 1e-9, "Throttling within the cooldown should not cut again");
+
+            advanceMillis(1);
+            limiter.onCallCompleted(false, true);
+            getSoftAssert().assertEquals(limiter.getRate(), 9.8, 1e-9, "A retried call after the cooldown should cut the rate");
+
+            for (int i = 0; i < 20; i++) {
+                advanceMillis(1000);
+                limiter.onCallCompleted(true, false);
+            }
+            getSoftAssert().assertEquals(limiter.getRate(), 1.0, 1e-9, "The rate should not drop below 1 per second");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that successful calls raise the rate additively, only while callers wait")
+    public void testAdditiveIncrease() {
+        try (AdaptiveRateLimiter limiter = limiter(new AdaptiveRateLimiter.Settings(10, 20, 4))) {
+            advanceMillis(1000);
+            limiter.onCallCompleted(false, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 10.0, 1e-9, "An idle limiter should not raise the rate");
+
+            limiter.reserve(5); // Empties the bucket, so callers wait
+            advanceMillis(500);
+            limiter.onCallCompleted(false, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 12.0, 1e-9, "Half a second at 4 per second should add 2");
+
+            advanceMillis(1000);
+            limiter.onCallCompleted(false, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 12.0, 1e-9, "The rate should stop rising once callers stop waiting");
+
+            advanceMillis(1000);
+            limiter.reserve(100);
+            advanceMillis(1000);
+            limiter.onCallCompleted(false, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 16.0, 1e-9, "A long gap should add at most one second of increase");
+
+            for (int i = 0; i < 5; i++) {
+                limiter.reserve(100);
+                advanceMillis(1000);
+                limiter.onCallCompleted(false, false);
+            }
+            getSoftAssert().assertEquals(limiter.getRate(), 20.0, 1e-9, "The rate should not rise above the maximum");
+
+            limiter.onCallCompleted(true, false);
+            limiter.reserve(100);
+            advanceMillis(500);
+            limiter.onCallCompleted(false, false);
+            getSoftAssert().assertEquals(limiter.getRate(), 14.0, 1e-9, "The rate should not rise within the cooldown of a cut");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    private AdaptiveRateLimiter limiter(AdaptiveRateLimiter.Settings settings) {
+        return AdaptiveRateLimiter.forKey("rate-limit-test-" + UUID.randomUUID(), settings, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private void assertMillis(long waitNanos, long expectedMillis, String permit) {
+        getSoftAssert().assertEquals((double) waitNanos, (double) TimeUnit.MILLISECONDS.toNanos(expectedMillis), 1000.0,
+                permit + " should wait " + expectedMillis + " ms");
+    }
+}
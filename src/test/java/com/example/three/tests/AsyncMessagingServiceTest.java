@@ -0,0 +1,68 @@
+package com.example.three.tests;
+
+// SDK v2 Imports
+import software.amazon.awssdk.regions.Region;
+import com.example.three.base.BaseTest;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.services.AsyncMessagingService;
+import com.example.three.utils.AwsConfigUtility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link AsyncMessagingService} against a private emulator
+ */
+public class AsyncMessagingServiceTest extends BaseTest {
+    private SnsSqsEmulator emulator;
+    private String topicArn;
+    private String queueUrl;
+
+    @BeforeClass
+    public void startEmulator() throws IOException {
+        emulator = SnsSqsEmulator.start(0);
+        topicArn = emulator.createTopic("async-service");
+        queueUrl = emulator.createQueue("async-service", Collections.emptyMap());
+        emulator.subscribe(topicArn, queueUrl, false, null);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopEmulator() {
+        emulator.close();
+    }
+
+    @Test(description = "Test that a message sent without blocking is found and deleted in SQS")
+    public void testSendAndVerify() throws Exception {
+        try (AsyncMessagingService service = new AsyncMessagingService(topicArn, queueUrl, Region.US_EAST_1,
+                SnsSqsEmulator.credentialsProvider())) {
+            service.setEndpointOverride(emulator.endpoint());
+            service.initialize();
+
+            String messageId = service.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath()).get(10, TimeUnit.SECONDS);
+            getSoftAssert().assertNotNull(messageId, "Message ID should not be null");
+            getSoftAssert().assertTrue(service.checkMessageInSqs(messageId, 0, 5, 1).get(30, TimeUnit.SECONDS),
+                    "Message should be verified in SQS");
+            getSoftAssert().assertFalse(service.checkMessageInSqs(messageId, 0, 1, 0).get(30, TimeUnit.SECONDS),
+                    "A verified message should have been deleted");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that static keys without a session token work")
+    public void testStaticKeysWithoutSessionToken() throws Exception {
+        try (AsyncMessagingService service = new AsyncMessagingService(topicArn, queueUrl, Region.US_EAST_1,
+                "test-access-key", "test-secret-key", null)) {
+            service.setEndpointOverride(emulator.endpoint());
+            service.initialize();
+
+            String messageId = service.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath()).get(10, TimeUnit.SECONDS);
+            getSoftAssert().assertTrue(service.checkMessageInSqs(messageId, 0, 5, 1).get(30, TimeUnit.SECONDS),
+                    "Message should be verified in SQS");
+        }
+        getSoftAssert().assertAll();
+    }
+}
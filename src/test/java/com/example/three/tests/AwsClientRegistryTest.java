@@ -0,0 +1,65 @@
+package com.example.three.tests;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import com.example.three.base.BaseTest;
+import com.example.three.services.AwsClientRegistry;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+/**
+ * Tests sharing, credentials identities and closing of the clients of the {@link AwsClientRegistry}
+ */
+public class AwsClientRegistryTest extends BaseTest {
+    // A private endpoint, so no other test shares the clients built here
+    private static final URI ENDPOINT = URI.create("http://localhost:1/client-registry-test");
+
+    @Test(description = "Test that a client is shared while leased and closed with its last lease")
+    public void testClosesClientWithLastLease() {
+        AwsClientRegistry registry = AwsClientRegistry.getInstance();
+        StaticCredentialsProvider provider = StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIATEST", "secret"));
+        Object identity = AwsClientRegistry.credentialsIdentity(provider);
+
+        int openBefore = registry.openClientCount();
+        AwsClientRegistry.Lease<SqsClient> first = registry.acquireSqsClient(Region.US_EAST_1, provider, identity, ENDPOINT);
+        AwsClientRegistry.Lease<SqsClient> second = registry.acquireSqsClient(Region.US_EAST_1, provider, identity, ENDPOINT);
+        getSoftAssert().assertSame(second.client(), first.client(), "Equal identities should share the client");
+        getSoftAssert().assertEquals(registry.openClientCount(), openBefore + 1, "A shared client should be built once");
+
+        first.close();
+        first.close();
+        getSoftAssert().assertEquals(registry.openClientCount(), openBefore + 1, "A leased client should stay open");
+        second.close();
+        getSoftAssert().assertEquals(registry.openClientCount(), openBefore, "The last release should close the client");
+
+        try (AwsClientRegistry.Lease<SqsClient> third = registry.acquireSqsClient(Region.US_EAST_1, provider, identity, ENDPOINT)) {
+            getSoftAssert().assertNotSame(third.client(), first.client(), "A closed client should not be handed out again");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that static keys are identified by access key and providers by instance")
+    public void testCredentialsIdentities() {
+        getSoftAssert().assertEquals(
+                AwsClientRegistry.credentialsIdentity(AwsSessionCredentials.create("AKIATEST", "secret", "token-1")),
+                AwsClientRegistry.credentialsIdentity(AwsSessionCredentials.create("AKIATEST", "secret", "token-2")),
+                "Static keys should be identified by the access key only");
+        getSoftAssert().assertNotEquals(
+                AwsClientRegistry.credentialsIdentity(AwsBasicCredentials.create("AKIATEST", "secret")),
+                AwsClientRegistry.credentialsIdentity(AwsBasicCredentials.create("AKIAOTHER", "secret")),
+                "Different access keys should not share a client");
+
+        StaticCredentialsProvider provider = StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIATEST", "secret"));
+        StaticCredentialsProvider other = StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIATEST", "secret"));
+        getSoftAssert().assertEquals(AwsClientRegistry.credentialsIdentity(provider), AwsClientRegistry.credentialsIdentity(provider),
+                "A provider should always give the same identity");
+        getSoftAssert().assertNotEquals(AwsClientRegistry.credentialsIdentity(provider), AwsClientRegistry.credentialsIdentity(other),
+                "Different provider instances should not share a client");
+        getSoftAssert().assertAll();
+    }
+}
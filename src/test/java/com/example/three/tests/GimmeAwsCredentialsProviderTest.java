@@ -0,0 +1,145 @@
+package com.example.three.tests;
+
+// SDK v2 Imports
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import com.example.three.base.BaseTest;
+import com.example.three.services.GimmeAwsCredentialsProvider;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests the credentials file parsing and reloading of the {@link GimmeAwsCredentialsProvider} on temporary files
+ */
+public class GimmeAwsCredentialsProviderTest extends BaseTest {
+    private Path directory;
+    private Path credentialsFile;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("aws-credentials");
+        credentialsFile = directory.resolve("credentials");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test(description = "Test that comments, quoted values and a commented header are parsed")
+    public void testParsesQuotedAndCommentedProfile() throws IOException {
+        write("# Written by gimme-aws-creds",
+                "[other]",
+                "aws_access_key_id = OTHERKEY",
+                "aws_secret_access_key = othersecret",
+                "",
+                "[ default ] ; refreshed hourly",
+                "; aws_access_key_id = OLDKEY",
+                "aws_access_key_id = \"AKIADEFAULT\"",
+                "aws_secret_access_key=\"secret=with=equals\"",
+                "# aws_session_token = expired",
+                "aws_session_token = token",
+                "[next]",
+                "aws_session_token = other-token");
+
+        try (GimmeAwsCredentialsProvider provider = new GimmeAwsCredentialsProvider(credentialsFile, "default")) {
+            AwsCredentials credentials = provider.resolveCredentials();
+            getSoftAssert().assertTrue(credentials instanceof AwsSessionCredentials, "A session token should give session credentials");
+            getSoftAssert().assertEquals(credentials.accessKeyId(), "AKIADEFAULT", "Quotes should be removed");
+            getSoftAssert().assertEquals(credentials.secretAccessKey(), "secret=with=equals", "Only the first = should split");
+            if (credentials instanceof AwsSessionCredentials) {
+                getSoftAssert().assertEquals(((AwsSessionCredentials) credentials).sessionToken(), "token",
+                        "Comments and the next profile should not override the token");
+            }
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a profile without a session token gives basic credentials")
+    public void testProfileWithoutSessionToken() throws IOException {
+        write("[default]",
+                "aws_access_key_id = AKIABASIC",
+                "aws_secret_access_key = secret");
+
+        try (GimmeAwsCredentialsProvider provider = new GimmeAwsCredentialsProvider(credentialsFile, "default")) {
+            getSoftAssert().assertTrue(provider.resolveCredentials() instanceof AwsBasicCredentials,
+                    "Without a session token the credentials should be basic");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a missing profile or file fails with the reason")
+    public void testMissingProfile() throws IOException {
+        write("[other]",
+                "aws_access_key_id = OTHERKEY",
+                "aws_secret_access_key = othersecret");
+
+        try (GimmeAwsCredentialsProvider provider = new GimmeAwsCredentialsProvider(credentialsFile, "default")) {
+            SdkClientException failure = resolveFailure(provider);
+            getSoftAssert().assertTrue(failure != null && failure.getCause() instanceof IOException,
+                    "A missing profile should fail with an IOException cause");
+        }
+        try (GimmeAwsCredentialsProvider provider = new GimmeAwsCredentialsProvider(directory.resolve("missing"), "default")) {
+            SdkClientException failure = resolveFailure(provider);
+            getSoftAssert().assertTrue(failure != null && failure.getCause() instanceof IOException,
+                    "A missing file should fail with an IOException cause");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that the profile is cached and parsed again after the file is rewritten")
+    public void testReloadsRewrittenFile() throws IOException, InterruptedException {
+        write("[default]",
+                "aws_access_key_id = AKIAFIRST",
+                "aws_secret_access_key = secret",
+                "aws_session_token = first-token");
+
+        try (GimmeAwsCredentialsProvider provider = new GimmeAwsCredentialsProvider(credentialsFile, "default")) {
+            AwsCredentials first = provider.resolveCredentials();
+            getSoftAssert().assertSame(provider.resolveCredentials(), first, "An unchanged file should not be parsed again");
+
+            // A longer token changes the size too, so even a coarse modification time cannot hide the change
+            write("[default]",
+                    "aws_access_key_id = AKIAFIRST",
+                    "aws_secret_access_key = secret",
+                    "aws_session_token = refreshed-session-token");
+
+            // Picked up by the file watcher, or at the latest by the check once per second
+            long deadline = System.currentTimeMillis() + 5000;
+            AwsCredentials reloaded = provider.resolveCredentials();
+            while (reloaded == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                reloaded = provider.resolveCredentials();
+            }
+            getSoftAssert().assertTrue(reloaded instanceof AwsSessionCredentials
+                            && ((AwsSessionCredentials) reloaded).sessionToken().equals("refreshed-session-token"),
+                    "The refreshed session token should be picked up without a new provider");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(credentialsFile, String.join(System.lineSeparator(), lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SdkClientException resolveFailure(GimmeAwsCredentialsProvider provider) {
+        try {
+            provider.resolveCredentials();
+            return null;
+        } catch (SdkClientException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.three.tests;
+
+import com.example.three.base.BaseTest;
+import com.example.three.utils.JsonUtility;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests streaming reads, writes and updates of the {@link JsonUtility} on temporary files
+ */
+public class JsonUtilityTest extends BaseTest {
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("json-utility");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        JsonUtility.setMapWindowBytes(JsonUtility.DEFAULT_MAP_WINDOW_BYTES);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test(description = "Test that written files have the layout of org.json's toString(4) and read back the same")
+    public void testWriteMatchesToStringLayout() throws IOException {
+        JSONObject payload = payload();
+        String file = directory.resolve("payload.json").toString();
+
+        JsonUtility.writeJsonFile(payload, file);
+        getSoftAssert().assertEquals(read(file), payload.toString(4), "The file should be laid out like toString(4)");
+        getSoftAssert().assertTrue(JsonUtility.readJsonFile(file).similar(payload), "The file should read back the same values");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a file is updated in place, keeping the other fields and appending new ones")
+    public void testUpdateJsonFile() throws IOException {
+        String file = directory.resolve("payload.json").toString();
+        JsonUtility.writeJsonFile(payload(), file);
+
+        JsonUtility.updateJsonFile(file, new JSONObject().put("status", "sent"));
+        getSoftAssert().assertEquals(read(file), payload().put("status", "sent").toString(4),
+                "Copied fields should keep their place and layout");
+
+        JSONObject updates = new JSONObject()
+                .put("data", new JSONObject().put("orderId", 7).put("items", new JSONArray().put("c").put("d")))
+                .put("attempt", 2);
+        JsonUtility.updateJsonFile(file, updates);
+
+        JSONObject expected = payload()
+                .put("status", "sent")
+                .put("data", new JSONObject().put("orderId", 7).put("items", new JSONArray().put("c").put("d")))
+                .put("attempt", 2);
+        JSONObject updated = JsonUtility.readJsonFile(file);
+        getSoftAssert().assertTrue(updated.similar(expected), "The updates should replace and add fields: " + updated);
+        getSoftAssert().assertTrue(read(file).endsWith(",\n    \"attempt\": 2\n}"), "New fields should be appended at the end");
+        getSoftAssert().assertEquals(tempFileCount(), 0L, "No temp file should be left behind");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a failed stream write leaves the target file untouched")
+    public void testFailedWriteKeepsTarget() throws IOException {
+        String file = directory.resolve("payload.json").toString();
+        JsonUtility.writeJsonFile(payload(), file);
+        String before = read(file);
+
+        IOException failure = null;
+        try {
+            JsonUtility.writeJsonStream(file, generator -> {
+                generator.writeStartObject();
+                generator.writeStringField("type", "partial");
+                throw new IOException("Writer failed");
+            });
+        } catch (IOException e) {
+            failure = e;
+        }
+        getSoftAssert().assertNotNull(failure, "The writer's failure should be thrown");
+        getSoftAssert().assertEquals(read(file), before, "The target should keep its old content");
+        getSoftAssert().assertEquals(tempFileCount(), 0L, "The temp file should be deleted");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that array elements are streamed in order across many small map windows")
+    public void testForEachArrayElementAcrossWindows() throws IOException {
+        String file = directory.resolve("records.json").toString();
+        int count = 200;
+        JsonUtility.writeJsonStream(file, generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("runId", "run-1");
+            generator.writeArrayFieldStart("skipped");
+            generator.writeNumber(1);
+            generator.writeNumber(2);
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("records");
+            for (int i = 0; i < count; i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("index", i);
+                generator.writeStringField("messageId", "id-" + i + "-café");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        });
+
+        // 7 bytes is not a multiple of anything in the file, so tokens and multi-byte characters span windows
+        JsonUtility.setMapWindowBytes(7);
+        List<JSONObject> records = new ArrayList<>();
+        long read = JsonUtility.forEachArrayElement(file, "records", records::add);
+
+        getSoftAssert().assertEquals(read, (long) count, "Every element should be counted");
+        getSoftAssert().assertEquals(records.size(), count, "Every element should be passed on");
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i).getInt("index") != i || !records.get(i).getString("messageId").equals("id-" + i + "-café")) {
+                getSoftAssert().fail("Element " + i + " should be read in order and intact: " + records.get(i));
+                break;
+            }
+        }
+        getSoftAssert().assertEquals(JsonUtility.readJsonFile(file).getJSONArray("records").length(), count,
+                "A whole file should read the same across windows");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a file that is itself an array is streamed, and asking it for a field fails")
+    public void testForEachArrayElementTopLevelArray() throws IOException {
+        String file = directory.resolve("array.json").toString();
+        Files.write(Path.of(file), "[{\"id\": 1}, {\"id\": 2}, {\"id\": 3}]".getBytes(StandardCharsets.UTF_8));
+        JsonUtility.setMapWindowBytes(5);
+
+        List<Integer> ids = new ArrayList<>();
+        getSoftAssert().assertEquals(JsonUtility.forEachArrayElement(file, null, element -> ids.add(element.getInt("id"))), 3L,
+                "Every element of a top-level array should be counted");
+        getSoftAssert().assertEquals(ids, List.of(1, 2, 3), "The elements should be read in order");
+
+        IOException failure = null;
+        try {
+            JsonUtility.forEachArrayElement(file, "records", element -> { });
+        } catch (IOException e) {
+            failure = e;
+        }
+        getSoftAssert().assertNotNull(failure, "An array field in a file that is not an object should fail");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a window size outside of 1 byte to 2 GB is rejected",
+            expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsEmptyWindow() {
+        JsonUtility.setMapWindowBytes(0);
+    }
+
+    // Every object and array holds at least two entries, where org.json's layout and the file's agree
+    private static JSONObject payload() {
+        return new JSONObject()
+                .put("type", "order")
+                .put("status", "new")
+                .put("data", new JSONObject()
+                        .put("orderId", 42)
+                        .put("express", true)
+                        .put("items", new JSONArray().put("a").put("b"))
+                        .put("note", JSONObject.NULL));
+    }
+
+    private String read(String file) throws IOException {
+        return new String(Files.readAllBytes(Path.of(file)), StandardCharsets.UTF_8);
+    }
+
+    private long tempFileCount() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.toString().endsWith(".tmp")).count();
+        }
+    }
+}
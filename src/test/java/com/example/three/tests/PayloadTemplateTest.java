@@ -0,0 +1,63 @@
+package com.example.three.tests;
+
+import com.example.three.base.BaseTest;
+import com.example.three.utils.PayloadTemplate;
+import org.json.JSONObject;
+import org.testng.annotations.Test;
+
+/**
+ * Tests rendering and field lookup of the {@link PayloadTemplate}
+ */
+public class PayloadTemplateTest extends BaseTest {
+
+    @Test(description = "Test that slots replace existing fields and the rest of the payload is kept")
+    public void testSubstitutesSlots() {
+        PayloadTemplate template = PayloadTemplate.compile(
+                "{\"messageId\":\"old\",\"type\":\"order\",\"data\":{\"orderId\":42}}", "messageId", "runId");
+
+        JSONObject rendered = new JSONObject(template.render("id-1", "run-1"));
+        getSoftAssert().assertEquals(rendered.getString("messageId"), "id-1", "The slot should replace the original value");
+        getSoftAssert().assertEquals(rendered.getString("runId"), "run-1", "Every slot should be rendered");
+        getSoftAssert().assertEquals(rendered.getString("type"), "order", "Other fields should be kept");
+        getSoftAssert().assertEquals(rendered.getJSONObject("data").getInt("orderId"), 42, "Nested fields should be kept");
+        getSoftAssert().assertEquals(rendered.length(), 4, "No field should be duplicated");
+        getSoftAssert().assertTrue(template.render("id-2", "run-1").startsWith("{\"messageId\":\"id-2\""),
+                "Slots should be rendered first");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that slot values that need escaping still give valid JSON")
+    public void testEscapesSlotValues() {
+        PayloadTemplate template = PayloadTemplate.compile("{\"type\":\"order\"}", "messageId");
+
+        String[] values = {"quote\"d", "back\\slash", "new\nline", "tab\tand/slash", "unicode é中", "\u0001"};
+        for (String value : values) {
+            JSONObject rendered = new JSONObject(template.render(value));
+            getSoftAssert().assertEquals(rendered.getString("messageId"), value, "The value should survive a round trip");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that missing keys are added as slots and read as null or the default")
+    public void testMissingKeys() {
+        PayloadTemplate template = PayloadTemplate.compile("{\"data\":{\"orderId\":\"o-1\",\"note\":null}}", "messageId");
+
+        JSONObject rendered = new JSONObject(template.render("id-1"));
+        getSoftAssert().assertEquals(rendered.getString("messageId"), "id-1", "A slot missing from the payload should be added");
+        getSoftAssert().assertEquals(template.optString("type", "default"), "default", "A missing field should give the default");
+        getSoftAssert().assertEquals(template.optPath("data.orderId"), "o-1", "A nested field should be found");
+        getSoftAssert().assertNull(template.optPath("data.customer"), "A missing nested field should be null");
+        getSoftAssert().assertNull(template.optPath("missing.orderId"), "A missing parent should be null");
+        getSoftAssert().assertNull(template.optPath("data.note"), "A JSON null should be null");
+
+        PayloadTemplate empty = PayloadTemplate.compile("{}", "messageId");
+        getSoftAssert().assertEquals(empty.render("id-1"), "{\"messageId\":\"id-1\"}", "An empty payload should only hold the slot");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that rendering with the wrong number of slot values fails",
+            expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsWrongSlotCount() {
+        PayloadTemplate.compile("{}", "messageId", "runId").render("id-1");
+    }
+}
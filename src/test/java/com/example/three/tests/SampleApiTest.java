@@ -1,64 +1,140 @@
 package com.example.three.tests;
 
 // SDK v2 Imports
-import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
 // import com.amazonaws.auth.AWSCredentials; // Remove SDK v1
 // import com.amazonaws.auth.BasicSessionCredentials; // Remove SDK v1
 import com.example.three.base.BaseTest;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.load.BulkPublishOptions;
+import com.example.three.load.BulkPublisher;
+import com.example.three.metrics.MetricsExporter;
+import com.example.three.metrics.SdkMetrics;
+import com.example.three.services.AdaptiveRateLimiter;
+import com.example.three.services.AwsClientRegistry;
+import com.example.three.services.BatchPublishOutcome;
+import com.example.three.services.FifoVerificationResult;
+import com.example.three.services.FlowResult;
+import com.example.three.services.LocalFileBlobStore;
+import com.example.three.services.MessageGroupKeyExtractor;
+import com.example.three.services.MessageFlowExecutor;
 import com.example.three.services.MessagingService;
+import com.example.three.services.MultiRegionMessagingService;
+import com.example.three.services.MultiRegionResult;
+import com.example.three.services.PayloadCodec;
+import com.example.three.services.PropagationLatencyStats;
+import com.example.three.services.RunIsolation;
+import com.example.three.services.SqsMessagePublisher;
+import com.example.three.services.VerificationResult;
 import com.example.three.utils.AwsConfigUtility;
+import com.example.three.utils.RegionTarget;
+import com.example.three.utils.SnsEnvelopeScanner;
 import com.example.three.services.AwsCredentialService; 
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.Test;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.sqs.model.Message;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 public class SampleApiTest extends BaseTest {
-    
+    private static final Logger LOG = LoggerFactory.getLogger(SampleApiTest.class);
+
     private MessagingService messagingService;
+    private AwsCredentialsProvider credentialsProvider;
+    private static MetricsExporter metricsExporter;
     
     @BeforeMethod 
     public void setupAwsService() throws IOException {
-        // Load credentials using AwsCredentialService (now returns SDK v2 AwsCredentials)
-        AwsCredentials credentials = AwsCredentialService.getGimmeAwsCredentials(); // Changed type to AwsCredentials
-        
-        String accessKey = null; // Initialize
-        String secretKey = null; // Initialize
-        String sessionToken = null; // Initialize to null
-
-        // Check if the credentials are an instance of AwsSessionCredentials (SDK v2)
-        if (credentials instanceof AwsSessionCredentials) {
-            AwsSessionCredentials sessionCredentials = (AwsSessionCredentials) credentials;
-            accessKey = sessionCredentials.accessKeyId(); // Use SDK v2 method
-            secretKey = sessionCredentials.secretAccessKey(); // Use SDK v2 method
-            sessionToken = sessionCredentials.sessionToken(); // Use SDK v2 method
-        } else {
-            // Handle case where it might be AwsBasicCredentials (no session token)
-            // This assumes AwsCredentialService returns AwsBasicCredentials if no session token
-            accessKey = credentials.accessKeyId(); // Use SDK v2 method
-            secretKey = credentials.secretAccessKey(); // Use SDK v2 method
-            System.err.println("Warning: AWS credentials did not include a session token or are not session credentials.");
-        }
+        // Shared provider: ~/.aws/credentials is parsed once and again only when gimme-aws-creds rewrites it
+        // The emulator accepts any credentials, so offline runs don't need gimme-aws-creds at all
+        credentialsProvider = AwsConfigUtility.isEmulatorEnabled()
+                ? SnsSqsEmulator.credentialsProvider()
+                : AwsCredentialService.getCredentialsProvider();
 
-        // Initialize the AWS messaging service using the config utility and loaded credentials
-        // Assuming MessagingService constructor was updated for SDK v2
+        // Initialize the AWS messaging service using the config utility and the credentials provider
         messagingService = new MessagingService(
             AwsConfigUtility.getSnsTopicArn(),
             AwsConfigUtility.getSqsQueueUrl(),
             AwsConfigUtility.getRegion(), // Use SDK v2 Region directly
-            accessKey, 
-            secretKey, 
-            sessionToken
+            credentialsProvider
         );
-        messagingService.initialize(); // Assuming initialize() is compatible or updated
+        messagingService.setEndpointOverride(AwsConfigUtility.getEndpointOverride()); // null for AWS
+        messagingService.setPayloadCodec(new PayloadCodec(
+            AwsConfigUtility.getPayloadCompressThresholdBytes(),
+            AwsConfigUtility.getPayloadOffloadThresholdBytes(),
+            new LocalFileBlobStore(Paths.get(AwsConfigUtility.getPayloadBlobStoreDir()))
+        ));
+        messagingService.setAdaptiveRateLimit(AdaptiveRateLimiter.Settings.fromConfig()); // null unless ratelimit.enabled
+        messagingService.setRunId(AwsConfigUtility.getRunId()); // null unless run.isolation.enabled
+        messagingService.initialize(); // Reuses the shared clients of the registry
         
-        System.out.println("AWS messaging service initialized for thread: " + Thread.currentThread().getId());
+        LOG.debug("AWS messaging service initialized for thread: {}", Thread.currentThread().getId());
+    }
+    
+    @AfterMethod
+    public void closeAwsService() {
+        // Sends the batched deletes that are still queued
+        if (messagingService != null) {
+            messagingService.close();
+        }
+    }
+
+    @BeforeSuite
+    public void startMetricsExport() {
+        // Snapshots of the SDK call metrics while the suite runs, no console output per call
+        String file = AwsConfigUtility.getMetricsExportFile();
+        if (file != null) {
+            metricsExporter = new MetricsExporter(SdkMetrics.forRun(), Paths.get(file), AwsConfigUtility.getMetricsExportInterval());
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void reportPropagationLatency() throws IOException {
+        // Per-run SNS-to-SQS latency histogram, our main SLO signal for the messaging pipeline
+        PropagationLatencyStats stats = PropagationLatencyStats.forRun();
+        LOG.info("{}", stats.describe());
+        stats.writeReport(Paths.get("build/reports/propagation-latency.json"));
+
+        LOG.info("{}", SdkMetrics.forRun().describe());
+        if (metricsExporter != null) {
+            metricsExporter.close(); // Writes the final snapshot
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void releaseAwsResources() {
+        // Unsubscribes and deletes the queues of the isolated runs, then closes any shared clients still open
+        RunIsolation.closeAll();
+        AwsClientRegistry.getInstance().shutdown();
     }
     
     @Test(description = "Test sending a message from JSON file to SNS and verifying in SQS")
     public void testSendMessageFromJsonFile() throws IOException, InterruptedException {
-        System.out.println("Executing testSendMessageFromJsonFile on thread: " + Thread.currentThread().getId());
+        LOG.debug("Executing testSendMessageFromJsonFile on thread: {}", Thread.currentThread().getId());
         
         // Send message from JSON file using the path from config utility
         String messageId = messagingService.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath());
@@ -66,12 +142,319 @@ public class SampleApiTest extends BaseTest {
         // Verify we got a message ID
         getSoftAssert().assertNotNull(messageId, "Message ID should not be null");
         
-        // Check the message in SQS
-        boolean messageVerified = messagingService.checkMessageInSqs(messageId, 5, 3, 2);
+        // Check the message in SQS, returning as soon as it arrives
+        VerificationResult verification = messagingService.verifyMessage(messageId, AwsConfigUtility.getVerificationTimeout());
+        LOG.info("Verification took {} ms, {}", verification.getElapsed().toMillis(),
+                verification.getPropagationLatency());
         
         // Assert the verification result
-        getSoftAssert().assertTrue(messageVerified, "Message should be successfully verified in SQS");
+        getSoftAssert().assertTrue(verification.isFound(), "Message should be successfully verified in SQS");
     
         getSoftAssert().assertAll();
     }
+
+    @Test(description = "Test sending many messages concurrently and verifying each of them in SQS")
+    public void testConcurrentSendAndVerify() {
+        // Soak runs raise this with -Dflow.count=50000; the default keeps the regular suite short
+        int count = Integer.getInteger("flow.count", 100);
+
+        List<FlowResult> results;
+        try (MessageFlowExecutor executor = new MessageFlowExecutor(messagingService, 16)) {
+            results = executor.runAll(AwsConfigUtility.getMessageJsonPath(), count, AwsConfigUtility.getVerificationTimeout());
+        }
+
+        long found = results.stream().filter(FlowResult::isFound).count();
+        LOG.info("Verified {} of {} concurrent flows", found, count);
+        results.stream().filter(result -> !result.isFound()).limit(10).forEach(result -> LOG.warn("{}", result));
+
+        getSoftAssert().assertEquals(found, (long) count, "Every concurrent message should be verified in SQS");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that payloads above the compression and offload thresholds arrive intact")
+    public void testLargePayloadsRoundTrip() throws InterruptedException {
+        // One payload between the thresholds (gzipped) and one above the offload threshold (claim check)
+        int compressedSize = AwsConfigUtility.getPayloadCompressThresholdBytes() + 1024;
+        int offloadedSize = AwsConfigUtility.getPayloadOffloadThresholdBytes() + 1024;
+        List<Integer> sizes = Arrays.asList(compressedSize, offloadedSize);
+
+        List<String> payloads = Arrays.asList(largePayload(compressedSize), largePayload(offloadedSize));
+        BatchPublishOutcome outcome = messagingService.sendMessages(payloads);
+        getSoftAssert().assertTrue(outcome.isAllPublished(), "Large payloads should be published: " + outcome.getFailures());
+
+        List<String> messageIds = outcome.getPublishedMessageIds();
+        for (int i = 0; i < messageIds.size(); i++) {
+            VerificationResult verification = messagingService.verifyMessage(messageIds.get(i), AwsConfigUtility.getVerificationTimeout());
+            getSoftAssert().assertTrue(verification.isFound(), "Large message should be verified in SQS");
+            if (verification.getPayload() != null) {
+                getSoftAssert().assertEquals(verification.getPayload().getJSONObject("data").getString("blob").length(),
+                        sizes.get(i).intValue(), "Decoded payload should match the published one");
+            } else {
+                getSoftAssert().fail("Payload of " + messageIds.get(i) + " should be decoded");
+            }
+        }
+
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test replaying a JSONL file through the bulk publish pipeline")
+    public void testBulkPublishFromJsonl() throws IOException, InterruptedException {
+        String payload = new JSONObject(new String(Files.readAllBytes(Paths.get(AwsConfigUtility.getMessageJsonPath())),
+                StandardCharsets.UTF_8)).toString();
+        List<String> lines = new ArrayList<>(Collections.nCopies(20, payload));
+        lines.add("not json"); // Counted as invalid, the run goes on
+
+        Path directory = Files.createTempDirectory("bulk-publish");
+        Path source = Files.write(directory.resolve("events.jsonl"), lines, StandardCharsets.UTF_8);
+        BulkPublishOptions options = BulkPublishOptions.parse(new String[] {
+                "--source", source.toString(), "--publishers", "4", "--queue", "8"});
+        JSONObject counts = new BulkPublisher(messagingService, options).run().getJSONObject("counts");
+
+        getSoftAssert().assertEquals(counts.getLong("read"), 21L, "Every line should be read");
+        getSoftAssert().assertEquals(counts.getLong("invalid"), 1L, "The malformed line should be counted as invalid");
+        getSoftAssert().assertEquals(counts.getLong("published"), 20L, "Every valid record should be published");
+        getSoftAssert().assertEquals(counts.getLong("publishErrors"), 0L, "No publish should fail");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a FIFO bulk publish keeps the source order of every message group")
+    public void testFifoBulkPublishKeepsGroupOrder() throws IOException, InterruptedException {
+        MessagingService fifoService = new MessagingService(
+            AwsConfigUtility.getSnsFifoTopicArn(),
+            AwsConfigUtility.getSqsFifoQueueUrl(),
+            AwsConfigUtility.getRegion(),
+            credentialsProvider
+        );
+        fifoService.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+        fifoService.setRunId(AwsConfigUtility.getRunId());
+        fifoService.setMessageGroupKeyExtractor(MessageGroupKeyExtractor.field("data.group"));
+        fifoService.initialize();
+
+        // 4 groups of 25 records, interleaved in the source; the tag keeps other tests' messages apart
+        int groups = 4;
+        int perGroup = 25;
+        String tag = UUID.randomUUID().toString();
+        List<String> lines = new ArrayList<>();
+        for (int seq = 0; seq < perGroup; seq++) {
+            for (int group = 0; group < groups; group++) {
+                lines.add(new JSONObject().put("data", new JSONObject()
+                        .put("group", "group-" + group)
+                        .put("seq", seq)
+                        .put("tag", tag)).toString());
+            }
+        }
+        Path directory = Files.createTempDirectory("bulk-publish-fifo");
+        Path source = Files.write(directory.resolve("events.jsonl"), lines, StandardCharsets.UTF_8);
+
+        Map<String, List<Integer>> receivedByGroup = new ConcurrentHashMap<>();
+        try {
+            // A short linger makes timer flushes race with full batches, which must not reorder a group
+            BulkPublishOptions options = BulkPublishOptions.parse(new String[] {
+                    "--source", source.toString(), "--publishers", "2", "--linger", "1", "--fifo"});
+            JSONObject counts = new BulkPublisher(fifoService, options).run().getJSONObject("counts");
+            getSoftAssert().assertEquals(counts.getLong("published"), (long) lines.size(), "Every record should be published");
+
+            CountDownLatch allReceived = new CountDownLatch(lines.size());
+            try (SqsMessagePublisher publisher = fifoService.newReceivePublisher(20, 2)) {
+                publisher.subscribe(new Flow.Subscriber<Message>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    @Override
+                    public void onNext(Message message) {
+                        try {
+                            JSONObject data = fifoService.getPayloadCodec().decode(message).getJSONObject("data");
+                            if (tag.equals(data.optString("tag"))) {
+                                receivedByGroup.computeIfAbsent(data.getString("group"), group -> new ArrayList<>())
+                                        .add(data.getInt("seq"));
+                                allReceived.countDown();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // Not one of ours
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        allReceived.countDown();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+                allReceived.await(AwsConfigUtility.getVerificationTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            fifoService.close();
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int seq = 0; seq < perGroup; seq++) {
+            expected.add(seq);
+        }
+        for (int group = 0; group < groups; group++) {
+            getSoftAssert().assertEquals(receivedByGroup.get("group-" + group), expected,
+                    "group-" + group + " should arrive in source order");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that two isolated runs on the same topic only receive their own messages")
+    public void testRunIsolationSeparatesParallelRuns() throws IOException, InterruptedException {
+        MessagingService runA = isolatedService("isolation-a-" + UUID.randomUUID().toString().substring(0, 8));
+        MessagingService runB = isolatedService("isolation-b-" + UUID.randomUUID().toString().substring(0, 8));
+        try {
+            getSoftAssert().assertNotEquals(runA.getQueueUrl(), runB.getQueueUrl(), "Each run should receive from its own queue");
+
+            String messageA = runA.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath());
+            String messageB = runB.sendMessageFromJsonFile(AwsConfigUtility.getMessageJsonPath());
+
+            getSoftAssert().assertTrue(runA.awaitMessageInSqs(messageA, AwsConfigUtility.getVerificationTimeout()),
+                    "Run A should receive its own message");
+            getSoftAssert().assertTrue(runB.awaitMessageInSqs(messageB, AwsConfigUtility.getVerificationTimeout()),
+                    "Run B should receive its own message");
+            // The filter policies keep each run's message out of the other run's queue
+            getSoftAssert().assertFalse(runA.awaitMessageInSqs(messageB, Duration.ofSeconds(2)), "Run A should not receive the message of run B");
+            getSoftAssert().assertFalse(runB.awaitMessageInSqs(messageA, Duration.ofSeconds(2)), "Run B should not receive the message of run A");
+        } finally {
+            runA.close();
+            runB.close();
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test publishing and verifying in all configured regions at once")
+    public void testMultiRegionPublishAndVerify() throws IOException {
+        List<RegionTarget> targets = new ArrayList<>(AwsConfigUtility.getRegionTargets());
+        if (AwsConfigUtility.isEmulatorEnabled() && targets.size() == 1) {
+            // Offline, a second emulated region stands in for the active-active partner
+            String suffix = "-" + Region.US_WEST_2.id();
+            RegionTarget partner = new RegionTarget(Region.US_WEST_2, AwsConfigUtility.getSnsTopicArn() + suffix,
+                    AwsConfigUtility.getSqsQueueUrl() + suffix);
+            SnsSqsEmulator.shared().provision(partner.getSnsTopicArn(), partner.getSqsQueueUrl());
+            targets.add(partner);
+        }
+
+        MultiRegionResult result;
+        try (MultiRegionMessagingService multiRegion = new MultiRegionMessagingService(targets, credentialsProvider, 4)) {
+            multiRegion.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+            multiRegion.setRunId(AwsConfigUtility.getRunId());
+            multiRegion.initialize();
+            result = multiRegion.runFlows(AwsConfigUtility.getMessageJsonPath(), 10, AwsConfigUtility.getVerificationTimeout());
+        }
+        LOG.info("{}", result.describe());
+        Path report = Paths.get("build/reports/multi-region.json");
+        Files.createDirectories(report.getParent());
+        Files.write(report, result.toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+
+        for (RegionTarget target : result.getRegions()) {
+            getSoftAssert().assertEquals(result.getFoundCount(target), 10L, "Every message should be verified in " + target);
+        }
+        getSoftAssert().assertTrue(result.isSuccessful(), "The combined result should be successful");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a FIFO topic delivers every message group in order, verifying the groups in parallel")
+    public void testFifoOrderingAcrossGroups() throws IOException, InterruptedException {
+        MessagingService fifoService = new MessagingService(
+            AwsConfigUtility.getSnsFifoTopicArn(),
+            AwsConfigUtility.getSqsFifoQueueUrl(),
+            AwsConfigUtility.getRegion(),
+            credentialsProvider
+        );
+        fifoService.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+        fifoService.setRunId(AwsConfigUtility.getRunId());
+        String groupKeyPath = AwsConfigUtility.getFifoGroupKeyPath();
+        fifoService.setMessageGroupKeyExtractor(groupKeyPath != null
+                ? MessageGroupKeyExtractor.field(groupKeyPath)
+                : MessageGroupKeyExtractor.spread(AwsConfigUtility.getFifoGroupCount()));
+        fifoService.initialize();
+
+        try {
+            BatchPublishOutcome outcome = fifoService.sendMessagesFromJsonFile(AwsConfigUtility.getMessageJsonPath(), 50);
+            getSoftAssert().assertTrue(outcome.isAllPublished(), "All FIFO messages should be published: " + outcome.getFailures());
+
+            FifoVerificationResult result = fifoService.verifyFifoOrder(outcome.getPublishedMessageIdsByGroup(),
+                    AwsConfigUtility.getVerificationTimeout());
+
+            getSoftAssert().assertTrue(result.isComplete(), "Every FIFO message should arrive, missing: " + result.getMissing());
+            getSoftAssert().assertTrue(result.getOrderViolations().isEmpty(),
+                    "Each group should arrive in publish order: " + result.getOrderViolations());
+            getSoftAssert().assertTrue(result.getSequenceViolations().isEmpty(),
+                    "Sequence numbers should increase within each group: " + result.getSequenceViolations());
+        } finally {
+            fifoService.close();
+        }
+
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test receiving a published batch through the reactive receive stream with bounded demand")
+    public void testReceiveStreamDeliversBatch() throws IOException, InterruptedException {
+        BatchPublishOutcome outcome = messagingService.sendMessagesFromJsonFile(AwsConfigUtility.getMessageJsonPath(), 30);
+        getSoftAssert().assertTrue(outcome.isAllPublished(), "All messages should be published: " + outcome.getFailures());
+
+        Set<String> pending = ConcurrentHashMap.newKeySet();
+        pending.addAll(outcome.getPublishedMessageIds());
+        CountDownLatch allReceived = new CountDownLatch(1);
+
+        try (SqsMessagePublisher publisher = messagingService.newReceivePublisher(20, 2)) {
+            publisher.subscribe(new Flow.Subscriber<Message>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(5); // Small windows keep the prefetch buffer from filling up
+                }
+
+                @Override
+                public void onNext(Message message) {
+                    String appMessageId = SnsEnvelopeScanner.extractField(message.body(), "messageId");
+                    if (pending.remove(appMessageId) && pending.isEmpty()) {
+                        allReceived.countDown();
+                        subscription.cancel();
+                    } else {
+                        subscription.request(1);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    LOG.warn("Receive stream failed: {}", error.toString());
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            allReceived.await(AwsConfigUtility.getVerificationTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        getSoftAssert().assertTrue(pending.isEmpty(), "Every message should arrive through the stream, missing: " + new HashSet<>(pending));
+        getSoftAssert().assertAll();
+    }
+
+    private MessagingService isolatedService(String runId) throws IOException {
+        MessagingService service = new MessagingService(
+            AwsConfigUtility.getSnsTopicArn(),
+            AwsConfigUtility.getSqsQueueUrl(),
+            AwsConfigUtility.getRegion(),
+            credentialsProvider
+        );
+        service.setEndpointOverride(AwsConfigUtility.getEndpointOverride());
+        service.setRunId(runId); // Run queues are removed with the others after the suite
+        service.initialize();
+        return service;
+    }
+
+    private static String largePayload(int size) {
+        return new JSONObject()
+                .put("data", new JSONObject().put("blob", String.join("", Collections.nCopies(size, "x"))))
+                .toString();
+    }
 }
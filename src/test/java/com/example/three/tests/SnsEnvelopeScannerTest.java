@@ -0,0 +1,91 @@
+package com.example.three.tests;
+
+import com.example.three.base.BaseTest;
+import com.example.three.utils.SnsEnvelopeScanner;
+import org.json.JSONObject;
+import org.testng.annotations.Test;
+
+/**
+ * Tests field extraction of the {@link SnsEnvelopeScanner} on raw, SNS-wrapped and malformed message bodies
+ */
+public class SnsEnvelopeScannerTest extends BaseTest {
+
+    @Test(description = "Test that a field is read from a raw message body")
+    public void testRawBody() {
+        String body = "{ \"type\" : \"order\", \"data\": {\"messageId\": \"nested\"}, \"messageId\" : \"id-1\" }";
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.extractField(body, "messageId"), "id-1", "The top-level field should be found");
+        getSoftAssert().assertTrue(SnsEnvelopeScanner.matches(body, "messageId", "id-1"), "The expected value should match");
+        getSoftAssert().assertFalse(SnsEnvelopeScanner.matches(body, "messageId", "nested"), "Nested fields should not match");
+        getSoftAssert().assertNull(SnsEnvelopeScanner.extractField("{\"data\":{\"messageId\":\"nested\"}}", "messageId"),
+                "Only top-level fields should be read");
+        getSoftAssert().assertNull(SnsEnvelopeScanner.extractField("{\"messageId\":42}", "messageId"), "Non-string values should be null");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a field is read from the payload inside an SNS envelope")
+    public void testSnsEnvelope() {
+        String body = envelope("{\"data\":{\"messageId\":\"nested\"},\"messageId\":\"id-1\"}");
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.extractField(body, "messageId"), "id-1", "The payload field should be found");
+        getSoftAssert().assertTrue(SnsEnvelopeScanner.matches(body, "messageId", "id-1"), "The expected value should match");
+        getSoftAssert().assertFalse(SnsEnvelopeScanner.matches(body, "messageId", "id-2"), "Other values should not match");
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.parsePayload(body, "messageId").getString("messageId"), "id-1",
+                "The payload should be parsed out of the envelope");
+        getSoftAssert().assertNull(SnsEnvelopeScanner.extractField(envelope("plain text"), "messageId"),
+                "A payload that is not JSON should give null");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that escaped quotes and unicode in the envelope's Message are decoded")
+    public void testEscapesInMessage() {
+        String expected = "id-\"q\" caf\u00e9 \u4e2d/\\";
+        // The payload escapes the value, the envelope escapes the payload again
+        String escapedPayload = "{\"messageId\":\"id-\\\"q\\\" caf\\u00e9 \\u4E2D\\/\\\\\"}";
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.extractField(envelope(escapedPayload), "messageId"), expected,
+                "Escape sequences in the payload should be decoded");
+        getSoftAssert().assertTrue(SnsEnvelopeScanner.matches(envelope(escapedPayload), "messageId", expected),
+                "A value that needs escaping should match");
+
+        String unescapedPayload = new JSONObject().put("messageId", expected).toString();
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.extractField(envelope(unescapedPayload), "messageId"), expected,
+                "Characters that are not escaped should be read as they are");
+        getSoftAssert().assertEquals(SnsEnvelopeScanner.extractField(unescapedPayload, "messageId"), expected,
+                "A raw body should be decoded the same way");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that truncated or malformed bodies give null instead of failing")
+    public void testMalformedBodies() {
+        String body = envelope("{\"type\":\"order\",\"messageId\":\"id-1\"}");
+        for (int length = 0; length < body.indexOf("id-1") + 4; length++) {
+            getSoftAssert().assertNull(SnsEnvelopeScanner.extractField(body.substring(0, length), "messageId"),
+                    "A body truncated to " + length + " characters should give null");
+        }
+
+        String[] malformed = {
+                null,
+                "",
+                "not json",
+                "[\"messageId\",\"id-1\"]",
+                "{\"messageId\" \"id-1\"}",
+                "{\"type\":\"order\" \"messageId\":\"id-1\"}",
+                "{\"messageId\":\"\\u12",
+                "{\"messageId\":\"\\uZZZZ\"}",
+                "{\"Type\":\"Notification\",\"Message\":\"{\\\"messageId\\\":\\\"\\\\uZZZZ\\\"}\"}",
+                "{\"Type\":\"Notification\",\"Message\":\"{\\\"messageId\\\":\\\"id-1"
+        };
+        for (String candidate : malformed) {
+            getSoftAssert().assertNull(SnsEnvelopeScanner.extractField(candidate, "messageId"),
+                    "A malformed body should give null: " + candidate);
+        }
+        getSoftAssert().assertAll();
+    }
+
+    private static String envelope(String message) {
+        return new JSONObject()
+                .put("Type", "Notification")
+                .put("MessageId", "sns-1")
+                .put("TopicArn", "arn:aws:sns:us-east-1:000000000000:orders")
+                .put("Message", message)
+                .toString();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.three.tests;
+
+// SDK v2 Imports
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import com.example.three.base.BaseTest;
+import com.example.three.emulator.SnsSqsEmulator;
+import com.example.three.services.FifoMessageKeys;
+import com.example.three.services.SnsPublishBatcher;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the flush rules and result mapping of the {@link SnsPublishBatcher} against a private emulator
+ */
+public class SnsPublishBatcherTest extends BaseTest {
+    private SnsSqsEmulator emulator;
+    private SnsClient snsClient;
+    private SqsClient sqsClient;
+
+    @BeforeClass
+    public void startEmulator() throws IOException {
+        emulator = SnsSqsEmulator.start(0);
+        snsClient = SnsClient.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(SnsSqsEmulator.credentialsProvider())
+                .endpointOverride(emulator.endpoint())
+                .build();
+        sqsClient = SqsClient.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(SnsSqsEmulator.credentialsProvider())
+                .endpointOverride(emulator.endpoint())
+                .build();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopEmulator() {
+        snsClient.close();
+        sqsClient.close();
+        emulator.close();
+    }
+
+    @Test(description = "Test that a batch is sent as soon as it holds 10 entries and the rest on flush")
+    public void testFlushesFullBatches() {
+        String topicArn = emulator.createTopic("batcher-full");
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ZERO)) {
+            for (int i = 0; i < 13; i++) {
+                futures.add(batcher.add("entry-" + i, "message " + i, Collections.emptyMap()));
+            }
+            // The 10th entry filled the batch and sent it from the adding thread
+            for (int i = 0; i < SnsPublishBatcher.MAX_BATCH_ENTRIES; i++) {
+                getSoftAssert().assertTrue(futures.get(i).isDone(), "Entry " + i + " should be sent with the full batch");
+            }
+            for (int i = SnsPublishBatcher.MAX_BATCH_ENTRIES; i < 13; i++) {
+                getSoftAssert().assertFalse(futures.get(i).isDone(), "Entry " + i + " should wait for the next batch");
+            }
+            batcher.flush();
+        }
+        for (CompletableFuture<String> future : futures) {
+            getSoftAssert().assertNotNull(future.join(), "Every entry should get an SNS message ID");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a batch is sent before it would exceed 256 KB and that oversized entries fail")
+    public void testFlushesBeforeTheSizeLimit() {
+        String topicArn = emulator.createTopic("batcher-size");
+        String message = "x".repeat(100 * 1024);
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ZERO)) {
+            CompletableFuture<String> first = batcher.add("first", message, Collections.emptyMap());
+            CompletableFuture<String> second = batcher.add("second", message, Collections.emptyMap());
+            getSoftAssert().assertFalse(first.isDone(), "Two 100 KB entries should fit into one batch");
+
+            CompletableFuture<String> third = batcher.add("third", message, Collections.emptyMap());
+            getSoftAssert().assertTrue(first.isDone() && second.isDone(), "The third entry should push the first two out");
+            getSoftAssert().assertFalse(third.isDone(), "The third entry should start a new batch");
+
+            CompletableFuture<String> oversized = batcher.add("oversized",
+                    "x".repeat(SnsPublishBatcher.MAX_BATCH_BYTES + 1), Collections.emptyMap());
+            getSoftAssert().assertEquals(failureOf(oversized).getCode(), "BatchEntryTooLong", "An oversized entry should fail on its own");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a partly filled batch is sent after the linger time without a flush")
+    public void testFlushesAfterLinger() throws Exception {
+        String topicArn = emulator.createTopic("batcher-linger");
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ofMillis(50))) {
+            CompletableFuture<String> future = batcher.add("lingering", "message", Collections.emptyMap());
+            getSoftAssert().assertNotNull(future.get(5, TimeUnit.SECONDS), "The linger timer should send the entry");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that entries SNS rejects fail on their own while the rest of the batch succeeds")
+    public void testMapsFailedEntries() {
+        String topicArn = emulator.createTopic("batcher-failures");
+        CompletableFuture<String> valid;
+        CompletableFuture<String> empty;
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ZERO)) {
+            valid = batcher.add("valid", "message", Collections.emptyMap());
+            empty = batcher.add("empty", "", Collections.emptyMap());
+        }
+        getSoftAssert().assertNotNull(valid.join(), "The valid entry should be published");
+        SnsPublishBatcher.EntryFailedException failure = failureOf(empty);
+        getSoftAssert().assertEquals(failure.getEntryId(), "empty", "The failure should name its entry");
+        getSoftAssert().assertEquals(failure.getCode(), "InvalidParameter", "The failure should carry the SNS error code");
+        getSoftAssert().assertTrue(failure.isSenderFault(), "An empty message is the sender's fault");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that linger flushes and full batches keep the order of a FIFO group")
+    public void testKeepsFifoOrderWithLinger() {
+        String topicArn = emulator.createTopic("batcher-order.fifo");
+        String queueUrl = emulator.createQueue("batcher-order.fifo", Collections.singletonMap("FifoQueue", "true"));
+        emulator.subscribe(topicArn, queueUrl, true, null);
+
+        // A short linger makes timer flushes race with the full batches sent by this thread
+        int count = 300;
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ofMillis(1))) {
+            for (int i = 0; i < count; i++) {
+                String body = Integer.toString(i);
+                batcher.add("entry-" + i, body, Collections.emptyMap(), "group", FifoMessageKeys.deduplicationId("group", body));
+            }
+        }
+
+        List<Integer> received = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received.size() < count && System.nanoTime() < deadline) {
+            List<Message> messages = sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                    .queueUrl(queueUrl)
+                    .maxNumberOfMessages(10)
+                    .waitTimeSeconds(1)
+                    .build()).messages();
+            for (Message message : messages) {
+                received.add(Integer.parseInt(message.body()));
+                sqsClient.deleteMessage(DeleteMessageRequest.builder().queueUrl(queueUrl).receiptHandle(message.receiptHandle()).build());
+            }
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expected.add(i);
+        }
+        getSoftAssert().assertEquals(received, expected, "The group should arrive in the order it was added");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that a failed FIFO entry fails the later entries of its group but not other groups")
+    public void testFailsRestOfFifoGroup() {
+        String topicArn = emulator.createTopic("batcher-group-failure.fifo");
+        CompletableFuture<String> first;
+        CompletableFuture<String> failed;
+        CompletableFuture<String> later;
+        CompletableFuture<String> otherGroup;
+        try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ZERO)) {
+            first = batcher.add("first", "1", Collections.emptyMap(), "a", "a-1");
+            batcher.flush();
+            failed = batcher.add("failed", "", Collections.emptyMap(), "a", "a-2");
+            batcher.flush();
+            later = batcher.add("later", "3", Collections.emptyMap(), "a", "a-3");
+            otherGroup = batcher.add("other", "1", Collections.emptyMap(), "b", "b-1");
+        }
+        getSoftAssert().assertNotNull(first.join(), "The entry before the failure should be published");
+        getSoftAssert().assertEquals(failureOf(failed).getCode(), "InvalidParameter", "The empty message should fail");
+        getSoftAssert().assertEquals(failureOf(later).getCode(), SnsPublishBatcher.GROUP_FAILED_CODE,
+                "The group should not be published with a gap");
+        getSoftAssert().assertNotNull(otherGroup.join(), "Other groups should still be published");
+        getSoftAssert().assertAll();
+    }
+
+    @Test(description = "Test that closing waits for a linger flush that is already sending")
+    public void testCloseWaitsForLingerFlush() {
+        String topicArn = emulator.createTopic("batcher-close");
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        // Every close races the 1 ms linger flush of the entry added right before it
+        for (int i = 0; i < 50; i++) {
+            try (SnsPublishBatcher batcher = new SnsPublishBatcher(snsClient, topicArn, Duration.ofMillis(1))) {
+                futures.add(batcher.add("entry-" + i, "message " + i, Collections.emptyMap()));
+            }
+        }
+        for (CompletableFuture<String> future : futures) {
+            getSoftAssert().assertNotNull(future.join(), "Closing should not interrupt a running publish");
+        }
+        getSoftAssert().assertAll();
+    }
+
+    private static SnsPublishBatcher.EntryFailedException failureOf(CompletableFuture<String> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SnsPublishBatcher.EntryFailedException) {
+                return (SnsPublishBatcher.EntryFailedException) e.getCause();
+            }
+            throw e;
+        }
+        throw new AssertionError("The entry should have failed");
+    }
+}
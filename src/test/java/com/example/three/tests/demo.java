@@ -7,6 +7,9 @@ import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
+import com.example.three.services.FifoMessageKeys;
+import com.example.three.services.MessageGroupKeyExtractor;
+import com.example.three.utils.PayloadTemplate;
 
 // import com.amazonaws.auth.AWSCredentialsProvider; // Remove SDK v1
 // import com.amazonaws.auth.DefaultAWSCredentialsProviderChain; // Remove SDK v1
@@ -57,14 +60,21 @@ public class demo {
                     .credentialsProvider(DefaultCredentialsProvider.create())
                     .build();
 
-            PublishRequest publishRequest = PublishRequest.builder()
+            PublishRequest.Builder publishRequest = PublishRequest.builder()
                     .topicArn(SNS_TOPIC_ARN)
                     .message(jsonPayload)
-                    .messageAttributes(messageAttributes)
+                    .messageAttributes(messageAttributes);
                     // .subject("New Order Received - ID: 78901") // Optional: subject can be set here
-                    .build();
+
+            if (FifoMessageKeys.isFifo(SNS_TOPIC_ARN)) {
+                // FIFO topics need a group; all events of one order stay in order, different orders run in parallel
+                String messageGroupId = MessageGroupKeyExtractor.field("data.orderId")
+                        .groupKey(PayloadTemplate.compile(jsonPayload), null);
+                publishRequest.messageGroupId(messageGroupId)
+                        .messageDeduplicationId(FifoMessageKeys.deduplicationId(messageGroupId, jsonPayload));
+            }
             
-            PublishResponse result = snsClient.publish(publishRequest); // Changed to PublishResponse
+            PublishResponse result = snsClient.publish(publishRequest.build()); // Changed to PublishResponse
 
             System.out.println("Message sent successfully!");
             System.out.println("Message ID: " + result.messageId()); // Use messageId()
@@ -4,10 +4,17 @@ package com.example.three.utils;
 // import com.amazonaws.regions.Regions;
 // With SDK v2 import
 import software.amazon.awssdk.regions.Region;
+import com.example.three.emulator.SnsSqsEmulator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.UUID;
 
 /**
  * Utility class for AWS configuration values, loaded from a properties file.
@@ -19,6 +26,25 @@ public class AwsConfigUtility {
     private static final String SQS_QUEUE_URL;
     private static final Region REGION; // Changed from Regions to Region
     private static final String MESSAGE_JSON_PATH;
+    private static final Duration VERIFICATION_TIMEOUT;
+    private static final boolean EMULATOR_ENABLED;
+    private static final String ENDPOINT_OVERRIDE;
+    private static final String SNS_FIFO_TOPIC_ARN;
+    private static final String SQS_FIFO_QUEUE_URL;
+    private static final String FIFO_GROUP_KEY_PATH;
+    private static final int FIFO_GROUP_COUNT;
+    private static final int PAYLOAD_COMPRESS_THRESHOLD_BYTES;
+    private static final int PAYLOAD_OFFLOAD_THRESHOLD_BYTES;
+    private static final String PAYLOAD_BLOBSTORE_DIR;
+    private static final String METRICS_EXPORT_FILE;
+    private static final Duration METRICS_EXPORT_INTERVAL;
+    private static final boolean RATE_LIMIT_ENABLED;
+    private static final double RATE_LIMIT_INITIAL_PER_SECOND;
+    private static final double RATE_LIMIT_MAX_PER_SECOND;
+    private static final double RATE_LIMIT_INCREASE_PER_SECOND;
+    private static final boolean RUN_ISOLATION_ENABLED;
+    private static final String RUN_ID;
+    private static volatile List<RegionTarget> regionTargets; // Parsed on first use, see getRegionTargets()
 
     static {
         try (InputStream input = AwsConfigUtility.class.getClassLoader().getResourceAsStream("aws_config.properties")) {
@@ -28,13 +54,53 @@ public class AwsConfigUtility {
                 SNS_TOPIC_ARN = "YOUR_SNS_TOPIC_ARN_DEFAULT"; 
                 SQS_QUEUE_URL = "YOUR_SQS_QUEUE_URL_DEFAULT";
                 REGION = Region.US_EAST_1; // Changed from Regions.US_EAST_1 to Region.US_EAST_1
-                MESSAGE_JSON_PATH = "src/test/resources/three/message_payload.json";
+                MESSAGE_JSON_PATH = "src/test/resources/jsons/message_payload.json";
+                VERIFICATION_TIMEOUT = Duration.ofSeconds(30);
+                EMULATOR_ENABLED = Boolean.getBoolean("aws.emulator.enabled");
+                ENDPOINT_OVERRIDE = null;
+                SNS_FIFO_TOPIC_ARN = "YOUR_SNS_FIFO_TOPIC_ARN_DEFAULT.fifo";
+                SQS_FIFO_QUEUE_URL = "YOUR_SQS_FIFO_QUEUE_URL_DEFAULT.fifo";
+                FIFO_GROUP_KEY_PATH = null;
+                FIFO_GROUP_COUNT = 10;
+                PAYLOAD_COMPRESS_THRESHOLD_BYTES = 64 * 1024;
+                PAYLOAD_OFFLOAD_THRESHOLD_BYTES = 200 * 1024;
+                PAYLOAD_BLOBSTORE_DIR = "build/claim-check";
+                METRICS_EXPORT_FILE = null;
+                METRICS_EXPORT_INTERVAL = Duration.ofSeconds(10);
+                RATE_LIMIT_ENABLED = false;
+                RATE_LIMIT_INITIAL_PER_SECOND = 50;
+                RATE_LIMIT_MAX_PER_SECOND = 3000;
+                RATE_LIMIT_INCREASE_PER_SECOND = 10;
+                RUN_ISOLATION_ENABLED = Boolean.getBoolean("run.isolation.enabled");
+                RUN_ID = runId(System.getProperty("run.id"));
             } else {
                 properties.load(input);
                 SNS_TOPIC_ARN = properties.getProperty("sns.topic.arn");
                 SQS_QUEUE_URL = properties.getProperty("sqs.queue.url");
                 REGION = Region.of(properties.getProperty("aws.region")); // Changed from Regions.fromName to Region.of
                 MESSAGE_JSON_PATH = properties.getProperty("message.json.path");
+                VERIFICATION_TIMEOUT = Duration.ofSeconds(Long.parseLong(properties.getProperty("verification.timeout.seconds", "30")));
+                // A -Daws.emulator.enabled system property wins, so one run can switch between AWS and the emulator
+                EMULATOR_ENABLED = Boolean.parseBoolean(System.getProperty("aws.emulator.enabled",
+                        properties.getProperty("aws.emulator.enabled", "false")));
+                ENDPOINT_OVERRIDE = properties.getProperty("aws.endpoint.override");
+                SNS_FIFO_TOPIC_ARN = properties.getProperty("sns.fifo.topic.arn");
+                SQS_FIFO_QUEUE_URL = properties.getProperty("sqs.fifo.queue.url");
+                FIFO_GROUP_KEY_PATH = properties.getProperty("fifo.message.group.key");
+                FIFO_GROUP_COUNT = Integer.parseInt(properties.getProperty("fifo.message.groups", "10"));
+                PAYLOAD_COMPRESS_THRESHOLD_BYTES = Integer.parseInt(properties.getProperty("payload.compress.threshold.bytes", "65536"));
+                PAYLOAD_OFFLOAD_THRESHOLD_BYTES = Integer.parseInt(properties.getProperty("payload.offload.threshold.bytes", "204800"));
+                PAYLOAD_BLOBSTORE_DIR = properties.getProperty("payload.blobstore.dir", "build/claim-check");
+                METRICS_EXPORT_FILE = properties.getProperty("metrics.export.file");
+                METRICS_EXPORT_INTERVAL = Duration.ofSeconds(Long.parseLong(properties.getProperty("metrics.export.interval.seconds", "10")));
+                RATE_LIMIT_ENABLED = Boolean.parseBoolean(properties.getProperty("ratelimit.enabled", "false"));
+                RATE_LIMIT_INITIAL_PER_SECOND = Double.parseDouble(properties.getProperty("ratelimit.initial.per.second", "50"));
+                RATE_LIMIT_MAX_PER_SECOND = Double.parseDouble(properties.getProperty("ratelimit.max.per.second", "3000"));
+                RATE_LIMIT_INCREASE_PER_SECOND = Double.parseDouble(properties.getProperty("ratelimit.increase.per.second", "10"));
+                // System properties win, so parallel CI jobs can share one properties file
+                RUN_ISOLATION_ENABLED = Boolean.parseBoolean(System.getProperty("run.isolation.enabled",
+                        properties.getProperty("run.isolation.enabled", "false")));
+                RUN_ID = runId(System.getProperty("run.id", properties.getProperty("run.id")));
             }
         } catch (IOException ex) {
             ex.printStackTrace();
@@ -70,6 +136,188 @@ public class AwsConfigUtility {
         return REGION;
     }
 
+    /**
+     * Gets the SNS FIFO topic ARN
+     * 
+     * @return The SNS FIFO topic ARN, ending in .fifo
+     */
+    public static String getSnsFifoTopicArn() {
+        return SNS_FIFO_TOPIC_ARN;
+    }
+
+    /**
+     * Gets the SQS FIFO queue URL subscribed to the FIFO topic
+     * 
+     * @return The SQS FIFO queue URL, ending in .fifo
+     */
+    public static String getSqsFifoQueueUrl() {
+        return SQS_FIFO_QUEUE_URL;
+    }
+
+    /**
+     * Gets the payload field whose value is used as MessageGroupId for FIFO publishes
+     * 
+     * @return The dotted field path, e.g. "data.orderId", or null to spread messages over {@link #getFifoGroupCount()} groups
+     */
+    public static String getFifoGroupKeyPath() {
+        return FIFO_GROUP_KEY_PATH == null || FIFO_GROUP_KEY_PATH.isEmpty() ? null : FIFO_GROUP_KEY_PATH;
+    }
+
+    /**
+     * Gets the number of message groups FIFO publishes are spread over when no group key field is configured
+     * 
+     * @return The number of groups
+     */
+    public static int getFifoGroupCount() {
+        return FIFO_GROUP_COUNT;
+    }
+
+    /**
+     * Gets the payload size above which published payloads are gzipped
+     * 
+     * @return The threshold in UTF-8 bytes
+     */
+    public static int getPayloadCompressThresholdBytes() {
+        return PAYLOAD_COMPRESS_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Gets the payload size above which published payloads are offloaded to the blob store (claim check)
+     * 
+     * @return The threshold in UTF-8 bytes
+     */
+    public static int getPayloadOffloadThresholdBytes() {
+        return PAYLOAD_OFFLOAD_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Gets the directory of the local blob store holding offloaded payloads
+     * 
+     * @return The directory path
+     */
+    public static String getPayloadBlobStoreDir() {
+        return PAYLOAD_BLOBSTORE_DIR;
+    }
+
+    /**
+     * Gets the file SDK call metrics are periodically written to
+     * 
+     * @return The file path, or null if the export is disabled
+     */
+    public static String getMetricsExportFile() {
+        return METRICS_EXPORT_FILE == null || METRICS_EXPORT_FILE.isEmpty() ? null : METRICS_EXPORT_FILE;
+    }
+
+    /**
+     * Gets the time between two SDK metrics snapshots
+     * 
+     * @return The export interval
+     */
+    public static Duration getMetricsExportInterval() {
+        return METRICS_EXPORT_INTERVAL;
+    }
+
+    /**
+     * Checks whether publishes and receives go through an adaptive client-side rate limiter per topic and queue
+     * 
+     * @return true if rate limiting is enabled
+     */
+    public static boolean isRateLimitEnabled() {
+        return RATE_LIMIT_ENABLED;
+    }
+
+    /**
+     * Gets the rate a topic or queue starts with
+     * 
+     * @return Messages published or receive calls per second
+     */
+    public static double getRateLimitInitialPerSecond() {
+        return RATE_LIMIT_INITIAL_PER_SECOND;
+    }
+
+    /**
+     * Gets the highest rate the limiter raises a topic or queue to
+     * 
+     * @return Messages published or receive calls per second
+     */
+    public static double getRateLimitMaxPerSecond() {
+        return RATE_LIMIT_MAX_PER_SECOND;
+    }
+
+    /**
+     * Gets how fast the rate grows while nothing is throttled
+     * 
+     * @return Rate added per second
+     */
+    public static double getRateLimitIncreasePerSecond() {
+        return RATE_LIMIT_INCREASE_PER_SECOND;
+    }
+
+    /**
+     * Gets the ID that isolates this run from other runs on the same topic. Publishes carry it as a message
+     * attribute and the run receives from its own queue, subscribed with a filter policy on that attribute.
+     * 
+     * @return The configured run.id, a generated one if none is set, or null if run isolation is disabled
+     */
+    public static String getRunId() {
+        return RUN_ISOLATION_ENABLED ? RUN_ID : null;
+    }
+
+    /**
+     * Gets the regions whose topics and queues are tested at once, from aws.regions and the
+     * sns.topic.arn.&lt;region&gt; and sqs.queue.url.&lt;region&gt; properties
+     * 
+     * Parsed on first use, so a broken aws.regions only fails the tests that use it. With the emulator
+     * enabled, the topics and queues are created on the shared emulator.
+     * 
+     * @return The region targets, or only aws.region with the default topic and queue if aws.regions is empty
+     * @throws IllegalArgumentException if aws.regions lists a region without its topic or queue
+     */
+    public static List<RegionTarget> getRegionTargets() {
+        List<RegionTarget> targets = regionTargets;
+        if (targets == null) {
+            synchronized (AwsConfigUtility.class) {
+                targets = regionTargets;
+                if (targets == null) {
+                    targets = parseRegionTargets(properties.getProperty("aws.regions"));
+                    if (EMULATOR_ENABLED) {
+                        SnsSqsEmulator emulator = SnsSqsEmulator.shared();
+                        for (RegionTarget target : targets) {
+                            emulator.provision(target.getSnsTopicArn(), target.getSqsQueueUrl());
+                        }
+                    }
+                    regionTargets = targets;
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static List<RegionTarget> parseRegionTargets(String regions) {
+        if (regions == null || regions.trim().isEmpty()) {
+            return Collections.singletonList(new RegionTarget(REGION, SNS_TOPIC_ARN, SQS_QUEUE_URL));
+        }
+        List<RegionTarget> targets = new ArrayList<>();
+        for (String regionId : regions.split(",")) {
+            String id = regionId.trim();
+            String topicArn = properties.getProperty("sns.topic.arn." + id);
+            String queueUrl = properties.getProperty("sqs.queue.url." + id);
+            if (topicArn == null || queueUrl == null) {
+                throw new IllegalArgumentException("aws.regions lists " + id + " without sns.topic.arn." + id
+                        + " and sqs.queue.url." + id);
+            }
+            targets.add(new RegionTarget(Region.of(id), topicArn, queueUrl));
+        }
+        return Collections.unmodifiableList(targets);
+    }
+
+    private static String runId(String configured) {
+        if (configured != null && !configured.trim().isEmpty()) {
+            return configured.trim();
+        }
+        return "run-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
     /**
      * Gets the path to the message JSON file
      * 
@@ -78,4 +326,38 @@ public class AwsConfigUtility {
     public static String getMessageJsonPath() {
         return MESSAGE_JSON_PATH;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the overall time allowed for a message to arrive in the SQS queue
+     * 
+     * @return The verification deadline
+     */
+    public static Duration getVerificationTimeout() {
+        return VERIFICATION_TIMEOUT;
+    }
+
+    /**
+     * Checks whether the tests run against the in-process SNS/SQS emulator instead of AWS
+     * 
+     * @return true if the emulator is enabled
+     */
+    public static boolean isEmulatorEnabled() {
+        return EMULATOR_ENABLED;
+    }
+
+    /**
+     * Gets the endpoint the SNS and SQS clients should use instead of the regional AWS endpoints.
+     * With the emulator enabled, this starts the shared emulator and creates the configured topic and queue.
+     * 
+     * @return The endpoint override, or null to use AWS
+     */
+    public static URI getEndpointOverride() {
+        if (EMULATOR_ENABLED) {
+            SnsSqsEmulator emulator = SnsSqsEmulator.shared();
+            emulator.provision(SNS_TOPIC_ARN, SQS_QUEUE_URL);
+            emulator.provision(SNS_FIFO_TOPIC_ARN, SQS_FIFO_QUEUE_URL);
+            return emulator.endpoint(); // The region targets are provisioned by getRegionTargets()
+        }
+        return ENDPOINT_OVERRIDE == null || ENDPOINT_OVERRIDE.isEmpty() ? null : URI.create(ENDPOINT_OVERRIDE);
+    }
+}
@@ -1,17 +1,80 @@
 package com.example.three.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.Separators;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
- * Utility class for reading and writing JSON files
+ * Utility class for reading and writing JSON files.
+ * 
+ * All operations stream through Jackson's JsonParser and JsonGenerator: input files are read through
+ * memory-mapped windows instead of being loaded into a String, and output is written to a temp file next
+ * to the target and renamed over it, so readers never see a half-written file. The streaming methods
+ * ({@link #readJsonStream}, {@link #forEachArrayElement}, {@link #writeJsonStream} and
+ * {@link #updateJsonFile}) use constant memory regardless of the file size.
  */
 public class JsonUtility {
+    /** Size of the memory-mapped windows input files are read through, unless changed */
+    public static final long DEFAULT_MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private static volatile long mapWindowBytes = DEFAULT_MAP_WINDOW_BYTES;
+
+    /**
+     * Reads from a streaming JSON parser
+     * 
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface JsonStreamReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Writes to a streaming JSON generator
+     */
+    @FunctionalInterface
+    public interface JsonStreamWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Sets the size of the memory-mapped windows input files are read through, e.g. a few bytes to test
+     * reads across window boundaries. Files opened afterwards use the new size.
+     *
+     * @param windowBytes Window size in bytes; {@link #DEFAULT_MAP_WINDOW_BYTES} unless changed
+     */
+    public static void setMapWindowBytes(long windowBytes) {
+        if (windowBytes <= 0 || windowBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Map window size must be between 1 and " + Integer.MAX_VALUE + " bytes: " + windowBytes);
+        }
+        mapWindowBytes = windowBytes;
+    }
 
     /**
      * Reads a JSON file and returns its content as a JSONObject
@@ -21,15 +84,80 @@ public class JsonUtility {
      * @throws IOException if the file cannot be read
      */
     public static JSONObject readJsonFile(String filePath) throws IOException {
+        // Built straight from the token stream, without a String copy of the whole file
+        return readJsonStream(filePath, parser -> {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("JSON file " + filePath + " does not contain an object");
+            }
+            return (JSONObject) readValue(parser);
+        });
+    }
+
+    /**
+     * Reads a JSON file with a streaming parser over the memory-mapped file
+     * 
+     * @param filePath Path to the JSON file
+     * @param reader Reads the tokens it needs, starting before the first token
+     * @param <T> The result type
+     * @return The result of the reader
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    public static <T> T readJsonStream(String filePath, JsonStreamReader<T> reader) throws IOException {
         Path path = Paths.get(filePath);
         if (!Files.exists(path)) {
             throw new IOException("JSON file not found at: " + filePath);
         }
-        
-        String content = new String(Files.readAllBytes(path));
-        return new JSONObject(content);
+
+        try (InputStream input = new MappedFileInputStream(path);
+             JsonParser parser = JSON_FACTORY.createParser(input)) {
+            return reader.read(parser);
+        }
     }
-    
+
+    /**
+     * Streams the elements of a large array one at a time, e.g. the records of a result file.
+     * Only the current element is held in memory.
+     * 
+     * @param filePath Path to the JSON file
+     * @param arrayField Top-level field holding the array, or null if the file itself is an array
+     * @param action Called for every element, in file order
+     * @return The number of elements
+     * @throws IOException if the file cannot be read, is not valid JSON, or the array holds non-objects
+     */
+    public static long forEachArrayElement(String filePath, String arrayField, Consumer<JSONObject> action) throws IOException {
+        return readJsonStream(filePath, parser -> {
+            JsonToken token = parser.nextToken();
+            if (arrayField != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("JSON file " + filePath + " does not contain an object");
+                }
+                token = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if (name.equals(arrayField)) {
+                        break;
+                    }
+                    parser.skipChildren();
+                    token = null;
+                }
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("No array " + (arrayField != null ? "in field " + arrayField + " " : "") + "in " + filePath);
+            }
+
+            long count = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Element " + count + " of the array in " + filePath + " is not an object");
+                }
+                action.accept((JSONObject) readValue(parser));
+                count++;
+            }
+            return count;
+        });
+    }
+
     /**
      * Writes a JSONObject to a file
      * 
@@ -38,35 +166,229 @@ public class JsonUtility {
      * @throws IOException if the file cannot be written
      */
     public static void writeJsonFile(JSONObject jsonObject, String filePath) throws IOException {
-        Path path = Paths.get(filePath);
-        
+        // Streamed out value by value instead of rendering the whole document into one byte array
+        writeJsonStream(filePath, generator -> writeValue(generator, jsonObject));
+
+        System.out.println("JSON file written successfully to: " + filePath);
+    }
+
+    /**
+     * Writes a JSON file with a streaming generator. The content goes to a temp file in the same directory,
+     * which replaces the target only once it is complete.
+     * 
+     * @param filePath Path where the JSON file should be written
+     * @param writer Writes the document
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeJsonStream(String filePath, JsonStreamWriter writer) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+
         // Create parent directories if they don't exist
         Files.createDirectories(path.getParent());
-        
-        // Write the JSON content to the file
-        Files.write(path, jsonObject.toString(4).getBytes(), 
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        
-        System.out.println("JSON file written successfully to: " + filePath);
+
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.WRITE), WRITE_BUFFER_BYTES);
+                 JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+                generator.setPrettyPrinter(prettyPrinter());
+                writer.write(generator);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
     }
-    
+
     /**
-     * Updates a JSON file with new values
+     * Updates a JSON file with new values in a single streaming pass: top-level fields named in the updates
+     * are replaced, all other fields are copied token by token, and new fields are appended at the end.
      * 
      * @param filePath Path to the JSON file
      * @param updates JSONObject containing the updates to apply
      * @throws IOException if the file cannot be read or written
      */
     public static void updateJsonFile(String filePath, JSONObject updates) throws IOException {
-        // Read the existing JSON file
-        JSONObject existing = readJsonFile(filePath);
-        
-        // Apply the updates
-        for (String key : updates.keySet()) {
-            existing.put(key, updates.get(key));
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IOException("JSON file not found at: " + filePath);
+        }
+
+        try (InputStream input = new MappedFileInputStream(path);
+             JsonParser parser = JSON_FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("JSON file " + filePath + " does not contain an object");
+            }
+
+            writeJsonStream(filePath, generator -> {
+                Set<String> applied = new HashSet<>();
+                generator.writeStartObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (updates.has(name)) {
+                        parser.skipChildren(); // The old value is dropped without being read into memory
+                        generator.writeFieldName(name);
+                        writeValue(generator, updates.get(name));
+                        applied.add(name);
+                    } else {
+                        generator.writeFieldName(name);
+                        generator.copyCurrentStructure(parser);
+                    }
+                }
+                for (String key : updates.keySet()) {
+                    if (!applied.contains(key)) {
+                        generator.writeFieldName(key);
+                        writeValue(generator, updates.get(key));
+                    }
+                }
+                generator.writeEndObject();
+            });
+        }
+    }
+
+    /**
+     * Same layout as org.json's toString(4), so rewritten files keep their formatting. Only empty and
+     * single-entry objects and arrays differ, which org.json prints on one line.
+     */
+    private static DefaultPrettyPrinter prettyPrinter() {
+        DefaultIndenter indenter = new DefaultIndenter("    ", "\n");
+        return new DefaultPrettyPrinter()
+                .withObjectIndenter(indenter)
+                .withArrayIndenter(indenter)
+                .withSeparators(Separators.createDefaultInstance().withObjectFieldValueSpacing(Separators.Spacing.AFTER));
+    }
+
+    /**
+     * Reads the value at the current token into org.json types
+     */
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.put(name, readValue(parser));
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.put(readValue(parser));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected JSON token " + parser.currentToken());
+        }
+    }
+
+    /**
+     * Writes an org.json value
+     */
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            generator.writeNull();
+        } else if (value instanceof JSONObject) {
+            generator.writeStartObject();
+            JSONObject object = (JSONObject) value;
+            for (String key : object.keySet()) {
+                generator.writeFieldName(key);
+                writeValue(generator, object.opt(key));
+            }
+            generator.writeEndObject();
+        } else if (value instanceof JSONArray) {
+            generator.writeStartArray();
+            for (Object element : (JSONArray) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Reads a file through memory-mapped windows, so large files are neither copied onto the heap nor limited
+     * to the 2 GB of a single mapping
+     */
+    private static final class MappedFileInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long size;
+        private final long windowBytes = mapWindowBytes;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedFileInputStream(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextWindow() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextWindow()) {
+                return -1;
+            }
+            int count = Math.min(length, window.remaining());
+            window.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return window == null ? 0 : window.remaining();
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        private boolean nextWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            long next = window == null ? 0 : windowStart + window.capacity();
+            if (next >= size) {
+                return false;
+            }
+            windowStart = next;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(windowBytes, size - next));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
         }
-        
-        // Write the updated JSON back to the file
-        writeJsonFile(existing, filePath);
     }
-}
\ No newline at end of file
+}
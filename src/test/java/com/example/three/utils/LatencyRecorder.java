@@ -0,0 +1,104 @@
+package com.example.three.utils;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latencies from many threads into an HDR histogram, in microseconds with 3 significant digits.
+ * Recording is wait-free; the reporter periodically moves the interval into the run total.
+ */
+public final class LatencyRecorder {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final String name;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private Histogram interval;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one latency
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    /**
+     * Takes the latencies recorded since the last call and adds them to the run total
+     *
+     * @return The interval histogram, only valid until the next call
+     */
+    public synchronized Histogram sampleInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    /**
+     * Gets the latencies of the whole run. Call {@link #sampleInterval()} first to include the latest values.
+     *
+     * @return The run total
+     */
+    public synchronized Histogram getTotal() {
+        return total.copy();
+    }
+
+    /**
+     * Formats the percentile of a histogram in milliseconds
+     */
+    public static String millis(Histogram histogram, double percentile) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("%.2f ms", histogram.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * @return The count, mean, max and percentiles of the run in milliseconds
+     */
+    public synchronized JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("count", total.getTotalCount());
+        if (total.getTotalCount() == 0) {
+            return json;
+        }
+        json.put("meanMillis", total.getMean() / 1000.0);
+        json.put("maxMillis", total.getMaxValue() / 1000.0);
+        JSONObject percentiles = new JSONObject();
+        for (double percentile : PERCENTILES) {
+            percentiles.put("p" + formatPercentile(percentile), total.getValueAtPercentile(percentile) / 1000.0);
+        }
+        json.put("percentilesMillis", percentiles);
+        return json;
+    }
+
+    /**
+     * @return A one-line summary of the run, e.g. for the console
+     */
+    public synchronized String describe() {
+        StringBuilder description = new StringBuilder(name).append(": n=").append(total.getTotalCount());
+        for (double percentile : PERCENTILES) {
+            description.append(", p").append(formatPercentile(percentile)).append('=').append(millis(total, percentile));
+        }
+        if (total.getTotalCount() > 0) {
+            description.append(String.format(", max=%.2f ms", total.getMaxValue() / 1000.0));
+        }
+        return description.toString();
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.three.utils;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-serialized JSON payload with slots for per-message fields such as the messageId.
+ *
+ * The JSON is parsed and serialized once when the template is compiled. Rendering a message only splices
+ * the quoted slot values between the pre-serialized fragments, so no object tree is built per message.
+ * Slot fields are rendered first in the object, followed by the remaining fields of the original payload.
+ */
+public class PayloadTemplate {
+    private static final Map<String, CachedTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] slotNames;
+    private final String[] fragments; // fragments[i] precedes slot i, the last fragment closes the object
+    private final int fixedLength;
+    private final JSONObject payload;
+
+    private PayloadTemplate(String[] slotNames, String[] fragments, JSONObject payload) {
+        this.slotNames = slotNames;
+        this.fragments = fragments;
+        this.payload = payload;
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * Gets the compiled template of a JSON file. Templates are cached per path and slot names,
+     * and compiled again when the file's modification time or size changed.
+     *
+     * @param filePath Path to the JSON file
+     * @param slotNames Names of the fields that are set per message
+     * @return The compiled template
+     * @throws IOException if the file cannot be read
+     */
+    public static PayloadTemplate forFile(String filePath, String... slotNames) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        String cacheKey = path + "|" + String.join(",", slotNames);
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        CachedTemplate cached = CACHE.get(cacheKey);
+        if (cached != null && cached.lastModified == modified && cached.size == size) {
+            return cached.template;
+        }
+
+        PayloadTemplate template = compile(new String(Files.readAllBytes(path)), slotNames);
+        CACHE.put(cacheKey, new CachedTemplate(template, modified, size));
+        return template;
+    }
+
+    /**
+     * Compiles a JSON object into a template
+     *
+     * @param json The JSON object text
+     * @param slotNames Names of the fields that are set per message; existing values of these fields are replaced
+     * @return The compiled template
+     */
+    public static PayloadTemplate compile(String json, String... slotNames) {
+        JSONObject payload = new JSONObject(json);
+
+        JSONObject rest = new JSONObject(json);
+        for (String slotName : slotNames) {
+            rest.remove(slotName);
+        }
+        String restJson = rest.toString(); // "{...}" or "{}"
+
+        String[] fragments = new String[slotNames.length + 1];
+        for (int i = 0; i < slotNames.length; i++) {
+            fragments[i] = (i == 0 ? "{" : ",") + JSONObject.quote(slotNames[i]) + ":";
+        }
+        if (slotNames.length == 0) {
+            fragments[0] = restJson;
+        } else {
+            fragments[slotNames.length] = rest.isEmpty() ? "}" : "," + restJson.substring(1);
+        }
+        return new PayloadTemplate(slotNames.clone(), fragments, payload);
+    }
+
+    /**
+     * Renders a message
+     *
+     * @param slotValues String values for the slots, in the order the slot names were given
+     * @return The JSON message
+     */
+    public String render(String... slotValues) {
+        if (slotValues.length != slotNames.length) {
+            throw new IllegalArgumentException("Expected " + slotNames.length + " slot values but got " + slotValues.length);
+        }
+
+        int length = fixedLength;
+        for (String value : slotValues) {
+            length += value.length() + 2;
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < slotValues.length; i++) {
+            builder.append(fragments[i]);
+            appendQuoted(builder, slotValues[i]);
+        }
+        builder.append(fragments[slotValues.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Reads a top-level string field of the original payload
+     *
+     * @param key The field name
+     * @param defaultValue Value returned if the field is missing
+     * @return The field value
+     */
+    public String optString(String key, String defaultValue) {
+        return payload.optString(key, defaultValue);
+    }
+
+    /**
+     * Reads a nested field of the original payload
+     *
+     * @param dottedPath The field path, e.g. "data.orderId"
+     * @return The field value as a string, or null if a segment is missing or not an object
+     */
+    public String optPath(String dottedPath) {
+        JSONObject current = payload;
+        String[] segments = dottedPath.split("\\.");
+        for (int i = 0; i < segments.length - 1; i++) {
+            current = current.optJSONObject(segments[i]);
+            if (current == null) {
+                return null;
+            }
+        }
+        Object value = current.opt(segments[segments.length - 1]);
+        return value == null || value == JSONObject.NULL ? null : value.toString();
+    }
+
+    private static void appendQuoted(StringBuilder builder, String value) {
+        // Values such as UUIDs never need escaping, so skip the escaping path for them
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '/' || c >= 0x80) {
+                builder.append(JSONObject.quote(value));
+                return;
+            }
+        }
+        builder.append('"').append(value).append('"');
+    }
+
+    private static final class CachedTemplate {
+        private final PayloadTemplate template;
+        private final long lastModified;
+        private final long size;
+
+        private CachedTemplate(PayloadTemplate template, long lastModified, long size) {
+            this.template = template;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
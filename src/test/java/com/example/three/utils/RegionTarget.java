@@ -0,0 +1,70 @@
+package com.example.three.utils;
+
+import software.amazon.awssdk.regions.Region;
+
+import java.util.Objects;
+
+/**
+ * The SNS topic and SQS queue tested in one region, e.g. one side of an active-active topic pair
+ */
+public final class RegionTarget {
+    private final Region region;
+    private final String snsTopicArn;
+    private final String sqsQueueUrl;
+
+    /**
+     * @param region AWS region of the topic and queue
+     * @param snsTopicArn ARN of the SNS topic in the region
+     * @param sqsQueueUrl URL of the SQS queue subscribed to the topic
+     */
+    public RegionTarget(Region region, String snsTopicArn, String sqsQueueUrl) {
+        this.region = region;
+        this.snsTopicArn = snsTopicArn;
+        this.sqsQueueUrl = sqsQueueUrl;
+    }
+
+    /**
+     * @return AWS region of the topic and queue
+     */
+    public Region getRegion() {
+        return region;
+    }
+
+    /**
+     * @return ARN of the SNS topic
+     */
+    public String getSnsTopicArn() {
+        return snsTopicArn;
+    }
+
+    /**
+     * @return URL of the SQS queue
+     */
+    public String getSqsQueueUrl() {
+        return sqsQueueUrl;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RegionTarget)) {
+            return false;
+        }
+        RegionTarget that = (RegionTarget) other;
+        return Objects.equals(region, that.region)
+                && Objects.equals(snsTopicArn, that.snsTopicArn)
+                && Objects.equals(sqsQueueUrl, that.sqsQueueUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, snsTopicArn, sqsQueueUrl);
+    }
+
+    @Override
+    public String toString() {
+        return region.id() + " (" + snsTopicArn + " -> " + sqsQueueUrl + ")";
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.three.utils;
+
+import org.json.JSONObject;
+
+/**
+ * Streaming scanner that pulls a top-level field of the application payload out of an SQS message body
+ * without building any JSON object tree.
+ *
+ * For SNS-wrapped bodies the payload is the JSON-encoded string in the envelope's "Message" field. The scanner
+ * walks that string in place, decoding escapes on the fly, instead of copying and parsing it. For raw message
+ * delivery subscriptions the body is the payload itself, which is detected by the field being present at the
+ * top level of the body.
+ */
+public final class SnsEnvelopeScanner {
+    private static final String ENVELOPE_MESSAGE_FIELD = "Message";
+
+    private SnsEnvelopeScanner() {
+    }
+
+    /**
+     * Checks whether the payload carried by an SQS message body has a field with the expected value.
+     * Bodies that do not contain the expected value anywhere are rejected without scanning.
+     *
+     * @param body The SQS message body, SNS-wrapped or raw
+     * @param fieldName Name of the top-level payload field, e.g. "messageId"
+     * @param expectedValue The expected string value
+     * @return true if the field is present with the expected value
+     */
+    public static boolean matches(String body, String fieldName, String expectedValue) {
+        if (isPlain(expectedValue) && body.indexOf(expectedValue) < 0) {
+            return false; // Most messages on a shared queue are rejected here
+        }
+        return expectedValue.equals(extractField(body, fieldName));
+    }
+
+    /**
+     * Extracts a top-level string field of the payload carried by an SQS message body
+     *
+     * @param body The SQS message body, SNS-wrapped or raw
+     * @param fieldName Name of the top-level payload field, e.g. "messageId"
+     * @return The field value, or null if the body is not JSON or the field is missing or not a string
+     */
+    public static String extractField(String body, String fieldName) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            Cursor outer = new Cursor(body, 0, false);
+            int messageStart = scanObject(outer, fieldName, true);
+            if (outer.found != null) {
+                return outer.found; // Raw delivery: the field is at the top level of the body
+            }
+            if (messageStart < 0) {
+                return null;
+            }
+            // SNS envelope: scan the escaped payload inside the "Message" string in place
+            Cursor inner = new Cursor(body, messageStart, true);
+            scanObject(inner, fieldName, false);
+            return inner.found;
+        } catch (IllegalStateException e) {
+            return null; // Malformed JSON
+        }
+    }
+
+    /**
+     * Fully parses the payload carried by an SQS message body. Meant for the few bodies that matched.
+     *
+     * @param body The SQS message body, SNS-wrapped or raw
+     * @param fieldName A top-level payload field; if the body has it at the top level, it is a raw delivery
+     * @return The payload as a JSONObject
+     */
+    public static JSONObject parsePayload(String body, String fieldName) {
+        JSONObject json = new JSONObject(body);
+        if (json.has(fieldName) || !json.has(ENVELOPE_MESSAGE_FIELD)) {
+            return json; // Raw message delivery
+        }
+        return new JSONObject(json.getString(ENVELOPE_MESSAGE_FIELD));
+    }
+
+    /**
+     * Scans the object at the cursor for the field. Stores a string value of the field in {@link Cursor#found}.
+     *
+     * @return Raw index of the content of the envelope's "Message" string if requested and present, -1 otherwise
+     */
+    private static int scanObject(Cursor cursor, String fieldName, boolean findEnvelopeMessage) {
+        int messageStart = -1;
+        cursor.skipWhitespace();
+        if (cursor.next() != '{') {
+            return -1;
+        }
+
+        cursor.skipWhitespace();
+        if (cursor.peek() == '}') {
+            return -1;
+        }
+
+        while (true) {
+            cursor.skipWhitespace();
+            cursor.expect('"');
+            boolean isField = cursor.readStringEquals(fieldName);
+            // Only the raw body can be the envelope; its keys are plain ASCII so this comparison is exact
+            boolean isMessage = false;
+            if (!isField && findEnvelopeMessage) {
+                isMessage = cursor.lastStringEquals(ENVELOPE_MESSAGE_FIELD);
+            }
+            cursor.skipWhitespace();
+            cursor.expect(':');
+            cursor.skipWhitespace();
+
+            if (isField && cursor.peek() == '"') {
+                cursor.next();
+                cursor.found = cursor.readString();
+                return messageStart;
+            } else if (isMessage && cursor.peek() == '"') {
+                cursor.next();
+                messageStart = cursor.position();
+                cursor.skipString();
+            } else {
+                cursor.skipValue();
+            }
+
+            cursor.skipWhitespace();
+            int separator = cursor.next();
+            if (separator == '}') {
+                return messageStart;
+            }
+            if (separator != ',') {
+                throw new IllegalStateException("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private static boolean isPlain(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c == '/' || c < 0x20 || c >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads logical JSON characters from a string. In escaped mode the characters are the decoded content of a
+     * JSON string literal, ending at its closing quote.
+     */
+    private static final class Cursor {
+        private final String source;
+        private final boolean escaped;
+        private int pos;
+        private int lastStringStart;
+        private int lastStringEnd;
+        private String found;
+
+        private Cursor(String source, int start, boolean escaped) {
+            this.source = source;
+            this.pos = start;
+            this.escaped = escaped;
+        }
+
+        private int position() {
+            return pos;
+        }
+
+        private int peek() {
+            int saved = pos;
+            int c = next();
+            pos = saved;
+            return c;
+        }
+
+        private int next() {
+            if (pos >= source.length()) {
+                return -1;
+            }
+            char c = source.charAt(pos);
+            if (!escaped) {
+                pos++;
+                return c;
+            }
+            if (c == '"') {
+                return -1; // Closing quote of the enclosing string literal
+            }
+            if (c != '\\') {
+                pos++;
+                return c;
+            }
+            return decodeEscape();
+        }
+
+        private int decodeEscape() {
+            if (pos + 1 >= source.length()) {
+                throw new IllegalStateException("Unterminated escape");
+            }
+            char e = source.charAt(pos + 1);
+            pos += 2;
+            switch (e) {
+                case 'n':
+                    return '\n';
+                case 't':
+                    return '\t';
+                case 'r':
+                    return '\r';
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    if (pos + 4 > source.length()) {
+                        throw new IllegalStateException("Unterminated unicode escape");
+                    }
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(source.charAt(pos + i), 16);
+                        if (digit < 0) {
+                            throw new IllegalStateException("Invalid unicode escape");
+                        }
+                        value = value * 16 + digit;
+                    }
+                    pos += 4;
+                    return value;
+                default:
+                    return e; // \" \\ \/
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalStateException("Expected '" + expected + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (true) {
+                int c = peek();
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return;
+                }
+                next();
+            }
+        }
+
+        /**
+         * Reads the rest of a string (opening quote consumed) and compares it with the target without allocating
+         */
+        private boolean readStringEquals(String target) {
+            lastStringStart = pos;
+            int index = 0;
+            boolean equal = true;
+            while (true) {
+                int c = next();
+                if (c == -1) {
+                    throw new IllegalStateException("Unterminated string");
+                }
+                if (c == '"') {
+                    lastStringEnd = pos;
+                    return equal && index == target.length();
+                }
+                if (c == '\\') {
+                    c = decodeLogicalEscape();
+                }
+                if (equal && (index >= target.length() || target.charAt(index) != c)) {
+                    equal = false;
+                }
+                index++;
+            }
+        }
+
+        /**
+         * Compares the last string read by {@link #readStringEquals} with an ASCII target, raw mode only
+         */
+        private boolean lastStringEquals(String target) {
+            int length = lastStringEnd - 1 - lastStringStart;
+            return length == target.length() && source.regionMatches(lastStringStart, target, 0, length);
+        }
+
+        private String readString() {
+            StringBuilder builder = new StringBuilder(40);
+            while (true) {
+                int c = next();
+                if (c == -1) {
+                    throw new IllegalStateException("Unterminated string");
+                }
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    c = decodeLogicalEscape();
+                }
+                builder.append((char) c);
+            }
+        }
+
+        private void skipString() {
+            while (true) {
+                int c = next();
+                if (c == -1) {
+                    throw new IllegalStateException("Unterminated string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    decodeLogicalEscape();
+                }
+            }
+        }
+
+        /**
+         * Decodes an escape sequence of the JSON text the cursor is reading (backslash already consumed)
+         */
+        private int decodeLogicalEscape() {
+            int e = next();
+            switch (e) {
+                case 'n':
+                    return '\n';
+                case 't':
+                    return '\t';
+                case 'r':
+                    return '\r';
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) {
+                            throw new IllegalStateException("Invalid unicode escape");
+                        }
+                        value = value * 16 + digit;
+                    }
+                    return value;
+                case -1:
+                    throw new IllegalStateException("Unterminated escape");
+                default:
+                    return e;
+            }
+        }
+
+        private void skipValue() {
+            int c = peek();
+            if (c == '"') {
+                next();
+                skipString();
+                return;
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                while (true) {
+                    c = next();
+                    if (c == -1) {
+                        throw new IllegalStateException("Unterminated value");
+                    }
+                    if (c == '"') {
+                        skipString();
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        if (--depth == 0) {
+                            return;
+                        }
+                    }
+                }
+            }
+            // Number, true, false or null
+            while (true) {
+                c = peek();
+                if (c == -1 || c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    return;
+                }
+                next();
+            }
+        }
+    }
+}